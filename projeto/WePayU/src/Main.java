@@ -20,9 +20,12 @@ public class Main {
         EasyAccept.main(new String[]{facade, "tests/us7.txt"});
         EasyAccept.main(new String[]{facade, "tests/us8.txt"});
         EasyAccept.main(new String[]{facade, "tests/us9.txt"});
-//        EasyAccept.main(new String[]{facade, "tests/us9_1.txt"});
-//        EasyAccept.main(new String[]{facade, "tests/us10.txt"});
-//        EasyAccept.main(new String[]{facade, "tests/us10_1.txt"});
+        EasyAccept.main(new String[]{facade, "tests/us9_1.txt"});
+        EasyAccept.main(new String[]{facade, "tests/us10.txt"});
+        EasyAccept.main(new String[]{facade, "tests/us10_1.txt"});
+        EasyAccept.main(new String[]{facade, "tests/persistencia.txt"});
+        EasyAccept.main(new String[]{facade, "tests/persistencia_1.txt"});
+        EasyAccept.main(new String[]{facade, "tests/folhas.txt"});
     }
 }
 
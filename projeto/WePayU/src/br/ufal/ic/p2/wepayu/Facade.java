@@ -1,42 +1,89 @@
 package br.ufal.ic.p2.wepayu;
 
+import br.ufal.ic.p2.wepayu.service.AgendaPagamentoService;
 import br.ufal.ic.p2.wepayu.service.EmpregadosService;
 import br.ufal.ic.p2.wepayu.service.RegistroDeHorasService;
 import br.ufal.ic.p2.wepayu.service.TaxaServicoService;
 import br.ufal.ic.p2.wepayu.service.VendasService;
 import br.ufal.ic.p2.wepayu.service.FolhaDePagamentoService;
+import br.ufal.ic.p2.wepayu.service.PreviaFolha;
+import br.ufal.ic.p2.wepayu.backup.ArmazemBackup;
 import br.ufal.ic.p2.wepayu.backup.BackupManager;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.Journal;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinario;
+import br.ufal.ic.p2.wepayu.repositorio.Repositorio;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Facade {
+    private AgendaPagamentoService agendaService;
     private EmpregadosService empregadosService;
     private RegistroDeHorasService registroService;
     private VendasService vendaService;
     private TaxaServicoService taxaService;
+    private FolhaDePagamentoService folhaService;
+    private Repositorio repositorio;
+    private volatile long versaoEstado = 0; // muda a cada comando que altera o estado (chave da cache da folha)
+    // prévias abertas; ao criar uma, as de versões anteriores (que não podem mais ser
+    // efetivadas) são descartadas e, passando do máximo, as mais antigas
+    private static final int MAXIMO_PREVIAS = Math.max(1, Integer.getInteger("wepayu.previas.maximo", 64));
+    private final Map<String, PreviaFolha> previas = new ConcurrentHashMap<>();
+    private final AtomicInteger proximaPrevia = new AtomicInteger();
     private boolean sistemaEncerrado = false;
 
     public Facade() {
-        empregadosService = new EmpregadosService();
-        empregadosService.carregarEmpregados();
-
+        agendaService = new AgendaPagamentoService();
+        empregadosService = new EmpregadosService(agendaService);
         registroService = new RegistroDeHorasService(empregadosService.getEmpregadosMap());
-        registroService.carregarRegistros();
-
         vendaService = new VendasService(empregadosService.getEmpregadosMap());
-        vendaService.carregarVendas();
+        taxaService = new TaxaServicoService(empregadosService.getEmpregadosMap(), empregadosService.getEmpregadosPorSindicato());
+        folhaService = new FolhaDePagamentoService(empregadosService.getEmpregadosMap(), agendaService);
+
+        repositorio = Repositorio.configurado();
+        CoordenadorPersistencia.inicializar(repositorio, empregadosService.getEmpregadosMap());
+
+        // O snapshot binário é a fonte principal; o repositório é importado na falta dele.
+        List<String> agendas = new ArrayList<>();
+        boolean carregouSnapshot = SnapshotBinario.carregar(empregadosService.getEmpregadosMap(), agendas);
+        boolean repositorioEmDia = false;
+        if (carregouSnapshot) {
+            agendaService.restaurar(agendas);
+            // Repositório no mesmo commit do snapshot: o histórico passa a vir dele, sob demanda
+            repositorioEmDia = repositorio.anexarHistoricos(empregadosService.getEmpregadosMap(),
+                    SnapshotBinario.getSequencia());
+        } else {
+            repositorio.carregar(empregadosService.getEmpregadosMap());
+        }
+        empregadosService.reconstruirIndices();
 
-        taxaService = new TaxaServicoService(empregadosService.getEmpregadosMap());
-        taxaService.carregarTaxas();
+        Journal.inicializar(this::salvarTudo, SnapshotBinario.getSequencia());
+        boolean haviaPendentes = reproduzirJournal();
 
-        BackupManager.inicializar(empregadosService, registroService, vendaService, taxaService);
+        // O repositório pode estar atrás do snapshot/journal: é atualizado no próximo commit.
+        // O snapshot só precisa ser regravado se o journal trouxe alterações.
+        if (haviaPendentes) {
+            CoordenadorPersistencia.marcarTodosSujos();
+        } else if (carregouSnapshot && !repositorioEmDia) {
+            CoordenadorPersistencia.marcarExportacaoSuja();
+        }
+
+        BackupManager.inicializar(empregadosService, agendaService);
     }
 
     // ---------- Sistema ----------
     public void zerarSistema() {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.zerar();
         registroService.zerar();
         vendaService.zerar();
         taxaService.zerar();
+        CoordenadorPersistencia.commit();
     }
 
     public void testLimparHistorico() {
@@ -45,20 +92,63 @@ public class Facade {
 
     public void encerrarSistema() {
         sistemaEncerrado = true;
-        empregadosService.salvar();
-        registroService.salvar();
-        vendaService.salvar();
-        taxaService.salvar();
+        CoordenadorPersistencia.commit();
+        ArmazemBackup.backupConfigurado(repositorio.arquivos());
+    }
+
+    /** Início de um comando que altera o estado: ponto de undo e nova versão. */
+    private void novoComando() {
+        BackupManager.salvarEstado();
+        versaoEstado++;
+    }
+
+    // ---------- Persistência ----------
+    private void salvarTudo() {
+        SnapshotBinario.salvar(empregadosService.getEmpregadosMap(), agendaService.getDescricoes(),
+                Journal.getSequencia());
+    }
+
+    /** Reaplica sobre o estado carregado os comandos registrados após o último checkpoint. */
+    private boolean reproduzirJournal() {
+        int pendentes = Journal.reproduzir((registro, sequencia) -> {
+            switch (registro.texto(0)) {
+                case "EMP":
+                case "DEL":
+                case "HIS":
+                case "PAG":
+                    empregadosService.reproduzir(registro);
+                    break;
+                case "RET":
+                case "ITM":
+                case "HRS":
+                    empregadosService.reproduzirDelta(registro, sequencia);
+                    break;
+                case "REG":
+                    registroService.reproduzir(registro, sequencia);
+                    break;
+                case "VEN":
+                    vendaService.reproduzir(registro, sequencia);
+                    break;
+                case "TAX":
+                    taxaService.reproduzir(registro, sequencia);
+                    break;
+                case "AGE":
+                case "AGD":
+                    agendaService.reproduzir(registro);
+                    break;
+            }
+        });
+        return pendentes > 0;
     }
 
     // ---------- Empregados ----------
     public String criarEmpregado(String nome, String endereco, String tipo, String salario) {
-        BackupManager.salvarEstado();
+        novoComando();
         return empregadosService.criarEmpregado(nome, endereco, tipo, salario);
     }
 
     public String criarEmpregado(String nome, String endereco, String tipo, String salario, String comissao) {
-        BackupManager.salvarEstado();
+        novoComando();
         return empregadosService.criarEmpregadoComComissao(nome, endereco, tipo, salario, comissao);
     }
 
@@ -71,13 +161,13 @@ public class Facade {
     }
 
     public void removerEmpregado(String emp) {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.remover(emp);
     }
 
     // ---------- Registro de horas ----------
     public void lancaCartao(String emp, String data, String horas) {
-        BackupManager.salvarEstado();
+        novoComando();
         registroService.lancarCartao(emp, data, horas);
     }
 
@@ -91,7 +181,7 @@ public class Facade {
 
     // ---------- Vendas ----------
     public void lancaVenda(String emp, String data, String valor) {
-        BackupManager.salvarEstado();
+        novoComando();
         vendaService.lancarVenda(emp, data, valor);
     }
 
@@ -101,56 +191,108 @@ public class Facade {
 
     // ---------- Alterações ----------
     public void alteraEmpregado(String empId, String atributo, String valor) {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.alterarEmpregado(empId, atributo, valor, null, null, null);
     }
 
     public void alteraEmpregado(String empId, String atributo, String valor, String idSindicato, String taxaSindical) {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.alterarEmpregado(empId, atributo, valor, idSindicato, taxaSindical, null);
     }
 
     public void alteraEmpregado(String empId, String atributo, String valor1, String banco, String agencia, String contaCorrente) {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.alterarEmpregado(empId, atributo, valor1, banco, agencia, contaCorrente);
     }
 
     public void alteraEmpregado(String empId, String atributo, String valor, String comissao) {
-        BackupManager.salvarEstado();
+        novoComando();
         empregadosService.alterarEmpregado(empId, atributo, valor, comissao, null, null);
     }
 
     public void lancaTaxaServico(String membro, String data, String valor) throws Exception {
-        BackupManager.salvarEstado();
-        taxaService.lancarTaxaServico(membro, data, Double.parseDouble(valor.replace(',', '.')));
+        novoComando();
+        taxaService.lancarTaxaServico(membro, data, Dinheiro.deTexto(valor));
     }
 
     public String getTaxasServico(String emp, String dataInicial, String dataFinal) throws Exception {
         return taxaService.getTotalTaxas(emp, dataInicial, dataFinal);
     }
 
+    // ---------- Agendas de pagamento ----------
+    public void criarAgendaDePagamentos(String descricao) {
+        novoComando();
+        agendaService.criarAgenda(descricao);
+    }
+
     // ---------- Folha de pagamento ----------
     public void rodaFolha(String data, String saida) throws Exception {
+        // o cálculo ainda é o do estado atual (pode vir da cache); a versão muda com os pagamentos
+        BackupManager.salvarEstado();
+        try {
+            folhaService.rodaFolha(data, saida, versaoEstado);
+        } finally {
+            versaoEstado++;
+        }
+    }
+
+    /** Roda as folhas de todos os dias de pagamento do intervalo; relatórios em prefixoSaida + "aaaa-mm-dd.txt". */
+    public void rodaFolhas(String dataInicial, String dataFinal, String prefixoSaida) throws Exception {
         BackupManager.salvarEstado();
-        FolhaDePagamentoService folha = new FolhaDePagamentoService(
-                empregadosService.getEmpregadosMap(),
-                registroService,
-                vendaService,
-                taxaService
-        );
-        folha.rodaFolha(data, saida);
+        try {
+            folhaService.rodaFolhas(dataInicial, dataFinal, prefixoSaida, versaoEstado);
+        } finally {
+            versaoEstado++;
+        }
+    }
+
+    /**
+     * Calcula a folha da data sem alterar nada e devolve o id da prévia; o relatório
+     * vai para saida. Pode ser chamado de várias threads ao mesmo tempo.
+     */
+    public String previaFolha(String data, String saida) throws Exception {
+        PreviaFolha previa = folhaService.preverFolha(data, saida, versaoEstado);
+        int numero = proximaPrevia.incrementAndGet();
+        synchronized (previas) {
+            previas.values().removeIf(p -> p.getVersao() != versaoEstado);
+            // ids sequenciais: cheio, há alguma fora da janela das MAXIMO_PREVIAS mais novas
+            for (int antiga = numero - MAXIMO_PREVIAS; previas.size() >= MAXIMO_PREVIAS; antiga--) {
+                previas.remove("previa" + antiga);
+            }
+            previas.put("previa" + numero, previa);
+        }
+        return "previa" + numero;
+    }
+
+    public String getTotalPrevia(String previa) {
+        return Dinheiro.formatar(getPrevia(previa).getTotal());
+    }
+
+    /** Efetiva os pagamentos da prévia, se nenhum comando alterou o estado depois dela. */
+    public void efetivarPrevia(String id) {
+        PreviaFolha previa = getPrevia(id);
+        if (previa.getVersao() != versaoEstado) {
+            throw new RuntimeException("Previa desatualizada: o estado mudou depois do calculo.");
+        }
+        previas.remove(id);
+        novoComando();
+        folhaService.efetivar(previa);
+    }
+
+    public void descartarPrevia(String id) {
+        getPrevia(id);
+        previas.remove(id);
+    }
+
+    private PreviaFolha getPrevia(String id) {
+        PreviaFolha previa = previas.get(id);
+        if (previa == null) throw new RuntimeException("Previa nao existe.");
+        return previa;
     }
 
     public String totalFolha(String data) {
         try {
-            FolhaDePagamentoService folha = new FolhaDePagamentoService(
-                    empregadosService.getEmpregadosMap(),
-                    registroService,
-                    vendaService,
-                    taxaService
-            );
-            double total = folha.totalFolha(data);
-            return String.format("%.2f", total).replace('.', ',');
+            return Dinheiro.formatar(folhaService.totalFolha(data, versaoEstado));
         } catch (Exception e) {
             e.printStackTrace();
             return "0,00";
@@ -170,7 +312,7 @@ public class Facade {
         }
 
         BackupManager.undo();
-        recarregarServicos();
+        versaoEstado++;
     }
 
     public void redo() {
@@ -179,15 +321,7 @@ public class Facade {
         }
 
         BackupManager.redo();
-        recarregarServicos();
-    }
-
-    private void recarregarServicos() {
-
-        empregadosService.carregarEmpregados();
-        registroService.carregarRegistros();
-        vendaService.carregarVendas();
-        taxaService.carregarTaxas();
+        versaoEstado++;
     }
 
 
@@ -198,7 +332,7 @@ public class Facade {
                     + " | Nome: " + e.getNome()
                     + " | Sindicalizado: " + e.getSindicalizado()
                     + " | ID Sindicato: " + e.getIdSindicato()
-                    + " | TaxaSindical: " + e.getTaxaSindical()
+                    + " | TaxaSindical: " + Dinheiro.formatar(e.getTaxaSindical())
                     + " | Tipo: " + e.getTipo()
                     + " | Metodo de pagamento: " + e.getMetodoPagamento()
             );
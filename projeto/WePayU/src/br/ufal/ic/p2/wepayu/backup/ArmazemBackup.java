@@ -0,0 +1,352 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Backups dos arquivos de dados em backups/, endereçados por conteúdo.
+ * Cada arquivo é cortado em blocos por conteúdo (hash rolante), então uma alteração
+ * no meio do arquivo só muda os blocos em volta dela. Cada bloco distinto é gravado
+ * uma única vez, comprimido, em backups/objetos/ab/cdef... (SHA-256 do conteúdo);
+ * um backup é só um manifesto em backups/manifestos/&lt;millis&gt;.manifesto listando,
+ * para cada arquivo, o tamanho e os blocos em ordem.
+ *
+ * Retenção: ficam os últimos N backups mais o último de cada um dos D dias mais
+ * recentes; depois de apagar manifestos, os blocos que nenhum manifesto usa são
+ * removidos. As pastas antigas backups/snapshot_&lt;millis&gt; (cópia inteira dos CSVs)
+ * podem ser importadas com {@link #importarLegados()}.
+ *
+ * Propriedades: wepayu.backup (false desliga o backup no encerramento),
+ * wepayu.backup.ultimos, wepayu.backup.diarios e wepayu.backup.migrar.
+ *
+ * Formato do manifesto (texto): "WPBK 1", depois uma linha por arquivo:
+ * nome;tamanho;hash1,hash2,...
+ */
+public class ArmazemBackup {
+
+    private static final Path DIRETORIO = Paths.get("backups");
+    private static final Path OBJETOS = DIRETORIO.resolve("objetos");
+    private static final Path MANIFESTOS = DIRETORIO.resolve("manifestos");
+    private static final String EXTENSAO = ".manifesto";
+    private static final String CABECALHO = "WPBK 1";
+    private static final String PREFIXO_LEGADO = "snapshot_";
+
+    // Blocos entre 2 KB e 64 KB, com média perto de 8 KB
+    private static final int BLOCO_MINIMO = 2 * 1024;
+    private static final int BLOCO_MAXIMO = 64 * 1024;
+    private static final long MASCARA_CORTE = (1L << 13) - 1;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random r = new Random(0x5750_4159L); // fixo: os cortes precisam ser iguais entre execuções
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = r.nextLong();
+    }
+
+    /**
+     * Backup feito pela Facade no encerramento, com a configuração das propriedades
+     * de sistema: importa os legados (se pedido), grava um backup e aplica a retenção.
+     */
+    public static void backupConfigurado(List<Path> arquivos) {
+        if ("false".equals(System.getProperty("wepayu.backup"))) return;
+
+        if (Boolean.getBoolean("wepayu.backup.migrar")) {
+            importarLegados();
+        }
+        if (criar(arquivos) != null) {
+            aplicarRetencao(Integer.getInteger("wepayu.backup.ultimos", 20),
+                    Integer.getInteger("wepayu.backup.diarios", 7));
+        }
+    }
+
+    /** Grava um backup dos arquivos existentes; devolve o id (millis) ou null se não havia o que gravar. */
+    public static String criar(List<Path> arquivos) {
+        return criar(arquivos, System.currentTimeMillis());
+    }
+
+    /** Como {@link #criar(List)}, com millis como id (ou o próximo livre): importação de legados e testes. */
+    static String criar(List<Path> arquivos, long millis) {
+        try {
+            List<String> linhas = new ArrayList<>();
+            linhas.add(CABECALHO);
+            for (Path arquivo : arquivos) {
+                if (!Files.isRegularFile(arquivo)) continue;
+                byte[] conteudo = Files.readAllBytes(arquivo);
+                linhas.add(arquivo.getFileName() + ";" + conteudo.length + ";" + String.join(",", gravarBlocos(conteudo)));
+            }
+            if (linhas.size() == 1) return null;
+
+            Files.createDirectories(MANIFESTOS);
+            while (Files.exists(manifesto(Long.toString(millis)))) millis++;
+            String id = Long.toString(millis);
+            gravarAtomico(manifesto(id), String.join("\n", linhas).getBytes(StandardCharsets.UTF_8), false);
+            return id;
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar backup: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Ids dos backups, do mais antigo para o mais recente. */
+    public static List<String> listar() {
+        List<String> ids = new ArrayList<>();
+        if (!Files.isDirectory(MANIFESTOS)) return ids;
+        try (Stream<Path> arquivos = Files.list(MANIFESTOS)) {
+            arquivos.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(EXTENSAO))
+                    .map(n -> n.substring(0, n.length() - EXTENSAO.length()))
+                    .sorted(Comparator.comparingLong(Long::parseLong))
+                    .forEach(ids::add);
+        } catch (IOException e) {
+            System.err.println("Erro ao listar backups: " + e.getMessage());
+        }
+        return ids;
+    }
+
+    /** Remonta os arquivos do backup id dentro de destino. */
+    public static void restaurar(String id, Path destino) {
+        try {
+            Files.createDirectories(destino);
+            for (String[] arquivo : lerManifesto(id)) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(destino.resolve(arquivo[0])))) {
+                    if (arquivo[2].isEmpty()) continue;
+                    for (String hash : arquivo[2].split(",")) {
+                        out.write(lerBloco(hash));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao restaurar backup " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mantém os últimos {@code ultimos} backups e o último de cada um dos {@code diarios}
+     * dias mais recentes; apaga os outros manifestos e os blocos que ficaram sem uso.
+     */
+    public static void aplicarRetencao(int ultimos, int diarios) {
+        List<String> ids = listar();
+        Set<String> manter = new HashSet<>(ids.subList(Math.max(0, ids.size() - ultimos), ids.size()));
+
+        Map<LocalDate, String> ultimoDoDia = new TreeMap<>(Comparator.reverseOrder());
+        for (String id : ids) {
+            LocalDate dia = Instant.ofEpochMilli(Long.parseLong(id)).atZone(ZoneId.systemDefault()).toLocalDate();
+            ultimoDoDia.put(dia, id); // ids em ordem crescente: fica o último do dia
+        }
+        ultimoDoDia.values().stream().limit(diarios).forEach(manter::add);
+
+        boolean apagou = false;
+        for (String id : ids) {
+            if (!manter.contains(id)) {
+                apagar(manifesto(id));
+                apagou = true;
+            }
+        }
+        if (apagou) compactar();
+    }
+
+    /** Apaga os blocos que nenhum manifesto referencia. */
+    public static void compactar() {
+        if (!Files.isDirectory(OBJETOS)) return;
+        Set<String> usados = new HashSet<>();
+        try {
+            for (String id : listar()) {
+                for (String[] arquivo : lerManifesto(id)) {
+                    if (!arquivo[2].isEmpty()) usados.addAll(Arrays.asList(arquivo[2].split(",")));
+                }
+            }
+        } catch (IOException e) {
+            // sem saber o que está em uso, nada é apagado
+            System.err.println("Erro ao compactar backups: " + e.getMessage());
+            return;
+        }
+
+        try (Stream<Path> objetos = Files.walk(OBJETOS, 2)) {
+            objetos.filter(Files::isRegularFile)
+                    .filter(p -> !usados.contains(p.getParent().getFileName().toString() + p.getFileName()))
+                    .forEach(ArmazemBackup::apagar);
+        } catch (IOException e) {
+            System.err.println("Erro ao compactar backups: " + e.getMessage());
+        }
+
+        try (DirectoryStream<Path> prefixos = Files.newDirectoryStream(OBJETOS)) {
+            for (Path prefixo : prefixos) {
+                try (Stream<Path> conteudo = Files.list(prefixo)) {
+                    if (!conteudo.findAny().isPresent()) apagar(prefixo);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao compactar backups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Importa cada backups/snapshot_&lt;millis&gt; como um backup com o mesmo millis e apaga
+     * a pasta depois de conferir o manifesto. Devolve quantas foram importadas.
+     */
+    public static int importarLegados() {
+        List<Path> legados = new ArrayList<>();
+        if (!Files.isDirectory(DIRETORIO)) return 0;
+        try (DirectoryStream<Path> pastas = Files.newDirectoryStream(DIRETORIO, PREFIXO_LEGADO + "*")) {
+            for (Path p : pastas) {
+                if (Files.isDirectory(p)) legados.add(p);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao listar backups antigos: " + e.getMessage());
+            return 0;
+        }
+
+        int importados = 0;
+        for (Path pasta : legados) {
+            long millis;
+            try {
+                millis = Long.parseLong(pasta.getFileName().toString().substring(PREFIXO_LEGADO.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            List<Path> arquivos = new ArrayList<>();
+            try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(pasta)) {
+                conteudo.forEach(arquivos::add);
+            } catch (IOException e) {
+                System.err.println("Erro ao ler " + pasta + ": " + e.getMessage());
+                continue;
+            }
+            arquivos.sort(Comparator.comparing(Path::toString));
+
+            // uma importação interrompida pode já ter gravado o manifesto
+            String id = Long.toString(millis);
+            if (!Files.exists(manifesto(id)) || !confere(id, arquivos)) {
+                id = criar(arquivos, millis);
+            }
+            if (id != null && confere(id, arquivos)) {
+                arquivos.forEach(ArmazemBackup::apagar);
+                apagar(pasta);
+                importados++;
+            }
+        }
+        return importados;
+    }
+
+    // ---------- Blocos ----------
+
+    /** Corta o conteúdo em blocos, grava os que ainda não existem e devolve os hashes em ordem. */
+    private static List<String> gravarBlocos(byte[] conteudo) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        int inicio = 0;
+        while (inicio < conteudo.length) {
+            int fim = proximoCorte(conteudo, inicio);
+            byte[] bloco = Arrays.copyOfRange(conteudo, inicio, fim);
+            String hash = sha256(bloco);
+            Path objeto = objeto(hash);
+            if (!Files.exists(objeto)) {
+                Files.createDirectories(objeto.getParent());
+                gravarAtomico(objeto, bloco, true);
+            }
+            hashes.add(hash);
+            inicio = fim;
+        }
+        return hashes;
+    }
+
+    /** Fim do bloco que começa em inicio (hash rolante "gear", respeitando mínimo e máximo). */
+    private static int proximoCorte(byte[] dados, int inicio) {
+        int limite = Math.min(dados.length, inicio + BLOCO_MAXIMO);
+        int i = Math.min(limite, inicio + BLOCO_MINIMO);
+        long hash = 0;
+        for (; i < limite; i++) {
+            hash = (hash << 1) + GEAR[dados[i] & 0xFF];
+            if ((hash & MASCARA_CORTE) == 0) return i + 1;
+        }
+        return limite;
+    }
+
+    private static byte[] lerBloco(String hash) throws IOException {
+        try (InputStream in = new InflaterInputStream(new BufferedInputStream(Files.newInputStream(objeto(hash))))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+    }
+
+    // ---------- Auxiliares ----------
+
+    /** Cada entrada: {nome, tamanho, hashes separados por vírgula}. */
+    private static List<String[]> lerManifesto(String id) throws IOException {
+        List<String> linhas = Files.readAllLines(manifesto(id), StandardCharsets.UTF_8);
+        if (linhas.isEmpty() || !CABECALHO.equals(linhas.get(0))) {
+            throw new IOException("manifesto invalido: " + id);
+        }
+        List<String[]> arquivos = new ArrayList<>();
+        for (String linha : linhas.subList(1, linhas.size())) {
+            arquivos.add(linha.split(";", -1));
+        }
+        return arquivos;
+    }
+
+    /** Confere se o backup id remonta exatamente os arquivos originais. */
+    private static boolean confere(String id, List<Path> arquivos) {
+        try {
+            List<String[]> entradas = lerManifesto(id);
+            if (entradas.size() != arquivos.size()) return false;
+            for (int i = 0; i < arquivos.size(); i++) {
+                ByteArrayOutputStream remontado = new ByteArrayOutputStream();
+                String[] entrada = entradas.get(i);
+                if (!entrada[2].isEmpty()) {
+                    for (String hash : entrada[2].split(",")) remontado.write(lerBloco(hash));
+                }
+                if (!Arrays.equals(remontado.toByteArray(), Files.readAllBytes(arquivos.get(i)))) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Erro ao conferir backup " + id + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static Path manifesto(String id) {
+        return MANIFESTOS.resolve(id + EXTENSAO);
+    }
+
+    private static Path objeto(String hash) {
+        return OBJETOS.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static void gravarAtomico(Path destino, byte[] dados, boolean comprimir) throws IOException {
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (OutputStream arquivo = Files.newOutputStream(tmp);
+             OutputStream out = comprimir ? new DeflaterOutputStream(arquivo) : arquivo) {
+            out.write(dados);
+        }
+        Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String sha256(byte[] dados) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(dados);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void apagar(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.err.println("Erro ao apagar " + p + ": " + e.getMessage());
+        }
+    }
+}
@@ -2,147 +2,677 @@ package br.ufal.ic.p2.wepayu.backup;
 
 import br.ufal.ic.p2.wepayu.models.Empregado;
 import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
-import br.ufal.ic.p2.wepayu.models.Venda;
 import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.service.AgendaPagamentoService;
 import br.ufal.ic.p2.wepayu.service.EmpregadosService;
-import br.ufal.ic.p2.wepayu.service.RegistroDeHorasService;
-import br.ufal.ic.p2.wepayu.service.VendasService;
-import br.ufal.ic.p2.wepayu.service.TaxaServicoService;
 
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
 import java.util.*;
 
+/**
+ * Undo/redo por deltas. Cada comando da Facade abre uma entrada com {@link #salvarEstado()}
+ * e os serviços anotam nela, antes de mexer nos dados, a alteração que vão fazer
+ * (empregado incluído/removido, atributos anteriores, item acrescentado ao histórico...).
+ * Desfazer aplica os inversos em ordem contrária e refazer reaplica na ordem original,
+ * então o custo é proporcional ao tamanho da alteração, não ao do sistema.
+ *
+ * A pilha de undo em memória tem orçamento de profundidade (-Dwepayu.undo.profundidade)
+ * e de bytes estimados (-Dwepayu.undo.bytes). Quando passa dele, a metade mais antiga
+ * é gravada numa página em backups/undo/ e só volta para a memória quando o undo chega
+ * nela. As entradas gravadas guardam ids em vez de referências: quando são desfeitas,
+ * todos os comandos posteriores já foram desfeitos, então o empregado vivo com aquele
+ * id está exatamente como o comando o deixou.
+ *
+ * Com -Dwepayu.undo=persistente as mesmas chamadas vão para {@link HistoricoPersistente},
+ * que guarda versões imutáveis do estado e permite consultar estados anteriores.
+ * O custo em heap de cada comando guardado nos dois motores é medido pelo UndoBenchmark,
+ * em test/.
+ */
 public class BackupManager {
 
-    private static final Stack<Snapshot> undoStack = new Stack<>();
-    private static final Stack<Snapshot> redoStack = new Stack<>();
+    private static final Path DIRETORIO_PAGINAS = Paths.get("backups", "undo");
+    private static final int MAGIC = 0x57505544; // "WPUD"
+
+    private static final int PROFUNDIDADE_MAXIMA = Integer.getInteger("wepayu.undo.profundidade", 1000);
+    private static final long BYTES_MAXIMOS = Long.getLong("wepayu.undo.bytes", 64L * 1024 * 1024);
+
+    private static final Stack<Comando> undoStack = new Stack<>();
+    private static final Stack<Comando> redoStack = new Stack<>();
+    private static final Deque<Path> paginas = new ArrayDeque<>(); // mais recente no topo
+    private static long bytesEmMemoria; // estimativa da pilha de undo em memória
+    private static int proximaPagina;
+
+    private static Comando atual; // comando sendo registrado
 
     private static EmpregadosService empregadosService;
-    private static RegistroDeHorasService registroService;
-    private static VendasService vendaService;
-    private static TaxaServicoService taxaService;
+    private static AgendaPagamentoService agendaService;
+    private static HistoricoPersistente persistente; // null: undo por deltas
 
-    public static void inicializar(EmpregadosService e, RegistroDeHorasService r,
-                                   VendasService v, TaxaServicoService t) {
+    public static void inicializar(EmpregadosService e, AgendaPagamentoService agendas) {
+        persistente = null;
         limparHistorico();
         empregadosService = e;
-        registroService = r;
-        vendaService = v;
-        taxaService = t;
+        agendaService = agendas;
+        if ("persistente".equals(System.getProperty("wepayu.undo"))) {
+            persistente = new HistoricoPersistente(e, agendas);
+        }
     }
 
     public static void salvarEstado() {
-
-        Snapshot snapshot = criarSnapshot();
-        undoStack.push(snapshot);
+        if (persistente != null) {
+            persistente.salvarEstado();
+            return;
+        }
+        if (undoStack.size() >= PROFUNDIDADE_MAXIMA || bytesEmMemoria > BYTES_MAXIMOS) {
+            descarregarMaisAntigos();
+        }
+        atual = new Comando();
+        undoStack.push(atual);
         redoStack.clear();
     }
 
     public static void undo() {
+        if (persistente != null) {
+            persistente.undo();
+            return;
+        }
+        if (undoStack.isEmpty() && !paginas.isEmpty()) {
+            carregarPagina();
+        }
         if (undoStack.isEmpty()) {
             throw new RuntimeException("Nao ha comando a desfazer.");
         }
 
-        Snapshot snapshotAtual = criarSnapshot(); // salva o estado atual para redo
-        redoStack.push(snapshotAtual);
-
-        Snapshot snapshotParaRestaurar = undoStack.pop();
-        restaurar(snapshotParaRestaurar);
+        atual = null;
+        Comando comando = undoStack.pop();
+        bytesEmMemoria -= comando.bytes;
+        comando.desfazer();
+        redoStack.push(comando);
     }
 
     public static void redo() {
+        if (persistente != null) {
+            persistente.redo();
+            return;
+        }
         if (redoStack.isEmpty()) {
             throw new RuntimeException("Nao ha comando a refazer.");
         }
 
-        Snapshot snapshotAtual = criarSnapshot();
-        undoStack.push(snapshotAtual);
+        atual = null;
+        Comando comando = redoStack.pop();
+        comando.refazer();
+        undoStack.push(comando);
+        bytesEmMemoria += comando.bytes;
+    }
+
+    public static void limparHistorico() {
+        undoStack.clear();
+        redoStack.clear();
+        atual = null;
+        bytesEmMemoria = 0;
+        apagarPaginas();
+        proximaPagina = 0;
+        if (persistente != null) persistente.limpar();
+    }
+
+    /**
+     * Cópia do empregado como estava antes dos últimos {@code comandos} comandos
+     * (null se ainda não existia). Só disponível com -Dwepayu.undo=persistente.
+     */
+    public static Empregado consultarAntes(int comandos, String empId) {
+        if (persistente == null) {
+            throw new RuntimeException("Consulta ao historico requer wepayu.undo=persistente.");
+        }
+        return persistente.consultar(comandos, empId);
+    }
+
+    // ---------- Registro das alterações (chamado pelos serviços) ----------
+
+    /** Guarda os atributos de e antes da primeira alteração dele no comando atual. */
+    public static void antesDeAlterar(Empregado e) {
+        if (persistente != null) {
+            persistente.antesDeAlterar(e);
+            return;
+        }
+        if (atual == null || !atual.atributosGuardados.add(e)) return;
+        adicionar(new AlteracaoAtributos(e, e.copiarAtributos()));
+    }
+
+    public static void empregadoIncluido(Empregado e) {
+        if (persistente != null) {
+            persistente.empregadoIncluido(e);
+            return;
+        }
+        if (atual == null) return;
+        adicionar(new Inclusao(e.getId(), e));
+    }
+
+    public static void empregadoRemovido(Empregado e) {
+        if (persistente != null) {
+            persistente.empregadoRemovido(e);
+            return;
+        }
+        if (atual == null) return;
+        adicionar(new Remocao(e));
+    }
 
-        Snapshot snapshotParaRestaurar = redoStack.pop();
-        restaurar(snapshotParaRestaurar);
+    /** item foi acrescentado ao fim de lista (registros, vendas ou taxas de e). */
+    public static <T> void itemAdicionado(Arquivo arquivo, Empregado e, List<T> lista, T item) {
+        if (persistente != null) {
+            persistente.itemAdicionado(arquivo, e);
+            return;
+        }
+        if (atual == null) return;
+        @SuppressWarnings("unchecked")
+        List<Object> itens = (List<Object>) lista;
+        adicionar(new ItemAdicionado(arquivo, e.getId(), itens, item));
+    }
+
+    /** Vão ser somadas horas a r. */
+    public static void registroAlterado(Empregado e, RegistroDeHoras r) {
+        if (persistente != null) {
+            persistente.registroAlterado(e, r);
+            return;
+        }
+        if (atual == null) return;
+        adicionar(new RegistroAlterado(e.getId(), r.getData(), r.getHorasNormais(), r.getHorasExtras()));
+    }
+
+    /** Todos os empregados (com seus históricos) vão ser descartados. */
+    public static void sistemaZerado(Collection<Empregado> empregados) {
+        if (persistente != null) {
+            persistente.sistemaZerado(empregados);
+            return;
+        }
+        if (atual == null) return;
+        adicionar(new Zerado(new ArrayList<>(empregados)));
+    }
+
+    /** A agenda de pagamento acabou de ser criada. */
+    public static void agendaCriada(String descricao) {
+        if (persistente != null) {
+            persistente.agendaCriada(descricao);
+            return;
+        }
+        if (atual == null) return;
+        adicionar(new AgendaCriada(descricao));
+    }
+
+    /** As agendas criadas vão ser descartadas (zerarSistema). */
+    public static void agendasDescartadas(Collection<String> descricoes) {
+        if (persistente != null) {
+            persistente.agendasDescartadas(descricoes);
+            return;
+        }
+        if (atual == null || descricoes.isEmpty()) return;
+        adicionar(new AgendasDescartadas(new ArrayList<>(descricoes)));
     }
 
     // ---------- Métodos auxiliares ----------
 
-    private static Snapshot criarSnapshot() {
-        Map<String, Empregado> empregadosClone = deepCloneEmpregados();
-        Map<String, List<RegistroDeHoras>> registrosClone = deepCloneRegistros();
-        Map<String, List<Venda>> vendasClone = deepCloneVendas();
-        Map<String, List<TaxaServico>> taxasClone = deepCloneTaxas();
+    private static void adicionar(Alteracao a) {
+        int bytes = a.bytesEstimados();
+        atual.alteracoes.add(a);
+        atual.bytes += bytes;
+        bytesEmMemoria += bytes;
+    }
 
-        return new Snapshot(empregadosClone, registrosClone, vendasClone, taxasClone);
+    private static Empregado vivo(String empId) {
+        return empregadosService.getEmpregadosMap().get(empId);
     }
 
-    private static void restaurar(Snapshot snapshot) {
-        empregadosService.restaurarEmpregados(snapshot.empregadosMap);
-        registroService.restaurarRegistros(snapshot.registros);
-        vendaService.restaurarVendas(snapshot.vendas);
-        taxaService.restaurarTaxas(snapshot.taxas);
+    // ---------- Páginas em disco ----------
+
+    /** Leva a metade mais antiga da pilha de undo para uma página em disco. */
+    private static void descarregarMaisAntigos() {
+        int quantidade = Math.max(1, undoStack.size() / 2);
+        List<Comando> antigos = undoStack.subList(0, quantidade);
+
+        Path pagina = DIRETORIO_PAGINAS.resolve("pagina-" + (proximaPagina++) + ".bin");
+        try {
+            Files.createDirectories(DIRETORIO_PAGINAS);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(pagina)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(antigos.size());
+                for (Comando c : antigos) {
+                    out.writeInt(c.alteracoes.size());
+                    for (Alteracao a : c.alteracoes) a.escrever(out);
+                }
+            }
+        } catch (IOException ex) {
+            // sem página, o histórico simplesmente continua em memória
+            System.err.println("Erro ao gravar pagina de undo: " + ex.getMessage());
+            return;
+        }
+
+        for (Comando c : antigos) bytesEmMemoria -= c.bytes;
+        antigos.clear();
+        paginas.push(pagina);
+    }
+
+    /** Traz a página mais recente de volta para a pilha de undo (que está vazia). */
+    private static void carregarPagina() {
+        Path pagina = paginas.pop();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(pagina)))) {
+            if (in.readInt() != MAGIC) throw new IOException("pagina invalida");
+            for (int i = in.readInt(); i > 0; i--) {
+                Comando c = new Comando();
+                for (int j = in.readInt(); j > 0; j--) {
+                    Alteracao a = ler(in);
+                    c.alteracoes.add(a);
+                    c.bytes += a.bytesEstimados();
+                }
+                undoStack.push(c);
+                bytesEmMemoria += c.bytes;
+            }
+        } catch (IOException ex) {
+            // a página e as mais antigas não podem mais ser desfeitas
+            System.err.println("Erro ao ler pagina de undo: " + ex.getMessage());
+            undoStack.clear();
+            bytesEmMemoria = 0;
+            apagarPaginas();
+            return;
+        }
+        apagar(pagina);
     }
 
-    // ---------- Deep clone ----------
+    private static void apagarPaginas() {
+        paginas.clear();
+        if (!Files.isDirectory(DIRETORIO_PAGINAS)) return;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(DIRETORIO_PAGINAS, "pagina-*.bin")) {
+            for (Path p : arquivos) apagar(p);
+        } catch (IOException ex) {
+            System.err.println("Erro ao apagar paginas de undo: " + ex.getMessage());
+        }
+    }
 
-    private static Map<String, Empregado> deepCloneEmpregados() {
-        Map<String, Empregado> clone = new HashMap<>();
-        for (Map.Entry<String, Empregado> entry : empregadosService.getEmpregadosMap().entrySet()) {
-            clone.put(entry.getKey(), entry.getValue().copiar());
+    private static void apagar(Path pagina) {
+        try {
+            Files.deleteIfExists(pagina);
+        } catch (IOException ex) {
+            System.err.println("Erro ao apagar pagina de undo: " + ex.getMessage());
         }
-        return clone;
     }
 
-    private static Map<String, List<RegistroDeHoras>> deepCloneRegistros() {
-        Map<String, List<RegistroDeHoras>> clone = new HashMap<>();
-        for (Empregado e : empregadosService.getEmpregadosMap().values()) {
-            List<RegistroDeHoras> registrosClone = new ArrayList<>();
-            for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
-                registrosClone.add(r.copiar());
+    private static final int ATRIBUTOS = 1, INCLUSAO = 2, REMOCAO = 3, ITEM = 4, REGISTRO = 5, ZERADO = 6,
+            AGENDA_CRIADA = 7, AGENDAS_DESCARTADAS = 8;
+
+    private static Alteracao ler(DataInputStream in) throws IOException {
+        int tipo = in.readByte();
+        switch (tipo) {
+            case ATRIBUTOS: {
+                Empregado antes = CodecUndo.lerAtributos(in);
+                return new AlteracaoAtributos(antes.getId(), null, antes);
             }
-            clone.put(e.getId(), registrosClone);
+            case INCLUSAO:
+                return new Inclusao(in.readUTF(), null);
+            case REMOCAO:
+                return new Remocao(CodecUndo.lerEmpregado(in));
+            case ITEM: {
+                Arquivo arquivo = Arquivo.values()[in.readByte()];
+                return new ItemAdicionado(arquivo, in.readUTF(), null, null);
+            }
+            case REGISTRO: {
+                String empId = in.readUTF();
+                LocalDate data = LocalDate.ofEpochDay(in.readLong());
+                return new RegistroAlterado(empId, data, in.readDouble(), in.readDouble());
+            }
+            case ZERADO: {
+                List<Empregado> anteriores = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) anteriores.add(CodecUndo.lerEmpregado(in));
+                return new Zerado(anteriores);
+            }
+            case AGENDA_CRIADA:
+                return new AgendaCriada(in.readUTF());
+            case AGENDAS_DESCARTADAS: {
+                List<String> descricoes = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) descricoes.add(in.readUTF());
+                return new AgendasDescartadas(descricoes);
+            }
+            default:
+                throw new IOException("alteracao desconhecida: " + tipo);
         }
-        return clone;
     }
 
-    private static Map<String, List<Venda>> deepCloneVendas() {
-        Map<String, List<Venda>> clone = new HashMap<>();
-        for (Empregado e : empregadosService.getEmpregadosMap().values()) {
-            List<Venda> vendasClone = new ArrayList<>();
-            for (Venda v : e.getVendas()) {
-                vendasClone.add(v.copiar());
+    // ---------- Entradas do histórico ----------
+
+    private static class Comando {
+        private final List<Alteracao> alteracoes = new ArrayList<>();
+        private final Set<Empregado> atributosGuardados = Collections.newSetFromMap(new IdentityHashMap<>());
+        private long bytes;
+
+        private void desfazer() {
+            for (int i = alteracoes.size() - 1; i >= 0; i--) {
+                alteracoes.get(i).desfazer();
+                alteracoes.get(i).registrarDesfeita();
             }
-            clone.put(e.getId(), vendasClone);
         }
-        return clone;
+
+        private void refazer() {
+            for (Alteracao a : alteracoes) {
+                a.refazer();
+                a.registrarRefeita();
+            }
+        }
+    }
+
+    /**
+     * Referências a objetos vivos são null nas alterações lidas de uma página; nesse
+     * caso são resolvidas pelo id na hora de desfazer.
+     *
+     * Cada alteração desfeita/refeita vai para o journal logo em seguida, como o delta
+     * que ela aplicou (atributos, item retirado ou devolvido, horas restauradas), na
+     * ordem em que foi aplicada. Não há commit aqui: snapshot e repositório são gravados
+     * no próximo checkpoint, então o undo não depende do tamanho dos arquivos em disco.
+     */
+    private abstract static class Alteracao {
+        private final Arquivo arquivo; // null: afeta todos
+        private final String empId;
+
+        private Alteracao(Arquivo arquivo, String empId) {
+            this.arquivo = arquivo;
+            this.empId = empId;
+        }
+
+        abstract void desfazer();
+        abstract void refazer();
+        abstract void escrever(DataOutputStream out) throws IOException;
+
+        int bytesEstimados() {
+            return 64;
+        }
+
+        /** Por padrão, os atributos do empregado (ou DEL, se ele não existe mais). */
+        void registrarDesfeita() {
+            empregadosService.registrarEstado(empId, false);
+        }
+
+        void registrarRefeita() {
+            registrarDesfeita();
+        }
+    }
+
+    private static class AlteracaoAtributos extends Alteracao {
+        private Empregado empregado;
+        private final Empregado antes;
+        private Empregado depois;
+
+        private AlteracaoAtributos(Empregado e, Empregado antes) {
+            this(e.getId(), e, antes);
+        }
+
+        private AlteracaoAtributos(String empId, Empregado e, Empregado antes) {
+            super(Arquivo.EMPREGADOS, empId);
+            this.empregado = e;
+            this.antes = antes;
+        }
+
+        void desfazer() {
+            if (empregado == null) empregado = vivo(super.empId);
+            depois = empregado.copiarAtributos();
+            trocar(antes);
+        }
+
+        void refazer() {
+            trocar(depois);
+        }
+
+        private void trocar(Empregado origem) {
+            String idSindicatoAnterior = empregado.getIdSindicato();
+            empregado.restaurarAtributos(origem);
+            empregadosService.reindexar(empregado, idSindicatoAnterior);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(ATRIBUTOS);
+            CodecUndo.escreverAtributos(out, antes);
+        }
+
+        int bytesEstimados() {
+            return 256;
+        }
+    }
+
+    private static class Inclusao extends Alteracao {
+        private Empregado empregado;
+
+        private Inclusao(String empId, Empregado e) {
+            super(Arquivo.EMPREGADOS, empId);
+            this.empregado = e;
+        }
+
+        void desfazer() {
+            if (empregado == null) empregado = vivo(super.empId);
+            empregadosService.retirar(empregado);
+        }
+
+        void refazer() {
+            empregadosService.reinserir(empregado);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(INCLUSAO);
+            out.writeUTF(super.empId);
+        }
+
+        void registrarDesfeita() {
+            empregadosService.registrarEstado(super.empId, true);
+        }
+    }
+
+    /**
+     * Guarda o empregado removido inteiro. O histórico é materializado já na estimativa
+     * de bytes: o shard de onde ele seria lido pode ser regravado antes do undo.
+     */
+    private static class Remocao extends Alteracao {
+        private final Empregado empregado;
+
+        private Remocao(Empregado e) {
+            super(Arquivo.EMPREGADOS, e.getId());
+            this.empregado = e;
+        }
+
+        void desfazer() {
+            empregadosService.reinserir(empregado);
+        }
+
+        void refazer() {
+            empregadosService.retirar(empregado);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(REMOCAO);
+            CodecUndo.escreverEmpregado(out, empregado);
+        }
+
+        void registrarDesfeita() {
+            empregadosService.registrarEstado(super.empId, true);
+        }
+
+        int bytesEstimados() {
+            return CodecUndo.bytesEstimados(empregado);
+        }
     }
 
-    private static Map<String, List<TaxaServico>> deepCloneTaxas() {
-        Map<String, List<TaxaServico>> clone = new HashMap<>();
-        for (Empregado e : empregadosService.getEmpregadosMap().values()) {
-            List<TaxaServico> taxasClone = new ArrayList<>();
-            for (TaxaServico t : e.getTaxasServico()) {
-                taxasClone.add(t.copiar());
+    private static class ItemAdicionado extends Alteracao {
+        private List<Object> lista;
+        private Object item;
+
+        private ItemAdicionado(Arquivo arquivo, String empId, List<Object> lista, Object item) {
+            super(arquivo, empId);
+            this.lista = lista;
+            this.item = item;
+        }
+
+        void desfazer() {
+            if (lista == null) lista = listaDe(vivo(super.empId));
+            // é o último da lista, já que as alterações posteriores foram desfeitas antes
+            item = lista.remove(lista.size() - 1);
+        }
+
+        void refazer() {
+            lista.add(item);
+        }
+
+        void registrarDesfeita() {
+            empregadosService.registrarItemRetirado(super.arquivo, super.empId, dataDo(item));
+        }
+
+        void registrarRefeita() {
+            empregadosService.registrarItem(super.arquivo, super.empId, lista.size() - 1);
+        }
+
+        private static LocalDate dataDo(Object item) {
+            if (item instanceof RegistroDeHoras) return ((RegistroDeHoras) item).getData();
+            if (item instanceof Venda) return ((Venda) item).getData();
+            return ((TaxaServico) item).getData();
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Object> listaDe(Empregado e) {
+            switch (super.arquivo) {
+                case REGISTROS: return (List<Object>) (List<?>) e.getRegistrosDeHoras();
+                case VENDAS: return (List<Object>) (List<?>) e.getVendas();
+                default: return (List<Object>) (List<?>) e.getTaxasServico();
             }
-            clone.put(e.getId(), taxasClone);
         }
-        return clone;
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(ITEM);
+            out.writeByte(super.arquivo.ordinal());
+            out.writeUTF(super.empId);
+        }
     }
 
-    // ---------- Snapshot interno ----------
-    private static class Snapshot {
-        private final Map<String, Empregado> empregadosMap;
-        private final Map<String, List<RegistroDeHoras>> registros;
-        private final Map<String, List<Venda>> vendas;
-        private final Map<String, List<TaxaServico>> taxas;
+    private static class RegistroAlterado extends Alteracao {
+        private final LocalDate data;
+        private final double normaisAntes;
+        private final double extrasAntes;
+        private double normaisDepois;
+        private double extrasDepois;
+
+        private RegistroAlterado(String empId, LocalDate data, double normaisAntes, double extrasAntes) {
+            super(Arquivo.REGISTROS, empId);
+            this.data = data;
+            this.normaisAntes = normaisAntes;
+            this.extrasAntes = extrasAntes;
+        }
 
-        private Snapshot(Map<String, Empregado> e, Map<String, List<RegistroDeHoras>> r,
-                         Map<String, List<Venda>> v, Map<String, List<TaxaServico>> t) {
-            this.empregadosMap = e;
-            this.registros = r;
-            this.vendas = v;
-            this.taxas = t;
+        void desfazer() {
+            Empregado e = vivo(super.empId);
+            RegistroDeHoras registro = e.getRegistrosDeHoras().doDia(data);
+            normaisDepois = registro.getHorasNormais();
+            extrasDepois = registro.getHorasExtras();
+            e.restaurarHoras(data, normaisAntes, extrasAntes);
+        }
+
+        void refazer() {
+            vivo(super.empId).restaurarHoras(data, normaisDepois, extrasDepois);
+        }
+
+        void registrarDesfeita() {
+            empregadosService.registrarHoras(super.empId, data);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(REGISTRO);
+            out.writeUTF(super.empId);
+            out.writeLong(data.toEpochDay());
+            out.writeDouble(normaisAntes);
+            out.writeDouble(extrasAntes);
         }
     }
 
-    public static void limparHistorico() {
-        undoStack.clear();
-        redoStack.clear();
+    /** Como {@link Remocao}, para todos os empregados. */
+    private static class Zerado extends Alteracao {
+        private final List<Empregado> anteriores;
+
+        private Zerado(List<Empregado> anteriores) {
+            super(null, null);
+            this.anteriores = anteriores;
+        }
+
+        void desfazer() {
+            for (Empregado e : anteriores) empregadosService.reinserir(e);
+        }
+
+        void refazer() {
+            for (Empregado e : anteriores) empregadosService.retirar(e);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(ZERADO);
+            out.writeInt(anteriores.size());
+            for (Empregado e : anteriores) CodecUndo.escreverEmpregado(out, e);
+        }
+
+        void registrarDesfeita() {
+            for (Empregado e : anteriores) empregadosService.registrarEstado(e.getId(), true);
+        }
+
+        int bytesEstimados() {
+            int bytes = 64;
+            for (Empregado e : anteriores) bytes += CodecUndo.bytesEstimados(e);
+            return bytes;
+        }
+    }
+
+    /** Agendas não pertencem a um empregado: o journal é gravado pelo próprio serviço. */
+    private static class AgendaCriada extends Alteracao {
+        private final String descricao;
+
+        private AgendaCriada(String descricao) {
+            super(null, null);
+            this.descricao = descricao;
+        }
+
+        void desfazer() {
+            agendaService.descartar(descricao);
+        }
+
+        void refazer() {
+            agendaService.disponibilizar(descricao);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(AGENDA_CRIADA);
+            out.writeUTF(descricao);
+        }
+
+        void registrarDesfeita() {
+        }
+    }
+
+    private static class AgendasDescartadas extends Alteracao {
+        private final List<String> descricoes;
+
+        private AgendasDescartadas(List<String> descricoes) {
+            super(null, null);
+            this.descricoes = descricoes;
+        }
+
+        void desfazer() {
+            for (String d : descricoes) agendaService.disponibilizar(d);
+        }
+
+        void refazer() {
+            for (String d : descricoes) agendaService.descartar(d);
+        }
+
+        void escrever(DataOutputStream out) throws IOException {
+            out.writeByte(AGENDAS_DESCARTADAS);
+            out.writeInt(descricoes.size());
+            for (String d : descricoes) out.writeUTF(d);
+        }
+
+        void registrarDesfeita() {
+        }
     }
 }
@@ -0,0 +1,133 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Codificação binária dos empregados guardados no histórico de undo que vai para disco.
+ * Diferente do snapshot, grava todos os atributos (inclusive os de folha), já que o
+ * undo precisa devolver o empregado exatamente como estava.
+ */
+final class CodecUndo {
+
+    private static final long SEM_DATA = Long.MIN_VALUE;
+
+    private CodecUndo() {
+    }
+
+    static void escreverAtributos(DataOutputStream out, Empregado e) throws IOException {
+        escreverString(out, e.getId());
+        escreverString(out, e.getNome());
+        escreverString(out, e.getEndereco());
+        escreverString(out, e.getTipo());
+        out.writeLong(e.getSalario());
+        out.writeDouble(e.getComissao());
+        out.writeBoolean(e.getSindicalizado());
+        escreverString(out, e.getIdSindicato());
+        out.writeLong(e.getTaxaSindical());
+        escreverData(out, e.getDataUltimoPagamento());
+        out.writeLong(e.getTaxaSindicalDiaria());
+        out.writeLong(e.getDebitoSindicalAcumulado());
+        escreverData(out, e.getDataAdmissao());
+        escreverString(out, e.getMetodoPagamento());
+        escreverString(out, e.getBanco());
+        escreverString(out, e.getAgencia());
+        escreverString(out, e.getContaCorrente());
+        out.writeUTF(e.getAgendaPagamento().getDescricao());
+    }
+
+    static Empregado lerAtributos(DataInputStream in) throws IOException {
+        String id = lerString(in);
+        String nome = lerString(in);
+        String endereco = lerString(in);
+        String tipo = lerString(in);
+        Empregado e = new Empregado(id, nome, endereco, tipo, in.readLong());
+        e.setComissao(in.readDouble());
+        e.setSindicalizado(in.readBoolean());
+        e.setIdSindicato(lerString(in));
+        e.setTaxaSindical(in.readLong());
+        e.setDataUltimoPagamento(lerData(in));
+        e.setTaxaSindicalDiaria(in.readLong());
+        e.setDebitoSindicalAcumulado(in.readLong());
+        e.setDataAdmissao(lerData(in));
+        e.setMetodoPagamento(lerString(in));
+        e.setBanco(lerString(in));
+        e.setAgencia(lerString(in));
+        e.setContaCorrente(lerString(in));
+        e.setAgendaPagamento(AgendaPagamento.compilar(in.readUTF()));
+        return e;
+    }
+
+    /** Atributos e históricos. */
+    static void escreverEmpregado(DataOutputStream out, Empregado e) throws IOException {
+        escreverAtributos(out, e);
+
+        out.writeInt(e.getRegistrosDeHoras().size());
+        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
+            out.writeLong(r.getData().toEpochDay());
+            out.writeDouble(r.getHorasNormais());
+            out.writeDouble(r.getHorasExtras());
+        }
+
+        out.writeInt(e.getVendas().size());
+        for (Venda v : e.getVendas()) {
+            out.writeLong(v.getData().toEpochDay());
+            out.writeLong(v.getValor());
+        }
+
+        out.writeInt(e.getTaxasServico().size());
+        for (TaxaServico t : e.getTaxasServico()) {
+            out.writeLong(t.getData().toEpochDay());
+            out.writeLong(t.getValor());
+        }
+    }
+
+    static Empregado lerEmpregado(DataInputStream in) throws IOException {
+        Empregado e = lerAtributos(in);
+
+        for (int i = in.readInt(); i > 0; i--) {
+            LocalDate data = LocalDate.ofEpochDay(in.readLong());
+            e.getRegistrosDeHoras().add(new RegistroDeHoras(data, in.readDouble(), in.readDouble()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            e.getVendas().add(new Venda(LocalDate.ofEpochDay(in.readLong()), in.readLong()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            e.getTaxasServico().add(new TaxaServico(LocalDate.ofEpochDay(in.readLong()), in.readLong()));
+        }
+        return e;
+    }
+
+    /** Tamanho aproximado em memória de um empregado com seu histórico. */
+    static int bytesEstimados(Empregado e) {
+        return 256 + 48 * (e.getRegistrosDeHoras().size() + e.getVendas().size() + e.getTaxasServico().size());
+    }
+
+    // ---------- Strings ----------
+
+    static void escreverString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String lerString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void escreverData(DataOutputStream out, LocalDate data) throws IOException {
+        out.writeLong(data == null ? SEM_DATA : data.toEpochDay());
+    }
+
+    static LocalDate lerData(DataInputStream in) throws IOException {
+        long dia = in.readLong();
+        return dia == SEM_DATA ? null : LocalDate.ofEpochDay(dia);
+    }
+}
@@ -0,0 +1,404 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.service.AgendaPagamentoService;
+import br.ufal.ic.p2.wepayu.service.EmpregadosService;
+import br.ufal.ic.p2.wepayu.util.HistoricoPorData;
+import br.ufal.ic.p2.wepayu.util.MapaPersistente;
+import br.ufal.ic.p2.wepayu.util.VetorPersistente;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Undo/redo por versões imutáveis (ativado com -Dwepayu.undo=persistente).
+ * Mantém uma cópia imutável do estado, id -> {@link Versao}, num {@link MapaPersistente};
+ * cada comando só troca as versões dos empregados que tocou, então guardar o estado
+ * antes de um comando é guardar a raiz (O(1)). Desfazer/refazer trocam de raiz e
+ * aplicam ao mapa vivo só as diferenças entre as duas, que também são as únicas
+ * registradas no journal. As agendas de pagamento disponíveis, que são poucas, vão
+ * junto em cada estado guardado como um conjunto imutável, trocado só quando mudam.
+ *
+ * Empregados que já existiam ao inicializar só entram na cópia quando são tocados
+ * pela primeira vez: a versão original fica em {@link #originais}, assim o histórico
+ * lido sob demanda do snapshot não é carregado à toa.
+ */
+class HistoricoPersistente {
+
+    /** Marca de empregado removido (a ausência na raiz significa "versão original"). */
+    private static final Versao REMOVIDO = new Versao(null, null, null, null);
+
+    private final EmpregadosService empregadosService;
+    private final AgendaPagamentoService agendaService;
+
+    private final Deque<Estado> undoStack = new ArrayDeque<>();
+    private final Deque<Estado> redoStack = new ArrayDeque<>();
+
+    private MapaPersistente<String, Versao> raiz = MapaPersistente.vazio();
+    private final Map<String, Versao> originais = new HashMap<>();
+    private Set<String> agendas; // descrições disponíveis (imutável)
+
+    // empregados tocados desde a última sincronização da cópia
+    private final Map<Empregado, Toque> tocados = new IdentityHashMap<>();
+
+    HistoricoPersistente(EmpregadosService empregadosService, AgendaPagamentoService agendaService) {
+        this.empregadosService = empregadosService;
+        this.agendaService = agendaService;
+        this.agendas = agendasAtuais();
+    }
+
+    void salvarEstado() {
+        sincronizar();
+        undoStack.push(new Estado(raiz, agendas));
+        redoStack.clear();
+    }
+
+    void undo() {
+        if (undoStack.isEmpty()) {
+            throw new RuntimeException("Nao ha comando a desfazer.");
+        }
+
+        sincronizar();
+        redoStack.push(new Estado(raiz, agendas));
+        aplicar(undoStack.pop());
+    }
+
+    void redo() {
+        if (redoStack.isEmpty()) {
+            throw new RuntimeException("Nao ha comando a refazer.");
+        }
+
+        sincronizar();
+        undoStack.push(new Estado(raiz, agendas));
+        aplicar(redoStack.pop());
+    }
+
+    void limpar() {
+        undoStack.clear();
+        redoStack.clear();
+        tocados.clear();
+        originais.clear();
+        raiz = MapaPersistente.vazio();
+        agendas = agendasAtuais();
+    }
+
+    /**
+     * Cópia (só leitura) do empregado como estava antes dos últimos {@code comandos}
+     * comandos; 0 é o estado atual. Devolve null se ele não existia.
+     */
+    Empregado consultar(int comandos, String empId) {
+        if (comandos < 0 || comandos > undoStack.size()) {
+            throw new RuntimeException("Nao ha comando a consultar.");
+        }
+
+        sincronizar();
+        MapaPersistente<String, Versao> alvo = raiz;
+        Iterator<Estado> it = undoStack.iterator();
+        for (int i = 0; i < comandos; i++) alvo = it.next().empregados;
+
+        Versao v = resolver(alvo, empId);
+        if (v == null) {
+            // nunca foi tocado: o estado atual é o de qualquer momento
+            Empregado vivo = empregadosService.getEmpregadosMap().get(empId);
+            return vivo == null ? null : vivo.copiar();
+        }
+        return v == REMOVIDO ? null : v.criarEmpregado();
+    }
+
+    // ---------- Registro das alterações ----------
+
+    void antesDeAlterar(Empregado e) {
+        tocar(e, null).atributos = true;
+    }
+
+    void empregadoIncluido(Empregado e) {
+        // novo: não tem versão original
+        tocados.computeIfAbsent(e, x -> new Toque()).atributos = true;
+    }
+
+    void empregadoRemovido(Empregado e) {
+        tocar(e, null);
+    }
+
+    /** Chamado depois de item ser acrescentado ao fim da lista. */
+    void itemAdicionado(Arquivo arquivo, Empregado e) {
+        tocar(e, arquivo);
+    }
+
+    void registroAlterado(Empregado e, RegistroDeHoras r) {
+        tocar(e, null).registros.add(r.getData());
+    }
+
+    void sistemaZerado(Collection<Empregado> empregados) {
+        for (Empregado e : empregados) tocar(e, null);
+    }
+
+    void agendaCriada(String descricao) {
+        agendas = agendasAtuais();
+    }
+
+    /** Chamado antes do descarte: o conjunto atual ainda tem as agendas. */
+    void agendasDescartadas(Collection<String> descricoes) {
+        Set<String> restantes = new LinkedHashSet<>(agendasAtuais());
+        restantes.removeAll(descricoes);
+        agendas = Collections.unmodifiableSet(restantes);
+    }
+
+    private Set<String> agendasAtuais() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(agendaService.getDescricoes()));
+    }
+
+    /**
+     * Anota e como tocado; na primeira vez que um empregado pré-existente é tocado,
+     * guarda a versão original dele (sem o último item de {@code acrescentado}, que
+     * já entrou na lista).
+     */
+    private Toque tocar(Empregado e, Arquivo acrescentado) {
+        Toque toque = tocados.get(e);
+        if (toque == null) {
+            String id = e.getId();
+            if (raiz.get(id) == null && !originais.containsKey(id)) {
+                originais.put(id, Versao.de(e, acrescentado));
+            }
+            toque = new Toque();
+            tocados.put(e, toque);
+        }
+        return toque;
+    }
+
+    // ---------- Sincronização e aplicação ----------
+
+    /** Leva para a cópia imutável as alterações dos empregados tocados. */
+    private void sincronizar() {
+        if (tocados.isEmpty()) return;
+
+        Map<String, Empregado> vivos = empregadosService.getEmpregadosMap();
+        MapaPersistente<String, Versao> nova = raiz;
+        // removidos primeiro: depois de zerar, um id pode voltar com outro empregado
+        for (Empregado e : tocados.keySet()) {
+            if (vivos.get(e.getId()) != e) nova = nova.com(e.getId(), REMOVIDO);
+        }
+        for (Map.Entry<Empregado, Toque> t : tocados.entrySet()) {
+            Empregado e = t.getKey();
+            String id = e.getId();
+            if (vivos.get(id) != e) continue;
+            Versao anterior = resolver(raiz, id);
+            nova = nova.com(id, Versao.atualizar(anterior == REMOVIDO ? null : anterior, e, t.getValue()));
+        }
+        raiz = nova;
+        tocados.clear();
+    }
+
+    private Versao resolver(MapaPersistente<String, Versao> mapa, String id) {
+        Versao v = mapa.get(id);
+        return v != null ? v : originais.get(id);
+    }
+
+    /** Leva o estado vivo para alvo, mexendo só nos empregados e agendas diferentes. */
+    private void aplicar(Estado estado) {
+        if (estado.agendas != agendas) {
+            for (String d : agendas) if (!estado.agendas.contains(d)) agendaService.descartar(d);
+            for (String d : estado.agendas) if (!agendas.contains(d)) agendaService.disponibilizar(d);
+            agendas = estado.agendas;
+        }
+
+        MapaPersistente<String, Versao> alvo = estado.empregados;
+        Map<String, Empregado> vivos = empregadosService.getEmpregadosMap();
+        List<Versao[]> alterados = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        raiz.diferencas(alvo, (id, a, b) -> {
+            Versao antes = a != null ? a : originais.get(id);
+            Versao depois = b != null ? b : originais.get(id);
+            if (antes == depois) return;
+
+            Empregado vivo = vivos.get(id);
+            if (depois == null || depois == REMOVIDO) {
+                if (vivo != null) empregadosService.retirar(vivo);
+            } else if (vivo == null) {
+                empregadosService.reinserir(depois.criarEmpregado());
+            } else {
+                String idSindicatoAnterior = vivo.getIdSindicato();
+                depois.restaurar(vivo);
+                empregadosService.reindexar(vivo, idSindicatoAnterior);
+            }
+
+            ids.add(id);
+            alterados.add(new Versao[]{antes, depois});
+        });
+        raiz = alvo;
+
+        for (int i = 0; i < ids.size(); i++) {
+            registrarNoJournal(ids.get(i), alterados.get(i)[0], alterados.get(i)[1]);
+        }
+    }
+
+    /**
+     * Journal da passagem de antes para depois. Empregado que some ou volta vai inteiro
+     * (DEL ou EMP + HIS); nos demais vão só os atributos, se mudaram, e a diferença das
+     * listas: itens retirados do fim, itens acrescentados e registros com outras horas.
+     */
+    private void registrarNoJournal(String id, Versao antes, Versao depois) {
+        if (antes == null || antes == REMOVIDO || depois == null || depois == REMOVIDO
+                || !prefixoComum(antes.vendas, depois.vendas) || !prefixoComum(antes.taxas, depois.taxas)
+                || !mesmosDias(antes.registros, depois.registros)) {
+            empregadosService.registrarEstado(id, true);
+            return;
+        }
+
+        if (antes.atributos != depois.atributos) empregadosService.registrarEstado(id, false);
+
+        int comum = Math.min(antes.registros.tamanho(), depois.registros.tamanho());
+        for (int i = 0; i < comum; i++) {
+            if (antes.registros.get(i) != depois.registros.get(i)) {
+                empregadosService.registrarHoras(id, depois.registros.get(i).getData());
+            }
+        }
+        registrarFim(Arquivo.REGISTROS, id, antes.registros, depois.registros);
+        registrarFim(Arquivo.VENDAS, id, antes.vendas, depois.vendas);
+        registrarFim(Arquivo.TAXAS, id, antes.taxas, depois.taxas);
+    }
+
+    /** RET dos itens que só antes tem, do último para o primeiro; ITM dos que só depois tem. */
+    private <T> void registrarFim(Arquivo arquivo, String id, VetorPersistente<T> antes, VetorPersistente<T> depois) {
+        for (int i = antes.tamanho() - 1; i >= depois.tamanho(); i--) {
+            empregadosService.registrarItemRetirado(arquivo, id, dataDo(antes.get(i)));
+        }
+        for (int i = antes.tamanho(); i < depois.tamanho(); i++) {
+            empregadosService.registrarItem(arquivo, id, i);
+        }
+    }
+
+    /** As listas só crescem no fim: as duas versões dividem os mesmos itens até o menor tamanho. */
+    private static <T> boolean prefixoComum(VetorPersistente<T> a, VetorPersistente<T> b) {
+        for (int i = Math.min(a.tamanho(), b.tamanho()) - 1; i >= 0; i--) {
+            if (a.get(i) != b.get(i)) return false;
+        }
+        return true;
+    }
+
+    /** Registros podem ter horas trocadas, mas cada posição continua sendo do mesmo dia. */
+    private static boolean mesmosDias(VetorPersistente<RegistroDeHoras> a, VetorPersistente<RegistroDeHoras> b) {
+        for (int i = Math.min(a.tamanho(), b.tamanho()) - 1; i >= 0; i--) {
+            if (!a.get(i).getData().equals(b.get(i).getData())) return false;
+        }
+        return true;
+    }
+
+    private static LocalDate dataDo(Object item) {
+        if (item instanceof RegistroDeHoras) return ((RegistroDeHoras) item).getData();
+        if (item instanceof Venda) return ((Venda) item).getData();
+        return ((TaxaServico) item).getData();
+    }
+
+    // ---------- Estruturas ----------
+
+    /** O que é guardado a cada comando. */
+    private static final class Estado {
+        final MapaPersistente<String, Versao> empregados;
+        final Set<String> agendas;
+
+        Estado(MapaPersistente<String, Versao> empregados, Set<String> agendas) {
+            this.empregados = empregados;
+            this.agendas = agendas;
+        }
+    }
+
+    /** O que mudou num empregado desde a última sincronização. */
+    private static class Toque {
+        boolean atributos;
+        final Set<LocalDate> registros = new HashSet<>(); // dias dos registros com horas somadas
+    }
+
+    /** Estado imutável de um empregado: atributos e históricos (itens copiados). */
+    private static final class Versao {
+        final Empregado atributos;
+        final VetorPersistente<RegistroDeHoras> registros;
+        final VetorPersistente<Venda> vendas;
+        final VetorPersistente<TaxaServico> taxas;
+
+        Versao(Empregado atributos, VetorPersistente<RegistroDeHoras> registros,
+               VetorPersistente<Venda> vendas, VetorPersistente<TaxaServico> taxas) {
+            this.atributos = atributos;
+            this.registros = registros;
+            this.vendas = vendas;
+            this.taxas = taxas;
+        }
+
+        /** Versão completa de e, deixando de fora o último item da lista acrescentada. */
+        static Versao de(Empregado e, Arquivo acrescentado) {
+            return new Versao(e.copiarAtributos(),
+                    copiarRegistros(e.getRegistrosDeHoras(), VetorPersistente.vazio(), 0,
+                            acrescentado == Arquivo.REGISTROS ? 1 : 0),
+                    copiarVendas(e.getVendas(), VetorPersistente.vazio(), 0,
+                            acrescentado == Arquivo.VENDAS ? 1 : 0),
+                    copiarTaxas(e.getTaxasServico(), VetorPersistente.vazio(), 0,
+                            acrescentado == Arquivo.TAXAS ? 1 : 0));
+        }
+
+        /**
+         * Nova versão a partir da anterior: as listas só crescem no fim, então basta
+         * acrescentar os itens novos e trocar os registros cujas horas foram somadas.
+         */
+        static Versao atualizar(Versao anterior, Empregado e, Toque toque) {
+            if (anterior == null) return de(e, null);
+
+            HistoricoPorData<RegistroDeHoras> listaRegistros = e.getRegistrosDeHoras();
+            VetorPersistente<RegistroDeHoras> registros =
+                    copiarRegistros(listaRegistros, anterior.registros, anterior.registros.tamanho(), 0);
+            for (LocalDate dia : toque.registros) {
+                int i = listaRegistros.linhaDoDia(dia);
+                if (i >= 0 && i < anterior.registros.tamanho()) registros = registros.com(i, listaRegistros.get(i));
+            }
+
+            return new Versao(toque.atributos ? e.copiarAtributos() : anterior.atributos,
+                    registros,
+                    copiarVendas(e.getVendas(), anterior.vendas, anterior.vendas.tamanho(), 0),
+                    copiarTaxas(e.getTaxasServico(), anterior.taxas, anterior.taxas.tamanho(), 0));
+        }
+
+        private static VetorPersistente<RegistroDeHoras> copiarRegistros(
+                List<RegistroDeHoras> lista, VetorPersistente<RegistroDeHoras> v, int desde, int ignorarFim) {
+            for (int i = desde; i < lista.size() - ignorarFim; i++) v = v.adicionar(lista.get(i).copiar());
+            return v;
+        }
+
+        private static VetorPersistente<Venda> copiarVendas(
+                List<Venda> lista, VetorPersistente<Venda> v, int desde, int ignorarFim) {
+            for (int i = desde; i < lista.size() - ignorarFim; i++) v = v.adicionar(lista.get(i).copiar());
+            return v;
+        }
+
+        private static VetorPersistente<TaxaServico> copiarTaxas(
+                List<TaxaServico> lista, VetorPersistente<TaxaServico> v, int desde, int ignorarFim) {
+            for (int i = desde; i < lista.size() - ignorarFim; i++) v = v.adicionar(lista.get(i).copiar());
+            return v;
+        }
+
+        /** Novo empregado vivo com esta versão (itens copiados de novo, a versão fica intacta). */
+        Empregado criarEmpregado() {
+            Empregado e = atributos.copiarAtributos();
+            preencherListas(e);
+            return e;
+        }
+
+        /** Leva um empregado vivo para esta versão, mantendo o mesmo objeto. */
+        void restaurar(Empregado e) {
+            e.restaurarAtributos(atributos);
+            e.getRegistrosDeHoras().clear();
+            e.getVendas().clear();
+            e.getTaxasServico().clear();
+            preencherListas(e);
+        }
+
+        private void preencherListas(Empregado e) {
+            for (RegistroDeHoras r : registros.paraLista()) e.getRegistrosDeHoras().add(r.copiar());
+            for (Venda v : vendas.paraLista()) e.getVendas().add(v.copiar());
+            for (TaxaServico t : taxas.paraLista()) e.getTaxasServico().add(t.copiar());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package br.ufal.ic.p2.wepayu.models;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agenda de pagamento compilada a partir da descrição:
+ * <ul>
+ *   <li>"semanal D": toda semana, no dia D (1 = segunda ... 7 = domingo);</li>
+ *   <li>"semanal N D": a cada N semanas (1 a 52), no dia D;</li>
+ *   <li>"mensal D": todo mês, no dia D (1 a 28), ou "mensal $" no último dia.</li>
+ * </ul>
+ * As agendas semanais contam a partir de 1/1/2005: o primeiro pagamento cai na N-ésima
+ * ocorrência do dia D. Duas agendas são iguais se têm a mesma descrição.
+ * <p>
+ * A agenda compilada guarda o calendário já calculado:
+ * os dias de pagamento e o início do período pago em cada um, como epoch days, de
+ * 1/1/2005 até o fim do horizonte ({@code -Dwepayu.calendario.anos}, 30 por padrão).
+ * As consultas são buscas binárias nesse calendário; fora dele (antes de 2005 ou depois
+ * do horizonte) vale a regra, que também salta de pagamento em pagamento.
+ * <p>
+ * As agendas compiladas ficam numa cache das mais usadas, limitada a
+ * {@code -Dwepayu.agendas.cache} descrições (64 por padrão); uma descrição que saiu da
+ * cache é compilada de novo, e a agenda nova é igual à antiga.
+ */
+public final class AgendaPagamento {
+
+    private static final LocalDate INICIO = LocalDate.of(2005, 1, 1);
+    private static final LocalDate FIM_CALENDARIO =
+            INICIO.plusYears(Integer.getInteger("wepayu.calendario.anos", 30)).minusDays(1);
+    private static final int ULTIMO_DIA = 0; // "mensal $"
+    private static final int FORA_DO_CALENDARIO = Integer.MIN_VALUE;
+
+    private static final int TAMANHO_CACHE = Math.max(1, Integer.getInteger("wepayu.agendas.cache", 64));
+    private static final Map<String, AgendaPagamento> compiladas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AgendaPagamento> maisAntiga) {
+            return size() > TAMANHO_CACHE;
+        }
+    };
+
+    public static final AgendaPagamento SEMANAL = compilar("semanal 5");
+    public static final AgendaPagamento MENSAL = compilar("mensal $");
+    public static final AgendaPagamento QUINZENAL = compilar("semanal 2 5");
+
+    private final String descricao;
+    private final boolean semanal;
+    private final int semanas;       // semanal: intervalo em semanas
+    private final int dia;           // semanal: dia da semana; mensal: dia do mês ou ULTIMO_DIA
+    private final long primeiroDia;  // semanal: epoch day do primeiro pagamento
+
+    // calendário: pagamentos[k] é o k-ésimo dia de pagamento, inicios[k] o início do período pago nele
+    private final int[] pagamentos;
+    private final int[] inicios;
+
+    private AgendaPagamento(String descricao, boolean semanal, int semanas, int dia) {
+        this.descricao = descricao;
+        this.semanal = semanal;
+        this.semanas = semanas;
+        this.dia = dia;
+        LocalDate primeiro = INICIO.with(TemporalAdjusters.nextOrSame(DayOfWeek.of(semanal ? dia : 1)));
+        this.primeiroDia = primeiro.toEpochDay() + 7L * (semanas - 1);
+
+        List<LocalDate> dias = new ArrayList<>();
+        if (semanal) {
+            for (LocalDate d = LocalDate.ofEpochDay(primeiroDia); !d.isAfter(FIM_CALENDARIO); d = d.plusWeeks(semanas)) {
+                dias.add(d);
+            }
+        } else {
+            for (LocalDate mes = INICIO; !mes.isAfter(FIM_CALENDARIO); mes = mes.plusMonths(1)) {
+                dias.add(dia == ULTIMO_DIA ? mes.with(TemporalAdjusters.lastDayOfMonth()) : mes.withDayOfMonth(dia));
+            }
+        }
+        this.pagamentos = new int[dias.size()];
+        this.inicios = new int[dias.size()];
+        for (int k = 0; k < dias.size(); k++) {
+            pagamentos[k] = (int) dias.get(k).toEpochDay();
+            inicios[k] = k == 0 ? (int) inicioPelaRegra(dias.get(0)).toEpochDay() : pagamentos[k - 1] + 1;
+        }
+    }
+
+    /** Agenda padrão de cada tipo de empregado. */
+    public static AgendaPagamento padrao(String tipo) {
+        if ("horista".equalsIgnoreCase(tipo)) return SEMANAL;
+        if ("comissionado".equalsIgnoreCase(tipo)) return QUINZENAL;
+        return MENSAL;
+    }
+
+    /**
+     * Interpreta a descrição; lança exceção se ela não seguir nenhum dos formatos.
+     * A mesma descrição devolve a agenda já compilada enquanto ela estiver na cache.
+     */
+    public static AgendaPagamento compilar(String descricao) {
+        String[] partes = descricao == null ? new String[0] : descricao.trim().split("\\s+");
+        String texto = String.join(" ", partes);
+        AgendaPagamento agenda;
+        synchronized (compiladas) {
+            agenda = compiladas.get(texto);
+        }
+        if (agenda != null) return agenda;
+
+        try {
+            if (partes.length == 2 && partes[0].equals("semanal")) {
+                int dia = Integer.parseInt(partes[1]);
+                if (dia >= 1 && dia <= 7) agenda = new AgendaPagamento(texto, true, 1, dia);
+            } else if (partes.length == 3 && partes[0].equals("semanal")) {
+                int semanas = Integer.parseInt(partes[1]);
+                int dia = Integer.parseInt(partes[2]);
+                if (semanas >= 1 && semanas <= 52 && dia >= 1 && dia <= 7) {
+                    agenda = new AgendaPagamento(texto, true, semanas, dia);
+                }
+            } else if (partes.length == 2 && partes[0].equals("mensal")) {
+                if (partes[1].equals("$")) {
+                    agenda = new AgendaPagamento(texto, false, 1, ULTIMO_DIA);
+                } else {
+                    int dia = Integer.parseInt(partes[1]);
+                    if (dia >= 1 && dia <= 28) agenda = new AgendaPagamento(texto, false, 1, dia);
+                }
+            }
+        } catch (NumberFormatException ignored) {}
+        if (agenda == null) throw new RuntimeException("Descricao de agenda invalida");
+
+        synchronized (compiladas) {
+            AgendaPagamento anterior = compiladas.putIfAbsent(texto, agenda);
+            return anterior != null ? anterior : agenda;
+        }
+    }
+
+    public String getDescricao() { return descricao; }
+
+    /**
+     * Índice da data no calendário (negativo se não é dia de pagamento), ou
+     * FORA_DO_CALENDARIO antes de 2005 e depois do horizonte.
+     */
+    private int noCalendario(LocalDate data) {
+        if (data.isBefore(INICIO) || data.isAfter(FIM_CALENDARIO)) return FORA_DO_CALENDARIO;
+        return Arrays.binarySearch(pagamentos, (int) data.toEpochDay());
+    }
+
+    /** Se a agenda paga na data. */
+    public boolean paga(LocalDate data) {
+        int k = noCalendario(data);
+        if (k != FORA_DO_CALENDARIO) return k >= 0;
+        if (semanal) {
+            long dias = data.toEpochDay() - primeiroDia;
+            return dias >= 0 && dias % (7L * semanas) == 0;
+        }
+        return dia == ULTIMO_DIA ? data.getDayOfMonth() == data.lengthOfMonth() : data.getDayOfMonth() == dia;
+    }
+
+    /** Primeiro dia do período pago em {@code pagamento} (o dia seguinte ao pagamento anterior). */
+    public LocalDate inicioPeriodo(LocalDate pagamento) {
+        int k = noCalendario(pagamento);
+        return k >= 0 ? LocalDate.ofEpochDay(inicios[k]) : inicioPelaRegra(pagamento);
+    }
+
+    /** Quantos dias tem o período pago em {@code pagamento}. */
+    public long diasPeriodo(LocalDate pagamento) {
+        int k = noCalendario(pagamento);
+        long inicio = k >= 0 ? inicios[k] : inicioPelaRegra(pagamento).toEpochDay();
+        return pagamento.toEpochDay() - inicio + 1;
+    }
+
+    /** Dias de pagamento em [de, ate], em ordem. */
+    public List<LocalDate> pagamentosEntre(LocalDate de, LocalDate ate) {
+        List<LocalDate> dias = new ArrayList<>();
+        long inicio = de.toEpochDay(), fim = ate.toEpochDay();
+        pagamentosPelaRegra(inicio, Math.min(fim, INICIO.toEpochDay() - 1), dias);
+        int k = Arrays.binarySearch(pagamentos, (int) Math.max(inicio, INICIO.toEpochDay()));
+        for (k = k >= 0 ? k : -k - 1; k < pagamentos.length && pagamentos[k] <= fim; k++) {
+            dias.add(LocalDate.ofEpochDay(pagamentos[k]));
+        }
+        pagamentosPelaRegra(Math.max(inicio, FIM_CALENDARIO.toEpochDay() + 1), fim, dias);
+        return dias;
+    }
+
+    /** Acrescenta a dias os pagamentos em [inicio, fim] (epoch days) calculados pela regra. */
+    private void pagamentosPelaRegra(long inicio, long fim, List<LocalDate> dias) {
+        if (inicio > fim) return;
+        if (semanal) {
+            long intervalo = 7L * semanas;
+            long d = Math.max(primeiroDia, primeiroDia + Math.floorDiv(inicio - primeiroDia + intervalo - 1, intervalo) * intervalo);
+            for (; d <= fim; d += intervalo) dias.add(LocalDate.ofEpochDay(d));
+            return;
+        }
+        for (LocalDate mes = LocalDate.ofEpochDay(inicio).withDayOfMonth(1); mes.toEpochDay() <= fim; mes = mes.plusMonths(1)) {
+            LocalDate d = dia == ULTIMO_DIA ? mes.with(TemporalAdjusters.lastDayOfMonth()) : mes.withDayOfMonth(dia);
+            if (d.toEpochDay() >= inicio && d.toEpochDay() <= fim) dias.add(d);
+        }
+    }
+
+    private LocalDate inicioPelaRegra(LocalDate pagamento) {
+        if (semanal) return pagamento.minusDays(7L * semanas - 1);
+        if (dia == ULTIMO_DIA) return pagamento.with(TemporalAdjusters.firstDayOfMonth());
+        return pagamento.minusMonths(1).withDayOfMonth(dia).plusDays(1);
+    }
+
+    /** Parte de um salário mensal (centavos) paga a cada período, arredondada para baixo. */
+    public long salarioDoPeriodo(long salarioMensal) {
+        if (!semanal) return salarioMensal;
+        return Math.floorDiv(salarioMensal * 12 * semanas, 52);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AgendaPagamento && ((AgendaPagamento) o).descricao.equals(descricao);
+    }
+
+    @Override
+    public int hashCode() {
+        return descricao.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return descricao;
+    }
+}
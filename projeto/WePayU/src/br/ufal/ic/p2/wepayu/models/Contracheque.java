@@ -0,0 +1,55 @@
+package br.ufal.ic.p2.wepayu.models;
+
+import java.time.LocalDate;
+
+/**
+ * Valores calculados do pagamento de um empregado num período [inicio, fim),
+ * com os valores em dinheiro em centavos. Imutável; não altera o empregado (o débito sindical resultante fica em
+ * {@link #getDebitoSindical()} para quem for efetivar o pagamento).
+ */
+public class Contracheque {
+    private final LocalDate inicio;
+    private final LocalDate fim;
+
+    private final double horasNormais;
+    private final double horasExtras;
+    private final long fixo;
+    private final long vendas;
+    private final long comissao;
+
+    private final long bruto;
+    private final long descontos;      // taxas de serviço + taxa sindical
+    private final long liquido;
+    private final long debitoSindical; // débito acumulado depois do pagamento
+
+    public Contracheque(LocalDate inicio, LocalDate fim,
+                        double horasNormais, double horasExtras,
+                        long fixo, long vendas, long comissao,
+                        long bruto, long descontos, long liquido, long debitoSindical) {
+        this.inicio = inicio;
+        this.fim = fim;
+        this.horasNormais = horasNormais;
+        this.horasExtras = horasExtras;
+        this.fixo = fixo;
+        this.vendas = vendas;
+        this.comissao = comissao;
+        this.bruto = bruto;
+        this.descontos = descontos;
+        this.liquido = liquido;
+        this.debitoSindical = debitoSindical;
+    }
+
+    public LocalDate getInicio() { return inicio; }
+    public LocalDate getFim() { return fim; }
+
+    public double getHorasNormais() { return horasNormais; }
+    public double getHorasExtras() { return horasExtras; }
+    public long getFixo() { return fixo; }
+    public long getVendas() { return vendas; }
+    public long getComissao() { return comissao; }
+
+    public long getBruto() { return bruto; }
+    public long getDescontos() { return descontos; }
+    public long getLiquido() { return liquido; }
+    public long getDebitoSindical() { return debitoSindical; }
+}
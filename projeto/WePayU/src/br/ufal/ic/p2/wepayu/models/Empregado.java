@@ -1,9 +1,10 @@
 package br.ufal.ic.p2.wepayu.models;
 
+import br.ufal.ic.p2.wepayu.util.HistoricoPorData;
+
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Empregado {
@@ -11,18 +12,18 @@ public class Empregado {
     private String nome;
     private String endereco;
     private String tipo;
-    private double salario;
+    private long salario; // valores em dinheiro são centavos
 
     // ---------- Atributos opcionais ----------
     private double comissao;       // usado apenas para comissionados
     private boolean sindicalizado; // true apenas se o empregado for sindicalizado
     private String idSindicato;
-    private double taxaSindical;
+    private long taxaSindical;
 
     // --- NOVOS ATRIBUTOS ---
-    private String dataUltimoPagamento; // Data do último pagamento (formato d/M/yyyy)
-    private double taxaSindicalDiaria;  // Valor diário da taxa sindical
-    private double debitoSindicalAcumulado;
+    private LocalDate dataUltimoPagamento; // Data do último pagamento (null se nunca foi pago)
+    private long taxaSindicalDiaria;  // Valor diário da taxa sindical
+    private long debitoSindicalAcumulado;
     private LocalDate dataAdmissao;
 
     // ---------- Pagamento ----------
@@ -30,52 +31,75 @@ public class Empregado {
     private String banco;
     private String agencia;
     private String contaCorrente;
+    private AgendaPagamento agendaPagamento;
 
-    private List<RegistroDeHoras> registrosDeHoras = new ArrayList<>();
-    private List<Venda> vendas = new ArrayList<>();
-    private List<TaxaServico> taxasServico = new ArrayList<>();
-
-    public Empregado copiar() {
-        Empregado copia = new Empregado(this.id, this.nome, this.endereco, this.tipo, this.salario);
+    // Históricos em colunas, na ordem de lançamento, indexados por data e com as somas de cada medida
+    private static final int HORAS_NORMAIS = 0, HORAS_EXTRAS = 1, VALOR = 0;
+    private HistoricoPorData<RegistroDeHoras> registrosDeHoras = novosRegistros();
+    private HistoricoPorData<Venda> vendas = novasVendas();
+    private HistoricoPorData<TaxaServico> taxasServico = novasTaxas();
 
-        // ---------- Atributos opcionais ----------
-        copia.comissao = this.comissao;
-        copia.sindicalizado = this.sindicalizado;
-        copia.idSindicato = this.idSindicato;
-        copia.taxaSindical = this.taxaSindical;
-
-        // ---------- Novos atributos ----------
-        copia.dataUltimoPagamento = this.dataUltimoPagamento;
-        copia.taxaSindicalDiaria = this.taxaSindicalDiaria;
-        copia.debitoSindicalAcumulado = this.debitoSindicalAcumulado;
-        copia.dataAdmissao = this.dataAdmissao;
+    // Histórico ainda não lido do snapshot (ou do banco): é carregado no primeiro acesso às listas
+    private volatile CarregadorHistorico historicoPendente;
 
-        // ---------- Pagamento ----------
-        copia.metodoPagamento = this.metodoPagamento;
-        copia.banco = this.banco;
-        copia.agencia = this.agencia;
-        copia.contaCorrente = this.contaCorrente;
+    public Empregado copiar() {
+        Empregado copia = copiarAtributos();
 
         // ---------- Listas (deep copy) ----------
-        copia.registrosDeHoras = new ArrayList<>();
-        for (RegistroDeHoras r : this.registrosDeHoras) {
+        copia.registrosDeHoras = novosRegistros();
+        for (RegistroDeHoras r : this.getRegistrosDeHoras()) {
             copia.registrosDeHoras.add(r.copiar());
         }
 
-        copia.vendas = new ArrayList<>();
-        for (Venda v : this.vendas) {
+        copia.vendas = novasVendas();
+        for (Venda v : this.getVendas()) {
             copia.vendas.add(v.copiar());
         }
 
-        copia.taxasServico = new ArrayList<>();
-        for (TaxaServico t : this.taxasServico) {
+        copia.taxasServico = novasTaxas();
+        for (TaxaServico t : this.getTaxasServico()) {
             copia.taxasServico.add(t.copiar());
         }
 
         return copia;
     }
 
-    public Empregado(String id, String nome, String endereco, String tipo, double salario) {
+    /** Cópia só dos atributos, sem as listas de histórico. */
+    public Empregado copiarAtributos() {
+        Empregado copia = new Empregado(this.id, this.nome, this.endereco, this.tipo, this.salario);
+        copia.restaurarAtributos(this);
+        return copia;
+    }
+
+    /** Copia para este empregado todos os atributos de origem (as listas não mudam). */
+    public void restaurarAtributos(Empregado origem) {
+        this.id = origem.id;
+        this.nome = origem.nome;
+        this.endereco = origem.endereco;
+        this.tipo = origem.tipo;
+        this.salario = origem.salario;
+
+        // ---------- Atributos opcionais ----------
+        this.comissao = origem.comissao;
+        this.sindicalizado = origem.sindicalizado;
+        this.idSindicato = origem.idSindicato;
+        this.taxaSindical = origem.taxaSindical;
+
+        // ---------- Novos atributos ----------
+        this.dataUltimoPagamento = origem.dataUltimoPagamento;
+        this.taxaSindicalDiaria = origem.taxaSindicalDiaria;
+        this.debitoSindicalAcumulado = origem.debitoSindicalAcumulado;
+        this.dataAdmissao = origem.dataAdmissao;
+
+        // ---------- Pagamento ----------
+        this.metodoPagamento = origem.metodoPagamento;
+        this.banco = origem.banco;
+        this.agencia = origem.agencia;
+        this.contaCorrente = origem.contaCorrente;
+        this.agendaPagamento = origem.agendaPagamento;
+    }
+
+    public Empregado(String id, String nome, String endereco, String tipo, long salario) {
         this.id = id;
         this.nome = nome;
         this.endereco = endereco;
@@ -85,13 +109,14 @@ public class Empregado {
         this.comissao = 0.0;
         this.sindicalizado = false;
         this.idSindicato = null;
-        this.taxaSindical = 0.0;
-        this.debitoSindicalAcumulado = 0.0;
+        this.taxaSindical = 0;
+        this.debitoSindicalAcumulado = 0;
 
         this.metodoPagamento = "emMaos"; // default
         this.banco = null;
         this.agencia = null;
         this.contaCorrente = null;
+        this.agendaPagamento = AgendaPagamento.padrao(tipo);
     }
 
     // ---------- Getters e Setters básicos ----------
@@ -107,8 +132,8 @@ public class Empregado {
     public String getTipo() { return tipo; }
     public void setTipo(String tipo) { this.tipo = tipo; }
 
-    public double getSalario() { return salario; }
-    public void setSalario(double salario) { this.salario = salario; }
+    public long getSalario() { return salario; }
+    public void setSalario(long salario) { this.salario = salario; }
 
     public double getComissao() { return comissao; }
     public void setComissao(double comissao) {
@@ -129,7 +154,7 @@ public class Empregado {
         this.sindicalizado = sindicalizado;
         if (!sindicalizado) {
             this.idSindicato = null;
-            this.taxaSindical = 0.0;
+            this.taxaSindical = 0;
         }
     }
 
@@ -142,31 +167,141 @@ public class Empregado {
         }
     }
 
-    public double getTaxaSindical() { return taxaSindical; }
-    public void setTaxaSindical(double taxaSindical) {
+    public long getTaxaSindical() { return taxaSindical; }
+    public void setTaxaSindical(long taxaSindical) {
         if (sindicalizado) {
             this.taxaSindical = taxaSindical;
         } else {
-            this.taxaSindical = 0.0;
+            this.taxaSindical = 0;
+        }
+    }
+
+    // ---------- Histórico sob demanda ----------
+    public interface CarregadorHistorico {
+        void carregar(List<RegistroDeHoras> registros, List<Venda> vendas, List<TaxaServico> taxas);
+    }
+
+    /**
+     * Carregador que também responde às somas por intervalo sem trazer o histórico para a
+     * memória (ex.: banco indexado por data). Horas em milionésimos, valores em centavos.
+     */
+    public interface ConsultaHistorico extends CarregadorHistorico {
+        boolean temRegistrosDeHoras();
+        long[] somarHoras(LocalDate inicio, LocalDate fim); // {normais, extras}
+        long somarVendas(LocalDate inicio, LocalDate fim);
+        long somarTaxas(LocalDate inicio, LocalDate fim);
+    }
+
+    /** Adia a leitura do histórico: o carregador preenche as listas no primeiro acesso. */
+    public void setHistoricoPendente(CarregadorHistorico carregador) { this.historicoPendente = carregador; }
+
+    /** Se o histórico ainda não foi lido (nenhuma das listas foi acessada desde a carga). */
+    public boolean temHistoricoPendente() { return historicoPendente != null; }
+
+    private synchronized void materializarHistorico() {
+        CarregadorHistorico carregador = historicoPendente;
+        if (carregador != null) {
+            carregador.carregar(registrosDeHoras, vendas, taxasServico);
+            historicoPendente = null;
         }
     }
 
     // ---------- Registro de horas ----------
-    public List<RegistroDeHoras> getRegistrosDeHoras() { return registrosDeHoras; }
-    public void addRegistroDeHoras(RegistroDeHoras registro) { registrosDeHoras.add(registro); }
+    private static HistoricoPorData<RegistroDeHoras> novosRegistros() {
+        return new HistoricoPorData<>(RegistroDeHoras::getData,
+                (data, horas) -> new RegistroDeHoras(data, RegistroDeHoras.deMilionesimos(horas[HORAS_NORMAIS]),
+                        RegistroDeHoras.deMilionesimos(horas[HORAS_EXTRAS])),
+                List.of(r -> RegistroDeHoras.emMilionesimos(r.getHorasNormais()),
+                        r -> RegistroDeHoras.emMilionesimos(r.getHorasExtras())));
+    }
+
+    public HistoricoPorData<RegistroDeHoras> getRegistrosDeHoras() {
+        if (historicoPendente != null) materializarHistorico();
+        return registrosDeHoras;
+    }
+    public void addRegistroDeHoras(RegistroDeHoras registro) { getRegistrosDeHoras().add(registro); }
+
+    /** Soma horas ao registro já lançado no dia. */
+    public void acumularHoras(LocalDate data, double normais, double extras) {
+        HistoricoPorData<RegistroDeHoras> registros = getRegistrosDeHoras();
+        int i = registros.linhaDoDia(data);
+        registros.alterarMedidas(i,
+                registros.medida(i, HORAS_NORMAIS) + RegistroDeHoras.emMilionesimos(normais),
+                registros.medida(i, HORAS_EXTRAS) + RegistroDeHoras.emMilionesimos(extras));
+    }
+
+    /** Devolve as horas do registro do dia a um valor anterior (undo/redo). */
+    public void restaurarHoras(LocalDate data, double normais, double extras) {
+        HistoricoPorData<RegistroDeHoras> registros = getRegistrosDeHoras();
+        registros.alterarMedidas(registros.linhaDoDia(data),
+                RegistroDeHoras.emMilionesimos(normais), RegistroDeHoras.emMilionesimos(extras));
+    }
+
+    /** Se há algum cartão de ponto lançado (consultado no carregador, se o histórico está pendente). */
+    public boolean temRegistrosDeHoras() {
+        CarregadorHistorico pendente = historicoPendente;
+        if (pendente instanceof ConsultaHistorico) return ((ConsultaHistorico) pendente).temRegistrosDeHoras();
+        return !getRegistrosDeHoras().isEmpty();
+    }
+
+    /** Horas normais lançadas em [inicio, fim). */
+    public double getHorasNormais(LocalDate inicio, LocalDate fim) {
+        return somarHoras(HORAS_NORMAIS, inicio, fim) / RegistroDeHoras.MILIONESIMOS;
+    }
+
+    /** Horas extras lançadas em [inicio, fim). */
+    public double getHorasExtras(LocalDate inicio, LocalDate fim) {
+        return somarHoras(HORAS_EXTRAS, inicio, fim) / RegistroDeHoras.MILIONESIMOS;
+    }
+
+    private long somarHoras(int medida, LocalDate inicio, LocalDate fim) {
+        CarregadorHistorico pendente = historicoPendente;
+        if (pendente instanceof ConsultaHistorico) return ((ConsultaHistorico) pendente).somarHoras(inicio, fim)[medida];
+        return getRegistrosDeHoras().soma(medida, inicio, fim);
+    }
 
     // ---------- Vendas ----------
-    public List<Venda> getVendas() { return vendas; }
-    public void addVenda(Venda venda) { vendas.add(venda); }
+    private static HistoricoPorData<Venda> novasVendas() {
+        return new HistoricoPorData<>(Venda::getData, (data, valor) -> new Venda(data, valor[VALOR]),
+                List.of(Venda::getValor));
+    }
+
+    public HistoricoPorData<Venda> getVendas() {
+        if (historicoPendente != null) materializarHistorico();
+        return vendas;
+    }
+    public void addVenda(Venda venda) { getVendas().add(venda); }
+
+    /** Valor das vendas em [inicio, fim), em centavos. */
+    public long getTotalVendas(LocalDate inicio, LocalDate fim) {
+        CarregadorHistorico pendente = historicoPendente;
+        if (pendente instanceof ConsultaHistorico) return ((ConsultaHistorico) pendente).somarVendas(inicio, fim);
+        return getVendas().soma(VALOR, inicio, fim);
+    }
 
     // ---------- Taxas de serviço ----------
-    public List<TaxaServico> getTaxasServico() { return taxasServico; }
+    private static HistoricoPorData<TaxaServico> novasTaxas() {
+        return new HistoricoPorData<>(TaxaServico::getData, (data, valor) -> new TaxaServico(data, valor[VALOR]),
+                List.of(TaxaServico::getValor));
+    }
+
+    public HistoricoPorData<TaxaServico> getTaxasServico() {
+        if (historicoPendente != null) materializarHistorico();
+        return taxasServico;
+    }
     public void addTaxaServico(TaxaServico taxa) {
         if (getSindicalizado()) {
-            taxasServico.add(taxa);
+            getTaxasServico().add(taxa);
         }
     }
 
+    /** Valor das taxas de serviço em [inicio, fim), em centavos. */
+    public long getTotalTaxas(LocalDate inicio, LocalDate fim) {
+        CarregadorHistorico pendente = historicoPendente;
+        if (pendente instanceof ConsultaHistorico) return ((ConsultaHistorico) pendente).somarTaxas(inicio, fim);
+        return getTaxasServico().soma(VALOR, inicio, fim);
+    }
+
     // ---------- Getters de Pagamento ----------
     public String getMetodoPagamento() { return metodoPagamento; }
     public String getMetodoPagamentoFormatado() {
@@ -210,35 +345,38 @@ public class Empregado {
     public void setAgencia(String agencia) { this.agencia = agencia; }
     public void setContaCorrente(String contaCorrente) { this.contaCorrente = contaCorrente; }
 
+    public AgendaPagamento getAgendaPagamento() { return agendaPagamento; }
+    public void setAgendaPagamento(AgendaPagamento agendaPagamento) { this.agendaPagamento = agendaPagamento; }
+
     // --- Novos Getters e Setters ---
-    public String getDataUltimoPagamento() {
+    public LocalDate getDataUltimoPagamento() {
         return dataUltimoPagamento;
     }
 
-    /** Define a data do último pagamento (String) */
-    public void setDataUltimoPagamento(String data) {
+    /** Define a data do último pagamento (null é ignorado) */
+    public void setDataUltimoPagamento(LocalDate data) {
         if (data != null) {
             this.dataUltimoPagamento = data;
         }
     }
 
-    public double getTaxaSindicalDiaria() {
+    public long getTaxaSindicalDiaria() {
         return taxaSindicalDiaria;
     }
 
-    public void setTaxaSindicalDiaria(double taxaSindicalDiaria) {
+    public void setTaxaSindicalDiaria(long taxaSindicalDiaria) {
         this.taxaSindicalDiaria = taxaSindicalDiaria;
     }
 
-    public double getDebitoSindicalAcumulado() {
+    public long getDebitoSindicalAcumulado() {
         return debitoSindicalAcumulado;
     }
 
-    public void setDebitoSindicalAcumulado(double debito) {
+    public void setDebitoSindicalAcumulado(long debito) {
         this.debitoSindicalAcumulado = debito;
     }
 
-    public void addDebitoSindicalAcumulado(double debito) { this.debitoSindicalAcumulado = debitoSindicalAcumulado + debito; }
+    public void addDebitoSindicalAcumulado(long debito) { this.debitoSindicalAcumulado = debitoSindicalAcumulado + debito; }
 
     public LocalDate getDataAdmissao() { return dataAdmissao; }
 
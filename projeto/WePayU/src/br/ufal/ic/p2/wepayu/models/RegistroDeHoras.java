@@ -2,7 +2,13 @@ package br.ufal.ic.p2.wepayu.models;
 
 import java.time.LocalDate;
 
+/**
+ * Horas lançadas num dia. No histórico do empregado as horas ficam em colunas, como
+ * inteiro de milionésimos de hora (somas exatas); cada objeto é uma cópia da linha.
+ */
 public class RegistroDeHoras {
+    static final double MILIONESIMOS = 1_000_000;
+
     private LocalDate data;
     private double horasNormais;
     private double horasExtras;
@@ -21,10 +27,6 @@ public class RegistroDeHoras {
     public double getHorasNormais() { return horasNormais; }
     public double getHorasExtras() { return horasExtras; }
 
-    public void SetHorasNormais(double horasNormais) {
-        this.horasNormais += horasNormais;
-    }
-    public void SetHorasExtras(double horasExtras) {
-        this.horasExtras += horasExtras;
-    }
+    public static long emMilionesimos(double horas) { return Math.round(horas * MILIONESIMOS); }
+    static double deMilionesimos(long horas) { return horas / MILIONESIMOS; }
 }
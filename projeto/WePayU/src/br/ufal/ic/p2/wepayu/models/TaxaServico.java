@@ -4,17 +4,17 @@ import java.time.LocalDate;
 
 public class TaxaServico {
     private LocalDate data;
-    private double valor;
+    private long valor; // centavos
 
     public TaxaServico copiar() {
         return new TaxaServico(this.data, this.valor);
     }
 
-    public TaxaServico(LocalDate data, double valor) {
+    public TaxaServico(LocalDate data, long valor) {
         this.data = data;
         this.valor = valor;
     }
 
     public LocalDate getData() { return data; }
-    public double getValor() { return valor; }
+    public long getValor() { return valor; }
 }
@@ -4,17 +4,17 @@ import java.time.LocalDate;
 
 public class Venda {
     private LocalDate data;
-    private double valor;
+    private long valor; // centavos
 
     public Venda copiar() {
         return new Venda(this.data, this.valor);
     }
 
-    public Venda(LocalDate data, double valor) {
+    public Venda(LocalDate data, long valor) {
         this.data = data;
         this.valor = valor;
     }
 
     public LocalDate getData() { return data; }
-    public double getValor() { return valor; }
+    public long getValor() { return valor; }
 }
@@ -0,0 +1,234 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.repositorio.Repositorio;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordena a persistência dos quatro arquivos de dados (empregados, registros,
+ * vendas e taxas). Os serviços apenas registram o que mudou: o comando vai para
+ * o journal e o empregado alterado é anotado no arquivo correspondente. As
+ * alterações são entregues juntas ao {@link Repositorio}, num único commit. Cada
+ * registro vai para o arquivo do journal na hora (um processo morto não perde
+ * comandos); a política de durabilidade decide quando é feito o fsync, que protege
+ * contra a queda do sistema operacional.
+ * No snapshot binário só o shard do empregado afetado é marcado como sujo
+ * (ver {@link SnapshotBinario}). Políticas de durabilidade:
+ * <ul>
+ *   <li>POR_COMANDO: fsync do journal a cada comando;</li>
+ *   <li>INTERVALO: fsync no máximo a cada N ms (padrão);</li>
+ *   <li>ENCERRAMENTO: fsync só em encerrarSistema (ou no checkpoint).</li>
+ * </ul>
+ * A política pode ser escolhida pelas propriedades de sistema
+ * wepayu.durabilidade e wepayu.durabilidade.intervalo (em ms); um valor inválido
+ * fica no padrão. Independente da política, a cada
+ * {@link Journal#REGISTROS_POR_CHECKPOINT} registros é feito um {@link #commit()}.
+ */
+public class CoordenadorPersistencia {
+
+    public enum Arquivo { EMPREGADOS, REGISTROS, VENDAS, TAXAS }
+
+    public enum Durabilidade { POR_COMANDO, INTERVALO, ENCERRAMENTO }
+
+    private static final EnumSet<Arquivo> sujos = EnumSet.noneOf(Arquivo.class); // regravar por completo
+    // só estes empregados: os dias alterados do histórico, ou null para todas as linhas do empregado
+    private static final Map<Arquivo, Map<String, Set<LocalDate>>> alterados = new EnumMap<>(Arquivo.class);
+
+    private static Repositorio repositorio;
+    private static Map<String, Empregado> empregados;
+
+    private static final long INTERVALO_PADRAO_MS = 1000L;
+
+    private static Durabilidade durabilidade = durabilidadeConfigurada();
+    private static long intervaloMs = intervaloConfigurado();
+    private static long ultimaSincronizacao = System.currentTimeMillis();
+    private static ScheduledExecutorService agendador;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> Journal.sincronizar(true)));
+    }
+
+    /** Define onde os dados são gravados; chamado na construção da Facade. */
+    public static synchronized void inicializar(Repositorio destino, Map<String, Empregado> empregadosMap) {
+        if (repositorio != null && repositorio != destino) {
+            repositorio.fechar();
+        }
+        sujos.clear();
+        alterados.clear();
+        repositorio = destino;
+        empregados = empregadosMap;
+        configurarAgendador();
+    }
+
+    private static Durabilidade durabilidadeConfigurada() {
+        String valor = System.getProperty("wepayu.durabilidade");
+        if (valor == null) return Durabilidade.INTERVALO;
+        try {
+            return Durabilidade.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Durabilidade invalida: " + valor + "; usando INTERVALO");
+            return Durabilidade.INTERVALO;
+        }
+    }
+
+    private static long intervaloConfigurado() {
+        long intervalo = Long.getLong("wepayu.durabilidade.intervalo", INTERVALO_PADRAO_MS);
+        if (intervalo > 0) return intervalo;
+        System.err.println("Intervalo de durabilidade invalido: " + intervalo + "; usando " + INTERVALO_PADRAO_MS);
+        return INTERVALO_PADRAO_MS;
+    }
+
+    public static synchronized void setDurabilidade(Durabilidade politica, long intervalo) {
+        Journal.sincronizar(true);
+        durabilidade = politica;
+        intervaloMs = intervalo;
+        configurarAgendador();
+    }
+
+    public static synchronized Durabilidade getDurabilidade() {
+        return durabilidade;
+    }
+
+    /**
+     * Registra o comando no journal e marca como sujos o arquivo afetado e o shard
+     * do empregado empId (mais os atributos, se o arquivo for o de empregados).
+     */
+    public static synchronized void registrar(Arquivo arquivo, String empId, String tipo, Object... campos) {
+        marcarAlterado(arquivo, empId);
+        Journal.registrar(tipo, campos);
+        aplicarDurabilidade();
+    }
+
+    /**
+     * Como {@link #registrar(Arquivo, String, String, Object...)}, para um comando que só
+     * mexe no histórico de empId no dia data: o repositório atualiza só as linhas desse dia.
+     */
+    public static synchronized void registrarDia(Arquivo arquivo, String empId, LocalDate data, String tipo,
+                                                 Object... campos) {
+        marcarDiaAlterado(arquivo, empId, data);
+        Journal.registrar(tipo, campos);
+        aplicarDurabilidade();
+    }
+
+    /** Como {@link #registrar(Arquivo, String, String, Object...)}, para um comando que altera vários empregados. */
+    public static synchronized void registrar(Arquivo arquivo, Collection<String> empIds, String tipo, Object... campos) {
+        for (String empId : empIds) {
+            marcarAlterado(arquivo, empId);
+        }
+        Journal.registrar(tipo, campos);
+        aplicarDurabilidade();
+    }
+
+    /**
+     * Registra no journal a criação de uma agenda de pagamento. A lista de agendas vai
+     * junto dos atributos no snapshot; os repositórios guardam só a agenda de cada empregado.
+     */
+    public static synchronized void registrarAgenda(String descricao) {
+        SnapshotBinario.marcarAgendasSujas();
+        Journal.registrar("AGE", descricao);
+        aplicarDurabilidade();
+    }
+
+    /** Registra no journal que uma agenda criada deixou de estar disponível (undo). */
+    public static synchronized void registrarAgendaDescartada(String descricao) {
+        SnapshotBinario.marcarAgendasSujas();
+        Journal.registrar("AGD", descricao);
+        aplicarDurabilidade();
+    }
+
+    private static void aplicarDurabilidade() {
+        if (Journal.checkpointPendente()) {
+            commit(); // o checkpoint já deixa tudo no disco
+            return;
+        }
+        switch (durabilidade) {
+            case POR_COMANDO:
+                Journal.sincronizar(true);
+                break;
+            case INTERVALO:
+                if (System.currentTimeMillis() - ultimaSincronizacao >= intervaloMs) {
+                    sincronizar();
+                }
+                break;
+            case ENCERRAMENTO:
+                break;
+        }
+    }
+
+    /** Marca só as linhas do empregado empId como alteradas, sem passar pelo journal (ex.: undo). */
+    public static synchronized void marcarAlterado(Arquivo arquivo, String empId) {
+        alterados.computeIfAbsent(arquivo, a -> new HashMap<>()).put(empId, null);
+        SnapshotBinario.marcarSujo(empId, arquivo == Arquivo.EMPREGADOS);
+    }
+
+    /** Marca só as linhas do dia data no histórico de empId, sem passar pelo journal (ex.: undo). */
+    public static synchronized void marcarDiaAlterado(Arquivo arquivo, String empId, LocalDate data) {
+        Map<String, Set<LocalDate>> porEmpregado = alterados.computeIfAbsent(arquivo, a -> new HashMap<>());
+        if (!porEmpregado.containsKey(empId)) {
+            porEmpregado.put(empId, new HashSet<>());
+        }
+        Set<LocalDate> dias = porEmpregado.get(empId);
+        if (dias != null) dias.add(data); // null: todas as linhas do empregado já vão ser regravadas
+        SnapshotBinario.marcarSujo(empId, false);
+    }
+
+    /** Marca o arquivo inteiro como sujo; sem empregado específico, o snapshot inteiro é regravado. */
+    public static synchronized void marcarSujo(Arquivo arquivo) {
+        sujos.add(arquivo);
+        SnapshotBinario.marcarTudoSujo();
+    }
+
+    /** Marca só o repositório como desatualizado (o snapshot já está em dia). */
+    public static synchronized void marcarExportacaoSuja() {
+        sujos.addAll(EnumSet.allOf(Arquivo.class));
+    }
+
+    public static synchronized void marcarTodosSujos() {
+        sujos.addAll(EnumSet.allOf(Arquivo.class));
+        SnapshotBinario.marcarTudoSujo();
+    }
+
+    /** Commit em lote: checkpoint do estado e gravação de tudo o que mudou no repositório. */
+    public static synchronized void commit() {
+        Journal.checkpoint();
+        if (!sujos.isEmpty() || !alterados.isEmpty()) {
+            repositorio.salvar(empregados, sujos, alterados, Journal.getSequencia());
+        }
+        sujos.clear();
+        alterados.clear();
+        ultimaSincronizacao = System.currentTimeMillis();
+    }
+
+    private static synchronized void sincronizar() {
+        Journal.sincronizar(true);
+        ultimaSincronizacao = System.currentTimeMillis();
+    }
+
+    private static void configurarAgendador() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+        if (durabilidade != Durabilidade.INTERVALO) return;
+
+        // Garante o fsync mesmo quando os comandos param de chegar
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wepayu-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(CoordenadorPersistencia::sincronizar,
+                intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+}
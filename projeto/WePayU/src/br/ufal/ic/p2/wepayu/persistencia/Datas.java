@@ -0,0 +1,52 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+/**
+ * Conversão entre datas civis (dia, mês, ano) e epoch days sem criar objetos,
+ * usada pelo codec de CSV. Algoritmo de H. Hinnant (calendário gregoriano proléptico).
+ */
+public final class Datas {
+
+    private Datas() {}
+
+    /** Dias desde 1/1/1970 para a data informada. Rejeita datas que não existem, como 31/2. */
+    public static int epochDay(int ano, int mes, int dia) {
+        if (mes < 1 || mes > 12 || dia < 1 || dia > diasNoMes(ano, mes)) {
+            throw new NumberFormatException("Data invalida: " + dia + "/" + mes + "/" + ano);
+        }
+        int y = mes <= 2 ? ano - 1 : ano;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int anoDaEra = y - era * 400;
+        int diaDoAno = (153 * (mes + (mes > 2 ? -3 : 9)) + 2) / 5 + dia - 1;
+        int diaDaEra = anoDaEra * 365 + anoDaEra / 4 - anoDaEra / 100 + diaDoAno;
+        return era * 146097 + diaDaEra - 719468;
+    }
+
+    static int diasNoMes(int ano, int mes) {
+        if (mes == 2) {
+            boolean bissexto = ano % 4 == 0 && (ano % 100 != 0 || ano % 400 == 0);
+            return bissexto ? 29 : 28;
+        }
+        return mes == 4 || mes == 6 || mes == 9 || mes == 11 ? 30 : 31;
+    }
+
+    /**
+     * Decompõe um epoch day em ano, mês e dia, empacotados num int
+     * (ano << 9 | mes << 5 | dia) para não alocar.
+     */
+    public static int civil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int diaDaEra = z - era * 146097;
+        int anoDaEra = (diaDaEra - diaDaEra / 1460 + diaDaEra / 36524 - diaDaEra / 146096) / 365;
+        int diaDoAno = diaDaEra - (365 * anoDaEra + anoDaEra / 4 - anoDaEra / 100);
+        int mp = (5 * diaDoAno + 2) / 153;
+        int dia = diaDoAno - (153 * mp + 2) / 5 + 1;
+        int mes = mp < 10 ? mp + 3 : mp - 9;
+        int ano = anoDaEra + era * 400 + (mes <= 2 ? 1 : 0);
+        return ano << 9 | mes << 5 | dia;
+    }
+
+    public static int ano(int civil) { return civil >> 9; }
+    public static int mes(int civil) { return (civil >> 5) & 0xF; }
+    public static int dia(int civil) { return civil & 0x1F; }
+}
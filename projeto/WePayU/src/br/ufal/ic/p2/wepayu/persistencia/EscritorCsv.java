@@ -0,0 +1,195 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Escritor de CSV (separado por ';') que formata diretamente num buffer de bytes,
+ * sem printf nem Strings intermediárias. O separador é inserido automaticamente
+ * entre os campos de uma linha; {@link #fimLinha()} encerra a linha.
+ */
+public class EscritorCsv implements Closeable {
+
+    private static final long[] POTENCIAS = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[1 << 16];
+    private final byte[] digitos = new byte[20];
+    private int pos = 0;
+    private boolean inicioLinha = true;
+
+    public EscritorCsv(OutputStream out) {
+        this.out = out;
+    }
+
+    public EscritorCsv(Path arquivo) throws IOException {
+        this(Files.newOutputStream(arquivo));
+    }
+
+    /** Texto; null vira campo vazio. */
+    public EscritorCsv texto(String s) throws IOException {
+        separador();
+        if (s == null) return this;
+
+        int tamanho = s.length();
+        for (int i = 0; i < tamanho; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // fora do ASCII: codifica o restante em UTF-8
+                bytes(s.substring(i).getBytes(StandardCharsets.UTF_8));
+                return this;
+            }
+            garantir(1);
+            buf[pos++] = (byte) c;
+        }
+        return this;
+    }
+
+    public EscritorCsv logico(boolean b) throws IOException {
+        separador();
+        bytesAscii(b ? "true" : "false");
+        return this;
+    }
+
+    public EscritorCsv inteiro(long valor) throws IOException {
+        separador();
+        escreverInteiro(valor);
+        return this;
+    }
+
+    /** Decimal em ponto fixo: decimal(2350, 2) escreve "23.50". */
+    public EscritorCsv decimal(long fixo, int casas) throws IOException {
+        separador();
+        if (fixo < 0) {
+            garantir(1);
+            buf[pos++] = '-';
+            fixo = -fixo;
+        }
+        escreverInteiro(fixo / POTENCIAS[casas]);
+        if (casas > 0) {
+            garantir(casas + 1);
+            buf[pos++] = '.';
+            long fracao = fixo % POTENCIAS[casas];
+            for (int c = casas - 1; c >= 0; c--) {
+                buf[pos + c] = (byte) ('0' + fracao % 10);
+                fracao /= 10;
+            }
+            pos += casas;
+        }
+        return this;
+    }
+
+    /** Valor com o número de casas informado, arredondado com o meio para longe do zero, como no LeitorCsv. */
+    public EscritorCsv decimal(double valor, int casas) throws IOException {
+        long fixo = Math.round(Math.abs(valor) * POTENCIAS[casas]);
+        return decimal(valor < 0 ? -fixo : fixo, casas);
+    }
+
+    /**
+     * Número real sem perda: usa até 4 casas quando isso representa o valor
+     * exatamente (o caso comum), senão cai para Double.toString.
+     */
+    public EscritorCsv real(double valor) throws IOException {
+        for (int casas = 1; casas <= 4; casas++) {
+            long fixo = Math.round(valor * POTENCIAS[casas]);
+            if (Math.abs(fixo) < (1L << 53) && fixo / (double) POTENCIAS[casas] == valor) {
+                return decimal(fixo, casas);
+            }
+        }
+        separador();
+        bytesAscii(Double.toString(valor));
+        return this;
+    }
+
+    /** Data de um epoch day, no formato d/M/uuuu. */
+    public EscritorCsv data(int epochDay) throws IOException {
+        separador();
+        int civil = Datas.civil(epochDay);
+        escreverInteiro(Datas.dia(civil));
+        garantir(1);
+        buf[pos++] = '/';
+        escreverInteiro(Datas.mes(civil));
+        garantir(1);
+        buf[pos++] = '/';
+        escreverInteiro(Datas.ano(civil));
+        return this;
+    }
+
+    public void fimLinha() throws IOException {
+        garantir(1);
+        buf[pos++] = '\n';
+        inicioLinha = true;
+    }
+
+    public void flush() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(buf, 0, pos);
+            pos = 0;
+        } finally {
+            out.close();
+        }
+    }
+
+    // ---------- Auxiliares ----------
+
+    private void separador() throws IOException {
+        if (!inicioLinha) {
+            garantir(1);
+            buf[pos++] = ';';
+        }
+        inicioLinha = false;
+    }
+
+    private void escreverInteiro(long valor) throws IOException {
+        if (valor < 0) {
+            garantir(1);
+            buf[pos++] = '-';
+            valor = -valor;
+        }
+        int n = 0;
+        do {
+            digitos[n++] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+
+        garantir(n);
+        while (n > 0) buf[pos++] = digitos[--n];
+    }
+
+    private void bytesAscii(String s) throws IOException {
+        garantir(s.length());
+        for (int i = 0; i < s.length(); i++) buf[pos++] = (byte) s.charAt(i);
+    }
+
+    private void bytes(byte[] b) throws IOException {
+        if (b.length > buf.length) {
+            out.write(buf, 0, pos);
+            pos = 0;
+            out.write(b);
+            return;
+        }
+        garantir(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    private void garantir(int n) throws IOException {
+        if (pos + n > buf.length) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
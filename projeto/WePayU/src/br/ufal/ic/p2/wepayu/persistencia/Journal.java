@@ -0,0 +1,162 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Journal de escrita antecipada (write-ahead log) da persistência.
+ * Cada comando que altera o sistema acrescenta um registro compacto ao final
+ * de journal.log, em vez de reescrever os arquivos de dados inteiros.
+ * A cada {@link #REGISTROS_POR_CHECKPOINT} registros (e no encerramento) o
+ * {@link CoordenadorPersistencia} faz um commit: o checkpoint regrava o snapshot e
+ * trunca o journal, e o repositório recebe as alterações acumuladas. Ao construir a Facade, o que sobrou
+ * no journal é reproduzido sobre o estado carregado do snapshot.
+ *
+ * Os registros são numerados em sequência: cada vez que o arquivo é aberto
+ * para acréscimo é gravada uma linha SEQ;n e os registros seguintes são os de
+ * número n + 1, n + 2, ... O snapshot guarda o número do último registro que
+ * incorpora, então um crash entre gravar o snapshot e truncar o journal não faz
+ * os registros não idempotentes (REG, VEN, TAX) serem aplicados duas vezes.
+ *
+ * Cada registro é entregue ao arquivo assim que é gravado, então sobrevive à morte do
+ * processo; só o fsync fica para {@link #sincronizar(boolean)}, chamado conforme a
+ * política de durabilidade do {@link CoordenadorPersistencia}.
+ */
+public class Journal {
+
+    private static final String ARQUIVO = "journal.log";
+    static final int REGISTROS_POR_CHECKPOINT = 500;
+
+    private static FileOutputStream arquivo;
+    private static EscritorCsv out;
+    private static boolean pendente = false; // gravado no arquivo, ainda sem fsync
+    private static Runnable checkpoint;
+    private static int registrosDesdeCheckpoint = 0;
+    private static long sequencia = 0; // número do último registro gravado
+
+    /**
+     * Prepara o journal; acaoCheckpoint é o callback que grava o estado completo e
+     * sequenciaDoSnapshot o número do último registro que o snapshot carregado incorpora.
+     */
+    public static synchronized void inicializar(Runnable acaoCheckpoint, long sequenciaDoSnapshot) {
+        fechar();
+        checkpoint = acaoCheckpoint;
+        registrosDesdeCheckpoint = 0;
+        sequencia = sequenciaDoSnapshot;
+    }
+
+    /**
+     * Entrega cada registro do journal ao consumidor, com o seu número; o campo 0 é o
+     * tipo do registro. Cabe ao consumidor pular os que o snapshot já incorpora.
+     * Retorna quantos registros foram lidos.
+     */
+    public static synchronized int reproduzir(ObjLongConsumer<LeitorCsv> aplicar) {
+        int lidos = 0;
+        long numero = 0; // journal sem linha SEQ (formato antigo): numerado a partir de 1
+        Path caminho = Paths.get(ARQUIVO);
+        if (Files.exists(caminho)) {
+            try (LeitorCsv csv = new LeitorCsv(caminho)) {
+                while (csv.proximaLinha()) {
+                    if (csv.igual(0, "SEQ")) {
+                        numero = Long.parseLong(csv.texto(1));
+                        continue;
+                    }
+                    aplicar.accept(csv, ++numero);
+                    lidos++;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao ler journal: " + e.getMessage());
+            }
+        }
+        registrosDesdeCheckpoint = lidos;
+        sequencia = Math.max(sequencia, numero);
+        return lidos;
+    }
+
+    /** Número do último registro gravado (o que um snapshot gravado agora incorpora). */
+    public static synchronized long getSequencia() {
+        return sequencia;
+    }
+
+    /** Acrescenta um registro (tipo;campo1;campo2;...) ao arquivo do journal, sem fsync. */
+    public static synchronized void registrar(String tipo, Object... campos) {
+        try {
+            if (out == null) {
+                arquivo = new FileOutputStream(ARQUIVO, true);
+                out = new EscritorCsv(arquivo);
+                out.texto("SEQ").inteiro(sequencia).fimLinha();
+            }
+            out.texto(tipo);
+            for (Object campo : campos) {
+                if (campo instanceof Double) {
+                    out.real((Double) campo);
+                } else if (campo instanceof Boolean) {
+                    out.logico((Boolean) campo);
+                } else if (campo instanceof LocalDate) {
+                    out.data((int) ((LocalDate) campo).toEpochDay());
+                } else {
+                    out.texto(campo == null ? null : campo.toString());
+                }
+            }
+            out.fimLinha();
+            out.flush();
+            sequencia++;
+            pendente = true;
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar journal: " + e.getMessage());
+        }
+        registrosDesdeCheckpoint++;
+    }
+
+    /** O journal já tem registros demais desde o último checkpoint. */
+    static synchronized boolean checkpointPendente() {
+        return registrosDesdeCheckpoint >= REGISTROS_POR_CHECKPOINT;
+    }
+
+    /** Se fsync for true, força a gravação em disco do que já foi entregue ao arquivo. */
+    public static synchronized void sincronizar(boolean fsync) {
+        if (out == null || !pendente) return;
+        try {
+            out.flush();
+            if (fsync) {
+                arquivo.getChannel().force(false);
+            }
+            pendente = false;
+        } catch (IOException e) {
+            System.err.println("Erro ao sincronizar journal: " + e.getMessage());
+        }
+    }
+
+    /** Grava o estado completo e descarta o journal. */
+    public static synchronized void checkpoint() {
+        if (checkpoint != null) {
+            checkpoint.run();
+        }
+        truncar();
+    }
+
+    /** Descarta o journal (o estado atual já está gravado). */
+    public static synchronized void truncar() {
+        fechar();
+        try {
+            Files.write(Paths.get(ARQUIVO), new byte[0]);
+        } catch (IOException e) {
+            System.err.println("Erro ao truncar journal: " + e.getMessage());
+        }
+        registrosDesdeCheckpoint = 0;
+    }
+
+    private static void fechar() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {}
+        out = null;
+        arquivo = null;
+        pendente = false;
+    }
+}
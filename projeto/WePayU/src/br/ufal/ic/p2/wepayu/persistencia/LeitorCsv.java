@@ -0,0 +1,267 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Leitor de CSV (separado por ';') que varre os bytes diretamente.
+ * A linha atual fica num buffer reutilizado e os campos são apenas pares de
+ * offsets, então ler uma linha não aloca nada; só {@link #texto(int)} cria String.
+ * Datas d/M/uuuu são decodificadas para epoch days e decimais para ponto fixo.
+ */
+public class LeitorCsv implements Closeable {
+
+    private static final byte SEPARADOR = ';';
+    private static final double[] POTENCIAS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private final byte[] buf = new byte[1 << 16];
+    private int pos = 0;
+    private int lim = 0;
+
+    private byte[] linha = new byte[256];
+    private int tamanhoLinha = 0;
+    private int[] inicio = new int[16];
+    private int[] fim = new int[16];
+    private int campos = 0;
+
+    public LeitorCsv(InputStream in) {
+        this.in = in;
+    }
+
+    public LeitorCsv(Path arquivo) throws IOException {
+        this(Files.newInputStream(arquivo));
+    }
+
+    /** Avança para a próxima linha não vazia. Retorna false no fim do arquivo. */
+    public boolean proximaLinha() throws IOException {
+        while (true) {
+            tamanhoLinha = 0;
+            boolean leuAlgo = false;
+
+            while (true) {
+                if (pos == lim) {
+                    lim = in.read(buf, 0, buf.length);
+                    pos = 0;
+                    if (lim <= 0) {
+                        lim = 0;
+                        break;
+                    }
+                }
+                leuAlgo = true;
+
+                // procura o fim da linha dentro do bloco atual e copia de uma vez
+                int i = pos;
+                while (i < lim && buf[i] != '\n') i++;
+                acrescentar(pos, i - pos);
+                if (i < lim) {
+                    pos = i + 1;
+                    break;
+                }
+                pos = lim;
+            }
+
+            if (!leuAlgo) return false;
+            if (tamanhoLinha > 0 && linha[tamanhoLinha - 1] == '\r') tamanhoLinha--;
+            if (tamanhoLinha == 0) continue;
+
+            separarCampos();
+            return true;
+        }
+    }
+
+    public int campos() {
+        return campos;
+    }
+
+    public boolean vazio(int campo) {
+        return fim[campo] == inicio[campo];
+    }
+
+    public String texto(int campo) {
+        return new String(linha, inicio[campo], fim[campo] - inicio[campo], StandardCharsets.UTF_8);
+    }
+
+    /** Retorna o campo ou null se estiver vazio. */
+    public String textoOuNulo(int campo) {
+        return vazio(campo) ? null : texto(campo);
+    }
+
+    /** Compara o campo com um texto ASCII sem criar String. */
+    public boolean igual(int campo, String ascii) {
+        int tamanho = fim[campo] - inicio[campo];
+        if (tamanho != ascii.length()) return false;
+        for (int i = 0; i < tamanho; i++) {
+            if (linha[inicio[campo] + i] != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean logico(int campo) {
+        int tamanho = fim[campo] - inicio[campo];
+        if (tamanho != 4) return false;
+        int i = inicio[campo];
+        return (linha[i] | 0x20) == 't' && (linha[i + 1] | 0x20) == 'r'
+                && (linha[i + 2] | 0x20) == 'u' && (linha[i + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Decimal em ponto fixo com a quantidade de casas pedida (aceita '.' ou ',').
+     * Ex.: decimal("23,5", 2) == 2350. Casas excedentes são arredondadas pela primeira
+     * delas, com o meio para longe do zero: "1,005" dá 101 e "-1,005" dá -101.
+     */
+    public long decimal(int campo, int casas) {
+        int i = inicio[campo];
+        int f = fim[campo];
+        if (i == f) throw new NumberFormatException("Campo vazio");
+
+        boolean negativo = linha[i] == '-';
+        if (negativo || linha[i] == '+') i++;
+
+        long valor = 0;
+        int casasLidas = -1;
+        boolean arredondar = false;
+        boolean temDigito = false;
+        for (; i < f; i++) {
+            byte b = linha[i];
+            if (b == '.' || b == ',') {
+                if (casasLidas >= 0) throw erro(campo);
+                casasLidas = 0;
+            } else if (b >= '0' && b <= '9') {
+                temDigito = true;
+                if (casasLidas < 0) {
+                    valor = valor * 10 + (b - '0');
+                } else if (casasLidas < casas) {
+                    valor = valor * 10 + (b - '0');
+                    casasLidas++;
+                } else if (casasLidas == casas) {
+                    arredondar = b >= '5';
+                    casasLidas++;
+                }
+            } else {
+                double lido = Double.parseDouble(texto(campo).replace(',', '.'));
+                long arredondado = Math.round(Math.abs(lido) * POTENCIAS[casas]);
+                return lido < 0 ? -arredondado : arredondado;
+            }
+        }
+        if (!temDigito) throw erro(campo); // "-", "," ...
+
+        for (int c = Math.max(casasLidas, 0); c < casas; c++) valor *= 10;
+        if (arredondar) valor++;
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Número real com o mesmo resultado de Double.parseDouble, mas sem criar String
+     * no caso comum (até 15 dígitos significativos, sem expoente).
+     */
+    public double real(int campo) {
+        int i = inicio[campo];
+        int f = fim[campo];
+        if (i == f) throw new NumberFormatException("Campo vazio");
+
+        boolean negativo = linha[i] == '-';
+        if (negativo || linha[i] == '+') i++;
+
+        long mantissa = 0;
+        int digitos = 0;
+        int casas = -1;
+        boolean temDigito = false;
+        for (; i < f; i++) {
+            byte b = linha[i];
+            if ((b == '.' || b == ',') && casas < 0) {
+                casas = 0;
+            } else if (b >= '0' && b <= '9' && digitos < 15) {
+                temDigito = true;
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) digitos++;
+                if (casas >= 0) casas++;
+            } else {
+                return Double.parseDouble(texto(campo).replace(',', '.'));
+            }
+        }
+
+        if (!temDigito) throw erro(campo);
+        if (casas >= POTENCIAS.length) return Double.parseDouble(texto(campo).replace(',', '.'));
+        double valor = casas > 0 ? mantissa / POTENCIAS[casas] : mantissa;
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Data no formato d/M/uuuu convertida para epoch day (dias desde 1/1/1970).
+     * Dia e mês podem ter zero à esquerda (05/01/2005); datas inexistentes são rejeitadas.
+     */
+    public int data(int campo) {
+        int i = inicio[campo];
+        int f = fim[campo];
+        int dia = 0, mes = 0, ano = 0;
+        int parte = 0;
+        int digitos = 0;
+        for (; i < f; i++) {
+            byte b = linha[i];
+            if (b == '/') {
+                if (digitos == 0 || ++parte > 2) throw erro(campo);
+                digitos = 0;
+            } else if (b >= '0' && b <= '9') {
+                int d = b - '0';
+                if (parte == 0) dia = dia * 10 + d;
+                else if (parte == 1) mes = mes * 10 + d;
+                else ano = ano * 10 + d;
+                digitos++;
+            } else {
+                throw erro(campo);
+            }
+        }
+        if (parte != 2 || digitos == 0) throw erro(campo);
+        return Datas.epochDay(ano, mes, dia);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ---------- Auxiliares ----------
+
+    private void acrescentar(int de, int tamanho) {
+        if (tamanhoLinha + tamanho > linha.length) {
+            byte[] maior = new byte[Math.max(linha.length * 2, tamanhoLinha + tamanho)];
+            System.arraycopy(linha, 0, maior, 0, tamanhoLinha);
+            linha = maior;
+        }
+        System.arraycopy(buf, de, linha, tamanhoLinha, tamanho);
+        tamanhoLinha += tamanho;
+    }
+
+    private void separarCampos() {
+        campos = 0;
+        int comeco = 0;
+        for (int i = 0; i <= tamanhoLinha; i++) {
+            if (i == tamanhoLinha || linha[i] == SEPARADOR) {
+                if (campos == inicio.length) {
+                    int[] novoInicio = new int[campos * 2];
+                    int[] novoFim = new int[campos * 2];
+                    System.arraycopy(inicio, 0, novoInicio, 0, campos);
+                    System.arraycopy(fim, 0, novoFim, 0, campos);
+                    inicio = novoInicio;
+                    fim = novoFim;
+                }
+                inicio[campos] = comeco;
+                fim[campos] = i;
+                campos++;
+                comeco = i + 1;
+            }
+        }
+    }
+
+    private NumberFormatException erro(int campo) {
+        return new NumberFormatException("Campo invalido: " + texto(campo));
+    }
+}
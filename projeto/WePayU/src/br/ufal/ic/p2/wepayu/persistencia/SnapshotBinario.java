@@ -0,0 +1,431 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Snapshot binário versionado com todo o estado (empregados e históricos).
+ * É o formato usado nos checkpoints e na inicialização; os CSVs ficam
+ * como formato de importação (quando não há snapshot) e exportação.
+ *
+ * O snapshot fica no diretório dados/ e é particionado:
+ * <ul>
+ *   <li>empregados.bin: atributos de todos os empregados;</li>
+ *   <li>historico-NN.bin: registros de horas, vendas e taxas dos empregados
+ *       cujo id cai no shard NN (hash do id módulo {@link #QTD_SHARDS}).</li>
+ * </ul>
+ * Cada alteração marca como sujo apenas o shard do empregado afetado, então o
+ * checkpoint regrava só o que mudou.
+ *
+ * Na carga os históricos não são lidos: os shards são só percorridos (em paralelo)
+ * para montar o índice empregado -> posição no arquivo, e cada empregado lê o seu
+ * trecho no primeiro acesso às listas. Antes de um shard ser regravado todos os
+ * seus empregados são materializados (a gravação lê as listas), então as posições
+ * pendentes nunca apontam para um arquivo já substituído.
+ *
+ * Cada arquivo guarda no cabeçalho o número do último registro do journal que ele
+ * incorpora (ver {@link Journal}); na reprodução, um REG/VEN/TAX já contido no shard do
+ * empregado é pulado. Os demais registros levam o estado inteiro e podem ser reaplicados.
+ * Por isso empregados.bin é gravado antes dos shards: se o processo cair entre os dois,
+ * um empregado novo já está no mapa quando o registro do seu histórico é reaplicado.
+ *
+ * Layout (big-endian), ambos começando por int magic, int versao, long sequencia:
+ *   empregados.bin: int qtd + (id, nome, endereco, tipo (strings), long salario,
+ *     boolean sindicalizado, idSindicato (string), long taxaSindical,
+ *     double comissao, metodoPagamento, agendaPagamento, banco, agencia, contaCorrente (strings),
+ *     int dataAdmissao, int dataUltimoPagamento (epoch day, Integer.MIN_VALUE para null),
+ *     long taxaSindicalDiaria, long debitoSindicalAcumulado)*
+ *     + int qtdAgendas + (descricao (string))*
+ *   historico-NN.bin: int qtd + (id (string),
+ *     int qtdRegistros + (int epochDay, double normais, double extras)*,
+ *     int qtdVendas + (int epochDay, long valor)*,
+ *     int qtdTaxas + (int epochDay, long valor)*)*
+ * Strings são gravadas como int (tamanho em bytes, -1 para null) seguido de UTF-8.
+ * Valores em dinheiro são centavos. Um arquivo de outra versão não é lido: sem snapshot
+ * válido, o estado é importado do repositório configurado.
+ */
+public class SnapshotBinario {
+
+    public static final int QTD_SHARDS = 16;
+
+    private static final String DIRETORIO = "dados";
+    private static final String EMPREGADOS = "empregados.bin";
+    private static final int MAGIC = 0x57505942; // "WPYB"
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_REGISTRO = 4 + 8 + 8;   // epochDay, normais, extras
+    private static final int TAMANHO_LANCAMENTO = 4 + 8;     // epochDay, valor
+    private static final int SEM_DATA = Integer.MIN_VALUE;
+
+    private static final BitSet shardsSujos = new BitSet(QTD_SHARDS);
+    private static boolean empregadosSujos = false;
+
+    // último registro do journal incorporado por empregados.bin e por cada shard
+    private static long sequenciaEmpregados = 0;
+    private static final long[] sequenciaShards = new long[QTD_SHARDS];
+
+    public static int shard(String empId) {
+        return Math.floorMod(empId.hashCode(), QTD_SHARDS);
+    }
+
+    // ---------- Controle de sujeira ----------
+
+    /** A lista de agendas de pagamento fica em empregados.bin. */
+    public static synchronized void marcarAgendasSujas() {
+        empregadosSujos = true;
+    }
+
+    /** Marca como sujos os atributos do empregado (se atributos) e o shard do seu histórico. */
+    public static synchronized void marcarSujo(String empId, boolean atributos) {
+        if (atributos) empregadosSujos = true;
+        shardsSujos.set(shard(empId));
+    }
+
+    public static synchronized void marcarTudoSujo() {
+        empregadosSujos = true;
+        shardsSujos.set(0, QTD_SHARDS);
+    }
+
+    // ---------- Sequência do journal ----------
+
+    /** Número do último registro do journal incorporado pelo snapshot carregado/gravado. */
+    public static synchronized long getSequencia() {
+        long maior = sequenciaEmpregados;
+        for (long s : sequenciaShards) maior = Math.max(maior, s);
+        return maior;
+    }
+
+    /** Se o registro de número sequencia, que altera o histórico de empId, já está no seu shard. */
+    public static synchronized boolean incorporou(String empId, long sequencia) {
+        return sequencia <= sequenciaShards[shard(empId)];
+    }
+
+    // ---------- Carga ----------
+
+    /**
+     * Carrega o snapshot no mapa de empregados e as descrições das agendas de pagamento
+     * em agendas. Retorna false se não houver snapshot válido.
+     */
+    public static boolean carregar(Map<String, Empregado> empregadosMap, Collection<String> agendas) {
+        Path diretorio = Paths.get(DIRETORIO);
+        zerarSequencias();
+        if (!Files.exists(diretorio.resolve(EMPREGADOS))) return false;
+
+        try {
+            ByteBuffer buf = mapear(diretorio.resolve(EMPREGADOS));
+            long sequencia = sequencia(buf);
+            int qtdEmpregados = buf.getInt();
+            for (int i = 0; i < qtdEmpregados; i++) {
+                Empregado e = lerEmpregado(buf);
+                empregadosMap.put(e.getId(), e);
+            }
+            for (int i = buf.getInt(); i > 0; i--) agendas.add(lerString(buf));
+
+            // Cada empregado pertence a um único shard, então os shards podem
+            // ser indexados em paralelo (o mapa só é lido nessa fase).
+            IntStream.range(0, QTD_SHARDS).parallel().forEach(s -> {
+                Path arquivo = diretorio.resolve(nomeShard(s));
+                if (!Files.exists(arquivo)) return;
+                try {
+                    ByteBuffer shard = mapear(arquivo);
+                    sequenciaShards[s] = sequencia(shard);
+                    indexarShard(arquivo, shard, empregadosMap);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+            synchronized (SnapshotBinario.class) {
+                empregadosSujos = false;
+                shardsSujos.clear();
+                sequenciaEmpregados = sequencia;
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Erro ao carregar snapshot: " + ex.getMessage());
+            empregadosMap.clear();
+            agendas.clear();
+            zerarSequencias();
+            return false;
+        }
+    }
+
+    private static ByteBuffer mapear(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (buf.remaining() < 16 || buf.getInt() != MAGIC) {
+                throw new IOException("Snapshot binario invalido: " + arquivo);
+            }
+            int versao = buf.getInt();
+            if (versao != VERSAO) {
+                throw new IOException("Versao de snapshot nao suportada: " + versao);
+            }
+            buf.getLong();
+            return buf;
+        }
+    }
+
+    /** Sequência do journal gravada no cabeçalho do arquivo já mapeado. */
+    private static long sequencia(ByteBuffer buf) {
+        return buf.getLong(8);
+    }
+
+    private static synchronized void zerarSequencias() {
+        sequenciaEmpregados = 0;
+        Arrays.fill(sequenciaShards, 0);
+    }
+
+    /** Percorre o shard pulando as listas e deixa em cada empregado a posição do seu histórico. */
+    private static void indexarShard(Path arquivo, ByteBuffer buf, Map<String, Empregado> empregadosMap) {
+        int qtd = buf.getInt();
+        for (int i = 0; i < qtd; i++) {
+            Empregado e = empregadosMap.get(lerString(buf));
+
+            int inicio = buf.position();
+            buf.position(inicio + 4 + buf.getInt(inicio) * TAMANHO_REGISTRO);
+            buf.position(buf.position() + 4 + buf.getInt(buf.position()) * TAMANHO_LANCAMENTO);
+            buf.position(buf.position() + 4 + buf.getInt(buf.position()) * TAMANHO_LANCAMENTO);
+            int tamanho = buf.position() - inicio;
+
+            if (e != null) {
+                e.setHistoricoPendente((registros, vendas, taxas) ->
+                        lerHistorico(arquivo, inicio, tamanho, registros, vendas, taxas));
+            }
+        }
+    }
+
+    /** Lê o trecho [posicao, posicao + tamanho) do shard direto para as listas do empregado. */
+    private static void lerHistorico(Path arquivo, long posicao, int tamanho, List<RegistroDeHoras> registros,
+                                     List<Venda> vendas, List<TaxaServico> taxas) {
+        ByteBuffer buf = ByteBuffer.allocate(tamanho);
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (canal.read(buf, posicao + buf.position()) < 0) {
+                    throw new EOFException("Shard truncado: " + arquivo);
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Erro ao carregar historico: " + ex.getMessage());
+            return;
+        }
+        buf.flip();
+
+        int qtdRegistros = buf.getInt();
+        for (int j = 0; j < qtdRegistros; j++) {
+            LocalDate data = LocalDate.ofEpochDay(buf.getInt());
+            registros.add(new RegistroDeHoras(data, buf.getDouble(), buf.getDouble()));
+        }
+
+        int qtdVendas = buf.getInt();
+        for (int j = 0; j < qtdVendas; j++) {
+            LocalDate data = LocalDate.ofEpochDay(buf.getInt());
+            vendas.add(new Venda(data, buf.getLong()));
+        }
+
+        int qtdTaxas = buf.getInt();
+        for (int j = 0; j < qtdTaxas; j++) {
+            LocalDate data = LocalDate.ofEpochDay(buf.getInt());
+            taxas.add(new TaxaServico(data, buf.getLong()));
+        }
+    }
+
+    // ---------- Gravação ----------
+
+    /**
+     * Regrava as partes sujas do snapshot (cada uma via arquivo temporário e move atômico),
+     * marcando-as como contendo o journal até o registro de número sequencia.
+     */
+    public static synchronized void salvar(Map<String, Empregado> empregadosMap, Collection<String> agendas,
+                                           long sequencia) {
+        Path diretorio = Paths.get(DIRETORIO);
+        try {
+            Files.createDirectories(diretorio);
+
+            // Um snapshot incompleto (ex.: primeiro checkpoint) é gravado por inteiro
+            if (!Files.exists(diretorio.resolve(EMPREGADOS))) {
+                marcarTudoSujo();
+            }
+
+            // Antes dos shards (ver a reprodução do journal na documentação da classe)
+            if (empregadosSujos) {
+                gravar(diretorio.resolve(EMPREGADOS), sequencia, out -> {
+                    out.writeInt(empregadosMap.size());
+                    for (Empregado e : empregadosMap.values()) {
+                        escreverEmpregado(out, e);
+                    }
+                    out.writeInt(agendas.size());
+                    for (String agenda : agendas) escreverString(out, agenda);
+                });
+                empregadosSujos = false;
+                sequenciaEmpregados = sequencia;
+            }
+
+            List<List<Empregado>> porShard = new ArrayList<>(QTD_SHARDS);
+            for (int s = 0; s < QTD_SHARDS; s++) porShard.add(new ArrayList<>());
+            if (!shardsSujos.isEmpty()) {
+                for (Empregado e : empregadosMap.values()) {
+                    int s = shard(e.getId());
+                    if (shardsSujos.get(s)) porShard.get(s).add(e);
+                }
+            }
+
+            for (int s = shardsSujos.nextSetBit(0); s >= 0; s = shardsSujos.nextSetBit(s + 1)) {
+                List<Empregado> empregados = porShard.get(s);
+                gravar(diretorio.resolve(nomeShard(s)), sequencia, out -> {
+                    out.writeInt(empregados.size());
+                    for (Empregado e : empregados) {
+                        escreverHistorico(out, e);
+                    }
+                });
+                sequenciaShards[s] = sequencia;
+            }
+            shardsSujos.clear();
+        } catch (IOException ex) {
+            System.err.println("Erro ao salvar snapshot: " + ex.getMessage());
+        }
+    }
+
+    private interface Conteudo {
+        void escrever(DataOutputStream out) throws IOException;
+    }
+
+    private static void gravar(Path arquivo, long sequencia, Conteudo conteudo) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSAO);
+            out.writeLong(sequencia);
+            conteudo.escrever(out);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String nomeShard(int shard) {
+        return String.format("historico-%02d.bin", shard);
+    }
+
+    // ---------- Empregados ----------
+
+    private static Empregado lerEmpregado(ByteBuffer buf) {
+        String id = lerString(buf);
+        String nome = lerString(buf);
+        String endereco = lerString(buf);
+        String tipo = lerString(buf);
+        long salario = buf.getLong();
+        boolean sindicalizado = buf.get() != 0;
+        String idSindicato = lerString(buf);
+        long taxaSindical = buf.getLong();
+        double comissao = buf.getDouble();
+        String metodoPagamento = lerString(buf);
+        String agenda = lerString(buf);
+
+        Empregado e = new Empregado(id, nome, endereco, tipo, salario);
+        e.setSindicalizado(sindicalizado);
+        e.setIdSindicato(idSindicato);
+        e.setTaxaSindical(taxaSindical);
+        e.setComissao(comissao);
+        e.setMetodoPagamento(metodoPagamento);
+        e.setAgendaPagamento(AgendaPagamento.compilar(agenda));
+
+        e.setBanco(lerString(buf));
+        e.setAgencia(lerString(buf));
+        e.setContaCorrente(lerString(buf));
+        e.setDataAdmissao(lerData(buf));
+        e.setDataUltimoPagamento(lerData(buf));
+        e.setTaxaSindicalDiaria(buf.getLong());
+        e.setDebitoSindicalAcumulado(buf.getLong());
+        return e;
+    }
+
+    private static void escreverEmpregado(DataOutputStream out, Empregado e) throws IOException {
+        escreverString(out, e.getId());
+        escreverString(out, e.getNome());
+        escreverString(out, e.getEndereco());
+        escreverString(out, e.getTipo());
+        out.writeLong(e.getSalario());
+        out.writeBoolean(e.getSindicalizado());
+        escreverString(out, e.getIdSindicato());
+        out.writeLong(e.getTaxaSindical());
+        out.writeDouble(e.getComissao());
+        escreverString(out, e.getMetodoPagamento());
+        escreverString(out, e.getAgendaPagamento().getDescricao());
+
+        escreverString(out, e.getBanco());
+        escreverString(out, e.getAgencia());
+        escreverString(out, e.getContaCorrente());
+        escreverData(out, e.getDataAdmissao());
+        escreverData(out, e.getDataUltimoPagamento());
+        out.writeLong(e.getTaxaSindicalDiaria());
+        out.writeLong(e.getDebitoSindicalAcumulado());
+    }
+
+    private static LocalDate lerData(ByteBuffer buf) {
+        int dia = buf.getInt();
+        return dia == SEM_DATA ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    private static void escreverData(DataOutputStream out, LocalDate data) throws IOException {
+        out.writeInt(data == null ? SEM_DATA : (int) data.toEpochDay());
+    }
+
+    private static void escreverHistorico(DataOutputStream out, Empregado e) throws IOException {
+        escreverString(out, e.getId());
+
+        out.writeInt(e.getRegistrosDeHoras().size());
+        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
+            out.writeInt((int) r.getData().toEpochDay());
+            out.writeDouble(r.getHorasNormais());
+            out.writeDouble(r.getHorasExtras());
+        }
+
+        out.writeInt(e.getVendas().size());
+        for (Venda v : e.getVendas()) {
+            out.writeInt((int) v.getData().toEpochDay());
+            out.writeLong(v.getValor());
+        }
+
+        out.writeInt(e.getTaxasServico().size());
+        for (TaxaServico t : e.getTaxasServico()) {
+            out.writeInt((int) t.getData().toEpochDay());
+            out.writeLong(t.getValor());
+        }
+    }
+
+    // ---------- Strings ----------
+
+    private static String lerString(ByteBuffer buf) {
+        int tamanho = buf.getInt();
+        if (tamanho < 0) return null;
+
+        byte[] bytes = new byte[tamanho];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void escreverString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
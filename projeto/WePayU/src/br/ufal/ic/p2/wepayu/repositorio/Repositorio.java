@@ -0,0 +1,75 @@
+package br.ufal.ic.p2.wepayu.repositorio;
+
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Destino de exportação dos dados do sistema: empregados, cartões de ponto, vendas e taxas.
+ * O estado de trabalho fica em memória e é gravado no snapshot binário e no journal; o
+ * repositório é lido na falta do snapshot (importação) e recebe, a cada commit, o que
+ * mudou. Um repositório em dia com o snapshot pode também fornecer o histórico dos
+ * empregados sob demanda (ver {@link #anexarHistoricos(Map, long)}). Os serviços não
+ * sabem onde os dados ficam: o
+ * {@link br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia} faz a entrega.
+ *
+ * Implementações:
+ * <ul>
+ *   <li>{@link RepositorioCsv}: os arquivos empregados.csv, registros.csv, vendas.csv e taxas.csv (padrão);</li>
+ *   <li>{@link RepositorioJdbc}: banco embarcado em arquivo (H2, SQLite...) acessado por JDBC,
+ *       com atualização só das linhas alteradas e consultas por intervalo pelo índice.</li>
+ * </ul>
+ * A escolha é feita pela propriedade de sistema wepayu.repositorio: "csv" ou uma URL JDBC
+ * (ex.: jdbc:h2:./wepayu, com lib/h2-2.2.224.jar, ou jdbc:sqlite:wepayu.db, com o driver
+ * no classpath).
+ */
+public interface Repositorio {
+
+    /** Acrescenta ao mapa os empregados gravados, com seus históricos (ou carregadores deles). */
+    void carregar(Map<String, Empregado> empregados);
+
+    /**
+     * Grava as alterações pendentes até o registro de número sequencia do journal. Os
+     * arquivos em inteiros são regravados por completo; dos demais, só as linhas dos
+     * empregados listados em alterados: os dias indicados ou, se o conjunto for null,
+     * todas as linhas do empregado (ids ausentes do mapa foram removidos).
+     */
+    void salvar(Map<String, Empregado> empregados, Set<Arquivo> inteiros,
+                Map<Arquivo, Map<String, Set<LocalDate>>> alterados, long sequencia);
+
+    /**
+     * Se o último commit gravado é o de número sequencia (o mesmo do snapshot carregado),
+     * troca o histórico pendente dos empregados por um lido deste repositório, que também
+     * responde às somas por intervalo sem trazê-lo para a memória, e devolve true. Senão
+     * (ou se o repositório não sabe fazer isso) não muda nada e devolve false.
+     */
+    default boolean anexarHistoricos(Map<String, Empregado> empregados, long sequencia) {
+        return false;
+    }
+
+    void fechar();
+
+    /**
+     * Arquivos em disco onde o repositório grava, copiados pelo backup no encerramento.
+     * Vazio se os dados não ficam num arquivo local (banco em memória ou em servidor).
+     */
+    List<Path> arquivos();
+
+    /** Cria o repositório configurado em wepayu.repositorio (CSV se não houver). */
+    static Repositorio configurado() {
+        String url = System.getProperty("wepayu.repositorio", "csv");
+        if (url.startsWith("jdbc:")) {
+            try {
+                return new RepositorioJdbc(url);
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao abrir banco (" + url + "), usando CSV: " + e.getMessage());
+            }
+        }
+        return new RepositorioCsv();
+    }
+}
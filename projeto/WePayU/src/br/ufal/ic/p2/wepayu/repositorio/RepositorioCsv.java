@@ -0,0 +1,251 @@
+package br.ufal.ic.p2.wepayu.repositorio;
+
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.persistencia.EscritorCsv;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Repositório nos arquivos CSV (separados por ';'), um por tipo de dado.
+ * CSV não permite atualizar uma linha no lugar: qualquer alteração regrava o arquivo
+ * inteiro.
+ */
+public class RepositorioCsv implements Repositorio {
+
+    private static final Path EMPREGADOS = Paths.get("empregados.csv");
+    private static final Path REGISTROS = Paths.get("registros.csv");
+    private static final Path VENDAS = Paths.get("vendas.csv");
+    private static final Path TAXAS = Paths.get("taxas.csv");
+
+    @Override
+    public List<Path> arquivos() {
+        return Arrays.asList(EMPREGADOS, REGISTROS, VENDAS, TAXAS);
+    }
+
+    // ---------- Carga ----------
+
+    @Override
+    public void carregar(Map<String, Empregado> empregados) {
+        carregarEmpregados(empregados);
+        carregarRegistros(empregados);
+        carregarVendas(empregados);
+        carregarTaxas(empregados);
+    }
+
+    private void carregarEmpregados(Map<String, Empregado> empregados) {
+        if (!Files.exists(EMPREGADOS)) return;
+
+        try (LeitorCsv csv = new LeitorCsv(EMPREGADOS)) {
+            while (csv.proximaLinha()) {
+                if (csv.campos() < 10) continue; // garante que tenha todos os campos
+
+                Empregado e = lerEmpregado(csv, 0);
+                empregados.put(e.getId(), e);
+            }
+        } catch (IOException | NumberFormatException ex) {
+            System.err.println("Erro ao carregar empregados: " + ex.getMessage());
+        }
+    }
+
+    private void carregarRegistros(Map<String, Empregado> empregados) {
+        if (!Files.exists(REGISTROS)) return;
+
+        try (LeitorCsv csv = new LeitorCsv(REGISTROS)) {
+            while (csv.proximaLinha()) {
+                if (csv.campos() != 4) continue; // id;data;normais;extras
+
+                Empregado e = empregados.get(csv.texto(0));
+                if (e != null) {
+                    LocalDate data = LocalDate.ofEpochDay(csv.data(1));
+                    e.addRegistroDeHoras(new RegistroDeHoras(data, csv.real(2), csv.real(3)));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Erro ao carregar registros: " + e.getMessage());
+        }
+    }
+
+    private void carregarVendas(Map<String, Empregado> empregados) {
+        if (!Files.exists(VENDAS)) return;
+
+        try (LeitorCsv csv = new LeitorCsv(VENDAS)) {
+            while (csv.proximaLinha()) {
+                if (csv.campos() != 3) continue; // id;data;valor
+
+                Empregado e = empregados.get(csv.texto(0));
+                if (e != null) {
+                    LocalDate data = LocalDate.ofEpochDay(csv.data(1));
+                    e.addVenda(new Venda(data, csv.decimal(2, 2)));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao carregar vendas: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.err.println("Erro ao processar linha de venda: " + e.getMessage());
+        }
+    }
+
+    private void carregarTaxas(Map<String, Empregado> empregados) {
+        if (!Files.exists(TAXAS)) return;
+
+        Map<String, Empregado> porSindicato = indicePorSindicato(empregados);
+        try (LeitorCsv csv = new LeitorCsv(TAXAS)) {
+            while (csv.proximaLinha()) {
+                if (csv.campos() != 3) continue; // idSindicato;data;valor
+
+                Empregado e = porSindicato.get(csv.texto(0));
+                if (e != null) {
+                    LocalDate data = LocalDate.ofEpochDay(csv.data(1));
+                    e.addTaxaServico(new TaxaServico(data, csv.decimal(2, 2)));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Erro ao carregar taxas: " + e.getMessage());
+        }
+    }
+
+    /** Monta um empregado a partir dos campos de empregados.csv (ou do journal) a partir de primeiro. */
+    public static Empregado lerEmpregado(LeitorCsv csv, int primeiro) {
+        String id = csv.texto(primeiro);
+        String nome = csv.texto(primeiro + 1);
+        String endereco = csv.texto(primeiro + 2);
+        String tipo = csv.texto(primeiro + 3);
+        long salario = csv.decimal(primeiro + 4, 2);
+        boolean sindicalizado = csv.logico(primeiro + 5);
+        String idSindicato = csv.textoOuNulo(primeiro + 6);
+        long taxaSindical = csv.decimal(primeiro + 7, 2);
+        double comissao = csv.decimal(primeiro + 8, 2) / 100.0;
+        String metodoDePagamento = csv.textoOuNulo(primeiro + 9);
+        // arquivos anteriores às agendas não têm a coluna: fica a agenda padrão do tipo
+        String agenda = csv.campos() > primeiro + 10 ? csv.textoOuNulo(primeiro + 10) : null;
+
+        Empregado e = new Empregado(id, nome, endereco, tipo, salario);
+        e.setSindicalizado(sindicalizado);
+        e.setIdSindicato(idSindicato);
+        e.setTaxaSindical(taxaSindical);
+        e.setComissao(comissao);
+        e.setMetodoPagamento(metodoDePagamento);
+        if (agenda != null) e.setAgendaPagamento(AgendaPagamento.compilar(agenda));
+        return e;
+    }
+
+    // ---------- Gravação ----------
+
+    @Override
+    public void salvar(Map<String, Empregado> empregados, Set<Arquivo> inteiros,
+                       Map<Arquivo, Map<String, Set<LocalDate>>> alterados, long sequencia) {
+        EnumSet<Arquivo> regravar = EnumSet.noneOf(Arquivo.class);
+        regravar.addAll(inteiros);
+        regravar.addAll(alterados.keySet());
+
+        for (Arquivo arquivo : regravar) {
+            switch (arquivo) {
+                case EMPREGADOS: salvarEmpregados(empregados); break;
+                case REGISTROS: salvarRegistros(empregados); break;
+                case VENDAS: salvarVendas(empregados); break;
+                case TAXAS: salvarTaxas(empregados); break;
+            }
+        }
+    }
+
+    private void salvarEmpregados(Map<String, Empregado> empregados) {
+        try (EscritorCsv csv = new EscritorCsv(EMPREGADOS)) {
+            for (Empregado e : empregados.values()) {
+                csv.texto(e.getId())
+                        .texto(e.getNome())
+                        .texto(e.getEndereco())
+                        .texto(e.getTipo())
+                        .decimal(e.getSalario(), 2)
+                        .logico(e.getSindicalizado())
+                        .texto(e.getIdSindicato())
+                        .decimal(e.getTaxaSindical(), 2)
+                        .decimal(e.getComissao(), 2)
+                        .texto(e.getMetodoPagamento())
+                        .texto(e.getAgendaPagamento().getDescricao())
+                        .fimLinha();
+            }
+        } catch (IOException ex) {
+            System.err.println("Erro ao salvar empregados: " + ex.getMessage());
+        }
+    }
+
+    private void salvarRegistros(Map<String, Empregado> empregados) {
+        try (EscritorCsv csv = new EscritorCsv(REGISTROS)) {
+            for (Map.Entry<String, Empregado> entry : empregados.entrySet()) {
+                String empId = entry.getKey();
+                for (RegistroDeHoras r : entry.getValue().getRegistrosDeHoras()) {
+                    csv.texto(empId)
+                            .data((int) r.getData().toEpochDay())
+                            .real(r.getHorasNormais())
+                            .real(r.getHorasExtras())
+                            .fimLinha();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar registros: " + e.getMessage());
+        }
+    }
+
+    private void salvarVendas(Map<String, Empregado> empregados) {
+        try (EscritorCsv csv = new EscritorCsv(VENDAS)) {
+            for (Map.Entry<String, Empregado> entry : empregados.entrySet()) {
+                for (Venda v : entry.getValue().getVendas()) {
+                    csv.texto(entry.getKey())
+                            .data((int) v.getData().toEpochDay())
+                            .decimal(v.getValor(), 2)
+                            .fimLinha();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar vendas: " + e.getMessage());
+        }
+    }
+
+    private void salvarTaxas(Map<String, Empregado> empregados) {
+        try (EscritorCsv csv = new EscritorCsv(TAXAS)) {
+            for (Empregado e : empregados.values()) {
+                for (TaxaServico t : e.getTaxasServico()) {
+                    // Salva pelo id do sindicato (ou pelo nome, se não houver)
+                    csv.texto(chaveTaxa(e))
+                            .data((int) t.getData().toEpochDay())
+                            .decimal(t.getValor(), 2)
+                            .fimLinha();
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Erro ao salvar taxas: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void fechar() {
+        // nada a liberar: os arquivos são abertos e fechados a cada operação
+    }
+
+    // ---------- Auxiliares ----------
+
+    private static String chaveTaxa(Empregado e) {
+        return e.getIdSindicato() != null ? e.getIdSindicato() : e.getNome();
+    }
+
+    private static Map<String, Empregado> indicePorSindicato(Map<String, Empregado> empregados) {
+        Map<String, Empregado> indice = new HashMap<>();
+        for (Empregado e : empregados.values()) {
+            if (e.getSindicalizado()) {
+                indice.putIfAbsent(e.getIdSindicato(), e);
+            }
+        }
+        return indice;
+    }
+}
@@ -0,0 +1,533 @@
+package br.ufal.ic.p2.wepayu.repositorio;
+
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.util.HistoricoPorData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositório num banco embarcado de arquivo único (H2, SQLite ou outro com driver JDBC
+ * no classpath), sem servidor. O histórico de cada empregado carregado do banco fica nele
+ * até ser alterado: as somas por intervalo (horas, vendas, taxas) saem de consultas pelo
+ * índice (emp_id, data), sem trazer as linhas para a memória. Cada commit roda numa
+ * transação e só toca as linhas alteradas: o empregado (UPDATE pela chave) e, no
+ * histórico, os dias alterados.
+ *
+ * Datas são gravadas como epoch day (INTEGER) para o esquema funcionar igual em bancos
+ * sem tipo DATE; dinheiro em centavos (BIGINT); linha é a ordem de lançamento no
+ * histórico do empregado, que o undo usa. A tabela controle guarda a sequência do
+ * journal do último commit, comparada com a do snapshot em {@link #anexarHistoricos}.
+ */
+public class RepositorioJdbc implements Repositorio {
+
+    private static final String[] ESQUEMA = {
+            "CREATE TABLE IF NOT EXISTS empregados (id VARCHAR(32) PRIMARY KEY, nome VARCHAR(255),"
+                    + " endereco VARCHAR(255), tipo VARCHAR(32), salario BIGINT, sindicalizado BOOLEAN,"
+                    + " id_sindicato VARCHAR(64), taxa_sindical BIGINT, comissao DOUBLE PRECISION,"
+                    + " metodo_pagamento VARCHAR(32), agenda_pagamento VARCHAR(32), banco VARCHAR(255),"
+                    + " agencia VARCHAR(64), conta_corrente VARCHAR(64), data_admissao INTEGER,"
+                    + " data_ultimo_pagamento INTEGER, taxa_sindical_diaria BIGINT, debito_sindical BIGINT)",
+            "CREATE TABLE IF NOT EXISTS registros (emp_id VARCHAR(32), data INTEGER, linha INTEGER,"
+                    + " horas_normais DOUBLE PRECISION, horas_extras DOUBLE PRECISION)",
+            "CREATE TABLE IF NOT EXISTS vendas (emp_id VARCHAR(32), data INTEGER, linha INTEGER, valor BIGINT)",
+            "CREATE TABLE IF NOT EXISTS taxas (emp_id VARCHAR(32), data INTEGER, linha INTEGER, valor BIGINT)",
+            "CREATE TABLE IF NOT EXISTS controle (chave VARCHAR(32) PRIMARY KEY, valor BIGINT)",
+            "CREATE INDEX IF NOT EXISTS registros_emp_data ON registros (emp_id, data)",
+            "CREATE INDEX IF NOT EXISTS vendas_emp_data ON vendas (emp_id, data)",
+            "CREATE INDEX IF NOT EXISTS taxas_emp_data ON taxas (emp_id, data)"
+    };
+
+    // colunas de empregados depois do id, na ordem de preencherEmpregado
+    private static final String ATRIBUTOS = "nome, endereco, tipo, salario, sindicalizado, id_sindicato,"
+            + " taxa_sindical, comissao, metodo_pagamento, agenda_pagamento, banco, agencia, conta_corrente,"
+            + " data_admissao, data_ultimo_pagamento, taxa_sindical_diaria, debito_sindical";
+    private static final int QTD_ATRIBUTOS = 17;
+
+    private static final Arquivo[] HISTORICO = {Arquivo.REGISTROS, Arquivo.VENDAS, Arquivo.TAXAS};
+
+    private final Connection conexao;
+    private final String url;
+    private final Set<String> historicoNoBanco = ConcurrentHashMap.newKeySet(); // ainda não lido para a memória
+
+    public RepositorioJdbc(String url) {
+        this.url = url;
+        try {
+            conexao = DriverManager.getConnection(url);
+            try (Statement st = conexao.createStatement()) {
+                for (String ddl : ESQUEMA) {
+                    st.execute(ddl);
+                }
+            }
+            conexao.setAutoCommit(false);
+            conexao.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Nao foi possivel abrir o banco: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Carga ----------
+
+    /** Carrega os atributos dos empregados; o histórico de cada um é lido do banco sob demanda. */
+    @Override
+    public synchronized void carregar(Map<String, Empregado> empregados) {
+        try (Statement st = conexao.createStatement();
+             // ids idN em ordem de criação, a mesma em que o mapa foi preenchido originalmente
+             ResultSet rs = st.executeQuery("SELECT id, " + ATRIBUTOS + " FROM empregados ORDER BY LENGTH(id), id")) {
+            while (rs.next()) {
+                Empregado e = new Empregado(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getLong(5));
+                e.setSindicalizado(rs.getBoolean(6));
+                e.setIdSindicato(rs.getString(7));
+                e.setTaxaSindical(rs.getLong(8));
+                e.setComissao(rs.getDouble(9));
+                e.setMetodoPagamento(rs.getString(10));
+                if (rs.getString(11) != null) e.setAgendaPagamento(AgendaPagamento.compilar(rs.getString(11)));
+                e.setBanco(rs.getString(12));
+                e.setAgencia(rs.getString(13));
+                e.setContaCorrente(rs.getString(14));
+                e.setDataAdmissao(lerData(rs, 15));
+                e.setDataUltimoPagamento(lerData(rs, 16));
+                e.setTaxaSindicalDiaria(rs.getLong(17));
+                e.setDebitoSindicalAcumulado(rs.getLong(18));
+                empregados.put(e.getId(), e);
+                anexar(e);
+            }
+            conexao.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao carregar do banco: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized boolean anexarHistoricos(Map<String, Empregado> empregados, long sequencia) {
+        if (getSequencia() != sequencia) return false;
+        for (Empregado e : empregados.values()) {
+            anexar(e);
+        }
+        return true;
+    }
+
+    private void anexar(Empregado e) {
+        historicoNoBanco.add(e.getId());
+        e.setHistoricoPendente(new HistoricoNoBanco(e.getId()));
+    }
+
+    /** Se o histórico do empregado ainda não foi lido do banco para a memória. */
+    boolean historicoNoBanco(String empId) {
+        return historicoNoBanco.contains(empId);
+    }
+
+    /** Sequência do journal gravada pelo último commit, ou -1 se o banco nunca recebeu um. */
+    synchronized long getSequencia() {
+        try (Statement st = conexao.createStatement();
+             ResultSet rs = st.executeQuery("SELECT valor FROM controle WHERE chave = 'sequencia'")) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao consultar o banco: " + e.getMessage(), e);
+        }
+    }
+
+    /** Histórico de um empregado que ainda está só no banco. */
+    private class HistoricoNoBanco implements Empregado.ConsultaHistorico {
+        private final String empId;
+
+        HistoricoNoBanco(String empId) {
+            this.empId = empId;
+        }
+
+        @Override
+        public void carregar(List<RegistroDeHoras> registros, List<Venda> vendas, List<TaxaServico> taxas) {
+            registros.addAll(buscarRegistros(empId, LocalDate.MIN, LocalDate.MAX));
+            vendas.addAll(buscarVendas(empId, LocalDate.MIN, LocalDate.MAX));
+            taxas.addAll(buscarTaxas(empId, LocalDate.MIN, LocalDate.MAX));
+            historicoNoBanco.remove(empId);
+        }
+
+        @Override
+        public boolean temRegistrosDeHoras() {
+            return possuiRegistros(empId);
+        }
+
+        @Override
+        public long[] somarHoras(LocalDate inicio, LocalDate fim) {
+            long[] soma = new long[2];
+            for (RegistroDeHoras r : buscarRegistros(empId, inicio, fim)) {
+                soma[0] += RegistroDeHoras.emMilionesimos(r.getHorasNormais());
+                soma[1] += RegistroDeHoras.emMilionesimos(r.getHorasExtras());
+            }
+            return soma;
+        }
+
+        @Override
+        public long somarVendas(LocalDate inicio, LocalDate fim) {
+            return somar("vendas", empId, inicio, fim);
+        }
+
+        @Override
+        public long somarTaxas(LocalDate inicio, LocalDate fim) {
+            return somar("taxas", empId, inicio, fim);
+        }
+    }
+
+    // ---------- Consultas por intervalo ----------
+
+    /** Cartões de ponto do empregado com data em [inicio, fim), na ordem de lançamento. */
+    public synchronized List<RegistroDeHoras> buscarRegistros(String empId, LocalDate inicio, LocalDate fim) {
+        List<RegistroDeHoras> registros = new ArrayList<>();
+        consultar("SELECT data, horas_normais, horas_extras FROM registros"
+                        + " WHERE emp_id = ? AND data >= ? AND data < ? ORDER BY linha", empId, inicio, fim,
+                rs -> registros.add(new RegistroDeHoras(LocalDate.ofEpochDay(rs.getInt(1)),
+                        rs.getDouble(2), rs.getDouble(3))));
+        return registros;
+    }
+
+    /** Vendas do empregado com data em [inicio, fim), na ordem de lançamento. */
+    public synchronized List<Venda> buscarVendas(String empId, LocalDate inicio, LocalDate fim) {
+        List<Venda> vendas = new ArrayList<>();
+        consultar("SELECT data, valor FROM vendas WHERE emp_id = ? AND data >= ? AND data < ? ORDER BY linha",
+                empId, inicio, fim, rs -> vendas.add(new Venda(LocalDate.ofEpochDay(rs.getInt(1)), rs.getLong(2))));
+        return vendas;
+    }
+
+    /** Taxas de serviço do empregado com data em [inicio, fim), na ordem de lançamento. */
+    public synchronized List<TaxaServico> buscarTaxas(String empId, LocalDate inicio, LocalDate fim) {
+        List<TaxaServico> taxas = new ArrayList<>();
+        consultar("SELECT data, valor FROM taxas WHERE emp_id = ? AND data >= ? AND data < ? ORDER BY linha",
+                empId, inicio, fim, rs -> taxas.add(new TaxaServico(LocalDate.ofEpochDay(rs.getInt(1)), rs.getLong(2))));
+        return taxas;
+    }
+
+    private synchronized boolean possuiRegistros(String empId) {
+        boolean[] possui = {false};
+        consultar("SELECT COUNT(*) FROM registros WHERE emp_id = ? AND data >= ? AND data < ?",
+                empId, LocalDate.MIN, LocalDate.MAX, rs -> possui[0] = rs.getLong(1) > 0);
+        return possui[0];
+    }
+
+    /** Soma em centavos da coluna valor da tabela, pelo índice (emp_id, data). */
+    private synchronized long somar(String tabela, String empId, LocalDate inicio, LocalDate fim) {
+        long[] soma = {0};
+        consultar("SELECT SUM(valor) FROM " + tabela + " WHERE emp_id = ? AND data >= ? AND data < ?",
+                empId, inicio, fim, rs -> soma[0] = rs.getLong(1));
+        return soma[0];
+    }
+
+    private interface Linha {
+        void ler(ResultSet rs) throws SQLException;
+    }
+
+    private void consultar(String sql, String empId, LocalDate inicio, LocalDate fim, Linha linha) {
+        try (PreparedStatement ps = conexao.prepareStatement(sql)) {
+            ps.setString(1, empId);
+            ps.setInt(2, epochDay(inicio));
+            ps.setInt(3, epochDay(fim));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    linha.ler(rs);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao consultar o banco: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- Gravação ----------
+
+    @Override
+    public void salvar(Map<String, Empregado> empregados, Set<Arquivo> inteiros,
+                       Map<Arquivo, Map<String, Set<LocalDate>>> alterados, long sequencia) {
+        // Histórico que ainda está só no banco é lido antes de as linhas dele serem trocadas
+        for (Arquivo arquivo : HISTORICO) {
+            if (inteiros.contains(arquivo)) {
+                materializar(empregados, historicoNoBanco);
+            } else if (alterados.containsKey(arquivo)) {
+                materializar(empregados, alterados.get(arquivo).keySet());
+            }
+        }
+
+        synchronized (this) {
+            try {
+                for (Arquivo arquivo : Arquivo.values()) {
+                    if (inteiros.contains(arquivo)) {
+                        try (Statement st = conexao.createStatement()) {
+                            st.executeUpdate("DELETE FROM " + tabela(arquivo));
+                        }
+                        inserir(arquivo, empregados.values());
+                    } else if (alterados.containsKey(arquivo)) {
+                        atualizar(arquivo, empregados, alterados.get(arquivo));
+                    }
+                }
+                gravarSequencia(sequencia);
+                conexao.commit();
+            } catch (SQLException e) {
+                try {
+                    conexao.rollback();
+                } catch (SQLException falhaRollback) {
+                    e.addSuppressed(falhaRollback);
+                }
+                throw new RuntimeException("Erro ao salvar no banco: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void materializar(Map<String, Empregado> empregados, Collection<String> ids) {
+        for (String id : new ArrayList<>(ids)) {
+            Empregado e = empregados.get(id);
+            if (e != null) e.getRegistrosDeHoras();
+        }
+    }
+
+    private void atualizar(Arquivo arquivo, Map<String, Empregado> empregados, Map<String, Set<LocalDate>> ids)
+            throws SQLException {
+        if (arquivo == Arquivo.EMPREGADOS) {
+            atualizarEmpregados(empregados, ids.keySet());
+            return;
+        }
+
+        List<Empregado> inteiros = new ArrayList<>();
+        try (PreparedStatement porEmpregado = conexao.prepareStatement(
+                "DELETE FROM " + tabela(arquivo) + " WHERE emp_id = ?");
+             PreparedStatement porDia = conexao.prepareStatement(
+                     "DELETE FROM " + tabela(arquivo) + " WHERE emp_id = ? AND data = ?")) {
+            for (Map.Entry<String, Set<LocalDate>> alterado : ids.entrySet()) {
+                Empregado e = empregados.get(alterado.getKey());
+                if (alterado.getValue() == null || e == null) {
+                    porEmpregado.setString(1, alterado.getKey());
+                    porEmpregado.addBatch();
+                    if (e != null) inteiros.add(e);
+                } else {
+                    for (LocalDate dia : alterado.getValue()) {
+                        porDia.setString(1, alterado.getKey());
+                        porDia.setInt(2, epochDay(dia));
+                        porDia.addBatch();
+                    }
+                }
+            }
+            porEmpregado.executeBatch();
+            porDia.executeBatch();
+        }
+
+        inserir(arquivo, inteiros);
+        try (PreparedStatement ps = conexao.prepareStatement(insercao(arquivo))) {
+            for (Map.Entry<String, Set<LocalDate>> alterado : ids.entrySet()) {
+                Empregado e = empregados.get(alterado.getKey());
+                if (alterado.getValue() == null || e == null) continue;
+                HistoricoPorData<?> historico = historico(arquivo, e);
+                for (LocalDate dia : alterado.getValue()) {
+                    for (int linha : historico.linhasDoDia(dia)) {
+                        adicionarLinha(ps, arquivo, e.getId(), linha, historico.get(linha));
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** UPDATE pela chave; INSERT se o empregado é novo; removidos perdem também o histórico. */
+    private void atualizarEmpregados(Map<String, Empregado> empregados, Set<String> ids) throws SQLException {
+        List<Empregado> novos = new ArrayList<>();
+        try (PreparedStatement ps = conexao.prepareStatement("UPDATE empregados SET "
+                + ATRIBUTOS.replace(",", " = ?,") + " = ? WHERE id = ?")) {
+            for (String id : ids) {
+                Empregado e = empregados.get(id);
+                if (e == null) continue;
+                preencherEmpregado(ps, e, 1);
+                ps.setString(QTD_ATRIBUTOS + 1, id);
+                if (ps.executeUpdate() == 0) novos.add(e);
+            }
+        }
+        inserir(Arquivo.EMPREGADOS, novos);
+
+        for (Arquivo arquivo : Arquivo.values()) {
+            try (PreparedStatement ps = conexao.prepareStatement(
+                    "DELETE FROM " + tabela(arquivo) + " WHERE " + chave(arquivo) + " = ?")) {
+                for (String id : ids) {
+                    if (empregados.containsKey(id)) continue;
+                    ps.setString(1, id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private void inserir(Arquivo arquivo, Collection<Empregado> empregados) throws SQLException {
+        try (PreparedStatement ps = conexao.prepareStatement(insercao(arquivo))) {
+            for (Empregado e : empregados) {
+                if (arquivo == Arquivo.EMPREGADOS) {
+                    ps.setString(1, e.getId());
+                    preencherEmpregado(ps, e, 2);
+                    ps.addBatch();
+                    continue;
+                }
+                HistoricoPorData<?> historico = historico(arquivo, e);
+                for (int linha = 0; linha < historico.size(); linha++) {
+                    adicionarLinha(ps, arquivo, e.getId(), linha, historico.get(linha));
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static String insercao(Arquivo arquivo) {
+        switch (arquivo) {
+            case EMPREGADOS:
+                return "INSERT INTO empregados (id, " + ATRIBUTOS + ") VALUES (?"
+                        + ", ?".repeat(QTD_ATRIBUTOS) + ")";
+            case REGISTROS:
+                return "INSERT INTO registros (emp_id, data, linha, horas_normais, horas_extras) VALUES (?, ?, ?, ?, ?)";
+            default:
+                return "INSERT INTO " + tabela(arquivo) + " (emp_id, data, linha, valor) VALUES (?, ?, ?, ?)";
+        }
+    }
+
+    /** Atributos do empregado (colunas de ATRIBUTOS), a partir do parâmetro de número primeiro. */
+    private static void preencherEmpregado(PreparedStatement ps, Empregado e, int primeiro) throws SQLException {
+        ps.setString(primeiro, e.getNome());
+        ps.setString(primeiro + 1, e.getEndereco());
+        ps.setString(primeiro + 2, e.getTipo());
+        ps.setLong(primeiro + 3, e.getSalario());
+        ps.setBoolean(primeiro + 4, e.getSindicalizado());
+        ps.setString(primeiro + 5, e.getIdSindicato());
+        ps.setLong(primeiro + 6, e.getTaxaSindical());
+        ps.setDouble(primeiro + 7, e.getComissao());
+        ps.setString(primeiro + 8, e.getMetodoPagamento());
+        ps.setString(primeiro + 9, e.getAgendaPagamento().getDescricao());
+        ps.setString(primeiro + 10, e.getBanco());
+        ps.setString(primeiro + 11, e.getAgencia());
+        ps.setString(primeiro + 12, e.getContaCorrente());
+        gravarData(ps, primeiro + 13, e.getDataAdmissao());
+        gravarData(ps, primeiro + 14, e.getDataUltimoPagamento());
+        ps.setLong(primeiro + 15, e.getTaxaSindicalDiaria());
+        ps.setLong(primeiro + 16, e.getDebitoSindicalAcumulado());
+    }
+
+    private static LocalDate lerData(ResultSet rs, int coluna) throws SQLException {
+        int dia = rs.getInt(coluna);
+        return rs.wasNull() ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    private static void gravarData(PreparedStatement ps, int parametro, LocalDate data) throws SQLException {
+        if (data == null) ps.setNull(parametro, Types.INTEGER);
+        else ps.setInt(parametro, epochDay(data));
+    }
+
+    private static void adicionarLinha(PreparedStatement ps, Arquivo arquivo, String empId, int linha, Object item)
+            throws SQLException {
+        ps.setString(1, empId);
+        ps.setInt(3, linha);
+        switch (arquivo) {
+            case REGISTROS:
+                RegistroDeHoras r = (RegistroDeHoras) item;
+                ps.setInt(2, epochDay(r.getData()));
+                ps.setDouble(4, r.getHorasNormais());
+                ps.setDouble(5, r.getHorasExtras());
+                break;
+            case VENDAS:
+                Venda v = (Venda) item;
+                ps.setInt(2, epochDay(v.getData()));
+                ps.setLong(4, v.getValor());
+                break;
+            default:
+                TaxaServico t = (TaxaServico) item;
+                ps.setInt(2, epochDay(t.getData()));
+                ps.setLong(4, t.getValor());
+                break;
+        }
+        ps.addBatch();
+    }
+
+    private void gravarSequencia(long sequencia) throws SQLException {
+        try (PreparedStatement ps = conexao.prepareStatement("UPDATE controle SET valor = ? WHERE chave = 'sequencia'")) {
+            ps.setLong(1, sequencia);
+            if (ps.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ps = conexao.prepareStatement("INSERT INTO controle (chave, valor) VALUES ('sequencia', ?)")) {
+            ps.setLong(1, sequencia);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void fechar() {
+        try {
+            conexao.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar banco: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<Path> arquivos() {
+        return arquivosDaUrl(url);
+    }
+
+    /**
+     * Arquivo do banco indicado pela URL: jdbc:sqlite:caminho e jdbc:h2:caminho (que o H2
+     * grava em caminho.mv.db), com ou sem o prefixo file: e os parâmetros da URL.
+     * Bancos em memória, em servidor ou de outros drivers não têm arquivo conhecido.
+     */
+    static List<Path> arquivosDaUrl(String url) {
+        if (url.startsWith("jdbc:sqlite:")) {
+            String caminho = semPrefixoFile(url.substring("jdbc:sqlite:".length()));
+            int parametros = caminho.indexOf('?');
+            if (parametros >= 0) caminho = caminho.substring(0, parametros);
+            if (caminho.isEmpty() || caminho.equals(":memory:")) return Collections.emptyList();
+            return Collections.singletonList(Paths.get(caminho));
+        }
+        if (url.startsWith("jdbc:h2:")) {
+            String caminho = semPrefixoFile(url.substring("jdbc:h2:".length()));
+            int parametros = caminho.indexOf(';');
+            if (parametros >= 0) caminho = caminho.substring(0, parametros);
+            if (caminho.isEmpty() || caminho.startsWith("mem:") || caminho.startsWith("tcp:")
+                    || caminho.startsWith("ssl:") || caminho.startsWith("zip:")) {
+                return Collections.emptyList();
+            }
+            if (caminho.startsWith("~")) caminho = System.getProperty("user.home") + caminho.substring(1);
+            return Collections.singletonList(Paths.get(caminho + ".mv.db"));
+        }
+        return Collections.emptyList();
+    }
+
+    private static String semPrefixoFile(String caminho) {
+        return caminho.startsWith("file:") ? caminho.substring("file:".length()) : caminho;
+    }
+
+    // ---------- Auxiliares ----------
+
+    private static HistoricoPorData<?> historico(Arquivo arquivo, Empregado e) {
+        switch (arquivo) {
+            case REGISTROS: return e.getRegistrosDeHoras();
+            case VENDAS: return e.getVendas();
+            default: return e.getTaxasServico();
+        }
+    }
+
+    private static String tabela(Arquivo arquivo) {
+        switch (arquivo) {
+            case EMPREGADOS: return "empregados";
+            case REGISTROS: return "registros";
+            case VENDAS: return "vendas";
+            default: return "taxas";
+        }
+    }
+
+    private static String chave(Arquivo arquivo) {
+        return arquivo == Arquivo.EMPREGADOS ? "id" : "emp_id";
+    }
+
+    /** Epoch day limitado ao intervalo de int (LocalDate.MIN/MAX nas consultas). */
+    private static int epochDay(LocalDate d) {
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE - 1, d.toEpochDay()));
+    }
+}
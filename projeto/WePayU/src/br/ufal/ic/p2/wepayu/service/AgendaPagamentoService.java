@@ -0,0 +1,153 @@
+package br.ufal.ic.p2.wepayu.service;
+
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Agendas de pagamento disponíveis e os empregados de cada uma. Os empregados ficam
+ * em baldes por agenda, mantidos pelo {@link EmpregadosService} junto com o índice de
+ * sindicato, então saber quem recebe numa data custa O(agendas + pagos), sem percorrer
+ * todos os empregados. Criar uma agenda e descartar as criadas (zerarSistema) são
+ * registrados no undo; {@link #descartar} e {@link #disponibilizar} são os inversos.
+ */
+public class AgendaPagamentoService {
+    private final Map<String, AgendaPagamento> disponiveis = new LinkedHashMap<>(); // descrição -> agenda
+    private final Map<AgendaPagamento, Set<Empregado>> baldes = new LinkedHashMap<>();
+    private final Map<Empregado, AgendaPagamento> agendaIndexada = new HashMap<>(); // balde em que cada um está
+
+    public AgendaPagamentoService() {
+        disponibilizarPadrao();
+    }
+
+    private static final AgendaPagamento[] PADRAO = {AgendaPagamento.SEMANAL, AgendaPagamento.MENSAL,
+            AgendaPagamento.QUINZENAL};
+
+    private void disponibilizarPadrao() {
+        for (AgendaPagamento a : PADRAO) {
+            disponiveis.put(a.getDescricao(), a);
+        }
+    }
+
+    // ---------- Agendas ----------
+
+    public void criarAgenda(String descricao) {
+        AgendaPagamento agenda = AgendaPagamento.compilar(descricao);
+        if (disponiveis.containsKey(agenda.getDescricao())) {
+            throw new RuntimeException("Agenda de pagamentos ja existe");
+        }
+        disponiveis.put(agenda.getDescricao(), agenda);
+        BackupManager.agendaCriada(agenda.getDescricao());
+        CoordenadorPersistencia.registrarAgenda(agenda.getDescricao());
+    }
+
+    /** Torna a agenda disponível de novo (undo/redo), sem registrar no undo. */
+    public void disponibilizar(String descricao) {
+        AgendaPagamento agenda = AgendaPagamento.compilar(descricao);
+        disponiveis.putIfAbsent(agenda.getDescricao(), agenda);
+        CoordenadorPersistencia.registrarAgenda(agenda.getDescricao());
+    }
+
+    /** Retira uma agenda criada (undo/redo), sem registrar no undo. */
+    public void descartar(String descricao) {
+        disponiveis.remove(descricao);
+        CoordenadorPersistencia.registrarAgendaDescartada(descricao);
+    }
+
+    /** Agenda com a descrição, se já foi criada (ou é uma das padrão). */
+    public AgendaPagamento getDisponivel(String descricao) {
+        AgendaPagamento agenda = descricao == null ? null : disponiveis.get(descricao);
+        if (agenda == null) throw new RuntimeException("Agenda de pagamento nao esta disponivel");
+        return agenda;
+    }
+
+    /** Descrições de todas as agendas disponíveis (gravadas no snapshot). */
+    public Collection<String> getDescricoes() {
+        return disponiveis.keySet();
+    }
+
+    /** Torna disponíveis as agendas lidas do snapshot. */
+    public void restaurar(Collection<String> descricoes) {
+        for (String d : descricoes) {
+            AgendaPagamento agenda = AgendaPagamento.compilar(d);
+            disponiveis.putIfAbsent(agenda.getDescricao(), agenda);
+        }
+    }
+
+    /** Reaplica um registro AGE (agenda criada) ou AGD (agenda descartada) do journal. */
+    public void reproduzir(LeitorCsv registro) {
+        if (registro.igual(0, "AGD")) {
+            disponiveis.remove(registro.texto(1));
+        } else {
+            restaurar(Collections.singletonList(registro.texto(1)));
+        }
+    }
+
+    /** Volta só às agendas padrão, sem empregados. */
+    public void zerar() {
+        List<String> criadas = new ArrayList<>(disponiveis.keySet());
+        for (AgendaPagamento a : PADRAO) criadas.remove(a.getDescricao());
+        BackupManager.agendasDescartadas(criadas);
+        limpar();
+        disponiveis.clear();
+        disponibilizarPadrao();
+    }
+
+    // ---------- Baldes ----------
+
+    /**
+     * Põe e no balde da sua agenda. Uma agenda que não está disponível (ex.: empregado
+     * devolvido por undo depois de zerarSistema) volta a ficar.
+     */
+    void indexar(Empregado e) {
+        AgendaPagamento agenda = e.getAgendaPagamento();
+        disponiveis.putIfAbsent(agenda.getDescricao(), agenda);
+        baldes.computeIfAbsent(agenda, a -> new LinkedHashSet<>()).add(e);
+        agendaIndexada.put(e, agenda);
+    }
+
+    void desindexar(Empregado e) {
+        AgendaPagamento agenda = agendaIndexada.remove(e);
+        if (agenda == null) return;
+        Set<Empregado> balde = baldes.get(agenda);
+        balde.remove(e);
+        if (balde.isEmpty()) baldes.remove(agenda);
+    }
+
+    /** Move e para o balde da agenda atual dele. */
+    void reindexar(Empregado e) {
+        desindexar(e);
+        indexar(e);
+    }
+
+    void limpar() {
+        baldes.clear();
+        agendaIndexada.clear();
+    }
+
+    /** Empregados pagos na data, agrupados por agenda. */
+    public List<Empregado> pagosEm(LocalDate data) {
+        List<Empregado> pagos = new ArrayList<>();
+        for (Map.Entry<AgendaPagamento, Set<Empregado>> balde : baldes.entrySet()) {
+            if (balde.getKey().paga(data)) pagos.addAll(balde.getValue());
+        }
+        return pagos;
+    }
+
+    /**
+     * Dias em [inicial, dataFinal] em que alguma agenda disponível paga (dias em que há
+     * folha, mesmo sem ninguém a pagar), em ordem; junta os calendários das agendas.
+     */
+    public SortedSet<LocalDate> diasDeFolha(LocalDate inicial, LocalDate dataFinal) {
+        SortedSet<LocalDate> dias = new TreeSet<>();
+        for (AgendaPagamento agenda : disponiveis.values()) {
+            dias.addAll(agenda.pagamentosEntre(inicial, dataFinal));
+        }
+        return dias;
+    }
+}
@@ -1,51 +1,328 @@
 package br.ufal.ic.p2.wepayu.service;
 
 import br.ufal.ic.p2.wepayu.Exception.*;
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
 import br.ufal.ic.p2.wepayu.models.Empregado;
-
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinario;
+import br.ufal.ic.p2.wepayu.repositorio.RepositorioCsv;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
+
+import java.time.LocalDate;
 import java.util.*;
 
 public class EmpregadosService {
     private Map<String, Empregado> empregadosMap = new HashMap<>();
+    private Map<String, Empregado> empregadosPorSindicato = new HashMap<>(); // idSindicato -> empregado
+    private final AgendaPagamentoService agendas; // baldes de empregados por agenda
     private int proximoId = 1;
-    private final String ARQUIVO = "empregados.csv";
-
-    public void carregarEmpregados() {
-        File arquivo = new File("empregados.csv");
-        if (!arquivo.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
-            String linha;
-            while ((linha = br.readLine()) != null) {
-                String[] partes = linha.split(";");
-                if (partes.length < 10) continue; // garante que tenha todos os campos
-
-                String id = partes[0];
-                String nome = partes[1];
-                String endereco = partes[2];
-                String tipo = partes[3];
-                double salario = Double.parseDouble(partes[4].replace(',', '.'));
-                boolean sindicalizado = Boolean.parseBoolean(partes[5]);
-                String idSindicato = partes[6].isEmpty() ? null : partes[6];
-                double taxaSindical = Double.parseDouble(partes[7].replace(',', '.'));
-                double comissao = Double.parseDouble(partes[8].replace(',', '.'));
-                String metodoDePagamento = partes[9].isEmpty() ? null : partes[9];
-
-                Empregado e = new Empregado(id, nome, endereco, tipo, salario);
-                e.setSindicalizado(sindicalizado);
-                e.setIdSindicato(idSindicato);
-                e.setTaxaSindical(taxaSindical);
-                e.setComissao(comissao);
-                e.setMetodoPagamento(metodoDePagamento);
-
-                empregadosMap.put(id, e);
+
+    public EmpregadosService(AgendaPagamentoService agendas) {
+        this.agendas = agendas;
+    }
+
+    /**
+     * Campos do registro EMP do journal: as colunas de empregados.csv, na ordem, seguidas
+     * dos atributos que o CSV não tem (dados bancários e estado da folha).
+     */
+    private Object[] camposDoRegistro(Empregado e) {
+        return new Object[]{
+                e.getId(),
+                e.getNome(),
+                e.getEndereco(),
+                e.getTipo(),
+                Dinheiro.emReais(e.getSalario()),
+                e.getSindicalizado(),
+                e.getIdSindicato(),
+                Dinheiro.emReais(e.getTaxaSindical()),
+                e.getComissao(),
+                e.getMetodoPagamento(),
+                e.getAgendaPagamento().getDescricao(),
+                e.getBanco(),
+                e.getAgencia(),
+                e.getContaCorrente(),
+                e.getDataAdmissao(),
+                e.getDataUltimoPagamento(),
+                Dinheiro.emReais(e.getTaxaSindicalDiaria()),
+                Dinheiro.emReais(e.getDebitoSindicalAcumulado())
+        };
+    }
+
+    // posição no registro EMP do primeiro atributo que não está em empregados.csv
+    private static final int CAMPO_BANCO = 12;
+    private static final int CAMPOS_EMP = CAMPO_BANCO + 7;
+
+    // ---------- Journal ----------
+
+    private void registrarNoJournal(Empregado e) {
+        CoordenadorPersistencia.registrar(Arquivo.EMPREGADOS, e.getId(), "EMP", camposDoRegistro(e));
+    }
+
+    /**
+     * Registra no journal o estado atual do empregado depois de um undo/redo: DEL se ele
+     * não existe mais, senão EMP e, com {@code historico}, HIS com as três listas. O HIS
+     * inteiro só é necessário quando o empregado volta a existir (undo de uma remoção);
+     * as demais mudanças no histórico vão como deltas ({@link #registrarItemRetirado},
+     * {@link #registrarItem}, {@link #registrarHoras}).
+     * O snapshot e o repositório são atualizados no próximo checkpoint/commit.
+     */
+    public void registrarEstado(String empId, boolean historico) {
+        Empregado e = empregadosMap.get(empId);
+        if (e == null) {
+            CoordenadorPersistencia.registrar(Arquivo.EMPREGADOS, empId, "DEL", empId);
+            return;
+        }
+
+        registrarNoJournal(e);
+        if (historico) {
+            CoordenadorPersistencia.registrar(Arquivo.REGISTROS, empId, "HIS", camposDoHistorico(e));
+            CoordenadorPersistencia.marcarAlterado(Arquivo.VENDAS, empId);
+            CoordenadorPersistencia.marcarAlterado(Arquivo.TAXAS, empId);
+        }
+    }
+
+    /** RET;arquivo;id;data: o último item da lista do arquivo (lançado em data) foi retirado. */
+    public void registrarItemRetirado(Arquivo arquivo, String empId, LocalDate data) {
+        CoordenadorPersistencia.registrarDia(arquivo, empId, data, "RET", arquivo.name(), empId, data);
+    }
+
+    /** ITM;arquivo;id;data;valores: o item na posição linha da lista voltou ao fim dela. */
+    public void registrarItem(Arquivo arquivo, String empId, int linha) {
+        Empregado e = empregadosMap.get(empId);
+        if (arquivo == Arquivo.REGISTROS) {
+            RegistroDeHoras r = e.getRegistrosDeHoras().get(linha);
+            CoordenadorPersistencia.registrarDia(arquivo, empId, r.getData(), "ITM", arquivo.name(), empId,
+                    r.getData(), r.getHorasNormais(), r.getHorasExtras());
+        } else if (arquivo == Arquivo.VENDAS) {
+            Venda v = e.getVendas().get(linha);
+            CoordenadorPersistencia.registrarDia(arquivo, empId, v.getData(), "ITM", arquivo.name(), empId,
+                    v.getData(), Dinheiro.emReais(v.getValor()));
+        } else {
+            TaxaServico t = e.getTaxasServico().get(linha);
+            CoordenadorPersistencia.registrarDia(arquivo, empId, t.getData(), "ITM", arquivo.name(), empId,
+                    t.getData(), Dinheiro.emReais(t.getValor()));
+        }
+    }
+
+    /** HRS;id;data;normais;extras: as horas do registro do dia voltaram a esses valores. */
+    public void registrarHoras(String empId, LocalDate data) {
+        RegistroDeHoras r = empregadosMap.get(empId).getRegistrosDeHoras().doDia(data);
+        CoordenadorPersistencia.registrarDia(Arquivo.REGISTROS, empId, data, "HRS", empId, data,
+                r.getHorasNormais(), r.getHorasExtras());
+    }
+
+    /** id;qtd;(data;normais;extras)*;qtd;(data;valor)*;qtd;(data;valor)* */
+    private Object[] camposDoHistorico(Empregado e) {
+        List<Object> campos = new ArrayList<>();
+        campos.add(e.getId());
+
+        campos.add(e.getRegistrosDeHoras().size());
+        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
+            campos.add(r.getData());
+            campos.add(r.getHorasNormais());
+            campos.add(r.getHorasExtras());
+        }
+
+        campos.add(e.getVendas().size());
+        for (Venda v : e.getVendas()) {
+            campos.add(v.getData());
+            campos.add(Dinheiro.emReais(v.getValor()));
+        }
+
+        campos.add(e.getTaxasServico().size());
+        for (TaxaServico t : e.getTaxasServico()) {
+            campos.add(t.getData());
+            campos.add(Dinheiro.emReais(t.getValor()));
+        }
+        return campos.toArray();
+    }
+
+    /** Reaplica um registro EMP/DEL/HIS/PAG do journal sobre o mapa carregado. */
+    public void reproduzir(LeitorCsv registro) {
+        if (registro.igual(0, "HIS")) {
+            Empregado e = empregadosMap.get(registro.texto(1));
+            if (e != null) reproduzirHistorico(registro, e);
+            return;
+        }
+        if (registro.igual(0, "PAG")) {
+            reproduzirPagamentos(registro);
+            return;
+        }
+
+        if (registro.igual(0, "EMP")) {
+            Empregado e = RepositorioCsv.lerEmpregado(registro, 1);
+            Empregado anterior = empregadosMap.get(e.getId());
+            if (registro.campos() >= CAMPOS_EMP) {
+                lerAtributosForaDoCsv(registro, e);
+            } else if (anterior != null) {
+                // journal anterior a esses campos: ficam os do estado carregado
+                copiarAtributosForaDoCsv(anterior, e);
+            }
+            if (anterior != null) {
+                e.getRegistrosDeHoras().addAll(anterior.getRegistrosDeHoras());
+                e.getVendas().addAll(anterior.getVendas());
+                e.getTaxasServico().addAll(anterior.getTaxasServico());
+                desindexar(anterior, anterior.getIdSindicato());
+            }
+            empregadosMap.put(e.getId(), e);
+            indexar(e);
+            reservarId(e.getId());
+        } else if (registro.igual(0, "DEL")) {
+            Empregado removido = empregadosMap.remove(registro.texto(1));
+            if (removido != null) desindexar(removido, removido.getIdSindicato());
+        }
+    }
+
+    /**
+     * Reaplica um delta RET/ITM/HRS de undo/redo, se o snapshot ainda não o tem: como
+     * retirar e acrescentar não são idempotentes, um registro já incorporado não pode
+     * ser aplicado de novo.
+     */
+    public void reproduzirDelta(LeitorCsv registro, long sequencia) {
+        boolean horas = registro.igual(0, "HRS");
+        Empregado e = empregadosMap.get(registro.texto(horas ? 1 : 2));
+        if (e == null || SnapshotBinario.incorporou(e.getId(), sequencia)) return;
+
+        if (horas) {
+            LocalDate data = LocalDate.ofEpochDay(registro.data(2));
+            if (e.getRegistrosDeHoras().doDia(data) != null) {
+                e.restaurarHoras(data, registro.real(3), registro.real(4));
             }
-        } catch (IOException | NumberFormatException ex) {
-            System.err.println("Erro ao carregar empregados: " + ex.getMessage());
+            return;
+        }
+
+        Arquivo arquivo = Arquivo.valueOf(registro.texto(1));
+        List<?> lista = arquivo == Arquivo.REGISTROS ? e.getRegistrosDeHoras()
+                : arquivo == Arquivo.VENDAS ? e.getVendas() : e.getTaxasServico();
+        if (registro.igual(0, "RET")) {
+            if (!lista.isEmpty()) lista.remove(lista.size() - 1);
+            return;
+        }
+
+        LocalDate data = LocalDate.ofEpochDay(registro.data(3));
+        if (arquivo == Arquivo.REGISTROS) {
+            e.addRegistroDeHoras(new RegistroDeHoras(data, registro.real(4), registro.real(5)));
+        } else if (arquivo == Arquivo.VENDAS) {
+            e.addVenda(new Venda(data, registro.decimal(4, 2)));
+        } else {
+            e.getTaxasServico().add(new TaxaServico(data, registro.decimal(4, 2)));
+        }
+    }
+
+    private static void lerAtributosForaDoCsv(LeitorCsv registro, Empregado e) {
+        int campo = CAMPO_BANCO;
+        e.setBanco(registro.textoOuNulo(campo++));
+        e.setAgencia(registro.textoOuNulo(campo++));
+        e.setContaCorrente(registro.textoOuNulo(campo++));
+        e.setDataAdmissao(dataOuNula(registro, campo++));
+        e.setDataUltimoPagamento(dataOuNula(registro, campo++));
+        e.setTaxaSindicalDiaria(registro.decimal(campo++, 2));
+        e.setDebitoSindicalAcumulado(registro.decimal(campo, 2));
+    }
+
+    private static void copiarAtributosForaDoCsv(Empregado origem, Empregado e) {
+        e.setBanco(origem.getBanco());
+        e.setAgencia(origem.getAgencia());
+        e.setContaCorrente(origem.getContaCorrente());
+        e.setDataAdmissao(origem.getDataAdmissao());
+        e.setDataUltimoPagamento(origem.getDataUltimoPagamento());
+        e.setTaxaSindicalDiaria(origem.getTaxaSindicalDiaria());
+        e.setDebitoSindicalAcumulado(origem.getDebitoSindicalAcumulado());
+    }
+
+    private static LocalDate dataOuNula(LeitorCsv registro, int campo) {
+        return registro.vazio(campo) ? null : LocalDate.ofEpochDay(registro.data(campo));
+    }
+
+    /** PAG;(id;data;debitoSindical)*: pagamentos efetivados por uma folha. */
+    private void reproduzirPagamentos(LeitorCsv registro) {
+        for (int campo = 1; campo + 2 < registro.campos(); campo += 3) {
+            Empregado e = empregadosMap.get(registro.texto(campo));
+            if (e == null) continue;
+            e.setDataUltimoPagamento(LocalDate.ofEpochDay(registro.data(campo + 1)));
+            e.setDebitoSindicalAcumulado(registro.decimal(campo + 2, 2));
+        }
+    }
+
+    private void reproduzirHistorico(LeitorCsv registro, Empregado e) {
+        e.getRegistrosDeHoras().clear();
+        e.getVendas().clear();
+        e.getTaxasServico().clear();
+
+        int campo = 2;
+        for (int i = Integer.parseInt(registro.texto(campo++)); i > 0; i--, campo += 3) {
+            LocalDate data = LocalDate.ofEpochDay(registro.data(campo));
+            e.getRegistrosDeHoras().add(new RegistroDeHoras(data, registro.real(campo + 1), registro.real(campo + 2)));
         }
+        for (int i = Integer.parseInt(registro.texto(campo++)); i > 0; i--, campo += 2) {
+            e.getVendas().add(new Venda(LocalDate.ofEpochDay(registro.data(campo)), registro.decimal(campo + 1, 2)));
+        }
+        for (int i = Integer.parseInt(registro.texto(campo++)); i > 0; i--, campo += 2) {
+            e.getTaxasServico().add(new TaxaServico(LocalDate.ofEpochDay(registro.data(campo)), registro.decimal(campo + 1, 2)));
+        }
+    }
+
+    // ---------- Índices de sindicato e de agenda ----------
+
+    /**
+     * Reconstrói os índices idSindicato -> empregado e agenda -> empregados (após carregar o mapa inteiro)
+     * e o próximo id, para que um empregado criado depois de reiniciar não reaproveite um id carregado.
+     */
+    public void reconstruirIndices() {
+        empregadosPorSindicato.clear();
+        agendas.limpar();
+        proximoId = 1;
+        for (Empregado e : empregadosMap.values()) {
+            indexar(e);
+            reservarId(e.getId());
+        }
+    }
+
+    private void reservarId(String id) {
+        proximoId = Math.max(proximoId, extractIdNum(id) + 1);
+    }
+
+    private void indexar(Empregado e) {
+        indexarSindicato(e);
+        agendas.indexar(e);
+    }
+
+    private void desindexar(Empregado e, String idSindicato) {
+        desindexarSindicato(e, idSindicato);
+        agendas.desindexar(e);
+    }
+
+    private void indexarSindicato(Empregado e) {
+        // uma alteração para sindicalizado que falhou na validação deixa o empregado sem idSindicato
+        if (e.getSindicalizado() && e.getIdSindicato() != null) {
+            empregadosPorSindicato.putIfAbsent(e.getIdSindicato(), e);
+        }
+    }
+
+    private void desindexarSindicato(Empregado e, String idSindicato) {
+        if (idSindicato != null) {
+            empregadosPorSindicato.remove(idSindicato, e);
+        }
+    }
+
+    /** Ajusta os índices depois que os atributos de e foram trocados (undo/redo). */
+    public void reindexar(Empregado e, String idSindicatoAnterior) {
+        desindexar(e, idSindicatoAnterior);
+        indexar(e);
+    }
+
+    public Empregado getEmpregadoPorIdSindicato(String idSindicato) {
+        return empregadosPorSindicato.get(idSindicato);
+    }
+
+    public Map<String, Empregado> getEmpregadosPorSindicato() {
+        return empregadosPorSindicato;
     }
 
     private double parseDoubleSafe(String valor) {
@@ -65,15 +342,13 @@ public class EmpregadosService {
         }
     }
 
-    public void limpar() {
-        empregadosMap.clear(); // Zera o mapa de empregados em memória
-        proximoId = 1;
-    }
-
     public void zerar() {
+        BackupManager.sistemaZerado(empregadosMap.values());
         empregadosMap.clear();
+        empregadosPorSindicato.clear();
+        agendas.zerar();
         proximoId = 1;
-        salvar();
+        CoordenadorPersistencia.marcarSujo(Arquivo.EMPREGADOS);
     }
 
     public String criarEmpregado(String nome, String endereco, String tipo, String salario) {
@@ -82,11 +357,12 @@ public class EmpregadosService {
             throw new TipoNaoAplicavelException("Tipo nao aplicavel.");
         }
 
-        double salarioNum = Double.parseDouble(salario.replace(',', '.'));
         String id = "id" + proximoId++;
-        Empregado e = new Empregado(id, nome, endereco, tipo, salarioNum);
+        Empregado e = new Empregado(id, nome, endereco, tipo, Dinheiro.deTexto(salario));
         empregadosMap.put(id, e);
-        salvar();
+        agendas.indexar(e);
+        BackupManager.empregadoIncluido(e);
+        registrarNoJournal(e);
         return id;
     }
 
@@ -106,12 +382,13 @@ public class EmpregadosService {
         }
         if (comissaoNum < 0) throw new ComissaoNegativaException("Comissao deve ser nao-negativa.");
 
-        double sal = Double.parseDouble(salario.replace(',', '.'));
         String id = "id" + proximoId++;
-        Empregado e = new Empregado(id, nome, endereco, tipo, sal);
+        Empregado e = new Empregado(id, nome, endereco, tipo, Dinheiro.deTexto(salario));
         e.setComissao(comissaoNum);
         empregadosMap.put(id, e);
-        salvar();
+        agendas.indexar(e);
+        BackupManager.empregadoIncluido(e);
+        registrarNoJournal(e);
         return id;
     }
 
@@ -148,7 +425,7 @@ public class EmpregadosService {
                 return e.getTipo();
 
             case "salario":
-                return String.format("%.2f", e.getSalario()).replace('.', ',');
+                return Dinheiro.formatar(e.getSalario());
 
             case "comissao":
                 if (!"comissionado".equals(e.getTipo()))
@@ -158,6 +435,9 @@ public class EmpregadosService {
             case "metodoPagamento":
                 return e.getMetodoPagamento();
 
+            case "agendaPagamento":
+                return e.getAgendaPagamento().getDescricao();
+
             case "banco":
             case "agencia":
             case "contaCorrente":
@@ -180,7 +460,7 @@ public class EmpregadosService {
             case "taxaSindical":
                 if (!e.getSindicalizado())
                     throw new RuntimeException("Empregado nao eh sindicalizado.");
-                return String.format("%.2f", e.getTaxaSindical()).replace('.', ',');
+                return Dinheiro.formatar(e.getTaxaSindical());
 
             default:
                 throw new RuntimeException("Atributo nao existe.");
@@ -200,7 +480,10 @@ public class EmpregadosService {
 
     public void remover(String emp) {
         Empregado e = getEmpregado(emp);
+        BackupManager.empregadoRemovido(e);
         empregadosMap.remove(emp);
+        desindexar(e, e.getIdSindicato());
+        CoordenadorPersistencia.registrar(Arquivo.EMPREGADOS, emp, "DEL", emp);
     }
 
     private Empregado getEmpregado(String emp) {
@@ -214,50 +497,19 @@ public class EmpregadosService {
 
     public void alterarEmpregado(String empId, String atributo, String valor, String valor1, String valor2, String valor3) {
         Empregado e =  getEmpregado(empId);
+        BackupManager.antesDeAlterar(e);
 
-        validarEmpregadoBasico(e.getNome(), e.getEndereco(), e.getTipo(), String.valueOf(e.getSalario()));
+        validarEmpregadoBasico(e.getNome(), e.getEndereco(), e.getTipo(), Dinheiro.formatar(e.getSalario()));
 
         switch (atributo) {
             case "sindicalizado":
-                boolean sindicalizado = Boolean.parseBoolean(valor);
-
-                if (valor.equalsIgnoreCase("true")) {
-                    e.setSindicalizado(true);
-                } else if (valor.equalsIgnoreCase("false")) {
-                    e.setSindicalizado(false);
-                } else {
-                    throw new RuntimeException("Valor deve ser true ou false.");
-                }
-
-                if (sindicalizado) {
-                    String idSindicato = valor1;
-                    if (idSindicato == null || idSindicato.trim().isEmpty()) {
-                        throw new RuntimeException("Identificacao do sindicato nao pode ser nula.");
-                    }
-
-                    String taxaSindical = valor2;
-                    if (taxaSindical == null || taxaSindical.trim().isEmpty()) {
-                        throw new RuntimeException("Taxa sindical nao pode ser nula.");
-                    }
-                    try {
-                        double d = Double.parseDouble(taxaSindical.replace(',', '.'));
-                        if (d < 0) {
-                            throw new RuntimeException("Taxa sindical deve ser nao-negativa.");
-                        }
-                    } catch (NumberFormatException ex) {
-                        throw new RuntimeException("Taxa sindical deve ser numerica.");
-                    }
-
-                    boolean existe = getEmpregadosMap().values().stream()
-                            .anyMatch(emp -> emp != e && idSindicato.equals(emp.getIdSindicato()));
-                    if (existe) {
-                        throw new RuntimeException("Ha outro empregado com esta identificacao de sindicato");
-                    }
-                    e.setIdSindicato(idSindicato);
-                    e.setTaxaSindical(Double.parseDouble(taxaSindical.replace(',', '.')));
-                } else {
-                    e.setIdSindicato(null);
-                    e.setTaxaSindical(0.0);
+                String idAnterior = e.getIdSindicato();
+                try {
+                    alterarSindicalizado(e, valor, valor1, valor2);
+                } finally {
+                    // mantém o índice coerente mesmo se a alteração falhar no meio
+                    desindexarSindicato(e, idAnterior);
+                    indexarSindicato(e);
                 }
                 break;
             case "comissao":
@@ -321,6 +573,10 @@ public class EmpregadosService {
                 }
                 e.setEndereco(valor);
                 break;
+            case "agendaPagamento":
+                e.setAgendaPagamento(agendas.getDisponivel(valor));
+                agendas.reindexar(e);
+                break;
             case "tipo":
                 switch (valor) {
                     case "comissionado":
@@ -329,7 +585,7 @@ public class EmpregadosService {
                         break;
                     case "horista":
                         e.setTipo(valor);
-                        e.setSalario(Double.parseDouble(valor1.replace(',', '.')));
+                        e.setSalario(Dinheiro.deTexto(valor1));
                         break;
                     case "assalariado":
                         e.setTipo(valor);
@@ -337,6 +593,9 @@ public class EmpregadosService {
                     default:
                         throw new RuntimeException("Tipo invalido.");
                 }
+                // quem muda de tipo passa para a agenda padrão do novo tipo
+                e.setAgendaPagamento(AgendaPagamento.padrao(valor));
+                agendas.reindexar(e);
                 break;
             case "salario":
                 if (valor == null || valor.trim().isEmpty()) {
@@ -350,7 +609,7 @@ public class EmpregadosService {
                 } catch (NumberFormatException ex) {
                     throw new RuntimeException("Salario deve ser numerico.");
                 }
-                e.setSalario(Double.parseDouble(valor.replace(",", ".")));
+                e.setSalario(Dinheiro.deTexto(valor));
                 break;
             case "banco":
                 break;
@@ -366,44 +625,60 @@ public class EmpregadosService {
                 throw new RuntimeException("Atributo nao existe.");
         }
 
-        salvar();
-    }
-
-    public void salvar() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("empregados.csv"))) {
-            for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-                String id = entry.getKey();
-                Empregado e = entry.getValue();
-                pw.printf("%s;%s;%s;%s;%.2f;%b;%s;%.2f;%.2f;%s%n",
-                        id,
-                        e.getNome(),
-                        e.getEndereco(),
-                        e.getTipo(),
-                        e.getSalario(),
-                        e.getSindicalizado(),
-                        e.getIdSindicato() != null ? e.getIdSindicato() : "",
-                        e.getTaxaSindical(),
-                        e.getComissao() != 0.0 ? e.getComissao() : 0.0,
-                        e.getMetodoPagamento()
-                );
+        registrarNoJournal(e);
+    }
+
+    private void alterarSindicalizado(Empregado e, String valor, String idSindicato, String taxaSindical) {
+        boolean sindicalizado = Boolean.parseBoolean(valor);
+
+        if (valor.equalsIgnoreCase("true")) {
+            e.setSindicalizado(true);
+        } else if (valor.equalsIgnoreCase("false")) {
+            e.setSindicalizado(false);
+        } else {
+            throw new RuntimeException("Valor deve ser true ou false.");
+        }
+
+        if (sindicalizado) {
+            if (idSindicato == null || idSindicato.trim().isEmpty()) {
+                throw new RuntimeException("Identificacao do sindicato nao pode ser nula.");
+            }
+
+            if (taxaSindical == null || taxaSindical.trim().isEmpty()) {
+                throw new RuntimeException("Taxa sindical nao pode ser nula.");
+            }
+            try {
+                double d = Double.parseDouble(taxaSindical.replace(',', '.'));
+                if (d < 0) {
+                    throw new RuntimeException("Taxa sindical deve ser nao-negativa.");
+                }
+            } catch (NumberFormatException ex) {
+                throw new RuntimeException("Taxa sindical deve ser numerica.");
             }
-        } catch (IOException ex) {
-            System.err.println("Erro ao salvar empregados: " + ex.getMessage());
+
+            Empregado dono = empregadosPorSindicato.get(idSindicato);
+            if (dono != null && dono != e) {
+                throw new RuntimeException("Ha outro empregado com esta identificacao de sindicato");
+            }
+            e.setIdSindicato(idSindicato);
+            e.setTaxaSindical(Dinheiro.deTexto(taxaSindical));
+        } else {
+            e.setIdSindicato(null);
+            e.setTaxaSindical(0);
         }
     }
 
-    public Map<String, Empregado> cloneEmpregadosMap() {
-        Map<String, Empregado> clone = new HashMap<>();
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            clone.put(entry.getKey(), entry.getValue().copiar()); // cada empregado precisa de um método copiar()
-        }
-        return clone;
+    // ---------- Undo/redo ----------
+
+    /** Recoloca um empregado (com seu histórico) no mapa e no índice. */
+    public void reinserir(Empregado e) {
+        empregadosMap.put(e.getId(), e);
+        indexar(e);
     }
 
-    public void restaurarEmpregados(Map<String, Empregado> clone) {
-        empregadosMap.clear();
-        empregadosMap.putAll(clone);
-        salvar(); // opcional: sobrescrever CSV
+    public void retirar(Empregado e) {
+        empregadosMap.remove(e.getId(), e);
+        desindexar(e, e.getIdSindicato());
     }
 
     public Map<String, Empregado> getEmpregadosMap() {
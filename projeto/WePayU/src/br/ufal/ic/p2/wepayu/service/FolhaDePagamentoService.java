@@ -1,20 +1,29 @@
 package br.ufal.ic.p2.wepayu.service;
 
 import br.ufal.ic.p2.wepayu.Exception.DataInvalidaException;
+import br.ufal.ic.p2.wepayu.models.AgendaPagamento;
+import br.ufal.ic.p2.wepayu.models.Contracheque;
 import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.util.BufferRelatorio;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.time.DayOfWeek;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.ResolverStyle;
 import java.time.temporal.ChronoUnit;
-import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Serviço responsável por calcular e rodar a folha de pagamento.
@@ -22,441 +31,515 @@ import java.util.Map;
  */
 public class FolhaDePagamentoService {
 
+    private static final LocalDate INICIO_CONTRATOS = LocalDate.of(2005, 1, 1);
+
+    // abaixo disso dividir o cálculo entre threads custa mais do que ganha
+    private static final int MINIMO_PARALELO = Integer.getInteger("wepayu.folha.minimoParalelo", 2048);
+
+    // relatório: linhas montadas por bloco, blocos montados em paralelo a cada rodada
+    // (limitado para o buffer de cada bloco, de ~160 bytes por linha, caber num int)
+    private static final int LINHAS_POR_BLOCO =
+            Math.min(1 << 20, Math.max(1, Integer.getInteger("wepayu.folha.linhasPorBloco", 4096)));
+    private static final int BLOCOS_POR_RODADA = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int TAMANHO_BUFFER_SAIDA = 1 << 16;
+
+    private static final String SEPARADOR =
+            "===============================================================================================================================";
+    private static final Contracheque SEM_PAGAMENTO =
+            new Contracheque(null, null, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    // seções do relatório: por nome e, entre homônimos, por id (idN em ordem de criação)
+    private static final Comparator<Empregado> ORDEM_RELATORIO = Comparator.comparing(Empregado::getNome)
+            .thenComparingInt((Empregado e) -> e.getId().length()).thenComparing(Empregado::getId);
+
+    // folhas já calculadas por data; só vale a entrada da versão atual do estado
+    private static final int TAMANHO_CACHE = Integer.getInteger("wepayu.folha.cache", 16);
+
     private Map<String, Empregado> empregados;
-    private RegistroDeHorasService registroService;
-    private VendasService vendasService;
-    private TaxaServicoService taxaService;
-
-    public FolhaDePagamentoService(Map<String, Empregado> empregados,
-                                   RegistroDeHorasService registroService,
-                                   VendasService vendasService,
-                                   TaxaServicoService taxaService) {
+    private final AgendaPagamentoService agendas;
+    private final Map<LocalDate, FolhaCalculada> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, FolhaCalculada> maisAntiga) {
+            return size() > TAMANHO_CACHE;
+        }
+    };
+
+    public FolhaDePagamentoService(Map<String, Empregado> empregados, AgendaPagamentoService agendas) {
         this.empregados = empregados;
-        this.registroService = registroService;
-        this.vendasService = vendasService;
-        this.taxaService = taxaService;
+        this.agendas = agendas;
     }
 
-    /** Retorna o total que seria pago na data informada (data em formato "d/M/uuuu"). */
-    public double totalFolha(String dataStr) throws Exception {
+    /**
+     * Retorna o total, em centavos, que seria pago na data informada (data em formato "d/M/uuuu").
+     * {@code versao} identifica o estado atual; é reaproveitado o cálculo da mesma data e versão.
+     */
+    public long totalFolha(String dataStr, long versao) throws Exception {
         LocalDate data = parseData(dataStr, "de cálculo");
-        double totalFolhaBruto = 0.0;
-
-        for (Empregado e : empregados.values()) {
-            // Define a data de início do contrato
-            LocalDate inicioContrato;
-            if ("horista".equalsIgnoreCase(e.getTipo())) {
-                if (e.getDataAdmissao() == null) continue; // segurança
-                inicioContrato = e.getDataAdmissao();
-            } else {
-                inicioContrato = LocalDate.of(2005, 1, 1);
-            }
+        return calcularFolha(data, versao).total;
+    }
 
-            // Verifica se o empregado deve receber nesse dia
-            if (!deveReceberNoDia(e, data)) continue;
+    /**
+     * Folha calculada de uma data, da cache se o estado ainda está na versão em que foi
+     * calculada. Versões só crescem, então uma entrada de versão antiga nunca volta a
+     * valer e acaba saindo pela política LRU.
+     */
+    private FolhaCalculada calcularFolha(LocalDate data, long versao) {
+        FolhaCalculada f = cache.get(data);
+        if (f != null && f.versao == versao) return f;
+
+        f = montarFolha(data, versao, new PreviaFolha(versao));
+        cache.put(data, f);
+        return f;
+    }
 
-            double bruto = 0.0;
-            String inicioStr = "";
-            String fimStr = formatData(data);
+    /** Folha da data sobre o estado visto por {@code estado}, sem usar a cache. */
+    private FolhaCalculada montarFolha(LocalDate data, long versao, PreviaFolha estado) {
+        // Só os baldes das agendas que pagam hoje são percorridos
+        List<Empregado> pagos = agendas.pagosEm(data);
+
+        // Os cálculos não alteram ninguém, então rodam em paralelo
+        Contracheque[] contracheques = calcularTodos(pagos, data, estado);
+
+        long total = 0;
+        for (int i = 0; i < pagos.size(); i++) {
+            Empregado e = pagos.get(i);
+            Contracheque c = contracheques[i];
+            if (c == null) continue; // horista sem admissão
+            if ("comissionado".equalsIgnoreCase(e.getTipo())) {
+                // o total considera só as vendas do período da agenda
+                LocalDate janela = e.getAgendaPagamento().inicioPeriodo(data);
+                if (janela.isBefore(INICIO_CONTRATOS)) janela = INICIO_CONTRATOS;
+                if (!c.getInicio().equals(janela)) {
+                    total += calcular(e, janela, data, 0).getBruto();
+                    continue;
+                }
+            }
+            total += c.getBruto();
+        }
 
-            // ===== HORISTA =====
-            if ("horista".equalsIgnoreCase(e.getTipo())) {
-                inicioStr = getInicioPeriodoStr(e, data);
+        return new FolhaCalculada(versao, pagos, contracheques, total);
+    }
 
-                double horasNormais = 0.0;
-                double horasExtras = 0.0;
-                try {
-                    horasNormais = Double.parseDouble(registroService.getHorasNormais(e.getId(), inicioStr, fimStr).replace(',', '.'));
-                    horasExtras = Double.parseDouble(registroService.getHorasExtras(e.getId(), inicioStr, fimStr).replace(',', '.'));
-                } catch (Exception ignored) {}
+    /**
+     * Calcula o contracheque de e no período [inicio, fim) pelas somas dos históricos
+     * (O(log n) cada), sem alterar o empregado. A taxa sindical cobrada é o débito
+     * acumulado mais {@code diasSindicais} dias da taxa diária.
+     */
+    public Contracheque calcular(Empregado e, LocalDate inicio, LocalDate fim, long diasSindicais) {
+        return calcular(e, inicio, fim, diasSindicais, e.getDebitoSindicalAcumulado());
+    }
 
-                bruto = horasNormais * e.getSalario() + horasExtras * e.getSalario() * 1.5;
+    private Contracheque calcular(Empregado e, LocalDate inicio, LocalDate fim, long diasSindicais,
+                                  long debitoAnterior) {
+        String tipo = e.getTipo();
+        boolean periodoValido = !inicio.isAfter(fim);
+
+        double horasNormais = 0.0;
+        double horasExtras = 0.0;
+        long vendas = 0;
+        long taxas = 0;
+
+        if (periodoValido) {
+            if ("horista".equalsIgnoreCase(tipo)) {
+                horasNormais = e.getHorasNormais(inicio, fim);
+                horasExtras = e.getHorasExtras(inicio, fim);
+            } else if ("comissionado".equalsIgnoreCase(tipo)) {
+                vendas = e.getTotalVendas(inicio, fim);
             }
 
-            // ===== ASSALARIADO =====
-            else if ("assalariado".equalsIgnoreCase(e.getTipo())) {
-                // Salário mensal completo
-                bruto = e.getSalario();
+            // Descontos externos: só sindicalizados pagam taxas de serviço
+            if (e.getSindicalizado()) {
+                taxas = e.getTotalTaxas(inicio, fim);
             }
+        }
+        return fechar(e, inicio, fim, diasSindicais, debitoAnterior, horasNormais, horasExtras, vendas, taxas);
+    }
 
-            // ===== COMISSIONADO =====
-            else if ("comissionado".equalsIgnoreCase(e.getTipo())) {
-                LocalDate fimPeriodo = data;
-                LocalDate inicioPeriodo = fimPeriodo.minusDays(13);
-                if (inicioPeriodo.isBefore(inicioContrato)) {
-                    inicioPeriodo = inicioContrato;
-                }
-
-                inicioStr = formatData(inicioPeriodo);
-                fimStr = formatData(fimPeriodo);
-
-                // Salário fixo quinzenal
-                double fixo = (e.getSalario() * 12) / 26;
-                fixo = Math.floor(fixo * 100) / 100;
-
-                // Vendas e comissão
-                double vendas = 0.0;
-                try {
-                    String vendasRetorno = vendasService.getTotalVendas(e.getId(), inicioStr, fimStr);
-                    if (vendasRetorno == null || vendasRetorno.isBlank()) vendasRetorno = "0";
-                    vendas = Double.parseDouble(vendasRetorno.replace(',', '.'));
-                } catch (Exception ignored) {}
+    /**
+     * Monta o contracheque a partir das somas do período (horas, vendas e taxas de serviço)
+     * e do débito sindical que o empregado trazia.
+     */
+    private static Contracheque fechar(Empregado e, LocalDate inicio, LocalDate fim, long diasSindicais,
+                                       long debitoAnterior, double horasNormais, double horasExtras,
+                                       long vendas, long taxas) {
+        String tipo = e.getTipo();
+        long fixo = 0;
+        long comissao = 0;
+        long bruto = 0;
+
+        if ("horista".equalsIgnoreCase(tipo)) {
+            horasNormais = arredondarHoras(horasNormais);
+            horasExtras = arredondarHoras(horasExtras);
+            bruto = brutoHorista(e.getSalario(), horasNormais, horasExtras);
+        } else if ("assalariado".equalsIgnoreCase(tipo)) {
+            bruto = e.getAgendaPagamento().salarioDoPeriodo(e.getSalario());
+        } else if ("comissionado".equalsIgnoreCase(tipo)) {
+            // Parte do salário fixo que cabe no período da agenda
+            fixo = e.getAgendaPagamento().salarioDoPeriodo(e.getSalario());
+            comissao = Dinheiro.multiplicar(vendas, e.getComissao(), RoundingMode.FLOOR);
+            bruto = fixo + comissao;
+        }
 
-                double comissao = vendas * e.getComissao();
-                comissao = Math.floor(comissao * 100) / 100;
-                bruto = fixo + comissao;
+        long descontosExternos = taxas;
+        long taxaSindicalTotal = debitoAnterior + e.getTaxaSindical() * diasSindicais;
+        long liquido = bruto - descontosExternos - taxaSindicalTotal;
+        long debito = 0;
+
+        if (liquido < 0) {
+            liquido = 0;
+            // acumula débito; horista/comissionado não mostram desconto sem salário
+            debito = taxaSindicalTotal;
+            if (!"assalariado".equalsIgnoreCase(tipo)) {
+                descontosExternos = 0;
+                taxaSindicalTotal = 0;
             }
-
-            // Acumula no total da folha
-            totalFolhaBruto += bruto;
         }
 
-        return totalFolhaBruto;
+        return new Contracheque(inicio, fim, horasNormais, horasExtras, fixo, vendas, comissao,
+                bruto, descontosExternos + taxaSindicalTotal, liquido, debito);
+    }
+
+    /** horas × salário + extras × salário × 1,5, arredondado (meio para cima) uma vez só. */
+    private static long brutoHorista(long salario, double horasNormais, double horasExtras) {
+        // com até uma casa nas horas a conta é exata em vigésimos de centavo
+        long normais = Math.round(horasNormais * 10);
+        long extras = Math.round(horasExtras * 10);
+        if (normais / 10.0 == horasNormais && extras / 10.0 == horasExtras) {
+            try {
+                long vigesimos = Math.addExact(Math.multiplyExact(salario, 2 * normais),
+                        Math.multiplyExact(salario, 3 * extras));
+                return Dinheiro.dividir(vigesimos, 20, RoundingMode.HALF_UP);
+            } catch (ArithmeticException ignored) {}
+        }
+        BigDecimal horas = BigDecimal.valueOf(horasNormais)
+                .add(BigDecimal.valueOf(horasExtras).multiply(BigDecimal.valueOf(1.5)));
+        return BigDecimal.valueOf(salario).multiply(horas).setScale(0, RoundingMode.HALF_UP).longValueExact();
     }
 
-    private String alinharDireita(double valor, int largura) {
-        String s = String.format("%.2f", valor).replace('.', ',');
-        return String.format("%" + largura + "s", s);
+    /** Mesmo arredondamento de String.format("%.Nf"), sem passar por texto. */
+    private static double arredondar(double valor, int casas) {
+        return BigDecimal.valueOf(valor).setScale(casas, RoundingMode.HALF_UP).doubleValue();
     }
 
-    private String alinharEsquerda(String texto, int largura) {
-        return String.format("%-" + largura + "s", texto);
+    /** Horas inteiras ficam como estão; as demais com uma casa, como nos relatórios de horas. */
+    private static double arredondarHoras(double total) {
+        return total == (int) total ? total : arredondar(total, 1);
     }
 
-    public void rodaFolha(String dataStr, String arquivoSaida) throws Exception {
+    /** Gera o arquivo da folha e efetiva os pagamentos; {@code versao} como em {@link #totalFolha}. */
+    public void rodaFolha(String dataStr, String arquivoSaida, long versao) throws Exception {
         LocalDate data = parseData(dataStr, "de pagamento");
 
-        try (PrintWriter out = new PrintWriter(new FileWriter(arquivoSaida))) {
-            // Cabeçalho geral
-            out.println("FOLHA DE PAGAMENTO DO DIA " + data.format(DateTimeFormatter.ISO_LOCAL_DATE));
-            out.println("====================================\n");
+        FolhaCalculada folha = calcularFolha(data, versao);
+        // Entradas desta data e versão deixam de valer com os pagamentos abaixo
+        cache.remove(data);
 
-            // ================= HORISTAS =================
-            out.println("===============================================================================================================================");
-            out.println("===================== HORISTAS ================================================================================================");
-            out.println("===============================================================================================================================");
-            out.println("Nome                                 Horas Extra Salario Bruto Descontos Salario Liquido Metodo");
-            out.println("==================================== ===== ===== ============= ========= =============== ======================================");
-
-            double totalHorasNormais = 0;
-            double totalHorasExtras = 0;
-            double totalHoristasBruto = 0;
-            double totalHoristasDescontos = 0;
-            double totalHoristasLiquido = 0;
-
-            List<Empregado> horistas = empregados.values().stream()
-                    .filter(e -> "horista".equalsIgnoreCase(e.getTipo()) && deveReceberNoDia(e, data))
-                    .sorted(Comparator.comparing(Empregado::getNome))
-                    .toList();
-
-            for (Empregado e : horistas) {
-                // DEBUG: início do processamento do empregado
-//                System.out.println("DEBUG START: Empregado=" + e.getNome() + " id=" + e.getId());
-//                System.out.println("  getDataAdmissao() = " + e.getDataAdmissao());
-//                System.out.println("  getDataUltimoPagamento() = " + e.getDataUltimoPagamento());
-//                System.out.println("  getDebitoSindicalAcumulado() = " + e.getDebitoSindicalAcumulado());
-//                System.out.println("  getTaxaSindical() = " + e.getTaxaSindical());
-
-                // Se não tem admissão → não recebe
-                if (e.getDataAdmissao() == null) {
-                    out.printf("%-36s %5s %5s %13s %9s %15s %s%n", e.getNome(),
-                            "0", // horas normais
-                            "0", // horas extras
-                            alinharDireita(0, 12), // bruto
-                            alinharDireita(0, 8), // descontos
-                            alinharDireita(0, 14), // líquido
-                            e.getMetodoPagamentoFormatado() ); continue; // próximo empregado
-                }
+        PreviaFolha previa = new PreviaFolha(versao);
+        registrar(folha, data, arquivoSaida, previa);
+        previa.efetivar();
+    }
 
-                // Mesmo período para tudo
-                String inicioStr = getInicioPeriodoStr(e, data);
-                String fimStr = formatData(data);
+    /**
+     * Calcula a folha da data como {@link #rodaFolha}, mas sem alterar nenhum empregado:
+     * os pagamentos ficam na prévia devolvida, que pode ser efetivada com {@link #efetivar}.
+     * Não usa a cache, então prévias podem ser calculadas em paralelo por outras threads.
+     */
+    public PreviaFolha preverFolha(String dataStr, String arquivoSaida, long versao) throws Exception {
+        LocalDate data = parseData(dataStr, "de pagamento");
+        PreviaFolha previa = new PreviaFolha(versao);
+        registrar(montarFolha(data, versao, previa), data, arquivoSaida, previa);
+        return previa;
+    }
 
-//                System.out.println("DEBUG PERIOD STRINGS: inicioStr=" + inicioStr + " fimStr=" + fimStr);
+    /** Passa para os empregados os pagamentos da prévia, todos de uma vez. */
+    public void efetivar(PreviaFolha previa) {
+        previa.efetivar();
+        cache.clear();
+    }
 
-                LocalDate inicioPeriodo = LocalDate.parse(inicioStr, DateTimeFormatter.ofPattern("d/M/uuuu"));
-                long diasPeriodo = ChronoUnit.DAYS.between(inicioPeriodo, data) + 1;
+    /** Registra na prévia os pagamentos da folha e, se {@code arquivoSaida} não for null, grava o relatório. */
+    private void registrar(FolhaCalculada folha, LocalDate data, String arquivoSaida, PreviaFolha previa)
+            throws IOException {
+        // Pagamentos e totais em ordem de nome, como aparecem no relatório
+        Totais horistas = pagarSecao(folha, folha.horistas, data, previa);
+        Totais assalariados = pagarSecao(folha, folha.assalariados, data, previa);
+        Totais comissionados = pagarSecao(folha, folha.comissionados, data, previa);
+        long totalFolha = horistas.bruto + assalariados.bruto + comissionados.bruto;
+        previa.somarTotal(totalFolha);
+        if (arquivoSaida == null) return;
+
+        // O relatório só lê os contracheques, nomes e métodos
+        try (Writer out = new BufferedWriter(new FileWriter(arquivoSaida), TAMANHO_BUFFER_SAIDA)) {
+            BufferRelatorio b = new BufferRelatorio();
 
-                double horasNormais = 0.0;
-                double horasExtras = 0.0;
+            // Cabeçalho geral
+            b.texto("FOLHA DE PAGAMENTO DO DIA ").texto(data.format(DateTimeFormatter.ISO_LOCAL_DATE)).novaLinha();
+            b.texto("====================================\n").novaLinha();
 
-                try {
-                    horasNormais = Double.parseDouble(registroService.getHorasNormais(e.getId(), inicioStr, fimStr).replace(',', '.'));
-                    horasExtras = Double.parseDouble(registroService.getHorasExtras(e.getId(), inicioStr, fimStr).replace(',', '.'));
-                } catch (Exception ignored) {}
+            // ================= HORISTAS =================
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("===================== HORISTAS ================================================================================================").novaLinha();
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("Nome                                 Horas Extra Salario Bruto Descontos Salario Liquido Metodo").novaLinha();
+            b.texto("==================================== ===== ===== ============= ========= =============== ======================================").novaLinha();
+            b.escreverEm(out);
+            escreverLinhas(out, folha, folha.horistas, FolhaDePagamentoService::linhaHorista);
+
+            b.limpar().novaLinha().texto("TOTAL HORISTAS ")
+                    .decimal(horistas.horasNormais, 0, 27).espaco()
+                    .decimal(horistas.horasExtras, 0, 5).espaco()
+                    .dinheiro(horistas.bruto, 13).espaco()
+                    .dinheiro(horistas.descontos, 9).espaco()
+                    .dinheiro(horistas.liquido, 15).espaco().novaLinha().novaLinha();
 
-                double bruto = horasNormais * e.getSalario() + horasExtras * e.getSalario() * 1.5;
+            // ================= ASSALARIADOS =================
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("===================== ASSALARIADOS ============================================================================================").novaLinha();
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("Nome                                             Salario Bruto Descontos Salario Liquido Metodo").novaLinha();
+            b.texto("================================================ ============= ========= =============== ======================================").novaLinha();
+            b.escreverEm(out);
+            escreverLinhas(out, folha, folha.assalariados, FolhaDePagamentoService::linhaAssalariado);
+
+            b.limpar().novaLinha().texto("TOTAL ASSALARIADOS ")
+                    .dinheiro(assalariados.bruto, 43).espaco()
+                    .dinheiro(assalariados.descontos, 9).espaco()
+                    .dinheiro(assalariados.liquido, 15).novaLinha().novaLinha();
 
-                // Descontos externos
-                double descontosExternos = 0.0;
-                try {
-                    descontosExternos = Double.parseDouble(taxaService.getTotalTaxas(e.getId(), inicioStr, fimStr).replace(',', '.'));
-                } catch (Exception ignored) {}
+            // ================= COMISSIONADOS =================
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("===================== COMISSIONADOS ===========================================================================================").novaLinha();
+            b.texto(SEPARADOR).novaLinha();
+            b.texto("Nome                  Fixo     Vendas   Comissao Salario Bruto Descontos Salario Liquido Metodo").novaLinha();
+            b.texto("===================== ======== ======== ======== ============= ========= =============== ======================================").novaLinha();
+            b.escreverEm(out);
+            escreverLinhas(out, folha, folha.comissionados, FolhaDePagamentoService::linhaComissionado);
+
+            b.limpar().novaLinha().texto("TOTAL COMISSIONADOS ")
+                    .dinheiro(comissionados.fixo, 10).espaco()
+                    .dinheiro(comissionados.vendas, 8).espaco()
+                    .dinheiro(comissionados.comissao, 8).espaco()
+                    .dinheiro(comissionados.bruto, 13).espaco()
+                    .dinheiro(comissionados.descontos, 9).espaco()
+                    .dinheiro(comissionados.liquido, 15).espaco().novaLinha().novaLinha();
+
+            b.texto("TOTAL FOLHA: ").dinheiro(totalFolha, 0).novaLinha();
+            b.escreverEm(out);
+        }
+    }
 
-                // Taxa sindical: MESMO PERÍODO das horas e taxas
-                double taxaSindicalTotal = e.getDebitoSindicalAcumulado() + e.getTaxaSindical() * diasPeriodo;
+    // ---------- Várias folhas ----------
+
+    /**
+     * Roda, em ordem, as folhas de todos os dias em que alguma agenda paga entre as datas,
+     * inclusive, com o mesmo resultado de chamar {@link #rodaFolha} em cada um. Os totais de
+     * cada período saem das somas por intervalo de datas dos históricos (árvores de Fenwick,
+     * O(log n) por empregado pago), sem percorrer os lançamentos. Se {@code prefixoSaida} não
+     * for null, o relatório de cada dia vai para prefixoSaida + "aaaa-mm-dd.txt".
+     */
+    public void rodaFolhas(String dataInicialStr, String dataFinalStr, String prefixoSaida, long versao)
+            throws Exception {
+        efetivar(preverFolhas(dataInicialStr, dataFinalStr, prefixoSaida, versao));
+    }
 
-                double liquido = bruto - descontosExternos - taxaSindicalTotal;
+    /**
+     * As folhas de {@link #rodaFolhas} numa prévia: cada folha lê os pagamentos das anteriores
+     * na própria prévia, e nenhum empregado é alterado.
+     */
+    public PreviaFolha preverFolhas(String dataInicialStr, String dataFinalStr, String prefixoSaida, long versao)
+            throws Exception {
+        LocalDate inicial = parseData(dataInicialStr, "inicial");
+        LocalDate dataFinal = parseData(dataFinalStr, "final");
+        if (inicial.isAfter(dataFinal)) {
+            throw new IllegalArgumentException("Data inicial nao pode ser posterior aa data final.");
+        }
+        PreviaFolha previa = new PreviaFolha(versao);
 
-                if (liquido < 0) {
-                    liquido = 0;
-                    // acumula débito
-                    e.setDebitoSindicalAcumulado(taxaSindicalTotal);
-                    descontosExternos = 0;
-                    taxaSindicalTotal = 0;
-                } else {
-                    e.setDebitoSindicalAcumulado(0);
-                }
+        for (LocalDate data : agendas.diasDeFolha(inicial, dataFinal)) {
+            List<Empregado> pagos = agendas.pagosEm(data);
 
-                // Atualiza totais
-                totalHorasNormais += horasNormais;
-                totalHorasExtras += horasExtras;
-                totalHoristasBruto += bruto;
-                totalHoristasDescontos += descontosExternos + taxaSindicalTotal;
-                totalHoristasLiquido += liquido;
-
-                // Impressão
-                out.printf("%-36s %5.0f %5.0f %13s %9s %15s %s%n",
-                        e.getNome(),
-                        horasNormais,
-                        horasExtras,
-                        alinharDireita(bruto, 12),
-                        alinharDireita(descontosExternos + taxaSindicalTotal, 8),
-                        alinharDireita(liquido, 14),
-                        e.getMetodoPagamentoFormatado()
-                );
-
-                e.setDataUltimoPagamento(formatData(data));
-            }
+            // Cada folha depende dos pagamentos da anterior (último pagamento e débito sindical)
+            Contracheque[] contracheques = calcularTodos(pagos, data, previa);
+            String arquivo = prefixoSaida == null ? null
+                    : prefixoSaida + data.format(DateTimeFormatter.ISO_LOCAL_DATE) + ".txt";
+            registrar(new FolhaCalculada(versao, pagos, contracheques, 0), data, arquivo, previa);
+        }
+        return previa;
+    }
 
-            // Totais horistas
-            out.printf("%nTOTAL HORISTAS %27s %5s %13s %9s %15s %n%n",
-                    String.format("%.0f", totalHorasNormais).replace('.', ','),
-                    String.format("%.0f", totalHorasExtras).replace('.', ','),
-                    String.format("%.2f", totalHoristasBruto).replace('.', ','),
-                    String.format("%.2f", totalHoristasDescontos).replace('.', ','),
-                    String.format("%.2f", totalHoristasLiquido).replace('.', ',')
-            );
+    // ---------- Pagamento ----------
+
+    /** Totais de uma seção, somados na ordem do relatório. */
+    private static class Totais {
+        double horasNormais, horasExtras;
+        long fixo, vendas, comissao, bruto, descontos, liquido;
+
+        void somar(Contracheque c) {
+            horasNormais += c.getHorasNormais();
+            horasExtras += c.getHorasExtras();
+            fixo += c.getFixo();
+            vendas += c.getVendas();
+            comissao += c.getComissao();
+            bruto += c.getBruto();
+            descontos += c.getDescontos();
+            liquido += c.getLiquido();
+        }
+    }
 
-            // ================= ASSALARIADOS =================
-            // ================= ASSALARIADOS =================
-            out.println("===============================================================================================================================");
-            out.println("===================== ASSALARIADOS ============================================================================================");
-            out.println("===============================================================================================================================");
-            out.println("Nome                                             Salario Bruto Descontos Salario Liquido Metodo");
-            out.println("================================================ ============= ========= =============== ======================================");
-
-            double totalAssalariadosBruto = 0;
-            double totalAssalariadosDesconto = 0;
-            double totalAssalariadosLiquido = 0;
-
-            List<Empregado> assalariados = empregados.values().stream()
-                    .filter(e -> "assalariado".equalsIgnoreCase(e.getTipo()) && deveReceberNoDia(e, data))
-                    .sorted(Comparator.comparing(Empregado::getNome))
-                    .toList();
-
-            for (Empregado e : assalariados) {
-                // Define o período do mês atual
-                LocalDate inicioPeriodo = data.with(TemporalAdjusters.firstDayOfMonth());
-                String inicioStr = formatData(inicioPeriodo);
-                String fimStr = formatData(data);
-
-                double bruto = e.getSalario();
-
-                // Descontos externos
-                double descontosExternos = 0.0;
-                try {
-                    descontosExternos = Double.parseDouble(
-                            taxaService.getTotalTaxas(e.getId(), inicioStr, fimStr).replace(',', '.')
-                    );
-                } catch (Exception ignored) {}
-
-                // Taxa sindical proporcional aos dias do mês
-                long diasTrabalhados = java.time.temporal.ChronoUnit.DAYS.between(inicioPeriodo, data) + 1;
-                double taxaSindicalTotal = e.getDebitoSindicalAcumulado() + e.getTaxaSindical() * diasTrabalhados;
-
-                double liquido = bruto - descontosExternos - taxaSindicalTotal;
-
-                if (liquido < 0) {
-                    liquido = 0;
-                    e.setDebitoSindicalAcumulado(taxaSindicalTotal);
-                } else {
-                    e.setDebitoSindicalAcumulado(0);
-                }
+    /** Registra na prévia os pagamentos da seção e devolve os totais dela. */
+    private static Totais pagarSecao(FolhaCalculada folha, int[] secao, LocalDate data, PreviaFolha previa) {
+        Totais totais = new Totais();
+        for (int i : secao) {
+            Contracheque c = folha.contracheques[i];
+            if (c == null) continue; // horista sem admissão não recebe
 
-                totalAssalariadosBruto += bruto;
-                totalAssalariadosDesconto += descontosExternos + taxaSindicalTotal;
-                totalAssalariadosLiquido += liquido;
+            previa.pagar(folha.pagos.get(i), data, c.getDebitoSindical());
+            totais.somar(c);
+        }
+        return totais;
+    }
 
-                out.printf("%s %12s %8s %14s %s%n",
-                        alinharEsquerda(e.getNome(), 45),
-                        alinharDireita(bruto, 16),
-                        alinharDireita(descontosExternos + taxaSindicalTotal, 9),
-                        alinharDireita(liquido, 15),
-                        e.getMetodoPagamentoFormatado()
-                );
+    // ---------- Relatório ----------
 
-                e.setDataUltimoPagamento(formatData(data));
-            }
+    /** Escreve no buffer a linha de um empregado da seção. */
+    private interface FormatoLinha {
+        void escrever(BufferRelatorio b, Empregado e, Contracheque c);
+    }
 
-            out.printf("%nTOTAL ASSALARIADOS %43s %9s %15s%n%n",
-                    alinharDireita(totalAssalariadosBruto, 43),
-                    alinharDireita(totalAssalariadosDesconto, 9),
-                    alinharDireita(totalAssalariadosLiquido, 15)
-            );
+    private static void linhaHorista(BufferRelatorio b, Empregado e, Contracheque c) {
+        if (c == null) c = SEM_PAGAMENTO; // sem admissão: linha zerada
+        b.esquerda(e.getNome(), 36).espaco()
+                .decimal(c.getHorasNormais(), 0, 5).espaco()
+                .decimal(c.getHorasExtras(), 0, 5).espaco()
+                .dinheiro(c.getBruto(), 13).espaco()
+                .dinheiro(c.getDescontos(), 9).espaco()
+                .dinheiro(c.getLiquido(), 15).espaco()
+                .texto(e.getMetodoPagamentoFormatado()).novaLinha();
+    }
 
-            // ================= COMISSIONADOS =================
-            out.println("===============================================================================================================================");
-            out.println("===================== COMISSIONADOS ===========================================================================================");
-            out.println("===============================================================================================================================");
-            out.println("Nome                  Fixo     Vendas   Comissao Salario Bruto Descontos Salario Liquido Metodo");
-            out.println("===================== ======== ======== ======== ============= ========= =============== ======================================");
-
-            double totalComissionadosFixo = 0.0;
-            double totalComissionadosVendas = 0.0;
-            double totalComissionadosComissao = 0.0;
-            double totalComissionadosBruto = 0.0;
-            double totalComissionadosDescontos = 0.0;
-            double totalComissionadosLiquido = 0.0;
-
-            List<Empregado> comissionados = empregados.values().stream()
-                    .filter(e -> "comissionado".equalsIgnoreCase(e.getTipo()) && deveReceberNoDia(e, data))
-                    .sorted(Comparator.comparing(Empregado::getNome))
-                    .toList();
-
-            for (Empregado e : comissionados) {
-                // Período quinzenal
-                LocalDate fimPeriodo = data;
-                LocalDate inicioPeriodo;
-                if (e.getDataUltimoPagamento() != null) {
-                    inicioPeriodo = LocalDate.parse(e.getDataUltimoPagamento(), DateTimeFormatter.ofPattern("d/M/uuuu")).plusDays(1);
-                } else {
-                    // Primeiro pagamento: início do contrato
-                    inicioPeriodo = LocalDate.of(2005, 1, 1);
-                }
-                // Ajusta para ter 14 dias
-                if (ChronoUnit.DAYS.between(inicioPeriodo, fimPeriodo) < 13) {
-                    inicioPeriodo = fimPeriodo.minusDays(13);
-                }
+    private static void linhaAssalariado(BufferRelatorio b, Empregado e, Contracheque c) {
+        b.esquerda(e.getNome(), 45).espaco()
+                .dinheiro(c.getBruto(), 16).espaco()
+                .dinheiro(c.getDescontos(), 9).espaco()
+                .dinheiro(c.getLiquido(), 15).espaco()
+                .texto(e.getMetodoPagamentoFormatado()).novaLinha();
+    }
+
+    private static void linhaComissionado(BufferRelatorio b, Empregado e, Contracheque c) {
+        b.esquerda(e.getNome(), 20).espaco()
+                .dinheiro(c.getFixo(), 9).espaco()
+                .dinheiro(c.getVendas(), 8).espaco()
+                .dinheiro(c.getComissao(), 8).espaco()
+                .dinheiro(c.getBruto(), 13).espaco()
+                .dinheiro(c.getDescontos(), 9).espaco()
+                .dinheiro(c.getLiquido(), 15).espaco()
+                .texto(e.getMetodoPagamentoFormatado()).novaLinha();
+    }
 
-                String inicioStr = formatData(inicioPeriodo);
-                String fimStr = formatData(fimPeriodo);
-
-                // Salário fixo quinzenal
-                double fixo = (e.getSalario() * 12) / 26;
-                fixo = Math.floor(fixo * 100) / 100;
-
-                // Vendas
-                double vendas = 0.0;
-                try {
-                    String vendasRetorno = vendasService.getTotalVendas(e.getId(), inicioStr, fimStr);
-                    if (vendasRetorno == null || vendasRetorno.isBlank()) vendasRetorno = "0";
-                    vendas = Double.parseDouble(vendasRetorno.replace(',', '.'));
-                } catch (Exception ignored) {}
-
-                // Comissão
-                double comissao = vendas * e.getComissao();
-                comissao = Math.floor(comissao * 100) / 100;
-
-                // Salário bruto
-                double bruto = fixo + comissao;
-
-                // Descontos externos
-                double descontosExternos = 0.0;
-                try {
-                    String taxas = taxaService.getTotalTaxas(e.getId(), inicioStr, fimStr);
-                    if (taxas == null || taxas.isBlank()) taxas = "0";
-                    descontosExternos = Double.parseDouble(taxas.replace(',', '.'));
-                } catch (Exception ignored) {}
-
-                // Taxa sindical quinzenal
-                double taxaSindicalTotal = e.getDebitoSindicalAcumulado() + e.getTaxaSindical() * 14;
-
-                // Salário líquido
-                double liquido = bruto - descontosExternos - taxaSindicalTotal;
-
-                // Horista/comissionado não pode ter contracheque negativo
-                if (liquido < 0) {
-                    liquido = 0;
-                    e.setDebitoSindicalAcumulado(taxaSindicalTotal);
-                    descontosExternos = 0;
-                    taxaSindicalTotal = 0;
-                } else {
-                    e.setDebitoSindicalAcumulado(0);
+    /**
+     * Escreve as linhas da seção em blocos: cada rodada monta até {@link #BLOCOS_POR_RODADA}
+     * blocos em paralelo, cada um no seu buffer reaproveitado, e os grava em ordem.
+     */
+    private static void escreverLinhas(Writer out, FolhaCalculada folha, int[] secao, FormatoLinha formato)
+            throws IOException {
+        int blocos = (secao.length + LINHAS_POR_BLOCO - 1) / LINHAS_POR_BLOCO;
+        BufferRelatorio[] buffers = new BufferRelatorio[Math.min(blocos, BLOCOS_POR_RODADA)];
+        for (int k = 0; k < buffers.length; k++) buffers[k] = new BufferRelatorio(LINHAS_POR_BLOCO * 160);
+
+        for (int primeiro = 0; primeiro < blocos; primeiro += buffers.length) {
+            int rodada = Math.min(buffers.length, blocos - primeiro);
+            int base = primeiro;
+            IntStream partes = IntStream.range(0, rodada);
+            if (rodada > 1) partes = partes.parallel();
+            partes.forEach(k -> {
+                BufferRelatorio b = buffers[k];
+                b.limpar();
+                int fim = Math.min(secao.length, (base + k + 1) * LINHAS_POR_BLOCO);
+                for (int j = (base + k) * LINHAS_POR_BLOCO; j < fim; j++) {
+                    int i = secao[j];
+                    formato.escrever(b, folha.pagos.get(i), folha.contracheques[i]);
                 }
+            });
+            for (int k = 0; k < rodada; k++) buffers[k].escreverEm(out);
+        }
+    }
 
-                // Atualiza totais
-                totalComissionadosFixo += fixo;
-                totalComissionadosVendas += vendas;
-                totalComissionadosComissao += comissao;
-                totalComissionadosBruto += bruto;
-                totalComissionadosDescontos += descontosExternos + taxaSindicalTotal;
-                totalComissionadosLiquido += liquido;
-
-                // Impressão
-                out.printf("%-20s %9s %8s %8s %13s %9s %15s %s%n",
-                        e.getNome(),
-                        String.format("%.2f", fixo).replace('.', ','),
-                        String.format("%.2f", vendas).replace('.', ','),
-                        String.format("%.2f", comissao).replace('.', ','),
-                        String.format("%.2f", bruto).replace('.', ','),
-                        String.format("%.2f", descontosExternos + taxaSindicalTotal).replace('.', ','),
-                        String.format("%.2f", liquido).replace('.', ','),
-                        e.getMetodoPagamentoFormatado()
-                );
-
-                e.setDataUltimoPagamento(formatData(fimPeriodo));
+    /**
+     * Contracheque de e na folha do dia, com o período da agenda dele e os dias de taxa
+     * sindical de cada tipo. Horista sem admissão não recebe: devolve null.
+     */
+    private Contracheque contrachequeDaFolha(Empregado e, LocalDate data, PreviaFolha estado) {
+        long debito = estado.debitoSindical(e);
+        LocalDate ultimoPagamento = estado.ultimoPagamento(e);
+        AgendaPagamento agenda = e.getAgendaPagamento();
+        LocalDate periodoAgenda = agenda.inicioPeriodo(data);
+        switch (e.getTipo().toLowerCase()) {
+            case "horista": {
+                if (e.getDataAdmissao() == null) return null;
+                // Desde o último pagamento (ou a admissão), limitado ao período da agenda;
+                // mesmo período para horas, taxas e taxa sindical
+                LocalDate inicioPeriodo = ultimoPagamento != null ? ultimoPagamento.plusDays(1) : e.getDataAdmissao();
+                if (inicioPeriodo.isBefore(periodoAgenda)) inicioPeriodo = periodoAgenda;
+                long diasPeriodo = ChronoUnit.DAYS.between(inicioPeriodo, data) + 1;
+                return calcular(e, inicioPeriodo, data, diasPeriodo, debito);
+            }
+            case "assalariado": {
+                // Período da agenda; taxa sindical proporcional aos dias dele
+                long diasTrabalhados = ChronoUnit.DAYS.between(periodoAgenda, data) + 1;
+                return calcular(e, periodoAgenda, data, diasTrabalhados, debito);
+            }
+            default: {
+                // Desde o último pagamento (primeiro: início do contrato), com pelo menos o período da agenda
+                LocalDate inicioPeriodo = ultimoPagamento != null ? ultimoPagamento.plusDays(1) : INICIO_CONTRATOS;
+                if (periodoAgenda.isBefore(inicioPeriodo)) inicioPeriodo = periodoAgenda;
+                // Taxa sindical de um período da agenda
+                return calcular(e, inicioPeriodo, data, agenda.diasPeriodo(data), debito);
             }
-
-// Totais
-            out.printf("%nTOTAL COMISSIONADOS %10s %8s %8s %13s %9s %15s %n%n",
-                    String.format("%.2f", totalComissionadosFixo).replace('.', ','),
-                    String.format("%.2f", totalComissionadosVendas).replace('.', ','),
-                    String.format("%.2f", totalComissionadosComissao).replace('.', ','),
-                    String.format("%.2f", totalComissionadosBruto).replace('.', ','),
-                    String.format("%.2f", totalComissionadosDescontos).replace('.', ','),
-                    String.format("%.2f", totalComissionadosLiquido).replace('.', ',')
-            );
-
-            double totalFolha = totalHoristasBruto + totalAssalariadosBruto + totalComissionadosBruto;
-            out.printf("TOTAL FOLHA: %s%n", String.format("%.2f", totalFolha).replace('.', ','));
         }
+    }
 
+    /**
+     * Contracheques da lista na mesma ordem dela.
+     * Listas grandes são divididas no pool comum de fork-join; cada posição do vetor é
+     * escrita por uma única tarefa.
+     */
+    private Contracheque[] calcularTodos(List<Empregado> lista, LocalDate data, PreviaFolha estado) {
+        Contracheque[] resultado = new Contracheque[lista.size()];
+        IntStream indices = IntStream.range(0, lista.size());
+        if (lista.size() >= MINIMO_PARALELO) indices = indices.parallel();
+        indices.forEach(i -> resultado[i] = contrachequeDaFolha(lista.get(i), data, estado));
+        return resultado;
     }
 
-    /** Define se o empregado deve ser pago nessa data. */
-    /** Define se o empregado deve ser pago nessa data. */
-    private boolean deveReceberNoDia(Empregado e, LocalDate data) {
-        String tipo = e.getTipo().toLowerCase();
-
-        switch (tipo) {
-            case "horista":
-                // pago toda sexta-feira
-                return data.getDayOfWeek() == DayOfWeek.FRIDAY;
-
-            case "assalariado":
-                // pago no último dia do mês
-                LocalDate ultimoDia = data.with(TemporalAdjusters.lastDayOfMonth());
-                return data.equals(ultimoDia);
-
-            case "comissionado":
-                // Contrato: 1/1/2005
-                LocalDate contrato = LocalDate.of(2005, 1, 1);
-                // Primeira sexta-feira quinzenal (data base): 14/1/2005
-                LocalDate primeiraSexta = LocalDate.of(2005, 1, 14);
-
-                // 1. Deve ser uma sexta-feira
-                if (data.getDayOfWeek() != DayOfWeek.FRIDAY) return false;
-
-                // 2. Deve ser na data ou após a primeira sexta quinzenal
-                if (data.isBefore(primeiraSexta)) return false;
-
-                // 3. A diferença em dias deve ser um múltiplo de 14
-                long diasDesdePrimeiraSexta = ChronoUnit.DAYS.between(primeiraSexta, data);
-                // Se a diferença em dias for divisível por 14, é uma quinzena.
-                return diasDesdePrimeiraSexta % 14 == 0;
+    /** Cálculo completo da folha de uma data, válido enquanto o estado estiver na mesma versão. */
+    private static final class FolhaCalculada {
+        final long versao;
+        final List<Empregado> pagos;          // quem recebe na data, agrupados por agenda
+        final Contracheque[] contracheques;   // alinhado com pagos; null = horista sem admissão
+        final long total;                     // valor de totalFolha (centavos)
+        // índices em pagos de cada seção do relatório, em ordem de nome
+        final int[] horistas;
+        final int[] assalariados;
+        final int[] comissionados;
+
+        FolhaCalculada(long versao, List<Empregado> pagos, Contracheque[] contracheques, long total) {
+            this.versao = versao;
+            this.pagos = pagos;
+            this.contracheques = contracheques;
+            this.total = total;
+            this.horistas = secao(pagos, "horista");
+            this.assalariados = secao(pagos, "assalariado");
+            this.comissionados = secao(pagos, "comissionado");
+        }
+
+        /** Índices do tipo em ordem de nome (empates na ordem de criação dos empregados). */
+        private static int[] secao(List<Empregado> pagos, String tipo) {
+            Integer[] indices = IntStream.range(0, pagos.size())
+                    .filter(i -> tipo.equalsIgnoreCase(pagos.get(i).getTipo()))
+                    .boxed().toArray(Integer[]::new);
+            Arrays.parallelSort(indices, Comparator.comparing((Integer i) -> pagos.get(i), ORDEM_RELATORIO));
+            return Arrays.stream(indices).mapToInt(Integer::intValue).toArray();
         }
-        return false;
     }
 
     private int calcularDiasTrabalhados(Empregado e) {
@@ -472,38 +555,6 @@ public class FolhaDePagamentoService {
         return 0;
     }
 
-    /** Define o início do período de pagamento, retornando como String. */
-    private String getInicioPeriodoStr(Empregado e, LocalDate dataPagamento) {
-        LocalDate admissao = e.getDataAdmissao();
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("d/M/uuuu");
-
-//        System.out.println("\n=== DEBUG getInicioPeriodoStr ===");
-//        System.out.println("Empregado: " + e.getNome());
-//        System.out.println("Data de Pagamento: " + dataPagamento);
-//        System.out.println("Data de Admissão: " + admissao);
-//        System.out.println("Último Pagamento: " + e.getDataUltimoPagamento());
-
-        LocalDate inicio;
-
-        if (e.getDataUltimoPagamento() != null) {
-            inicio = LocalDate.parse(e.getDataUltimoPagamento(), fmt).plusDays(1);
-//            System.out.println("Base: último pagamento + 1 dia");
-        } else {
-            inicio = admissao;
-//            System.out.println("Base: admissão (primeiro pagamento)");
-        }
-
-//        System.out.println("Início calculado do período: " + inicio);
-//        System.out.println("=================================\n");
-
-        return formatData(inicio);
-    }
-
-    /** Converte LocalDate para String no formato d/M/uuuu. */
-    private String formatData(LocalDate data) {
-        return data.format(DateTimeFormatter.ofPattern("d/M/uuuu"));
-    }
-
     /** Faz o parse de String para LocalDate com validação. */
     private LocalDate parseData(String dataStr, String tipo) throws DataInvalidaException {
         try {
@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.wepayu.service;
+
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de uma ou mais folhas rodadas sem alterar os empregados: o último pagamento
+ * e o débito sindical de quem foi pago ficam nesta sobreposição, e as leituras de quem
+ * não foi pago caem no próprio empregado. A prévia pode ser descartada (basta largá-la)
+ * ou efetivada de uma vez, se o estado ainda estiver na versão em que foi calculada.
+ *
+ * Cada prévia é usada por uma thread; várias podem ser calculadas ao mesmo tempo sobre
+ * o mesmo modelo, desde que nenhum comando o altere enquanto isso.
+ */
+public class PreviaFolha {
+    private static final class Pagamento {
+        final LocalDate data;
+        final long debitoSindical;
+
+        Pagamento(LocalDate data, long debitoSindical) {
+            this.data = data;
+            this.debitoSindical = debitoSindical;
+        }
+    }
+
+    private final long versao;
+    private final Map<Empregado, Pagamento> pagamentos = new LinkedHashMap<>(); // chave por identidade
+    private long total;
+    private boolean efetivada;
+
+    PreviaFolha(long versao) {
+        this.versao = versao;
+    }
+
+    /** Versão do estado sobre a qual a prévia foi calculada. */
+    public long getVersao() { return versao; }
+
+    /** Soma do TOTAL FOLHA de todas as folhas da prévia, em centavos. */
+    public long getTotal() { return total; }
+
+    /** Quantos empregados seriam alterados ao efetivar. */
+    public int getQuantidadePagamentos() { return pagamentos.size(); }
+
+    // ---------- Leituras e escritas da folha ----------
+
+    /** Data do último pagamento de e, considerando os desta prévia (null se nunca foi pago). */
+    LocalDate ultimoPagamento(Empregado e) {
+        Pagamento p = pagamentos.get(e);
+        return p != null ? p.data : e.getDataUltimoPagamento();
+    }
+
+    /** Débito sindical acumulado de e, considerando os pagamentos desta prévia. */
+    long debitoSindical(Empregado e) {
+        Pagamento p = pagamentos.get(e);
+        return p != null ? p.debitoSindical : e.getDebitoSindicalAcumulado();
+    }
+
+    void pagar(Empregado e, LocalDate data, long debitoSindical) {
+        pagamentos.put(e, new Pagamento(data, debitoSindical));
+    }
+
+    void somarTotal(long valor) {
+        total += valor;
+    }
+
+    /**
+     * Passa os pagamentos para os empregados e os registra no journal num único registro
+     * PAG;(id;data;debitoSindical)*; uma prévia só pode ser efetivada uma vez.
+     */
+    synchronized void efetivar() {
+        if (efetivada) throw new RuntimeException("Previa ja foi efetivada.");
+        efetivada = true;
+        if (pagamentos.isEmpty()) return;
+
+        List<String> ids = new ArrayList<>(pagamentos.size());
+        List<Object> campos = new ArrayList<>(3 * pagamentos.size());
+        for (Map.Entry<Empregado, Pagamento> p : pagamentos.entrySet()) {
+            Empregado e = p.getKey();
+            BackupManager.antesDeAlterar(e);
+            e.setDebitoSindicalAcumulado(p.getValue().debitoSindical);
+            e.setDataUltimoPagamento(p.getValue().data);
+
+            ids.add(e.getId());
+            campos.add(e.getId());
+            campos.add(p.getValue().data);
+            campos.add(Dinheiro.emReais(p.getValue().debitoSindical));
+        }
+        CoordenadorPersistencia.registrar(Arquivo.EMPREGADOS, ids, "PAG", campos.toArray());
+    }
+}
@@ -1,17 +1,18 @@
 package br.ufal.ic.p2.wepayu.service;
 
 import br.ufal.ic.p2.wepayu.Exception.*;
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
 import br.ufal.ic.p2.wepayu.models.Empregado;
 import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinario;
 
-import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.ResolverStyle;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class RegistroDeHorasService {
@@ -36,7 +37,9 @@ public class RegistroDeHorasService {
         }
 
         if (e.getDataAdmissao() == null) {
+            BackupManager.antesDeAlterar(e);
             e.setDataAdmissao(data);
+            CoordenadorPersistencia.marcarAlterado(Arquivo.EMPREGADOS, empId);
         }
 
         double horas;
@@ -53,22 +56,38 @@ public class RegistroDeHorasService {
         double normais = Math.min(horas, 8);
         double extras = Math.max(0, horas - 8);
 
-        RegistroDeHoras registroExistente = null;
-        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
-            if (r.getData().equals(data)) {
-                registroExistente = r;
-                break;
-            }
-        }
+        acumularHoras(e, data, normais, extras);
+        CoordenadorPersistencia.registrarDia(Arquivo.REGISTROS, empId, data, "REG", empId, data, normais, extras);
+    }
+
+    /** Soma as horas ao registro do dia, criando-o se ainda não existir, com o undo do comando. */
+    private void acumularHoras(Empregado e, LocalDate data, double normais, double extras) {
+        RegistroDeHoras registroExistente = e.getRegistrosDeHoras().doDia(data);
 
         if (registroExistente != null) {
-            registroExistente.SetHorasNormais(normais);
-            registroExistente.SetHorasExtras(extras);
+            BackupManager.registroAlterado(e, registroExistente);
+            e.acumularHoras(data, normais, extras);
         } else {
-            e.addRegistroDeHoras(new RegistroDeHoras(data, normais, extras));
+            RegistroDeHoras novo = new RegistroDeHoras(data, normais, extras);
+            e.addRegistroDeHoras(novo);
+            BackupManager.itemAdicionado(Arquivo.REGISTROS, e, e.getRegistrosDeHoras(), novo);
         }
+    }
 
-        salvar();
+    /** Reaplica um registro REG do journal (empId;data;normais;extras), se o snapshot ainda não o tem. */
+    public void reproduzir(LeitorCsv registro, long sequencia) {
+        Empregado e = empregadosMap.get(registro.texto(1));
+        if (e == null || SnapshotBinario.incorporou(e.getId(), sequencia)) return;
+
+        LocalDate data = LocalDate.ofEpochDay(registro.data(2));
+        // como em lancarCartao: o primeiro cartão define a admissão (não há registro próprio)
+        if (e.getDataAdmissao() == null) e.setDataAdmissao(data);
+        // sem os ganchos do BackupManager: a reprodução roda antes do inicializar e não é desfazível
+        if (e.getRegistrosDeHoras().linhaDoDia(data) >= 0) {
+            e.acumularHoras(data, registro.real(3), registro.real(4));
+        } else {
+            e.addRegistroDeHoras(new RegistroDeHoras(data, registro.real(3), registro.real(4)));
+        }
     }
 
     public LocalDate getDataAdmissao(Empregado e) {
@@ -86,7 +105,7 @@ public class RegistroDeHorasService {
             throw new NaoEhHoristaException("Empregado nao eh horista.");
         }
 
-        if (dataInicial == null || dataFinal == null || e.getRegistrosDeHoras().isEmpty()) {
+        if (dataInicial == null || dataFinal == null || !e.temRegistrosDeHoras()) {
             return "0";
         }
 
@@ -97,14 +116,7 @@ public class RegistroDeHorasService {
             throw new IllegalArgumentException("Data inicial nao pode ser posterior aa data final.");
         }
 
-        double total = 0;
-        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
-            if (!r.getData().isBefore(inicial) && r.getData().isBefore(fim)) {
-                total += r.getHorasNormais();
-            }
-        }
-
-        return formatHoras(total);
+        return formatHoras(e.getHorasNormais(inicial, fim));
     }
 
     public String getHorasExtras(String empId, String dataInicial, String dataFinal) {
@@ -114,7 +126,7 @@ public class RegistroDeHorasService {
             throw new NaoEhHoristaException("Empregado nao eh horista.");
         }
 
-        if (dataInicial == null || dataFinal == null || e.getRegistrosDeHoras().isEmpty()) {
+        if (dataInicial == null || dataFinal == null || !e.temRegistrosDeHoras()) {
             return "0";
         }
 
@@ -125,75 +137,14 @@ public class RegistroDeHorasService {
             throw new IllegalArgumentException("Data inicial nao pode ser posterior aa data final.");
         }
 
-        double total = 0;
-        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
-            if (!r.getData().isBefore(inicial) && r.getData().isBefore(fim)) {
-                total += r.getHorasExtras();
-            }
-        }
-
-        return formatHoras(total);
-    }
-
-    public void carregarRegistros() {
-        File arquivo = new File("registros.csv");
-        if (!arquivo.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
-            String linha;
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-
-            while ((linha = br.readLine()) != null) {
-                String[] partes = linha.split(";");
-                if (partes.length != 4) continue;
-
-                String empId = partes[0];
-                LocalDate data = LocalDate.parse(partes[1], formatter);
-                double normais = Double.parseDouble(partes[2]);
-                double extras = Double.parseDouble(partes[3]);
-
-                Empregado e = empregadosMap.get(empId);
-                if (e != null) {
-                    e.addRegistroDeHoras(new RegistroDeHoras(data, normais, extras));
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao carregar registros: " + e.getMessage());
-        }
-    }
-
-    public void limpar() {
-        for (Empregado e : empregadosMap.values()) {
-            e.getRegistrosDeHoras().clear();
-        }
+        return formatHoras(e.getHorasExtras(inicial, fim));
     }
 
     public void zerar() {
         for (Empregado e : empregadosMap.values()) {
             e.getRegistrosDeHoras().clear();
         }
-
-        try (PrintWriter pw = new PrintWriter(new FileWriter("registros.csv"))) {
-            // limpa o arquivo
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void salvar() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("registros.csv"))) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-
-            for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-                String empId = entry.getKey();
-                Empregado e = entry.getValue();
-                for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
-                    pw.println(empId + ";" + r.getData().format(formatter) + ";" + r.getHorasNormais() + ";" + r.getHorasExtras());
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar registros: " + e.getMessage());
-        }
+        CoordenadorPersistencia.marcarSujo(Arquivo.REGISTROS);
     }
 
     private Empregado validarEmpregado(String empId) {
@@ -222,28 +173,4 @@ public class RegistroDeHorasService {
         return String.format("%.1f", total).replace('.', ',');
     }
 
-    // Clona todos os registros de horas de todos os empregados
-    public Map<String, List<RegistroDeHoras>> cloneRegistros() {
-        Map<String, List<RegistroDeHoras>> clone = new HashMap<>();
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            List<RegistroDeHoras> listaClone = new ArrayList<>();
-            for (RegistroDeHoras r : entry.getValue().getRegistrosDeHoras()) {
-                listaClone.add(r.copiar()); // precisa implementar copiar() em RegistroDeHoras
-            }
-            clone.put(entry.getKey(), listaClone);
-        }
-        return clone;
-    }
-
-    // Restaura todos os registros a partir de um snapshot
-    public void restaurarRegistros(Map<String, List<RegistroDeHoras>> clone) {
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            entry.getValue().getRegistrosDeHoras().clear(); // limpa existentes
-            if (clone.containsKey(entry.getKey())) {
-                entry.getValue().getRegistrosDeHoras().addAll(clone.get(entry.getKey()));
-            }
-        }
-        salvar(); // opcional: sobrescrever CSV
-    }
-
 }
@@ -1,60 +1,37 @@
 package br.ufal.ic.p2.wepayu.service;
 
 import br.ufal.ic.p2.wepayu.Exception.*;
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
 import br.ufal.ic.p2.wepayu.models.Empregado;
 import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinario;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
 
-import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.ResolverStyle;
-import java.util.*;
+import java.util.Map;
 
 public class TaxaServicoService {
     private Map<String, Empregado> empregadosMap;
+    private Map<String, Empregado> empregadosPorSindicato;
 
-    public TaxaServicoService(Map<String, Empregado> empregadosMap) {
+    public TaxaServicoService(Map<String, Empregado> empregadosMap, Map<String, Empregado> empregadosPorSindicato) {
         this.empregadosMap = empregadosMap;
+        this.empregadosPorSindicato = empregadosPorSindicato;
     }
 
-    public void carregarTaxas() {
-        File arquivo = new File("taxas.csv");
-        if (!arquivo.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
-            String linha;
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-
-            while ((linha = br.readLine()) != null) {
-                String[] partes = linha.split(";");
-                if (partes.length != 3) continue; // empId;data;valor
-
-                String idSindicato = partes[0];
-                LocalDate data = LocalDate.parse(partes[1], formatter);
-                double valor = Double.parseDouble(partes[2]);
-
-                Empregado e = empregadosMap.values().stream()
-                        .filter(emp -> emp.getSindicalizado() && idSindicato.equals(emp.getIdSindicato()))
-                        .findFirst()
-                        .orElse(null);
-
-                if (e != null) {
-                    e.addTaxaServico(new TaxaServico(data, valor));
-                }
-            }
-        } catch (IOException | NumberFormatException | DateTimeParseException e) {
-            System.err.println("Erro ao carregar taxas: " + e.getMessage());
-        }
-    }
-
-    public void lancarTaxaServico(String membro, String dataStr, double valor) throws Exception {
+    public void lancarTaxaServico(String membro, String dataStr, long valor) throws Exception {
         if (membro == null || membro.trim().isEmpty())
             throw new Exception("Identificacao do membro nao pode ser nula.");
 
-        Empregado e = empregadosMap.values().stream()
-                .filter(emp -> membro.equals(emp.getIdSindicato()))
-                .findFirst().orElseThrow(() -> new Exception("Membro nao existe."));
+        Empregado e = empregadosPorSindicato.get(membro);
+        if (e == null)
+            throw new Exception("Membro nao existe.");
 
         if (!e.getSindicalizado())
             throw new Exception("Empregado nao eh sindicalizado.");
@@ -68,8 +45,19 @@ public class TaxaServicoService {
 
         if (valor <= 0) throw new Exception("Valor deve ser positivo.");
 
-        e.addTaxaServico(new TaxaServico(data, valor));
-        salvar();
+        TaxaServico taxa = new TaxaServico(data, valor);
+        e.addTaxaServico(taxa);
+        BackupManager.itemAdicionado(Arquivo.TAXAS, e, e.getTaxasServico(), taxa);
+        CoordenadorPersistencia.registrarDia(Arquivo.TAXAS, e.getId(), data, "TAX", membro, data, Dinheiro.emReais(taxa.getValor()));
+    }
+
+    /** Reaplica um registro TAX do journal (idSindicato;data;valor), se o snapshot ainda não o tem. */
+    public void reproduzir(LeitorCsv registro, long sequencia) {
+        Empregado e = empregadosPorSindicato.get(registro.texto(1));
+
+        if (e != null && !SnapshotBinario.incorporou(e.getId(), sequencia)) {
+            e.addTaxaServico(new TaxaServico(LocalDate.ofEpochDay(registro.data(2)), registro.decimal(3, 2)));
+        }
     }
 
     public String getTotalTaxas(String empId, String dataInicialStr, String dataFinalStr) throws Exception {
@@ -86,39 +74,12 @@ public class TaxaServicoService {
             throw new IllegalArgumentException("Data inicial nao pode ser posterior aa data final.");
         }
 
-        double total = 0;
-        List<TaxaServico> taxas = e.getTaxasServico();
-        for (TaxaServico t : taxas) {
-            if (!t.getData().isBefore(inicial) && t.getData().isBefore(fim)) {
-                total += t.getValor();
-            }
-        }
-
-        return String.format("%.2f", total).replace('.', ',');
-    }
-
-    public void limpar() {
-        empregadosMap.values().forEach(emp -> emp.getTaxasServico().clear());
+        return Dinheiro.formatar(e.getTotalTaxas(inicial, fim));
     }
 
     public void zerar() {
         empregadosMap.values().forEach(emp -> emp.getTaxasServico().clear());
-        try (PrintWriter pw = new PrintWriter(new FileWriter("taxas.csv"))) {}
-        catch (IOException ignored) {}
-    }
-
-    public void salvar() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("taxas.csv"))) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-            for (Empregado e : empregadosMap.values()) {
-                for (TaxaServico t : e.getTaxasServico()) {
-                    // Salva sempre pelo ID do empregado
-                    pw.printf("%s;%s;%.2f%n", e.getIdSindicato() != null ? e.getIdSindicato() : e.getNome(), t.getData().format(formatter), t.getValor());
-                }
-            }
-        } catch (IOException ex) {
-            System.err.println("Erro ao salvar taxas: " + ex.getMessage());
-        }
+        CoordenadorPersistencia.marcarSujo(Arquivo.TAXAS);
     }
 
     private LocalDate parseData(String dataStr, String tipo) throws DataInvalidaException {
@@ -128,27 +89,4 @@ public class TaxaServicoService {
             throw new DataInvalidaException("Data " + tipo + " invalida.");
         }
     }
-
-    // ---------- Clone e Restaurar ----------
-    public Map<String, List<TaxaServico>> cloneTaxas() {
-        Map<String, List<TaxaServico>> clone = new HashMap<>();
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            List<TaxaServico> listaClone = new ArrayList<>();
-            for (TaxaServico t : entry.getValue().getTaxasServico()) {
-                listaClone.add(t.copiar()); // implementar copiar() em TaxaServico
-            }
-            clone.put(entry.getKey(), listaClone);
-        }
-        return clone;
-    }
-
-    public void restaurarTaxas(Map<String, List<TaxaServico>> clone) {
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            entry.getValue().getTaxasServico().clear();
-            if (clone.containsKey(entry.getKey())) {
-                entry.getValue().getTaxasServico().addAll(clone.get(entry.getKey()));
-            }
-        }
-        salvar();
-    }
 }
\ No newline at end of file
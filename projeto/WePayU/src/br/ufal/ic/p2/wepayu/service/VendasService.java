@@ -1,57 +1,29 @@
 package br.ufal.ic.p2.wepayu.service;
 
 import br.ufal.ic.p2.wepayu.Exception.*;
+import br.ufal.ic.p2.wepayu.backup.BackupManager;
 import br.ufal.ic.p2.wepayu.models.Empregado;
 import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+import br.ufal.ic.p2.wepayu.persistencia.LeitorCsv;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinario;
+import br.ufal.ic.p2.wepayu.util.Dinheiro;
 
-import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.ResolverStyle;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class VendasService {
 
-    private final String ARQUIVO = "vendas.csv";
     private Map<String, Empregado> empregadosMap;
 
     public VendasService(Map<String, Empregado> empregadosMap) {
         this.empregadosMap = empregadosMap;
     }
 
-    public void carregarVendas() {
-        File arquivo = new File(ARQUIVO);
-        if (!arquivo.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
-            String linha;
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-
-            while ((linha = br.readLine()) != null) {
-                String[] partes = linha.split(";");
-                if (partes.length != 3) continue; // id;data;valor
-
-                String empId = partes[0];
-                LocalDate data = LocalDate.parse(partes[1], formatter);
-                double valor = Double.parseDouble(partes[2]);
-
-                Empregado e = empregadosMap.get(empId);
-                if (e != null) {
-                    e.addVenda(new Venda(data, valor));
-                }
-            }
-
-        } catch (IOException e) {
-            System.err.println("Erro ao carregar vendas: " + e.getMessage());
-        } catch (NumberFormatException | DateTimeParseException e) {
-            System.err.println("Erro ao processar linha de venda: " + e.getMessage());
-        }
-    }
-
     public void lancarVenda(String empId, String dataStr, String valorStr) {
         if (empId == null || empId.trim().isEmpty()) {
             throw new IdentificacaoDoEmpregadoNulaException("Identificacao do empregado nao pode ser nula.");
@@ -73,17 +45,27 @@ public class VendasService {
             throw new IllegalArgumentException("Data invalida.");
         }
 
-        double valor;
+        long valor;
         try {
-            valor = Double.parseDouble(valorStr.replace(',', '.'));
+            valor = Dinheiro.deTexto(valorStr);
         } catch (NumberFormatException ex) {
             throw new IllegalArgumentException("Valor invalido.");
         }
 
         if (valor <= 0) throw new IllegalArgumentException("Valor deve ser positivo.");
 
-        e.addVenda(new Venda(data, valor));
-        salvar();
+        Venda venda = new Venda(data, valor);
+        e.addVenda(venda);
+        BackupManager.itemAdicionado(Arquivo.VENDAS, e, e.getVendas(), venda);
+        CoordenadorPersistencia.registrarDia(Arquivo.VENDAS, empId, data, "VEN", empId, data, Dinheiro.emReais(venda.getValor()));
+    }
+
+    /** Reaplica um registro VEN do journal (empId;data;valor), se o snapshot ainda não o tem. */
+    public void reproduzir(LeitorCsv registro, long sequencia) {
+        Empregado e = empregadosMap.get(registro.texto(1));
+        if (e == null || SnapshotBinario.incorporou(e.getId(), sequencia)) return;
+
+        e.addVenda(new Venda(LocalDate.ofEpochDay(registro.data(2)), registro.decimal(3, 2)));
     }
 
     public String getTotalVendas(String empId, String dataInicialStr, String dataFinalStr) {
@@ -107,44 +89,14 @@ public class VendasService {
             throw new IllegalArgumentException("Data inicial nao pode ser posterior aa data final.");
         }
 
-        double total = 0;
-        List<Venda> vendas = e.getVendas();
-        for (Venda v : vendas) {
-            if (!v.getData().isBefore(inicial) && v.getData().isBefore(fim)) {
-                total += v.getValor();
-            }
-        }
-
-        return String.format("%.2f", total).replace('.', ',');
-    }
-
-    public void limpar() {
-        for (Empregado e : empregadosMap.values()) {
-            e.getVendas().clear();
-        }
+        return Dinheiro.formatar(e.getTotalVendas(inicial, fim));
     }
 
     public void zerar() {
         for (Empregado e : empregadosMap.values()) {
             e.getVendas().clear();
         }
-        try (PrintWriter pw = new PrintWriter(new FileWriter(ARQUIVO))) {
-            // limpa arquivo
-        } catch (IOException ignored) {}
-    }
-
-    public void salvar() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(ARQUIVO))) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
-            for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-                Empregado e = entry.getValue();
-                for (Venda v : e.getVendas()) {
-                    pw.printf("%s;%s;%.2f%n", entry.getKey(), v.getData().format(formatter), v.getValor());
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar vendas: " + e.getMessage());
-        }
+        CoordenadorPersistencia.marcarSujo(Arquivo.VENDAS);
     }
 
     private LocalDate parseData(String dataStr, String tipo) throws DataInvalidaException {
@@ -154,27 +106,4 @@ public class VendasService {
             throw new DataInvalidaException("Data " + tipo + " invalida.");
         }
     }
-
-    // ---------- Clone e Restaurar ----------
-    public Map<String, List<Venda>> cloneVendas() {
-        Map<String, List<Venda>> clone = new HashMap<>();
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            List<Venda> listaClone = new ArrayList<>();
-            for (Venda v : entry.getValue().getVendas()) {
-                listaClone.add(v.copiar()); // implementar copiar() em Venda
-            }
-            clone.put(entry.getKey(), listaClone);
-        }
-        return clone;
-    }
-
-    public void restaurarVendas(Map<String, List<Venda>> clone) {
-        for (Map.Entry<String, Empregado> entry : empregadosMap.entrySet()) {
-            entry.getValue().getVendas().clear();
-            if (clone.containsKey(entry.getKey())) {
-                entry.getValue().getVendas().addAll(clone.get(entry.getKey()));
-            }
-        }
-        salvar();
-    }
 }
\ No newline at end of file
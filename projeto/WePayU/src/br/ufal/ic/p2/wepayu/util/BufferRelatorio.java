@@ -0,0 +1,168 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Buffer de caracteres reutilizável para montar relatórios de colunas fixas.
+ * Os números são escritos direto no buffer, com vírgula decimal e o mesmo
+ * resultado de {@code String.format("%.Nf", v).replace('.', ',')}.
+ */
+public class BufferRelatorio {
+    private static final String NOVA_LINHA = System.lineSeparator();
+
+    // até aqui (em unidades da última casa) o erro do double fica bem abaixo da margem de 1e-6
+    private static final double LIMITE_ATALHO = 1e9;
+    private static final long[] POTENCIAS = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+    private char[] buf;
+    private int tamanho;
+    private final char[] numero = new char[24];
+
+    public BufferRelatorio() {
+        this(8192);
+    }
+
+    public BufferRelatorio(int capacidade) {
+        buf = new char[capacidade];
+    }
+
+    public int tamanho() { return tamanho; }
+
+    public BufferRelatorio limpar() {
+        tamanho = 0;
+        return this;
+    }
+
+    public void escreverEm(Writer out) throws IOException {
+        out.write(buf, 0, tamanho);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, tamanho);
+    }
+
+    // ---------- Texto ----------
+
+    public BufferRelatorio texto(String s) {
+        if (s == null) s = "null";
+        garantir(s.length());
+        s.getChars(0, s.length(), buf, tamanho);
+        tamanho += s.length();
+        return this;
+    }
+
+    public BufferRelatorio espaco() {
+        garantir(1);
+        buf[tamanho++] = ' ';
+        return this;
+    }
+
+    public BufferRelatorio novaLinha() {
+        return texto(NOVA_LINHA);
+    }
+
+    /** Como {@code %-Ns}: completa com espaços à direita, sem cortar textos maiores. */
+    public BufferRelatorio esquerda(String s, int largura) {
+        texto(s);
+        int falta = largura - (s == null ? 4 : s.length());
+        return espacos(falta);
+    }
+
+    /** Como {@code %Ns}: completa com espaços à esquerda, sem cortar textos maiores. */
+    public BufferRelatorio direita(String s, int largura) {
+        espacos(largura - (s == null ? 4 : s.length()));
+        return texto(s);
+    }
+
+    private BufferRelatorio espacos(int n) {
+        if (n <= 0) return this;
+        garantir(n);
+        for (int i = 0; i < n; i++) buf[tamanho++] = ' ';
+        return this;
+    }
+
+    // ---------- Números ----------
+
+    /**
+     * Escreve v com {@code casas} casas (0 a 6) alinhado à direita em {@code largura},
+     * arredondando HALF_UP sobre a representação decimal mais curta do double, como o Formatter.
+     */
+    public BufferRelatorio decimal(double v, int casas, int largura) {
+        int inicio = formatar(v, casas);
+        if (inicio < 0) {
+            // infinito, NaN ou grande demais: deixa com o Formatter
+            return direita(String.format("%." + casas + "f", v).replace('.', ','), largura);
+        }
+        int n = numero.length - inicio;
+        espacos(largura - n);
+        garantir(n);
+        System.arraycopy(numero, inicio, buf, tamanho, n);
+        tamanho += n;
+        return this;
+    }
+
+    /** Valor em centavos com duas casas, alinhado à direita em {@code largura}. */
+    public BufferRelatorio dinheiro(long centavos, int largura) {
+        int pos = numero.length;
+        long abs = Math.abs(centavos);
+        numero[--pos] = (char) ('0' + abs % 10);
+        numero[--pos] = (char) ('0' + abs / 10 % 10);
+        numero[--pos] = ',';
+        abs /= 100;
+        do {
+            numero[--pos] = (char) ('0' + abs % 10);
+            abs /= 10;
+        } while (abs > 0);
+        if (centavos < 0) numero[--pos] = '-';
+
+        int n = numero.length - pos;
+        espacos(largura - n);
+        garantir(n);
+        System.arraycopy(numero, pos, buf, tamanho, n);
+        tamanho += n;
+        return this;
+    }
+
+    /** Formata v no fim de {@link #numero}; devolve a posição do primeiro caractere ou -1. */
+    private int formatar(double v, int casas) {
+        boolean negativo = (Double.doubleToRawLongBits(v) < 0);
+        double escalado = Math.abs(v) * POTENCIAS[casas];
+        double fracao = escalado - Math.floor(escalado);
+
+        long unidades;
+        if (escalado < LIMITE_ATALHO && Math.abs(fracao - 0.5) > 1e-6) {
+            // longe da metade: o erro do produto não muda o arredondamento
+            unidades = (long) Math.floor(escalado) + (fracao > 0.5 ? 1 : 0);
+        } else if (Double.isFinite(v) && escalado < Long.MAX_VALUE / 10) {
+            unidades = BigDecimal.valueOf(Math.abs(v)).setScale(casas, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        } else {
+            return -1;
+        }
+
+        int pos = numero.length;
+        for (int i = 0; i < casas; i++) {
+            numero[--pos] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+        }
+        if (casas > 0) numero[--pos] = ',';
+        do {
+            numero[--pos] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+        } while (unidades > 0);
+        if (negativo) numero[--pos] = '-';
+        return pos;
+    }
+
+    private void garantir(int extra) {
+        if (tamanho + extra > buf.length) {
+            char[] maior = new char[Math.max(buf.length * 2, tamanho + extra)];
+            System.arraycopy(buf, 0, maior, 0, tamanho);
+            buf = maior;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valores em dinheiro representados como long de centavos.
+ * Conversões de double arredondam para o centavo mais próximo (meio para cima)
+ * sobre a representação decimal do double, o mesmo que String.format("%.2f") mostraria.
+ */
+public final class Dinheiro {
+
+    // até aqui o erro de double * 100 fica bem abaixo da margem usada para decidir o arredondamento
+    private static final double LIMITE_ATALHO = 1e7;
+    private static final long MILIONESIMOS = 1_000_000L;
+
+    private Dinheiro() {
+    }
+
+    /** Reais (double) para centavos. */
+    public static long deReais(double reais) {
+        double escalado = Math.abs(reais) * 100;
+        double fracao = escalado - Math.floor(escalado);
+        if (Math.abs(reais) < LIMITE_ATALHO && Math.abs(fracao - 0.5) > 1e-6) {
+            long centavos = (long) Math.floor(escalado) + (fracao > 0.5 ? 1 : 0);
+            return reais < 0 ? -centavos : centavos;
+        }
+        return BigDecimal.valueOf(reais).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Texto com vírgula ou ponto decimal ("2300,45") para centavos; NumberFormatException se
+     * inválido. Sinal, dígitos e separador são lidos direto em centavos, arredondando pela
+     * terceira casa (meio para cima); outras formas que Double.parseDouble aceita ("1e3",
+     * espaços, mais de 15 dígitos inteiros) passam pelo double.
+     */
+    public static long deTexto(String texto) {
+        int n = texto.length();
+        int i = 0;
+        boolean negativo = false;
+        if (n > 0 && (texto.charAt(0) == '-' || texto.charAt(0) == '+')) {
+            negativo = texto.charAt(0) == '-';
+            i++;
+        }
+        long centavos = 0;
+        int inteiros = 0;
+        for (; i < n && ehDigito(texto.charAt(i)); i++, inteiros++) {
+            if (inteiros == 15) return deReais(Double.parseDouble(texto.replace(',', '.')));
+            centavos = centavos * 10 + (texto.charAt(i) - '0');
+        }
+        centavos *= 100;
+        int casas = 0;
+        boolean arredondar = false;
+        if (i < n && (texto.charAt(i) == ',' || texto.charAt(i) == '.')) {
+            for (i++; i < n && ehDigito(texto.charAt(i)); i++, casas++) {
+                int digito = texto.charAt(i) - '0';
+                if (casas == 0) centavos += digito * 10;
+                else if (casas == 1) centavos += digito;
+                else if (casas == 2) arredondar = digito >= 5;
+            }
+        }
+        if (i != n || inteiros + casas == 0) return deReais(Double.parseDouble(texto.replace(',', '.')));
+        if (arredondar) centavos++;
+        return negativo ? -centavos : centavos;
+    }
+
+    private static boolean ehDigito(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Centavos para reais; exato para qualquer valor abaixo de 2^53 centavos. */
+    public static double emReais(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /** Centavos no formato dos relatórios: "2300,45". */
+    public static String formatar(long centavos) {
+        StringBuilder sb = new StringBuilder(24);
+        if (centavos < 0) sb.append('-');
+        long abs = Math.abs(centavos);
+        sb.append(abs / 100).append(',');
+        long fracao = abs % 100;
+        if (fracao < 10) sb.append('0');
+        return sb.append(fracao).toString();
+    }
+
+    /**
+     * centavos * fator arredondado com o modo pedido. O fator vale pela sua representação
+     * decimal (0.05 é exatamente 5%); até seis casas a conta é feita em long.
+     */
+    public static long multiplicar(long centavos, double fator, RoundingMode modo) {
+        long fatorFixo = Math.round(fator * MILIONESIMOS);
+        if (fatorFixo / (double) MILIONESIMOS == fator && Math.abs(fatorFixo) < (1L << 31)
+                && Math.abs(centavos) < (1L << 31)) {
+            return dividir(centavos * fatorFixo, MILIONESIMOS, modo);
+        }
+        return BigDecimal.valueOf(centavos).multiply(BigDecimal.valueOf(fator))
+                .setScale(0, modo).longValueExact();
+    }
+
+    /** valor / divisor (divisor positivo) arredondado com FLOOR ou HALF_UP. */
+    public static long dividir(long valor, long divisor, RoundingMode modo) {
+        switch (modo) {
+            case FLOOR:
+                return Math.floorDiv(valor, divisor);
+            case HALF_UP:
+                long metade = divisor / 2;
+                return valor >= 0 ? (valor + metade) / divisor : -((-valor + metade) / divisor);
+            default:
+                return BigDecimal.valueOf(valor).divide(BigDecimal.valueOf(divisor), 0, modo).longValueExact();
+        }
+    }
+}
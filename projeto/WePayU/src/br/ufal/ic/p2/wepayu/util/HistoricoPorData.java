@@ -0,0 +1,342 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Histórico de itens datados (registros de horas, vendas, taxas) guardado em colunas
+ * primitivas, sem um objeto por item: as linhas ficam em ordem de data (mesma data: ordem
+ * de lançamento), com o epoch day num vetor de int e cada medida (ex.: horas normais,
+ * valor da venda) num vetor de long. As árvores de Fenwick ao lado das colunas servem só
+ * para as somas: um intervalo de datas sai por busca binária e a soma dele em O(log n);
+ * o valor de uma linha é lido direto da coluna.
+ * <p>
+ * Como List, o histórico mostra os itens na ordem de lançamento, que é a que o undo e os
+ * arquivos usam; cada {@link #get} monta uma cópia do item a partir das colunas, então
+ * alterar o objeto devolvido não altera o histórico. Enquanto os lançamentos vêm em
+ * ordem de data as duas ordens coincidem e não há mais nada guardado; senão o histórico
+ * passa a guardar a permutação entre elas. Acrescentar um item de data igual ou posterior
+ * à última e tirar o último item custam O(log n). Qualquer outra inserção ou remoção
+ * (ex.: um cartão retroativo) desloca as colunas e a permutação em O(n) e invalida as
+ * árvores, que só são reconstruídas, também em O(n), na próxima soma: uma carga com
+ * muitos itens fora de ordem paga os deslocamentos, mas uma reconstrução só.
+ */
+public final class HistoricoPorData<T> extends AbstractList<T> implements RandomAccess {
+
+    /** Monta um item a partir da data e dos valores das medidas. */
+    public interface Montador<T> {
+        T montar(LocalDate data, long[] medidas);
+    }
+
+    private final Function<T, LocalDate> data;
+    private final List<ToLongFunction<T>> medidas;
+    private final Montador<T> montador;
+
+    private int tamanho;
+    private int[] dias = new int[0];   // posição (ordem de data) -> epoch day
+    private final long[][] valores;    // por medida, posição -> valor
+    private final long[][] arvores;    // por medida, árvore de Fenwick (base 1) sobre as posições
+    private boolean arvoresEmDia = true; // false: colunas deslocadas, árvores a reconstruir
+
+    // permutação entre as ordens; null enquanto a linha i (ordem de lançamento) está na posição i
+    private int[] posicaoDa;
+    private int[] linhaNa;
+
+    public HistoricoPorData(Function<T, LocalDate> data, Montador<T> montador, List<ToLongFunction<T>> medidas) {
+        this.data = data;
+        this.montador = montador;
+        this.medidas = List.copyOf(medidas);
+        this.valores = new long[medidas.size()][0];
+        this.arvores = new long[medidas.size()][1];
+    }
+
+    // ---------- List (ordem de lançamento) ----------
+
+    @Override
+    public T get(int i) {
+        verificar(i, tamanho);
+        return naPosicao(posicao(i));
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public void add(int i, T item) {
+        verificar(i, tamanho + 1);
+        int d = epochDay(data.apply(item));
+        long[] novos = new long[medidas.size()];
+        for (int m = 0; m < medidas.size(); m++) novos[m] = medidas.get(m).applyAsLong(item);
+
+        crescer();
+        if (i == tamanho && (tamanho == 0 || dias[tamanho - 1] <= d)) {
+            acrescentar(d, novos);
+        } else {
+            inserir(i, d, novos);
+        }
+        modCount++;
+    }
+
+    @Override
+    public T set(int i, T item) {
+        T anterior = remove(i);
+        add(i, item);
+        return anterior;
+    }
+
+    @Override
+    public T remove(int i) {
+        T item = get(i);
+        int k = posicao(i);
+        if (k == tamanho - 1) {
+            // última posição: as somas das outras não mudam
+            if (posicaoDa != null) {
+                System.arraycopy(posicaoDa, i + 1, posicaoDa, i, tamanho - i - 1);
+                for (int j = i; j < tamanho - 1; j++) linhaNa[posicaoDa[j]] = j;
+            }
+            tamanho--;
+            simplificarPermutacao();
+        } else {
+            retirar(i, k);
+        }
+        modCount++;
+        return item;
+    }
+
+    @Override
+    public void clear() {
+        tamanho = 0;
+        posicaoDa = null;
+        linhaNa = null;
+        arvoresEmDia = true;
+        modCount++;
+    }
+
+    // ---------- Consultas e alterações por data ----------
+
+    /** Linha (ordem de lançamento) do primeiro item lançado no dia, ou -1. */
+    public int linhaDoDia(LocalDate dia) {
+        int d = epochDay(dia);
+        int k = primeiroAPartirDe(d);
+        if (k >= tamanho || dias[k] != d) return -1;
+        return linhaNa == null ? k : linhaNa[k];
+    }
+
+    /** Linhas (ordem de lançamento, crescente) de todos os itens lançados no dia. */
+    public int[] linhasDoDia(LocalDate dia) {
+        int d = epochDay(dia);
+        int de = primeiroAPartirDe(d);
+        int ate = primeiroAPartirDe(d + 1);
+        int[] linhas = new int[ate - de];
+        for (int k = de; k < ate; k++) linhas[k - de] = linhaNa == null ? k : linhaNa[k];
+        Arrays.sort(linhas);
+        return linhas;
+    }
+
+    /** Primeiro item lançado no dia, ou null. */
+    public T doDia(LocalDate dia) {
+        int d = epochDay(dia);
+        int k = primeiroAPartirDe(d);
+        return k < tamanho && dias[k] == d ? naPosicao(k) : null;
+    }
+
+    /** Medida {@code m} da linha i. */
+    public long medida(int i, int m) {
+        return valores[m][posicao(i)];
+    }
+
+    /** Troca as medidas da linha i (a data não muda) e atualiza as somas. */
+    public void alterarMedidas(int i, long... valores) {
+        verificar(i, tamanho);
+        int k = posicao(i);
+        for (int m = 0; m < medidas.size(); m++) {
+            long diferenca = valores[m] - this.valores[m][k];
+            this.valores[m][k] = valores[m];
+            if (!arvoresEmDia) continue;
+            long[] arvore = arvores[m];
+            for (int j = k + 1; j <= tamanho; j += j & -j) arvore[j] += diferenca;
+        }
+    }
+
+    /** Itens com data em [inicio, fim), em ordem de data (vale até a próxima alteração). */
+    public List<T> entre(LocalDate inicio, LocalDate fim) {
+        int de = primeiroAPartirDe(epochDay(inicio));
+        int ate = Math.max(de, primeiroAPartirDe(epochDay(fim)));
+        return new AbstractList<T>() {
+            @Override
+            public T get(int k) {
+                verificar(k, ate - de);
+                return naPosicao(de + k);
+            }
+
+            @Override
+            public int size() {
+                return ate - de;
+            }
+        };
+    }
+
+    /** Todos os itens em ordem de data (vale até a próxima alteração). */
+    public List<T> emOrdemDeData() {
+        return entre(LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /** Soma da medida {@code m} dos itens com data em [inicio, fim). */
+    public long soma(int m, LocalDate inicio, LocalDate fim) {
+        int de = primeiroAPartirDe(epochDay(inicio));
+        int ate = primeiroAPartirDe(epochDay(fim));
+        if (ate <= de) return 0;
+        if (!arvoresEmDia) montarArvores();
+        return prefixo(arvores[m], ate) - prefixo(arvores[m], de);
+    }
+
+    // ---------- Colunas ----------
+
+    private T naPosicao(int k) {
+        long[] linha = new long[medidas.size()];
+        for (int m = 0; m < medidas.size(); m++) linha[m] = valores[m][k];
+        return montador.montar(LocalDate.ofEpochDay(dias[k]), linha);
+    }
+
+    private int posicao(int i) {
+        return posicaoDa == null ? i : posicaoDa[i];
+    }
+
+    private void crescer() {
+        if (tamanho < dias.length) return;
+        int capacidade = Math.max(8, tamanho + (tamanho >> 1));
+        dias = Arrays.copyOf(dias, capacidade);
+        for (int m = 0; m < medidas.size(); m++) {
+            valores[m] = Arrays.copyOf(valores[m], capacidade);
+            arvores[m] = Arrays.copyOf(arvores[m], capacidade + 1);
+        }
+        if (posicaoDa != null) {
+            posicaoDa = Arrays.copyOf(posicaoDa, capacidade);
+            linhaNa = Arrays.copyOf(linhaNa, capacidade);
+        }
+    }
+
+    /** Linha nova no fim das duas ordens: um nó novo em cada árvore. */
+    private void acrescentar(int d, long[] novos) {
+        if (posicaoDa != null) {
+            posicaoDa[tamanho] = tamanho;
+            linhaNa[tamanho] = tamanho;
+        }
+        dias[tamanho] = d;
+        for (int m = 0; m < medidas.size(); m++) valores[m][tamanho] = novos[m];
+        int j = ++tamanho;
+        if (!arvoresEmDia) return;
+        for (int m = 0; m < medidas.size(); m++) {
+            // o valor mais a soma do trecho que o nó cobre antes dele
+            arvores[m][j] = novos[m] + prefixo(arvores[m], j - 1) - prefixo(arvores[m], j - (j & -j));
+        }
+    }
+
+    /** Linha nova i fora de ordem, em O(n); as árvores ficam para a próxima soma. */
+    private void inserir(int i, int d, long[] novos) {
+        materializarPermutacao();
+
+        // depois das linhas do mesmo dia lançadas antes dela
+        int k = primeiroAPartirDe(d);
+        for (int j = 0; j < i; j++) if (dias[posicaoDa[j]] == d) k++;
+
+        System.arraycopy(dias, k, dias, k + 1, tamanho - k);
+        dias[k] = d;
+        for (int m = 0; m < medidas.size(); m++) {
+            System.arraycopy(valores[m], k, valores[m], k + 1, tamanho - k);
+            valores[m][k] = novos[m];
+        }
+        for (int j = 0; j < tamanho; j++) if (posicaoDa[j] >= k) posicaoDa[j]++;
+        System.arraycopy(posicaoDa, i, posicaoDa, i + 1, tamanho - i);
+        posicaoDa[i] = k;
+        tamanho++;
+
+        arvoresEmDia = false;
+        inverterPermutacao();
+    }
+
+    /** Tira a linha i, na posição k, em O(n); as árvores ficam para a próxima soma. */
+    private void retirar(int i, int k) {
+        materializarPermutacao();
+
+        System.arraycopy(dias, k + 1, dias, k, tamanho - k - 1);
+        for (long[] coluna : valores) System.arraycopy(coluna, k + 1, coluna, k, tamanho - k - 1);
+        System.arraycopy(posicaoDa, i + 1, posicaoDa, i, tamanho - i - 1);
+        tamanho--;
+        for (int j = 0; j < tamanho; j++) if (posicaoDa[j] > k) posicaoDa[j]--;
+
+        arvoresEmDia = false;
+        inverterPermutacao();
+    }
+
+    // ---------- Permutação entre as ordens ----------
+
+    private void materializarPermutacao() {
+        if (posicaoDa != null) return;
+        posicaoDa = new int[dias.length];
+        linhaNa = new int[dias.length];
+        for (int j = 0; j < tamanho; j++) posicaoDa[j] = j;
+    }
+
+    /** Refaz linhaNa a partir de posicaoDa e descarta as duas se voltaram a ser a identidade. */
+    private void inverterPermutacao() {
+        for (int j = 0; j < tamanho; j++) linhaNa[posicaoDa[j]] = j;
+        simplificarPermutacao();
+    }
+
+    private void simplificarPermutacao() {
+        if (posicaoDa == null) return;
+        for (int j = 0; j < tamanho; j++) if (posicaoDa[j] != j) return;
+        posicaoDa = null;
+        linhaNa = null;
+    }
+
+    // ---------- Índice e árvores ----------
+
+    /** Primeira posição com dia >= d. */
+    private int primeiroAPartirDe(int d) {
+        int baixo = 0, alto = tamanho;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (dias[meio] < d) baixo = meio + 1;
+            else alto = meio;
+        }
+        return baixo;
+    }
+
+    /** Reconstrói as árvores a partir das colunas, em O(n). */
+    private void montarArvores() {
+        for (int m = 0; m < medidas.size(); m++) {
+            long[] arvore = arvores[m];
+            System.arraycopy(valores[m], 0, arvore, 1, tamanho);
+            for (int j = 1; j <= tamanho; j++) {
+                int pai = j + (j & -j);
+                if (pai <= tamanho) arvore[pai] += arvore[j];
+            }
+        }
+        arvoresEmDia = true;
+    }
+
+    /** Soma das posições [0, n). */
+    private static long prefixo(long[] arvore, int n) {
+        long soma = 0;
+        for (int j = n; j > 0; j -= j & -j) soma += arvore[j];
+        return soma;
+    }
+
+    /** Epoch day limitado ao intervalo de int (LocalDate.MIN/MAX nas consultas). */
+    private static int epochDay(LocalDate d) {
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE - 1, d.toEpochDay()));
+    }
+
+    private static void verificar(int i, int limite) {
+        if (i < 0 || i >= limite) throw new IndexOutOfBoundsException("Indice: " + i + ", tamanho: " + limite);
+    }
+}
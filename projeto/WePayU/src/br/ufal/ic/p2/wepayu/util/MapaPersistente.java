@@ -0,0 +1,333 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Mapa imutável com compartilhamento estrutural (HAMT: hash array mapped trie).
+ * {@link #com} e {@link #sem} devolvem um novo mapa copiando só o caminho até a
+ * chave (O(log32 n)); o resto da árvore é compartilhado com a versão anterior.
+ * Guardar uma versão é só guardar a referência.
+ */
+public final class MapaPersistente<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASCARA = (1 << BITS) - 1;
+
+    private static final MapaPersistente<?, ?> VAZIO = new MapaPersistente<>(null, 0);
+
+    private final No raiz;
+    private final int tamanho;
+
+    private MapaPersistente(No raiz, int tamanho) {
+        this.raiz = raiz;
+        this.tamanho = tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> MapaPersistente<K, V> vazio() {
+        return (MapaPersistente<K, V>) VAZIO;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K chave) {
+        return raiz == null ? null : (V) raiz.get(chave, hash(chave), 0);
+    }
+
+    public boolean contem(K chave) {
+        return get(chave) != null;
+    }
+
+    /** Novo mapa com chave -> valor (valor não pode ser null). */
+    public MapaPersistente<K, V> com(K chave, V valor) {
+        Objects.requireNonNull(valor);
+        boolean[] novo = new boolean[1];
+        No base = raiz == null ? NoBitmap.VAZIO : raiz;
+        No novaRaiz = base.com(chave, valor, hash(chave), 0, novo);
+        if (novaRaiz == raiz) return this;
+        return new MapaPersistente<>(novaRaiz, novo[0] ? tamanho + 1 : tamanho);
+    }
+
+    /** Novo mapa sem a chave. */
+    public MapaPersistente<K, V> sem(K chave) {
+        if (raiz == null) return this;
+        No novaRaiz = raiz.sem(chave, hash(chave), 0);
+        if (novaRaiz == raiz) return this;
+        return new MapaPersistente<>(novaRaiz, tamanho - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void paraCada(BiConsumer<K, V> acao) {
+        if (raiz != null) raiz.paraCada((BiConsumer<Object, Object>) acao);
+    }
+
+    /**
+     * Entrega ao consumidor cada chave cujo valor difere entre este mapa e outro
+     * (comparação por referência). Subárvores compartilhadas são puladas, então o custo
+     * é proporcional às diferenças, não ao tamanho dos mapas.
+     */
+    @SuppressWarnings("unchecked")
+    public void diferencas(MapaPersistente<K, V> outro, Diferenca<K, V> consumidor) {
+        diferencas(raiz, outro.raiz, 0, (Diferenca<Object, Object>) consumidor);
+    }
+
+    public interface Diferenca<K, V> {
+        /** antes/depois são null quando a chave não existe naquele lado. */
+        void aceitar(K chave, V antes, V depois);
+    }
+
+    private static int hash(Object chave) {
+        int h = chave.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // ---------- Diferença entre versões ----------
+
+    private static void diferencas(No a, No b, int shift, Diferenca<Object, Object> consumidor) {
+        if (a == b) return;
+        if (a instanceof NoBitmap && b instanceof NoBitmap) {
+            NoBitmap na = (NoBitmap) a;
+            NoBitmap nb = (NoBitmap) b;
+            int bits = na.bitmap | nb.bitmap;
+            while (bits != 0) {
+                int bit = bits & -bits;
+                bits ^= bit;
+                Object[] ea = na.entrada(bit);
+                Object[] eb = nb.entrada(bit);
+                if (ea != null && eb != null && ea[0] == null && eb[0] == null) {
+                    diferencas((No) ea[1], (No) eb[1], shift + BITS, consumidor);
+                } else if (ea == null || eb == null || ea[0] != eb[0] || ea[1] != eb[1]) {
+                    compararEntradas(paraLista(ea), paraLista(eb), consumidor);
+                }
+            }
+        } else {
+            compararEntradas(paraLista(a), paraLista(b), consumidor);
+        }
+    }
+
+    private static List<Object> paraLista(Object[] entrada) {
+        if (entrada == null) return new ArrayList<>();
+        if (entrada[0] == null) return paraLista((No) entrada[1]);
+        List<Object> lista = new ArrayList<>(2);
+        lista.add(entrada[0]);
+        lista.add(entrada[1]);
+        return lista;
+    }
+
+    private static List<Object> paraLista(No no) {
+        List<Object> lista = new ArrayList<>();
+        if (no != null) no.paraCada((k, v) -> { lista.add(k); lista.add(v); });
+        return lista;
+    }
+
+    /** Compara dois conjuntos pequenos de pares chave/valor (achatados). */
+    private static void compararEntradas(List<Object> a, List<Object> b, Diferenca<Object, Object> consumidor) {
+        for (int i = 0; i < a.size(); i += 2) {
+            Object chave = a.get(i);
+            Object depois = null;
+            for (int j = 0; j < b.size(); j += 2) {
+                if (b.get(j).equals(chave)) {
+                    depois = b.get(j + 1);
+                    break;
+                }
+            }
+            if (depois != a.get(i + 1)) consumidor.aceitar(chave, a.get(i + 1), depois);
+        }
+        for (int j = 0; j < b.size(); j += 2) {
+            Object chave = b.get(j);
+            boolean existia = false;
+            for (int i = 0; i < a.size(); i += 2) {
+                if (a.get(i).equals(chave)) {
+                    existia = true;
+                    break;
+                }
+            }
+            if (!existia) consumidor.aceitar(chave, null, b.get(j + 1));
+        }
+    }
+
+    // ---------- Nós ----------
+
+    private interface No {
+        Object get(Object chave, int hash, int shift);
+        No com(Object chave, Object valor, int hash, int shift, boolean[] novo);
+        No sem(Object chave, int hash, int shift); // null se ficou vazio
+        void paraCada(BiConsumer<Object, Object> acao);
+    }
+
+    /**
+     * Nó com até 32 posições, marcadas no bitmap. Cada posição ocupa dois slots em
+     * array: (chave, valor) ou (null, subnó).
+     */
+    private static final class NoBitmap implements No {
+        static final NoBitmap VAZIO = new NoBitmap(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        NoBitmap(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int indice(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /** {chave, valor} ou {null, subnó} da posição, ou null se vazia. */
+        Object[] entrada(int bit) {
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * indice(bit);
+            return new Object[]{array[i], array[i + 1]};
+        }
+
+        public Object get(Object chave, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASCARA);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * indice(bit);
+            Object k = array[i];
+            if (k == null) return ((No) array[i + 1]).get(chave, hash, shift + BITS);
+            return chave.equals(k) ? array[i + 1] : null;
+        }
+
+        public No com(Object chave, Object valor, int hash, int shift, boolean[] novo) {
+            int bit = 1 << ((hash >>> shift) & MASCARA);
+            int i = 2 * indice(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] maior = new Object[array.length + 2];
+                System.arraycopy(array, 0, maior, 0, i);
+                maior[i] = chave;
+                maior[i + 1] = valor;
+                System.arraycopy(array, i, maior, i + 2, array.length - i);
+                novo[0] = true;
+                return new NoBitmap(bitmap | bit, maior);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                No sub = ((No) v).com(chave, valor, hash, shift + BITS, novo);
+                return sub == v ? this : trocar(i + 1, null, sub);
+            }
+            if (chave.equals(k)) {
+                return v == valor ? this : trocar(i + 1, k, valor);
+            }
+
+            // colisão na posição: empurra as duas entradas um nível abaixo
+            novo[0] = true;
+            No sub = criarNo(k, v, hash(k), chave, valor, hash, shift + BITS);
+            return trocar(i + 1, null, sub);
+        }
+
+        private NoBitmap trocar(int iValor, Object chave, Object valor) {
+            Object[] copia = array.clone();
+            copia[iValor - 1] = chave;
+            copia[iValor] = valor;
+            return new NoBitmap(bitmap, copia);
+        }
+
+        public No sem(Object chave, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASCARA);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * indice(bit);
+            Object k = array[i];
+
+            if (k == null) {
+                No sub = (No) array[i + 1];
+                No novoSub = sub.sem(chave, hash, shift + BITS);
+                if (novoSub == sub) return this;
+                if (novoSub != null) return trocar(i + 1, null, novoSub);
+            } else if (!chave.equals(k)) {
+                return this;
+            }
+
+            if (bitmap == bit) return null;
+            Object[] menor = new Object[array.length - 2];
+            System.arraycopy(array, 0, menor, 0, i);
+            System.arraycopy(array, i + 2, menor, i, array.length - i - 2);
+            return new NoBitmap(bitmap ^ bit, menor);
+        }
+
+        public void paraCada(BiConsumer<Object, Object> acao) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) ((No) array[i + 1]).paraCada(acao);
+                else acao.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    /** Chaves com o mesmo hash completo. */
+    private static final class NoColisao implements No {
+        final int hash;
+        final Object[] array; // chave, valor, chave, valor...
+
+        NoColisao(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int posicao(Object chave) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (chave.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        public Object get(Object chave, int hash, int shift) {
+            int i = posicao(chave);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        public No com(Object chave, Object valor, int hash, int shift, boolean[] novo) {
+            if (hash != this.hash) {
+                // outra chave caiu aqui por prefixo: volta a distribuir por bitmap
+                NoBitmap bitmap = new NoBitmap(1 << ((this.hash >>> shift) & MASCARA), new Object[]{null, this});
+                return bitmap.com(chave, valor, hash, shift, novo);
+            }
+            int i = posicao(chave);
+            if (i >= 0) {
+                if (array[i + 1] == valor) return this;
+                Object[] copia = array.clone();
+                copia[i + 1] = valor;
+                return new NoColisao(hash, copia);
+            }
+            Object[] maior = new Object[array.length + 2];
+            System.arraycopy(array, 0, maior, 0, array.length);
+            maior[array.length] = chave;
+            maior[array.length + 1] = valor;
+            novo[0] = true;
+            return new NoColisao(hash, maior);
+        }
+
+        public No sem(Object chave, int hash, int shift) {
+            int i = posicao(chave);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] menor = new Object[array.length - 2];
+            System.arraycopy(array, 0, menor, 0, i);
+            System.arraycopy(array, i + 2, menor, i, array.length - i - 2);
+            return new NoColisao(hash, menor);
+        }
+
+        public void paraCada(BiConsumer<Object, Object> acao) {
+            for (int i = 0; i < array.length; i += 2) {
+                acao.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    private static No criarNo(Object k1, Object v1, int h1, Object k2, Object v2, int h2, int shift) {
+        if (h1 == h2) {
+            return new NoColisao(h1, new Object[]{k1, v1, k2, v2});
+        }
+        boolean[] ignorado = new boolean[1];
+        return NoBitmap.VAZIO.com(k1, v1, h1, shift, ignorado).com(k2, v2, h2, shift, ignorado);
+    }
+}
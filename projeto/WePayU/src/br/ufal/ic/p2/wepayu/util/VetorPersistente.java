@@ -0,0 +1,143 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vetor imutável com compartilhamento estrutural: trie de 32 posições por nó e
+ * um "rabo" com os últimos elementos. {@link #adicionar} e {@link #com} copiam
+ * só o caminho alterado (O(log32 n)); versões antigas continuam válidas.
+ */
+public final class VetorPersistente<T> {
+
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS;
+    private static final int MASCARA = LARGURA - 1;
+
+    private static final VetorPersistente<?> VAZIO =
+            new VetorPersistente<>(0, BITS, new Object[0], new Object[0]);
+
+    private final int tamanho;
+    private final int shift;
+    private final Object[] raiz;
+    private final Object[] rabo;
+
+    private VetorPersistente(int tamanho, int shift, Object[] raiz, Object[] rabo) {
+        this.tamanho = tamanho;
+        this.shift = shift;
+        this.raiz = raiz;
+        this.rabo = rabo;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> VetorPersistente<T> vazio() {
+        return (VetorPersistente<T>) VAZIO;
+    }
+
+    public static <T> VetorPersistente<T> de(List<T> itens) {
+        VetorPersistente<T> v = vazio();
+        for (T item : itens) v = v.adicionar(item);
+        return v;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int i) {
+        return (T) blocoDe(i)[i & MASCARA];
+    }
+
+    public VetorPersistente<T> adicionar(T item) {
+        // ainda cabe no rabo
+        if (tamanho - inicioDoRabo() < LARGURA) {
+            Object[] novoRabo = new Object[rabo.length + 1];
+            System.arraycopy(rabo, 0, novoRabo, 0, rabo.length);
+            novoRabo[rabo.length] = item;
+            return new VetorPersistente<>(tamanho + 1, shift, raiz, novoRabo);
+        }
+
+        // rabo cheio: vai para a árvore e um novo rabo começa
+        Object[] novaRaiz;
+        int novoShift = shift;
+        if ((tamanho >>> BITS) > (1 << shift)) {
+            novaRaiz = new Object[]{raiz, caminho(shift, rabo)};
+            novoShift += BITS;
+        } else {
+            novaRaiz = empurrarRabo(shift, raiz, rabo);
+        }
+        return new VetorPersistente<>(tamanho + 1, novoShift, novaRaiz, new Object[]{item});
+    }
+
+    /** Novo vetor com o item da posição i trocado. */
+    public VetorPersistente<T> com(int i, T item) {
+        if (i < 0 || i >= tamanho) throw new IndexOutOfBoundsException(String.valueOf(i));
+        if (i >= inicioDoRabo()) {
+            Object[] novoRabo = rabo.clone();
+            novoRabo[i & MASCARA] = item;
+            return new VetorPersistente<>(tamanho, shift, raiz, novoRabo);
+        }
+        return new VetorPersistente<>(tamanho, shift, trocar(shift, raiz, i, item), rabo);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> paraLista() {
+        List<T> lista = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i += LARGURA) {
+            Object[] bloco = blocoDe(i);
+            for (int j = 0; j < bloco.length && i + j < tamanho; j++) {
+                lista.add((T) bloco[j]);
+            }
+        }
+        return lista;
+    }
+
+    // ---------- Auxiliares ----------
+
+    private int inicioDoRabo() {
+        return tamanho < LARGURA ? 0 : ((tamanho - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] blocoDe(int i) {
+        if (i < 0 || i >= tamanho) throw new IndexOutOfBoundsException(String.valueOf(i));
+        if (i >= inicioDoRabo()) return rabo;
+
+        Object[] no = raiz;
+        for (int nivel = shift; nivel > 0; nivel -= BITS) {
+            no = (Object[]) no[(i >>> nivel) & MASCARA];
+        }
+        return no;
+    }
+
+    private Object[] empurrarRabo(int nivel, Object[] pai, Object[] bloco) {
+        int sub = ((tamanho - 1) >>> nivel) & MASCARA;
+        Object[] novo = new Object[Math.max(pai.length, sub + 1)];
+        System.arraycopy(pai, 0, novo, 0, pai.length);
+
+        Object inserir;
+        if (nivel == BITS) {
+            inserir = bloco;
+        } else {
+            Object[] filho = sub < pai.length ? (Object[]) pai[sub] : null;
+            inserir = filho != null ? empurrarRabo(nivel - BITS, filho, bloco) : caminho(nivel - BITS, bloco);
+        }
+        novo[sub] = inserir;
+        return novo;
+    }
+
+    private static Object[] caminho(int nivel, Object[] bloco) {
+        return nivel == 0 ? bloco : new Object[]{caminho(nivel - BITS, bloco)};
+    }
+
+    private static Object[] trocar(int nivel, Object[] no, int i, Object item) {
+        Object[] copia = no.clone();
+        if (nivel == 0) {
+            copia[i & MASCARA] = item;
+        } else {
+            int sub = (i >>> nivel) & MASCARA;
+            copia[sub] = trocar(nivel - BITS, (Object[]) no[sub], i, item);
+        }
+        return copia;
+    }
+}
@@ -0,0 +1,36 @@
+import br.ufal.ic.p2.wepayu.backup.ArmazemBackupTeste;
+import br.ufal.ic.p2.wepayu.backup.UndoPaginadoTeste;
+import br.ufal.ic.p2.wepayu.backup.UndoPersistenteTeste;
+import br.ufal.ic.p2.wepayu.models.AgendaPagamentoTeste;
+import br.ufal.ic.p2.wepayu.persistencia.CsvTeste;
+import br.ufal.ic.p2.wepayu.persistencia.JournalTeste;
+import br.ufal.ic.p2.wepayu.persistencia.SnapshotBinarioTeste;
+import br.ufal.ic.p2.wepayu.repositorio.RepositorioJdbcTeste;
+import br.ufal.ic.p2.wepayu.service.FolhaParalelaTeste;
+import br.ufal.ic.p2.wepayu.service.IndiceSindicatoTeste;
+import br.ufal.ic.p2.wepayu.util.DinheiroTeste;
+import br.ufal.ic.p2.wepayu.util.HistoricoPorDataTeste;
+import br.ufal.ic.p2.wepayu.util.MapaPersistenteTeste;
+import br.ufal.ic.p2.wepayu.util.VetorPersistenteTeste;
+
+// Testes que o EasyAccept não alcança (codecs, queda do processo, arquivos em diretórios temporários).
+// Rodar do diretório do projeto, como o Main, com src, test, lib/easyaccept.jar e lib/h2-2.2.224.jar no classpath;
+// cada teste lança AssertionError na primeira falha.
+public class Testes {
+    public static void main(String[] args) throws Exception {
+        CsvTeste.main(new String[0]);
+        JournalTeste.main(new String[0]);
+        SnapshotBinarioTeste.main(new String[0]);
+        MapaPersistenteTeste.main(new String[0]);
+        VetorPersistenteTeste.main(new String[0]);
+        HistoricoPorDataTeste.main(new String[0]);
+        AgendaPagamentoTeste.main(new String[0]);
+        DinheiroTeste.main(new String[0]);
+        UndoPersistenteTeste.main(new String[0]);
+        UndoPaginadoTeste.main(new String[0]);
+        ArmazemBackupTeste.main(new String[0]);
+        RepositorioJdbcTeste.main(new String[0]);
+        FolhaParalelaTeste.main(new String[0]);
+        IndiceSindicatoTeste.main(new String[0]);
+    }
+}
@@ -0,0 +1,133 @@
+package br.ufal.ic.p2.wepayu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+
+/**
+ * Apoio dos testes rodados por main (o projeto não usa framework de testes): verificações
+ * que lançam AssertionError com a descrição do que falhou, e execução de uma etapa de
+ * teste em outro processo. Os dados do sistema ficam em caminhos relativos (dados/,
+ * journal.log, backups/...), então cada etapa roda com o diretório de trabalho num
+ * diretório temporário, e um processo pode ser derrubado sem afetar o teste. As
+ * verificações feitas numa etapa entram na contagem do teste que a rodou (concluirEtapa).
+ */
+public final class Verificacoes {
+
+    public interface Acao {
+        void executar() throws Exception;
+    }
+
+    private static final String CONTAGEM_DA_ETAPA = "verificacoes-da-etapa.txt";
+
+    private static int verificadas;
+
+    private Verificacoes() {
+    }
+
+    public static void igual(Object esperado, Object obtido, String oQue) {
+        verificadas++;
+        if (!Objects.equals(esperado, obtido)) {
+            throw new AssertionError(oQue + ": esperado <" + esperado + ">, obtido <" + obtido + ">");
+        }
+    }
+
+    public static void verdadeiro(boolean condicao, String oQue) {
+        verificadas++;
+        if (!condicao) throw new AssertionError(oQue);
+    }
+
+    /** Verifica que a ação lança uma exceção do tipo esperado. */
+    public static void lanca(Class<? extends Throwable> esperada, Acao acao, String oQue) {
+        verificadas++;
+        try {
+            acao.executar();
+        } catch (Throwable t) {
+            if (esperada.isInstance(t)) return;
+            throw new AssertionError(oQue + ": esperado " + esperada.getSimpleName() + ", lançou " + t, t);
+        }
+        throw new AssertionError(oQue + ": esperado " + esperada.getSimpleName() + ", nada foi lançado");
+    }
+
+    /** Imprime o resumo do teste e zera a contagem. */
+    public static void concluir(String teste) {
+        System.out.println(teste + ": " + verificadas + " verificacoes OK");
+        verificadas = 0;
+    }
+
+    /** Fim de uma etapa: deixa a contagem no diretório de trabalho para rodarEtapa somar à do teste. */
+    public static void concluirEtapa() {
+        try {
+            Files.writeString(Paths.get(CONTAGEM_DA_ETAPA), String.valueOf(verificadas));
+        } catch (IOException e) {
+            throw new AssertionError("Nao foi possivel gravar a contagem da etapa", e);
+        }
+        verificadas = 0;
+    }
+
+    public static Path diretorioTemporario(String prefixo) {
+        try {
+            return Files.createTempDirectory("wepayu-" + prefixo);
+        } catch (IOException e) {
+            throw new AssertionError("Nao foi possivel criar diretorio temporario", e);
+        }
+    }
+
+    /** Apaga o diretório e tudo o que há dentro dele. */
+    public static void apagar(Path diretorio) {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Nao foi possivel apagar " + diretorio + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Roda principal.main(argumentos) num processo novo, com o mesmo classpath, as
+     * propriedades de sistema dadas ("nome=valor") e diretorio como diretório de trabalho.
+     * Devolve o código de saída; as verificações que a etapa contou (concluirEtapa) passam
+     * a contar aqui.
+     */
+    public static int rodarEtapa(Path diretorio, Class<?> principal, List<String> propriedades, String... argumentos) {
+        List<String> comando = new ArrayList<>();
+        comando.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        comando.add("-cp");
+        comando.add(classpathAbsoluto());
+        for (String p : propriedades) comando.add("-D" + p);
+        comando.add(principal.getName());
+        comando.addAll(List.of(argumentos));
+
+        try {
+            Process processo = new ProcessBuilder(comando).directory(diretorio.toFile()).inheritIO().start();
+            int saida = processo.waitFor();
+            Path contagem = diretorio.resolve(CONTAGEM_DA_ETAPA);
+            if (Files.exists(contagem)) {
+                verificadas += Integer.parseInt(Files.readString(contagem).trim());
+                Files.delete(contagem);
+            }
+            return saida;
+        } catch (IOException e) {
+            throw new AssertionError("Nao foi possivel iniciar " + principal.getName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrompido esperando " + principal.getName(), e);
+        }
+    }
+
+    // o processo novo roda em outro diretório: entradas relativas (lib/easyaccept.jar) deixariam de valer
+    private static String classpathAbsoluto() {
+        StringJoiner classpath = new StringJoiner(File.pathSeparator);
+        for (String entrada : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classpath.add(Paths.get(entrada).toAbsolutePath().toString());
+        }
+        return classpath.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import br.ufal.ic.p2.wepayu.Facade;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Backups endereçados por conteúdo: ida e volta (criar/restaurar), deduplicação de blocos,
+ * retenção (últimos N e último de cada dia) com remoção dos blocos sem uso, e o backup do
+ * encerramento gravando os arquivos do repositório configurado. Roda num processo com
+ * diretório temporário, porque o armazém usa backups/ relativo ao diretório de trabalho.
+ */
+public class ArmazemBackupTeste {
+
+    private static final Path OBJETOS = Paths.get("backups", "objetos");
+    private static final Path MANIFESTOS = Paths.get("backups", "manifestos");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            idaEVolta();
+            deduplicacao();
+            retencao();
+            backupDoEncerramento();
+            concluirEtapa();
+            return;
+        }
+        Path diretorio = diretorioTemporario("backup");
+        try {
+            igual(0, rodarEtapa(diretorio, ArmazemBackupTeste.class, List.of(), "armazem"), "saida do processo do armazem");
+        } finally {
+            apagar(diretorio);
+        }
+        concluir("ArmazemBackupTeste");
+    }
+
+    private static void idaEVolta() throws IOException {
+        Path grande = escrever("empregados.csv", conteudo(1, 300_000));
+        Path pequeno = escrever("vendas.csv", "id1;5/1/2005;100.00\n".getBytes(StandardCharsets.UTF_8));
+        Path vazio = escrever("taxas.csv", new byte[0]);
+        Path ausente = Paths.get("registros.csv");
+
+        String id = ArmazemBackup.criar(List.of(grande, pequeno, vazio, ausente));
+        verdadeiro(id != null, "backup criado");
+        igual(List.of(id), ArmazemBackup.listar(), "backup listado");
+
+        Path destino = Paths.get("restaurado");
+        ArmazemBackup.restaurar(id, destino);
+        for (Path original : List.of(grande, pequeno, vazio)) {
+            verdadeiro(Arrays.equals(Files.readAllBytes(original), Files.readAllBytes(destino.resolve(original.getFileName()))),
+                    "restaurado igual ao original: " + original);
+        }
+        verdadeiro(!Files.exists(destino.resolve("registros.csv")), "arquivo ausente fica fora do backup");
+        igual(null, ArmazemBackup.criar(List.of(ausente)), "backup sem nenhum arquivo");
+        lanca(RuntimeException.class, () -> ArmazemBackup.restaurar("123", destino), "restaurar backup inexistente");
+        limpar();
+    }
+
+    private static void deduplicacao() throws IOException {
+        byte[] antes = conteudo(2, 1_000_000);
+        Path arquivo = escrever("empregados.csv", antes);
+        String primeiro = ArmazemBackup.criar(List.of(arquivo));
+        int blocos = objetos();
+        verdadeiro(blocos > 20, "arquivo de 1 MB cortado em varios blocos (" + blocos + ")");
+
+        verdadeiro(ArmazemBackup.criar(List.of(arquivo)) != null, "segundo backup criado");
+        igual(blocos, objetos(), "conteudo repetido nao grava blocos novos");
+
+        // alteração no meio: só os blocos em volta mudam
+        byte[] depois = antes.clone();
+        for (int i = 500_000; i < 500_010; i++) depois[i] = 'X';
+        escrever("empregados.csv", depois);
+        String terceiro = ArmazemBackup.criar(List.of(arquivo));
+        int novos = objetos() - blocos;
+        verdadeiro(novos >= 1 && novos <= 3, "alteracao no meio grava so os blocos vizinhos (" + novos + " novos)");
+
+        ArmazemBackup.restaurar(primeiro, Paths.get("primeiro"));
+        ArmazemBackup.restaurar(terceiro, Paths.get("terceiro"));
+        verdadeiro(Arrays.equals(antes, Files.readAllBytes(Paths.get("primeiro", "empregados.csv"))), "versao antiga restaurada");
+        verdadeiro(Arrays.equals(depois, Files.readAllBytes(Paths.get("terceiro", "empregados.csv"))), "versao nova restaurada");
+        limpar();
+    }
+
+    private static void retencao() throws IOException {
+        // 3 backups por dia em 6 dias; cada um com um arquivo próprio, para ter blocos exclusivos
+        Path comum = escrever("empregados.csv", conteudo(3, 100_000));
+        LocalDate hoje = LocalDate.now();
+        Map<String, byte[]> conteudos = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int dia = 5; dia >= 0; dia--) {
+            for (int hora = 9; hora <= 17; hora += 4) {
+                long millis = hoje.minusDays(dia).atTime(hora, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                byte[] proprio = conteudo(millis, 20_000);
+                Path arquivo = escrever("vendas.csv", proprio);
+                String id = ArmazemBackup.criar(List.of(comum, arquivo), millis);
+                igual(Long.toString(millis), id, "id do backup e o millis pedido");
+                ids.add(id);
+                conteudos.put(id, proprio);
+            }
+        }
+        igual(ids, ArmazemBackup.listar(), "listar em ordem crescente");
+        int blocosAntes = objetos();
+
+        ArmazemBackup.aplicarRetencao(4, 3);
+
+        // os 4 últimos (os 3 de hoje e o último de ontem) mais o último de cada um dos 3 dias mais recentes
+        List<String> esperados = new ArrayList<>();
+        esperados.add(ids.get(11)); // último de anteontem
+        esperados.addAll(ids.subList(14, 18));
+        igual(esperados, ArmazemBackup.listar(), "backups mantidos pela retencao");
+
+        verdadeiro(objetos() < blocosAntes, "blocos dos backups apagados removidos");
+        igual(referenciados(), blocosGravados(), "blocos gravados sao exatamente os referenciados");
+        for (String id : esperados) {
+            Path destino = Paths.get("retido-" + id);
+            ArmazemBackup.restaurar(id, destino);
+            verdadeiro(Arrays.equals(conteudos.get(id), Files.readAllBytes(destino.resolve("vendas.csv"))),
+                    "backup retido restaura: " + id);
+            verdadeiro(Arrays.equals(Files.readAllBytes(comum), Files.readAllBytes(destino.resolve("empregados.csv"))),
+                    "bloco compartilhado continua la: " + id);
+        }
+
+        ArmazemBackup.aplicarRetencao(0, 1);
+        igual(List.of(ids.get(17)), ArmazemBackup.listar(), "retencao so com o ultimo do dia");
+        ArmazemBackup.aplicarRetencao(0, 0);
+        igual(List.of(), ArmazemBackup.listar(), "retencao sem nada");
+        igual(0, objetos(), "sem backups nao sobram blocos");
+        limpar();
+    }
+
+    /** O encerramento grava um backup dos arquivos do repositório configurado (CSV por padrão). */
+    private static void backupDoEncerramento() throws IOException {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        String id = facade.criarEmpregado("Ana", "Rua 1", "horista", "10,00");
+        facade.lancaCartao(id, "3/1/2005", "8");
+        facade.encerrarSistema();
+
+        List<String> backups = ArmazemBackup.listar();
+        igual(1, backups.size(), "um backup no encerramento");
+        Path destino = Paths.get("encerramento");
+        ArmazemBackup.restaurar(backups.get(0), destino);
+        for (String nome : List.of("empregados.csv", "registros.csv", "vendas.csv", "taxas.csv")) {
+            verdadeiro(Arrays.equals(Files.readAllBytes(Paths.get(nome)), Files.readAllBytes(destino.resolve(nome))),
+                    "backup do encerramento tem " + nome);
+        }
+        try (Stream<Path> restaurados = Files.list(destino)) {
+            igual(4, (int) restaurados.count(), "so os arquivos do repositorio");
+        }
+    }
+
+    // ---------- Auxiliares ----------
+
+    /** Texto pseudoaleatório em linhas de CSV, determinado pela semente. */
+    private static byte[] conteudo(long semente, int tamanho) {
+        Random aleatorio = new Random(semente);
+        StringBuilder sb = new StringBuilder(tamanho + 64);
+        while (sb.length() < tamanho) {
+            sb.append("id").append(aleatorio.nextInt(100_000)).append(';')
+                    .append(1 + aleatorio.nextInt(28)).append('/').append(1 + aleatorio.nextInt(12)).append("/2005;")
+                    .append(aleatorio.nextInt(100_000) / 100.0).append('\n');
+        }
+        return sb.substring(0, tamanho).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Path escrever(String nome, byte[] conteudo) throws IOException {
+        Path arquivo = Paths.get(nome);
+        Files.write(arquivo, conteudo);
+        return arquivo;
+    }
+
+    private static Set<String> blocosGravados() throws IOException {
+        if (!Files.isDirectory(OBJETOS)) return new HashSet<>();
+        try (Stream<Path> objetos = Files.walk(OBJETOS, 2)) {
+            return objetos.filter(Files::isRegularFile)
+                    .map(p -> p.getParent().getFileName().toString() + p.getFileName())
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private static int objetos() throws IOException {
+        return blocosGravados().size();
+    }
+
+    /** Hashes citados nos manifestos (formato documentado em ArmazemBackup). */
+    private static Set<String> referenciados() throws IOException {
+        Set<String> hashes = new HashSet<>();
+        for (String id : ArmazemBackup.listar()) {
+            List<String> linhas = Files.readAllLines(MANIFESTOS.resolve(id + ".manifesto"));
+            for (String linha : linhas.subList(1, linhas.size())) {
+                String blocos = linha.split(";", -1)[2];
+                if (!blocos.isEmpty()) hashes.addAll(Arrays.asList(blocos.split(",")));
+            }
+        }
+        return hashes;
+    }
+
+    private static void limpar() {
+        ArmazemBackup.aplicarRetencao(0, 0);
+    }
+}
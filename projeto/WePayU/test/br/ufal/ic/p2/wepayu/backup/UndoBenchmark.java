@@ -0,0 +1,105 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import br.ufal.ic.p2.wepayu.Facade;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Heap ocupado por estado guardado no undo, nos dois motores. Cria 10 mil empregados
+ * (um terço horistas com 10 cartões, um terço comissionados com 10 vendas, o resto
+ * assalariados), limpa o histórico e roda 2000 comandos alternando troca de endereço
+ * e cartão novo. O heap depois de GC é medido antes dos comandos, depois deles e depois
+ * de limpar o histórico; a última diferença, dividida pelos comandos, é o custo de cada
+ * estado guardado. Cada motor roda num processo e diretório temporário próprios, com
+ * profundidade alta para nada ser paginado para o disco durante a medição.
+ * <p>
+ * Com os padrões, cada comando guardado ocupou cerca de 0,8 KB com os deltas e 2,2 KB
+ * no persistente; o undo antigo, que copiava o estado inteiro, ocupava 8,3 MB.
+ *
+ * Uso: UndoBenchmark [empregados] [comandos]. Não faz parte de Testes.
+ */
+public class UndoBenchmark {
+
+    private static final String PROFUNDIDADE = "wepayu.undo.profundidade=1000000";
+    private static final String BYTES = "wepayu.undo.bytes=" + Long.MAX_VALUE;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("medir")) {
+            medir(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        String empregados = args.length > 0 ? args[0] : "10000";
+        String comandos = args.length > 1 ? args[1] : "2000";
+        for (String motor : new String[]{"deltas", "persistente"}) {
+            Path diretorio = diretorioTemporario("undo-benchmark");
+            try {
+                List<String> propriedades = new ArrayList<>(List.of(PROFUNDIDADE, BYTES));
+                if (motor.equals("persistente")) propriedades.add("wepayu.undo=persistente");
+                System.out.println("motor " + motor + ":");
+                int saida = rodarEtapa(diretorio, UndoBenchmark.class, propriedades, "medir", empregados, comandos);
+                if (saida != 0) throw new IllegalStateException("medicao do motor " + motor + " saiu com " + saida);
+            } finally {
+                apagar(diretorio);
+            }
+        }
+    }
+
+    private static void medir(int empregados, int comandos) throws Exception {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+
+        List<String> horistas = new ArrayList<>();
+        for (int i = 0; i < empregados; i++) {
+            String nome = "Empregado " + i;
+            switch (i % 3) {
+                case 0:
+                    String horista = facade.criarEmpregado(nome, "Rua " + i, "horista", "10,00");
+                    for (int d = 1; d <= 10; d++) facade.lancaCartao(horista, d + "/1/2005", "8");
+                    horistas.add(horista);
+                    break;
+                case 1:
+                    String comissionado = facade.criarEmpregado(nome, "Rua " + i, "comissionado", "1000,00", "0,05");
+                    for (int d = 1; d <= 10; d++) facade.lancaVenda(comissionado, d + "/1/2005", "100,00");
+                    break;
+                default:
+                    facade.criarEmpregado(nome, "Rua " + i, "assalariado", "2000,00");
+            }
+        }
+        facade.testLimparHistorico();
+
+        long antes = heapUsado();
+        for (int c = 0; c < comandos; c++) {
+            String id = horistas.get(c % horistas.size());
+            if (c % 2 == 0) {
+                facade.alteraEmpregado(id, "endereco", "Avenida " + c);
+            } else {
+                facade.lancaCartao(id, (11 + c / 2 % 18) + "/1/2005", "4");
+            }
+        }
+        long depois = heapUsado();
+        // sem o histórico sobra só o que os comandos acrescentaram aos dados (cartões, endereços)
+        facade.testLimparHistorico();
+        long semHistorico = heapUsado();
+
+        System.out.printf("  %,d empregados, %,d comandos: heap +%,d bytes, %,d deles no historico: %.2f KB por estado guardado%n",
+                empregados, comandos, depois - antes, depois - semHistorico, (depois - semHistorico) / 1024.0 / comandos);
+        facade.encerrarSistema();
+    }
+
+    private static long heapUsado() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long usado = Long.MAX_VALUE;
+        // algumas rodadas até o valor estabilizar; vale o menor
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            usado = Math.min(usado, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return usado;
+    }
+}
@@ -0,0 +1,268 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import br.ufal.ic.p2.wepayu.Facade;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Undo além do que cabe na memória: com -Dwepayu.undo.profundidade=4 os comandos mais
+ * antigos vão para páginas em backups/undo/. Roda comandos de todos os tipos de alteração
+ * (inclusão, atributos, remoção, cartões, vendas, taxas, agenda, zerarSistema), desfaz
+ * um a um conferindo o estado anterior a cada comando, refaz tudo e desfaz de novo até o
+ * começo; depois reinicia o sistema e confere que o journal (com os deltas de cada
+ * alteração desfeita/refeita) reproduz o estado desfeito. Por fim: redo atravessando a
+ * página que o undo trouxe de volta, remoção e zerarSistema gravados numa página e
+ * desfeitos a partir dela, e limparHistorico apagando as páginas e recomeçando a numeração.
+ */
+public class UndoPaginadoTeste {
+
+    private static final Path PAGINAS = Paths.get("backups", "undo");
+    // zerarSistema recomeça a numeração, então os ids criados pelo teste estão todos aqui
+    private static final List<String> IDS = List.of("id1", "id2", "id3", "id4", "id5");
+    private static final String[] ATRIBUTOS = {
+            "nome", "endereco", "tipo", "salario", "comissao", "sindicalizado", "idSindicato", "taxaSindical",
+            "metodoPagamento", "banco", "agencia", "contaCorrente", "agendaPagamento"
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            etapa();
+            redoAtravessandoPagina();
+            remocaoEZeradoEmPagina();
+            limparHistorico();
+            concluirEtapa();
+            return;
+        }
+        Path diretorio = diretorioTemporario("undo-paginado");
+        try {
+            igual(0, rodarEtapa(diretorio, UndoPaginadoTeste.class, List.of("wepayu.undo.profundidade=4"), "paginado"),
+                    "saida do processo com undo paginado");
+        } finally {
+            apagar(diretorio);
+        }
+        concluir("UndoPaginadoTeste");
+    }
+
+    private static void etapa() throws Exception {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        facade.testLimparHistorico();
+
+        List<String> ids = new ArrayList<>();
+        List<Acao> comandos = List.of(
+                () -> ids.add(facade.criarEmpregado("Ana", "Rua 1", "horista", "10,00")),
+                () -> ids.add(facade.criarEmpregado("Bia", "Rua 2", "comissionado", "1000,00", "0,10")),
+                () -> ids.add(facade.criarEmpregado("Caio", "Rua 3", "assalariado", "2000,00")),
+                () -> facade.lancaCartao(ids.get(0), "3/1/2005", "8"),
+                () -> facade.lancaCartao(ids.get(0), "4/1/2005", "10"),
+                () -> facade.lancaCartao(ids.get(0), "4/1/2005", "2"), // soma ao cartão do mesmo dia
+                () -> facade.lancaVenda(ids.get(1), "3/1/2005", "250,00"),
+                () -> facade.alteraEmpregado(ids.get(2), "endereco", "Rua 30"),
+                () -> facade.alteraEmpregado(ids.get(2), "sindicalizado", "true", "s3", "2,50"),
+                () -> facade.lancaTaxaServico("s3", "5/1/2005", "7,25"),
+                () -> facade.alteraEmpregado(ids.get(0), "metodoPagamento", "banco", "Banco X", "123-4", "5678-9"),
+                () -> facade.alteraEmpregado(ids.get(1), "tipo", "horista", "12,00"),
+                () -> facade.criarAgendaDePagamentos("semanal 3 2"),
+                () -> facade.alteraEmpregado(ids.get(2), "agendaPagamento", "semanal 3 2"),
+                () -> facade.removerEmpregado(ids.get(0)),
+                () -> ids.add(facade.criarEmpregado("Davi", "Rua 4", "horista", "15,00")),
+                () -> facade.lancaCartao(ids.get(3), "6/1/2005", "5"),
+                facade::zerarSistema,
+                () -> ids.add(facade.criarEmpregado("Eva", "Rua 5", "assalariado", "3000,00")),
+                () -> facade.alteraEmpregado(ids.get(4), "nome", "Eva Maria"),
+                () -> facade.alteraEmpregado(ids.get(4), "salario", "3100,00")
+        );
+
+        List<String> estados = new ArrayList<>();
+        int maiorQuantidadeDePaginas = 0;
+        for (Acao comando : comandos) {
+            estados.add(estado(facade));
+            comando.executar();
+            maiorQuantidadeDePaginas = Math.max(maiorQuantidadeDePaginas, paginas());
+        }
+        String estadoFinal = estado(facade);
+        verdadeiro(maiorQuantidadeDePaginas >= 2, "comandos antigos paginados para o disco (" + maiorQuantidadeDePaginas + " paginas)");
+
+        for (int i = comandos.size() - 1; i >= 0; i--) {
+            facade.undo();
+            igual(estados.get(i), estado(facade), "estado depois de desfazer o comando " + i);
+        }
+        igual(0, paginas(), "paginas consumidas pelo undo");
+        lanca(RuntimeException.class, facade::undo, "undo alem do primeiro comando");
+
+        for (int i = 1; i < comandos.size(); i++) {
+            facade.redo();
+            igual(estados.get(i), estado(facade), "estado depois de refazer o comando " + (i - 1));
+        }
+        facade.redo();
+        igual(estadoFinal, estado(facade), "estado depois de refazer tudo");
+
+        // o redo volta a encher a pilha de undo, que pagina de novo
+        for (int i = comandos.size() - 1; i >= 0; i--) {
+            facade.undo();
+            igual(estados.get(i), estado(facade), "estado depois de desfazer de novo o comando " + i);
+        }
+
+        lanca(RuntimeException.class, facade::undo, "undo alem do primeiro comando, de novo");
+
+        // o journal tem os deltas desfeitos/refeitos: reiniciar sem checkpoint reproduz o mesmo estado
+        int refeitos = 12;
+        for (int i = 0; i < refeitos; i++) facade.redo();
+        String journal = Files.readString(Paths.get("journal.log"));
+        for (String delta : List.of("RET;REGISTROS;", "RET;VENDAS;", "RET;TAXAS;", "ITM;REGISTROS;", "ITM;VENDAS;",
+                "ITM;TAXAS;", "HRS;")) {
+            verdadeiro(journal.contains(delta), "undo/redo registrado como delta " + delta);
+        }
+        Facade reiniciada = new Facade();
+        igual(estados.get(refeitos), estado(reiniciada), "estado reproduzido do journal");
+        reiniciada.encerrarSistema();
+        igual(estados.get(refeitos), estado(new Facade()), "estado depois de reiniciar");
+    }
+
+    /** Desfaz só até a página mais recente voltar para a memória e refaz tudo a partir dali. */
+    private static void redoAtravessandoPagina() throws Exception {
+        Facade facade = novoSistema();
+        List<String> estados = new ArrayList<>();
+        estados.add(estado(facade));
+        String id = facade.criarEmpregado("Fabio", "Rua 6", "horista", "10,00");
+        estados.add(estado(facade));
+        for (int dia = 3; dia <= 12; dia++) {
+            facade.lancaCartao(id, dia + "/1/2005", "9");
+            estados.add(estado(facade));
+        }
+        int paginasAntes = paginas();
+        verdadeiro(paginasAntes >= 2, "cartoes paginados (" + paginasAntes + " paginas)");
+
+        int desfeitos = 0;
+        while (paginas() == paginasAntes) {
+            facade.undo();
+            desfeitos++;
+            igual(estados.get(estados.size() - 1 - desfeitos), estado(facade), "undo ate a pagina, passo " + desfeitos);
+        }
+        facade.undo(); // já dentro da página que voltou
+        desfeitos++;
+        igual(estados.get(estados.size() - 1 - desfeitos), estado(facade), "undo dentro da pagina carregada");
+        verdadeiro(paginas() > 0, "paginas mais antigas continuam no disco");
+
+        for (; desfeitos > 0; desfeitos--) {
+            facade.redo();
+            igual(estados.get(estados.size() - desfeitos), estado(facade), "redo atravessando a pagina, faltando " + (desfeitos - 1));
+        }
+        lanca(RuntimeException.class, facade::redo, "nada mais a refazer");
+        for (int i = estados.size() - 2; i >= 0; i--) {
+            facade.undo();
+            igual(estados.get(i), estado(facade), "undo completo depois do redo, comando " + i);
+        }
+        facade.encerrarSistema();
+    }
+
+    /**
+     * Com profundidade 4, só os 4 comandos mais recentes ficam na memória: a remoção e o
+     * zerarSistema, seguidos de 4 comandos, só podem ser desfeitos lendo uma página.
+     */
+    private static void remocaoEZeradoEmPagina() throws Exception {
+        Facade facade = novoSistema();
+        List<Acao> comandos = List.of(
+                () -> facade.criarEmpregado("Gil", "Rua 7", "comissionado", "1500,00", "0,05"),
+                () -> facade.lancaVenda("id1", "4/1/2005", "300,00"),
+                () -> facade.criarEmpregado("Hugo", "Rua 8", "horista", "11,00"),
+                () -> facade.lancaCartao("id2", "4/1/2005", "9"),
+                () -> facade.alteraEmpregado("id1", "sindicalizado", "true", "s7", "1,50"),
+                () -> facade.lancaTaxaServico("s7", "5/1/2005", "4,00"),
+                () -> facade.removerEmpregado("id1"),
+                facade::zerarSistema,
+                () -> facade.criarEmpregado("Ivo", "Rua 9", "assalariado", "2500,00"),
+                () -> facade.alteraEmpregado("id1", "nome", "Ivo Jr"),
+                () -> facade.alteraEmpregado("id1", "endereco", "Rua 90"),
+                () -> facade.alteraEmpregado("id1", "salario", "2600,00")
+        );
+        List<String> estados = new ArrayList<>();
+        for (Acao comando : comandos) {
+            estados.add(estado(facade));
+            comando.executar();
+        }
+        verdadeiro(paginas() >= 3, "remocao e zerarSistema gravados em paginas (" + paginas() + ")");
+        for (int i = comandos.size() - 1; i >= 0; i--) {
+            facade.undo();
+            igual(estados.get(i), estado(facade), "desfazer da pagina o comando " + i);
+        }
+        igual(0, paginas(), "paginas lidas de volta");
+        for (int i = 1; i < comandos.size(); i++) {
+            facade.redo();
+            igual(estados.get(i), estado(facade), "refazer o comando " + (i - 1) + " lido da pagina");
+        }
+        facade.encerrarSistema();
+    }
+
+    /** limparHistorico apaga só as páginas de undo e a próxima página volta a ser a 0. */
+    private static void limparHistorico() throws Exception {
+        Facade facade = novoSistema();
+        String id = facade.criarEmpregado("Jonas", "Rua 10", "horista", "10,00");
+        for (int dia = 3; dia <= 10; dia++) facade.lancaCartao(id, dia + "/1/2005", "8");
+        verdadeiro(paginas() >= 2, "paginas antes de limpar");
+        Path outro = PAGINAS.resolve("outro.txt");
+        Files.writeString(outro, "nao e pagina");
+
+        facade.testLimparHistorico();
+        igual(0, paginas(), "limparHistorico apaga as paginas");
+        verdadeiro(Files.exists(outro), "outros arquivos de backups/undo ficam");
+        lanca(RuntimeException.class, facade::undo, "nada a desfazer depois de limpar");
+
+        for (int dia = 11; dia <= 15; dia++) facade.lancaCartao(id, dia + "/1/2005", "8");
+        verdadeiro(Files.exists(PAGINAS.resolve("pagina-0.bin")), "numeracao das paginas recomeca");
+        facade.encerrarSistema();
+    }
+
+    private static Facade novoSistema() {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        facade.testLimparHistorico();
+        return facade;
+    }
+
+    /** Descrição do estado visível pela Facade, para comparar antes e depois. */
+    private static String estado(Facade facade) {
+        StringBuilder sb = new StringBuilder("empregados=").append(facade.getNumeroDeEmpregados()).append('\n');
+        for (String id : IDS) {
+            sb.append(id).append(':');
+            for (String atributo : ATRIBUTOS) {
+                sb.append(' ').append(atributo).append('=').append(consulta(() -> facade.getAtributoEmpregado(id, atributo)));
+            }
+            sb.append(" normais=").append(consulta(() -> facade.getHorasNormaisTrabalhadas(id, "1/1/2005", "1/2/2005")));
+            sb.append(" extras=").append(consulta(() -> facade.getHorasExtrasTrabalhadas(id, "1/1/2005", "1/2/2005")));
+            sb.append(" vendas=").append(consulta(() -> facade.getVendasRealizadas(id, "1/1/2005", "1/2/2005")));
+            sb.append(" taxas=").append(consulta(() -> facade.getTaxasServico(id, "1/1/2005", "1/2/2005")));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private interface Consulta {
+        String valor() throws Exception;
+    }
+
+    private static String consulta(Consulta consulta) {
+        try {
+            return consulta.valor();
+        } catch (Exception e) {
+            return "erro(" + e.getMessage() + ")";
+        }
+    }
+
+    private static int paginas() throws IOException {
+        if (!Files.isDirectory(PAGINAS)) return 0;
+        int quantidade = 0;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(PAGINAS, "pagina-*.bin")) {
+            for (Path ignorado : arquivos) quantidade++;
+        }
+        return quantidade;
+    }
+}
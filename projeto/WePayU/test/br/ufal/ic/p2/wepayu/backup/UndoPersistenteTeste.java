@@ -0,0 +1,88 @@
+package br.ufal.ic.p2.wepayu.backup;
+
+import easyaccept.EasyAccept;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Roda os scripts do EasyAccept que usam undo/redo (us8, us9, us10 e seus _1) com
+ * -Dwepayu.undo=persistente e com o undo por deltas, cada um num diretório temporário
+ * com cópias de tests/ e ok/. As duas saídas têm que ser iguais; us9.txt tem um erro
+ * de digitação na linha 100 que falha nos dois, os outros scripts têm que passar inteiros.
+ * Roda a partir do diretório do projeto, como o Main.
+ */
+public class UndoPersistenteTeste {
+
+    private static final String FACADE = "br.ufal.ic.p2.wepayu.Facade";
+    private static final String[] SCRIPTS = {
+            "tests/us8.txt", "tests/us9.txt", "tests/us9_1.txt", "tests/us10.txt", "tests/us10_1.txt"
+    };
+    private static final String SAIDA = "saida-easyaccept.txt";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            rodarScripts();
+            return;
+        }
+
+        String deltas = rodar(List.of());
+        String persistente = rodar(List.of("wepayu.undo=persistente"));
+
+        for (String script : SCRIPTS) {
+            if (script.equals("tests/us9.txt")) continue;
+            verdadeiro(persistente.matches("(?s).*Test file " + script + ": \\d+ tests OK.*"),
+                    script + " passa com o undo persistente");
+        }
+        igual(deltas, persistente, "saida do EasyAccept com os dois motores de undo");
+        concluir("UndoPersistenteTeste");
+    }
+
+    private static String rodar(List<String> propriedades) throws IOException {
+        Path diretorio = diretorioTemporario("undo");
+        try {
+            copiar(Paths.get("tests"), diretorio.resolve("tests"));
+            copiar(Paths.get("ok"), diretorio.resolve("ok"));
+            igual(0, rodarEtapa(diretorio, UndoPersistenteTeste.class, propriedades, "scripts"),
+                    "saida do processo com " + propriedades);
+            return Files.readString(diretorio.resolve(SAIDA));
+        } finally {
+            apagar(diretorio);
+        }
+    }
+
+    private static void rodarScripts() throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(saida, true, StandardCharsets.UTF_8));
+        try {
+            for (String script : SCRIPTS) {
+                EasyAccept.main(new String[]{FACADE, script});
+            }
+        } finally {
+            System.setOut(original);
+        }
+        String texto = saida.toString(StandardCharsets.UTF_8);
+        System.out.print(texto);
+        Files.writeString(Paths.get(SAIDA), texto);
+    }
+
+    private static void copiar(Path origem, Path destino) throws IOException {
+        try (Stream<Path> caminhos = Files.walk(origem)) {
+            for (Path p : (Iterable<Path>) caminhos::iterator) {
+                Path alvo = destino.resolve(origem.relativize(p).toString());
+                if (Files.isDirectory(p)) Files.createDirectories(alvo);
+                else Files.copy(p, alvo);
+            }
+        }
+    }
+}
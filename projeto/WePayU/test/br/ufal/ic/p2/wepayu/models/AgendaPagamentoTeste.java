@@ -0,0 +1,73 @@
+package br.ufal.ic.p2.wepayu.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * pagamentosEntre, inicioPeriodo e diasPeriodo contra a regra aplicada dia a dia, em
+ * intervalos antes de 2005, dentro do calendário pré-calculado, atravessando o fim do
+ * horizonte e depois dele. Também a cache limitada de agendas compiladas.
+ */
+public class AgendaPagamentoTeste {
+
+    private static final String[] DESCRICOES = {
+            "semanal 5", "semanal 2 5", "semanal 3 1", "semanal 52 7", "mensal 1", "mensal 28", "mensal $"
+    };
+
+    public static void main(String[] args) {
+        for (String descricao : DESCRICOES) {
+            AgendaPagamento agenda = AgendaPagamento.compilar(descricao);
+            intervalo(agenda, LocalDate.of(2003, 11, 20), LocalDate.of(2005, 3, 10));
+            intervalo(agenda, LocalDate.of(2004, 12, 31), LocalDate.of(2005, 1, 1));
+            intervalo(agenda, LocalDate.of(2010, 2, 1), LocalDate.of(2010, 5, 31));
+            intervalo(agenda, LocalDate.of(2034, 10, 1), LocalDate.of(2036, 2, 29));
+            intervalo(agenda, LocalDate.of(2040, 1, 1), LocalDate.of(2040, 12, 31));
+            igual(List.of(), agenda.pagamentosEntre(LocalDate.of(2006, 1, 2), LocalDate.of(2006, 1, 1)),
+                    descricao + ": intervalo invertido");
+        }
+        cache();
+        concluir("AgendaPagamentoTeste");
+    }
+
+    /** Confere o intervalo contra paga() dia a dia e os períodos de cada pagamento. */
+    private static void intervalo(AgendaPagamento agenda, LocalDate de, LocalDate ate) {
+        List<LocalDate> esperados = new ArrayList<>();
+        for (LocalDate d = de; !d.isAfter(ate); d = d.plusDays(1)) {
+            if (agenda.paga(d)) esperados.add(d);
+        }
+        igual(esperados, agenda.pagamentosEntre(de, ate), agenda + ": pagamentos de " + de + " a " + ate);
+        for (LocalDate pagamento : esperados) {
+            LocalDate inicio = agenda.inicioPeriodo(pagamento);
+            verdadeiro(inicio.isAfter(anterior(agenda, pagamento)) && !inicio.isAfter(pagamento),
+                    agenda + ": inicio do periodo de " + pagamento);
+            igual(pagamento.toEpochDay() - inicio.toEpochDay() + 1, agenda.diasPeriodo(pagamento),
+                    agenda + ": dias do periodo de " + pagamento);
+        }
+    }
+
+    private static LocalDate anterior(AgendaPagamento agenda, LocalDate pagamento) {
+        List<LocalDate> antes = agenda.pagamentosEntre(pagamento.minusDays(400), pagamento.minusDays(1));
+        return antes.isEmpty() ? LocalDate.MIN : antes.get(antes.size() - 1);
+    }
+
+    private static void cache() {
+        AgendaPagamento primeira = AgendaPagamento.compilar("semanal 4 3");
+        verdadeiro(primeira == AgendaPagamento.compilar("  semanal   4 3 "), "mesma descricao, mesma agenda");
+
+        // mais descrições do que cabem na cache (64 por padrão) empurram a primeira para fora
+        for (int semanas = 5; semanas <= 52; semanas++) {
+            AgendaPagamento.compilar("semanal " + semanas + " 3");
+            AgendaPagamento.compilar("semanal " + semanas + " 4");
+        }
+        AgendaPagamento recompilada = AgendaPagamento.compilar("semanal 4 3");
+        verdadeiro(recompilada != primeira, "descricao fora da cache compilada de novo");
+        igual(primeira, recompilada, "agenda recompilada igual a antiga");
+        igual(primeira.pagamentosEntre(LocalDate.of(2005, 1, 1), LocalDate.of(2006, 1, 1)),
+                recompilada.pagamentosEntre(LocalDate.of(2005, 1, 1), LocalDate.of(2006, 1, 1)),
+                "mesmo calendario depois de recompilar");
+        verdadeiro(AgendaPagamento.padrao("horista") == AgendaPagamento.SEMANAL, "agendas padrao fixas");
+    }
+}
@@ -0,0 +1,127 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Linhas por segundo do codec de CSV num registros.csv gerado (id;data;normais;extras).
+ * Compara a leitura do LeitorCsv com o laço antigo de split + LocalDate.parse +
+ * Double.parseDouble, fazendo em cada linha o mesmo trabalho do carregarRegistros.
+ *
+ * Uso: CsvBenchmark [linhas] [arquivo]. Sem arquivo, gera um temporário e apaga no fim;
+ * com arquivo, gera só se ele não existir. Padrão: 10.000.000 linhas (cerca de 240 MB).
+ * Não faz parte de Testes: demora e o resultado depende da máquina.
+ */
+public class CsvBenchmark {
+
+    private static final int RODADAS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int linhas = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path arquivo = args.length > 1 ? Paths.get(args[1]) : Files.createTempFile("wepayu-registros", ".csv");
+        boolean temporario = args.length < 2;
+
+        try {
+            if (temporario || !Files.exists(arquivo)) {
+                long inicio = System.nanoTime();
+                gerar(arquivo, linhas);
+                relatar("escrita EscritorCsv", linhas, System.nanoTime() - inicio);
+            }
+            System.out.printf("%s: %,d bytes%n", arquivo, Files.size(arquivo));
+
+            // a primeira rodada de cada leitor aquece o JIT e o cache de páginas; vale a melhor
+            long melhorCodec = Long.MAX_VALUE;
+            long melhorSplit = Long.MAX_VALUE;
+            for (int r = 0; r < RODADAS; r++) {
+                long inicio = System.nanoTime();
+                int lidasCodec = lerComCodec(arquivo);
+                melhorCodec = Math.min(melhorCodec, System.nanoTime() - inicio);
+
+                inicio = System.nanoTime();
+                int lidasSplit = lerComSplit(arquivo);
+                melhorSplit = Math.min(melhorSplit, System.nanoTime() - inicio);
+
+                if (lidasCodec != lidasSplit) {
+                    throw new IllegalStateException("Leitores discordam: " + lidasCodec + " x " + lidasSplit);
+                }
+                linhas = lidasCodec;
+            }
+            relatar("leitura LeitorCsv", linhas, melhorCodec);
+            relatar("leitura split/parse", linhas, melhorSplit);
+        } finally {
+            if (temporario) Files.deleteIfExists(arquivo);
+        }
+    }
+
+    /** Gera linhas no formato do salvarRegistros: 1000 empregados, horas com meia hora, datas de 2000 a 2020. */
+    static void gerar(Path arquivo, int linhas) throws IOException {
+        Random aleatorio = new Random(1);
+        int primeiroDia = (int) LocalDate.of(2000, 1, 1).toEpochDay();
+        try (EscritorCsv csv = new EscritorCsv(arquivo)) {
+            for (int i = 0; i < linhas; i++) {
+                csv.texto("id" + (1 + aleatorio.nextInt(1000)))
+                        .data(primeiroDia + aleatorio.nextInt(7300))
+                        .real(aleatorio.nextInt(17) / 2.0)
+                        .real(aleatorio.nextInt(9) / 2.0)
+                        .fimLinha();
+            }
+        }
+    }
+
+    private static int lerComCodec(Path arquivo) throws IOException {
+        int linhas = 0;
+        long soma = 0;
+        try (LeitorCsv csv = new LeitorCsv(arquivo)) {
+            while (csv.proximaLinha()) {
+                if (csv.campos() != 4) continue;
+                String id = csv.texto(0);
+                LocalDate data = LocalDate.ofEpochDay(csv.data(1));
+                double normais = csv.real(2);
+                double extras = csv.real(3);
+                soma += id.length() + data.getDayOfMonth() + (long) (normais + extras);
+                linhas++;
+            }
+        }
+        consumir(soma);
+        return linhas;
+    }
+
+    private static int lerComSplit(Path arquivo) throws IOException {
+        int linhas = 0;
+        long soma = 0;
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M/uuuu");
+        try (BufferedReader br = Files.newBufferedReader(arquivo)) {
+            String linha;
+            while ((linha = br.readLine()) != null) {
+                String[] partes = linha.split(";");
+                if (partes.length != 4) continue;
+                String id = partes[0];
+                LocalDate data = LocalDate.parse(partes[1], formatter);
+                double normais = Double.parseDouble(partes[2].replace(',', '.'));
+                double extras = Double.parseDouble(partes[3].replace(',', '.'));
+                soma += id.length() + data.getDayOfMonth() + (long) (normais + extras);
+                linhas++;
+            }
+        }
+        consumir(soma);
+        return linhas;
+    }
+
+    private static long sumidouro;
+
+    // impede que o JIT descarte a leitura cujo resultado não é usado
+    private static void consumir(long valor) {
+        sumidouro ^= valor;
+    }
+
+    private static void relatar(String oQue, int linhas, long nanos) {
+        double segundos = nanos / 1e9;
+        System.out.printf("%-22s %,d linhas em %.2f s: %,.0f linhas/s%n", oQue, linhas, segundos, linhas / segundos);
+    }
+}
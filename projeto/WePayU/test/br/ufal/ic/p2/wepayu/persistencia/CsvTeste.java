@@ -0,0 +1,196 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/** Codec de CSV: LeitorCsv, EscritorCsv e Datas, incluindo a volta escrita -> leitura. */
+public class CsvTeste {
+
+    public static void main(String[] args) throws Exception {
+        decimais();
+        reais();
+        datas();
+        linhas();
+        escrita();
+        idaEVolta();
+        concluir("CsvTeste");
+    }
+
+    private static void decimais() throws IOException {
+        igual(2350L, decimal("23,5"), "virgula");
+        igual(2350L, decimal("23.5"), "ponto");
+        igual(2300L, decimal("23"), "sem casas");
+        igual(7L, decimal(",07"), "sem parte inteira");
+        igual(-1234L, decimal("-12,34"), "negativo");
+        igual(120L, decimal("+1.2"), "sinal de mais");
+        igual(0L, decimal("-0,00"), "zero negativo");
+
+        // só a primeira casa excedente decide, com o meio para longe do zero
+        igual(100L, decimal("1,004"), "abaixo do meio");
+        igual(101L, decimal("1,005"), "meio");
+        igual(-101L, decimal("-1,005"), "meio negativo");
+        igual(100L, decimal("0,995"), "arredondamento que sobe a parte inteira");
+        igual(234L, decimal("2,3449"), "casas depois da primeira excedente");
+        igual(1L, decimal("0,0099"), "menor que a ultima casa");
+
+        igual(-1500L, decimal("-1.5E1"), "expoente (caminho do parseDouble)");
+        igual(-13L, decimal("-1.25e-1"), "expoente negativo arredonda como o caminho rapido");
+
+        for (String invalido : new String[]{"", "-", ",", "1,2,3", "1.2.3", "abc", "12a"}) {
+            lanca(NumberFormatException.class, () -> decimal(invalido), "decimal invalido '" + invalido + "'");
+        }
+    }
+
+    private static void reais() throws IOException {
+        igual(7.5, real("7,5"), "virgula");
+        igual(7.5, real("7.5"), "ponto");
+        igual(-0.25, real("-0.25"), "negativo");
+        igual(8.0, real("8"), "inteiro");
+        for (String s : new String[]{"0.1", "0,3", "123456.789", "0.000001", "1.2345678901234567", "1e-7", "99999999999999999"}) {
+            igual(Double.parseDouble(s.replace(',', '.')), real(s), "real igual a Double.parseDouble: " + s);
+        }
+        for (String invalido : new String[]{"", "-", ".", "abc"}) {
+            lanca(NumberFormatException.class, () -> real(invalido), "real invalido '" + invalido + "'");
+        }
+    }
+
+    private static void datas() throws IOException {
+        igual(LocalDate.of(2005, 1, 5).toEpochDay(), (long) data("5/1/2005"), "d/M");
+        igual(LocalDate.of(2005, 1, 5).toEpochDay(), (long) data("05/01/2005"), "dd/MM");
+        igual(LocalDate.of(1999, 12, 31).toEpochDay(), (long) data("31/12/1999"), "dd/MM de dois digitos");
+        igual(-1L, (long) data("31/12/1969"), "antes de 1970");
+        igual(LocalDate.of(2004, 2, 29).toEpochDay(), (long) data("29/2/2004"), "29/2 de ano bissexto");
+        igual(LocalDate.of(2000, 2, 29).toEpochDay(), (long) data("29/2/2000"), "29/2 de 2000");
+
+        for (String invalida : new String[]{"", "1/1", "1//2005", "/1/2005", "1/1/", "1/1/2005/1", "1-1-2005",
+                "a/1/2005", "0/1/2005", "1/0/2005", "1/13/2005", "32/1/2005", "31/4/2005", "31/2/2005",
+                "29/2/2005", "29/2/1900"}) {
+            lanca(NumberFormatException.class, () -> data(invalida), "data invalida '" + invalida + "'");
+        }
+
+        // Datas contra LocalDate em todo dia de 1900 a 2100
+        long ultimo = LocalDate.of(2100, 12, 31).toEpochDay();
+        boolean iguais = true;
+        for (long dia = LocalDate.of(1900, 1, 1).toEpochDay(); dia <= ultimo && iguais; dia++) {
+            LocalDate d = LocalDate.ofEpochDay(dia);
+            int civil = Datas.civil((int) dia);
+            iguais = Datas.epochDay(d.getYear(), d.getMonthValue(), d.getDayOfMonth()) == dia
+                    && Datas.ano(civil) == d.getYear() && Datas.mes(civil) == d.getMonthValue()
+                    && Datas.dia(civil) == d.getDayOfMonth();
+        }
+        verdadeiro(iguais, "Datas.epochDay e Datas.civil iguais a LocalDate de 1900 a 2100");
+    }
+
+    private static void linhas() throws IOException {
+        LeitorCsv csv = leitor("id1;5/1/2005;8;0\r\n\n\nid2;;;\nsem separador");
+        verdadeiro(csv.proximaLinha(), "primeira linha");
+        igual(4, csv.campos(), "campos da primeira linha");
+        igual("0", csv.texto(3), "\\r retirado do ultimo campo");
+        verdadeiro(csv.proximaLinha(), "linhas vazias puladas");
+        igual(4, csv.campos(), "campos vazios contam");
+        verdadeiro(csv.vazio(1), "campo vazio");
+        igual(null, csv.textoOuNulo(3), "textoOuNulo de campo vazio");
+        verdadeiro(csv.proximaLinha(), "ultima linha sem \\n");
+        igual(1, csv.campos(), "linha sem separador");
+        verdadeiro(!csv.proximaLinha(), "fim do arquivo");
+
+        StringBuilder longa = new StringBuilder("id9");
+        for (int i = 0; i < 100; i++) longa.append(";campo").append(i);
+        csv = leitor(longa + "\n");
+        verdadeiro(csv.proximaLinha(), "linha longa");
+        igual(101, csv.campos(), "mais campos que o buffer inicial");
+        igual("campo99", csv.texto(100), "ultimo campo da linha longa");
+
+        csv = leitor("TRUE;false;João;EMP");
+        csv.proximaLinha();
+        verdadeiro(csv.logico(0), "logico sem diferenciar maiusculas");
+        verdadeiro(!csv.logico(1), "logico falso");
+        igual("João", csv.texto(2), "texto UTF-8");
+        verdadeiro(csv.igual(3, "EMP") && !csv.igual(3, "EM"), "igual compara o campo inteiro");
+    }
+
+    private static void escrita() throws IOException {
+        igual("23.50", escrito(csv -> csv.decimal(2350L, 2)), "ponto fixo");
+        igual("-0.05", escrito(csv -> csv.decimal(-5L, 2)), "ponto fixo negativo menor que 1");
+        igual("-12.34", escrito(csv -> csv.decimal(-12.34, 2)), "double negativo");
+        igual("0.13", escrito(csv -> csv.decimal(0.125, 2)), "meio arredonda para cima");
+        igual("-0.13", escrito(csv -> csv.decimal(-0.125, 2)), "meio negativo arredonda para longe do zero");
+        igual("7.5", escrito(csv -> csv.real(7.5)), "real exato");
+        igual("-0.0001", escrito(csv -> csv.real(-0.0001)), "real com 4 casas");
+        igual(Double.toString(1.0 / 3), escrito(csv -> csv.real(1.0 / 3)), "real sem representacao curta");
+        igual("5/1/2005", escrito(csv -> csv.data((int) LocalDate.of(2005, 1, 5).toEpochDay())), "data d/M/uuuu");
+        igual("a;;true;-7;João", escrito(csv -> csv.texto("a").texto(null).logico(true).inteiro(-7).texto("João")),
+                "separadores, nulo e UTF-8");
+    }
+
+    private static void idaEVolta() throws IOException {
+        Random aleatorio = new Random(42);
+        int linhas = 100_000;
+        long[] valores = new long[linhas];
+        double[] reais = new double[linhas];
+        int[] dias = new int[linhas];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EscritorCsv escritor = new EscritorCsv(bytes);
+        for (int i = 0; i < linhas; i++) {
+            valores[i] = aleatorio.nextLong() % 100_000_000_00L;
+            reais[i] = aleatorio.nextInt(2_000_000) / 100.0 - 10_000;
+            dias[i] = aleatorio.nextInt(80_000) - 10_000;
+            escritor.texto("id" + i).decimal(valores[i], 2).real(reais[i]).data(dias[i]).fimLinha();
+        }
+        escritor.close();
+
+        LeitorCsv leitor = new LeitorCsv(new ByteArrayInputStream(bytes.toByteArray()));
+        int lidas = 0;
+        while (leitor.proximaLinha()) {
+            if (!leitor.igual(0, "id" + lidas) || leitor.decimal(1, 2) != valores[lidas]
+                    || leitor.real(2) != reais[lidas] || leitor.data(3) != dias[lidas]) {
+                throw new AssertionError("ida e volta diferente na linha " + lidas);
+            }
+            lidas++;
+        }
+        igual(linhas, lidas, "linhas lidas de volta");
+    }
+
+    // ---------- Auxiliares ----------
+
+    private interface Escrita {
+        void escrever(EscritorCsv csv) throws IOException;
+    }
+
+    private static LeitorCsv leitor(String conteudo) {
+        return new LeitorCsv(new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static LeitorCsv campo(String valor) throws IOException {
+        LeitorCsv csv = leitor(valor + ";fim\n");
+        csv.proximaLinha();
+        return csv;
+    }
+
+    private static long decimal(String valor) throws IOException {
+        return campo(valor).decimal(0, 2);
+    }
+
+    private static double real(String valor) throws IOException {
+        return campo(valor).real(0);
+    }
+
+    private static int data(String valor) throws IOException {
+        return campo(valor).data(0);
+    }
+
+    private static String escrito(Escrita escrita) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EscritorCsv csv = new EscritorCsv(bytes)) {
+            escrita.escrever(csv);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,144 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import br.ufal.ic.p2.wepayu.Facade;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Reprodução do journal depois de o processo morrer. Os comandos posteriores ao último
+ * checkpoint (alteração de um empregado, cartões de um horista novo e uma folha) rodam
+ * num processo derrubado com Runtime.halt logo depois de rodaFolha, sem encerrarSistema;
+ * outro processo reproduz o journal e roda a folha seguinte. O resultado tem que ser o
+ * mesmo de rodar tudo num processo só, sem queda.
+ *
+ * Também o commit automático: um processo com a durabilidade configurada com um valor
+ * inválido (fica a padrão) lança mais cartões do que cabem entre dois checkpoints e cai;
+ * o repositório CSV já tem os cartões do commit e o journal só os posteriores.
+ */
+public class JournalTeste {
+
+    private static final int SAIDA_QUEDA = 3;
+    private static final String FOLHA = "folha-2005-01-21.txt";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            etapa(args[0]);
+            return;
+        }
+
+        Path comQueda = diretorioTemporario("journal");
+        Path semQueda = diretorioTemporario("journal");
+        try {
+            igual(SAIDA_QUEDA, rodarEtapa(comQueda, JournalTeste.class, List.of(), "antes"), "saida do processo derrubado");
+            String journal = Files.readString(comQueda.resolve("journal.log"));
+            verdadeiro(journal.contains("PAG;"), "journal tem os pagamentos da folha de 14/1");
+            igual(0, rodarEtapa(comQueda, JournalTeste.class, List.of(), "depois"), "saida depois da queda");
+
+            igual(0, rodarEtapa(semQueda, JournalTeste.class, List.of(), "sem-queda"), "saida sem queda");
+            igual(Files.readString(semQueda.resolve(FOLHA)), Files.readString(comQueda.resolve(FOLHA)),
+                    "folha de 21/1 depois de reproduzir o journal");
+        } finally {
+            apagar(comQueda);
+            apagar(semQueda);
+        }
+
+        Path checkpoint = diretorioTemporario("journal");
+        try {
+            igual(SAIDA_QUEDA, rodarEtapa(checkpoint, JournalTeste.class, List.of("wepayu.durabilidade=invalida"),
+                    "checkpoint"), "saida do processo com commit automatico");
+            long cartoes;
+            try (Stream<String> linhas = Files.lines(checkpoint.resolve("registros.csv"))) {
+                cartoes = linhas.filter(l -> l.startsWith("id1;")).count();
+            }
+            // depois de zerarSistema o journal começa vazio: o EMP do empregado e 499 REG
+            igual((long) Journal.REGISTROS_POR_CHECKPOINT - 1, cartoes, "cartoes gravados no repositorio pelo commit");
+            try (Stream<String> linhas = Files.lines(checkpoint.resolve("journal.log"))) {
+                igual(CARTOES - cartoes, linhas.filter(l -> l.startsWith("REG;")).count(), "journal truncado no commit");
+            }
+            igual(0, rodarEtapa(checkpoint, JournalTeste.class, List.of(), "depois-do-checkpoint"),
+                    "saida depois do commit automatico");
+        } finally {
+            apagar(checkpoint);
+        }
+        concluir("JournalTeste");
+    }
+
+    private static void etapa(String etapa) throws Exception {
+        switch (etapa) {
+            case "antes":
+                antesDaQueda();
+                Runtime.getRuntime().halt(SAIDA_QUEDA);
+                break;
+            case "depois":
+                depoisDaQueda(new Facade());
+                break;
+            case "sem-queda":
+                depoisDaQueda(antesDaQueda());
+                break;
+            case "checkpoint":
+                lancarCartoes();
+                Runtime.getRuntime().halt(SAIDA_QUEDA);
+                break;
+            case "depois-do-checkpoint":
+                Facade facade = new Facade();
+                igual(String.valueOf(CARTOES * 8), facade.getHorasNormaisTrabalhadas("id1", "1/1/2005", "1/1/2010"),
+                        "horas do repositorio e do journal");
+                break;
+        }
+    }
+
+    private static final int CARTOES = Journal.REGISTROS_POR_CHECKPOINT + 100;
+
+    private static void lancarCartoes() {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        String id = facade.criarEmpregado("Horista", "Rua A, 1", "horista", "10");
+        LocalDate dia = LocalDate.of(2005, 1, 1);
+        for (int i = 0; i < CARTOES; i++, dia = dia.plusDays(1)) {
+            facade.lancaCartao(id, dia.getDayOfMonth() + "/" + dia.getMonthValue() + "/" + dia.getYear(), "8");
+        }
+    }
+
+    private static Facade antesDaQueda() throws Exception {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        String id1 = facade.criarEmpregado("Horista Antigo", "Rua A, 1", "horista", "10");
+        facade.alteraEmpregado(id1, "metodoPagamento", "banco", "Banco do Brasil", "1591-1", "51000-0");
+        facade.alteraEmpregado(id1, "sindicalizado", "true", "s1", "5");
+        facade.lancaCartao(id1, "5/1/2005", "1");
+        facade.rodaFolha("7/1/2005", "folha-2005-01-07.txt");
+        facade.encerrarSistema(); // checkpoint: daqui para frente só o journal
+
+        facade = new Facade();
+        facade.alteraEmpregado(id1, "endereco", "Rua B, 2");
+        facade.lancaCartao(id1, "12/1/2005", "2");
+        String id2 = facade.criarEmpregado("Horista Novo", "Rua C, 3", "horista", "12");
+        facade.lancaCartao(id2, "13/1/2005", "8");
+        facade.rodaFolha("14/1/2005", "folha-2005-01-14.txt");
+        return facade;
+    }
+
+    private static void depoisDaQueda(Facade facade) throws Exception {
+        String id1 = facade.getEmpregadoPorNome("Horista Antigo", 1);
+        String id2 = facade.getEmpregadoPorNome("Horista Novo", 1);
+        igual("Rua B, 2", facade.getAtributoEmpregado(id1, "endereco"), "endereco alterado depois do checkpoint");
+        igual("Banco do Brasil", facade.getAtributoEmpregado(id1, "banco"), "banco");
+        igual("1591-1", facade.getAtributoEmpregado(id1, "agencia"), "agencia");
+        igual("51000-0", facade.getAtributoEmpregado(id1, "contaCorrente"), "conta corrente");
+
+        // a folha de 14/1 já foi paga: rodá-la de novo não paga ninguém
+        igual("0,00", facade.totalFolha("14/1/2005"), "folha de 14/1 depois de paga");
+
+        facade.lancaCartao(id1, "19/1/2005", "10");
+        facade.lancaCartao(id2, "20/1/2005", "4");
+        igual("158,00", facade.totalFolha("21/1/2005"), "folha de 21/1");
+        facade.rodaFolha("21/1/2005", FOLHA);
+        facade.encerrarSistema();
+    }
+}
@@ -0,0 +1,150 @@
+package br.ufal.ic.p2.wepayu.persistencia;
+
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Snapshot particionado: depois de uma alteração só o shard do empregado é regravado
+ * (empregados.bin e os outros shards ficam byte a byte iguais), e na carga seguinte o
+ * histórico de um empregado não tocado só é lido no primeiro acesso às listas, com o
+ * conteúdo certo. Também o vizinho de shard do alterado, que estava pendente quando o
+ * shard foi regravado. Roda num processo à parte, porque o snapshot fica em dados/.
+ */
+public class SnapshotBinarioTeste {
+
+    private static final int EMPREGADOS = 60;
+    private static final LocalDate D0 = LocalDate.of(2005, 1, 3);
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            etapa();
+            return;
+        }
+        Path diretorio = diretorioTemporario("snapshot");
+        try {
+            igual(0, rodarEtapa(diretorio, SnapshotBinarioTeste.class, List.of(), "shards"), "saida da etapa");
+        } finally {
+            apagar(diretorio);
+        }
+        concluir("SnapshotBinarioTeste");
+    }
+
+    private static void etapa() {
+        Map<String, Empregado> originais = new LinkedHashMap<>();
+        for (int i = 1; i <= EMPREGADOS; i++) originais.put("id" + i, empregado(i));
+        List<String> agendas = List.of("semanal 5", "mensal $");
+        SnapshotBinario.salvar(originais, agendas, 5);
+
+        Map<String, Empregado> carregados = carregar();
+        String alterado = "id1";
+        int shardAlterado = SnapshotBinario.shard(alterado);
+        String vizinho = null;
+        String intocado = null;
+        for (int i = 2; i <= EMPREGADOS; i++) {
+            String id = "id" + i;
+            if (vizinho == null && SnapshotBinario.shard(id) == shardAlterado) vizinho = id;
+            if (intocado == null && SnapshotBinario.shard(id) != shardAlterado) intocado = id;
+        }
+        verdadeiro(vizinho != null && intocado != null, "ids em shards escolhidos");
+        verdadeiro(carregados.values().stream().allMatch(Empregado::temHistoricoPendente),
+                "carga sem ler historicos");
+
+        // uma venda no alterado: só o shard dele fica sujo
+        Map<String, byte[]> antes = arquivos();
+        Empregado e = carregados.get(alterado);
+        e.addVenda(new Venda(D0.plusDays(20), 12_345));
+        originais.get(alterado).addVenda(new Venda(D0.plusDays(20), 12_345));
+        SnapshotBinario.marcarSujo(alterado, false);
+        SnapshotBinario.salvar(carregados, agendas, 6);
+
+        Map<String, byte[]> depois = arquivos();
+        igual(antes.keySet(), depois.keySet(), "mesmos arquivos no snapshot");
+        String arquivoAlterado = String.format("historico-%02d.bin", shardAlterado);
+        for (String arquivo : antes.keySet()) {
+            boolean igualAntes = Arrays.equals(antes.get(arquivo), depois.get(arquivo));
+            verdadeiro(arquivo.equals(arquivoAlterado) ? !igualAntes : igualAntes,
+                    arquivo + (arquivo.equals(arquivoAlterado) ? " regravado" : " intacto"));
+        }
+        igual(6L, ByteBuffer.wrap(depois.get(arquivoAlterado)).getLong(8), "sequencia do shard regravado");
+        igual(5L, ByteBuffer.wrap(depois.get("empregados.bin")).getLong(8), "sequencia de empregados.bin");
+        verdadeiro(SnapshotBinario.incorporou(alterado, 6), "shard regravado incorpora o registro 6");
+        verdadeiro(!SnapshotBinario.incorporou(intocado, 6) && SnapshotBinario.incorporou(intocado, 5),
+                "shard intacto fica no registro 5");
+
+        // nova carga: históricos lidos sob demanda, do shard regravado e do intacto
+        Map<String, Empregado> recarregados = carregar();
+        igual(6L, SnapshotBinario.getSequencia(), "sequencia depois da recarga");
+        Empregado semToque = recarregados.get(intocado);
+        verdadeiro(semToque.temHistoricoPendente(), "historico do intocado pendente depois da carga");
+        igual(originais.get(intocado).getTotalVendas(LocalDate.MIN, LocalDate.MAX),
+                semToque.getTotalVendas(LocalDate.MIN, LocalDate.MAX), "soma de vendas do intocado");
+        verdadeiro(!semToque.temHistoricoPendente(), "historico lido no primeiro acesso");
+        igual(historico(originais.get(intocado)), historico(semToque), "historico do intocado");
+        verdadeiro(recarregados.get(vizinho).temHistoricoPendente(), "vizinho de shard ainda pendente");
+        igual(historico(originais.get(vizinho)), historico(recarregados.get(vizinho)),
+                "vizinho regravado enquanto pendente");
+        igual(historico(originais.get(alterado)), historico(recarregados.get(alterado)), "historico do alterado");
+        for (String id : originais.keySet()) {
+            igual(historico(originais.get(id)), historico(recarregados.get(id)), "historico de " + id);
+        }
+        concluirEtapa();
+    }
+
+    private static Empregado empregado(int i) {
+        Empregado e = new Empregado("id" + i, "Empregado " + i, "Rua " + i, "comissionado", 100_000 + i);
+        for (int d = 0; d < i % 5 + 1; d++) {
+            e.addRegistroDeHoras(new RegistroDeHoras(D0.plusDays(d), 8, d * 0.5));
+            e.addVenda(new Venda(D0.plusDays(d), 1_000L * i + d));
+        }
+        e.addRegistroDeHoras(new RegistroDeHoras(D0.minusDays(i), 4.25, 0)); // fora de ordem de data
+        if (i % 3 == 0) e.addTaxaServico(new TaxaServico(D0.plusDays(i), 250 + i));
+        return e;
+    }
+
+    private static Map<String, Empregado> carregar() {
+        Map<String, Empregado> empregados = new LinkedHashMap<>();
+        List<String> agendas = new ArrayList<>();
+        verdadeiro(SnapshotBinario.carregar(empregados, agendas), "snapshot carregado");
+        igual(List.of("semanal 5", "mensal $"), agendas, "agendas do snapshot");
+        igual(EMPREGADOS, empregados.size(), "empregados do snapshot");
+        return empregados;
+    }
+
+    private static Map<String, byte[]> arquivos() {
+        Map<String, byte[]> conteudo = new LinkedHashMap<>();
+        try (var caminhos = Files.list(Paths.get("dados"))) {
+            for (Path p : (Iterable<Path>) caminhos.sorted()::iterator) {
+                conteudo.put(p.getFileName().toString(), Files.readAllBytes(p));
+            }
+        } catch (IOException ex) {
+            throw new AssertionError("Nao foi possivel ler dados/", ex);
+        }
+        return conteudo;
+    }
+
+    private static List<String> historico(Empregado e) {
+        List<String> linhas = new ArrayList<>();
+        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
+            linhas.add("R " + r.getData() + " " + r.getHorasNormais() + " " + r.getHorasExtras());
+        }
+        for (Venda v : e.getVendas()) linhas.add("V " + v.getData() + " " + v.getValor());
+        for (TaxaServico t : e.getTaxasServico()) linhas.add("T " + t.getData() + " " + t.getValor());
+        return linhas;
+    }
+}
@@ -0,0 +1,171 @@
+package br.ufal.ic.p2.wepayu.repositorio;
+
+import br.ufal.ic.p2.wepayu.models.Empregado;
+import br.ufal.ic.p2.wepayu.models.RegistroDeHoras;
+import br.ufal.ic.p2.wepayu.models.TaxaServico;
+import br.ufal.ic.p2.wepayu.models.Venda;
+import br.ufal.ic.p2.wepayu.persistencia.CoordenadorPersistencia.Arquivo;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Banco H2 (lib/h2-2.2.224.jar) num diretório temporário: gravação e carga de volta, somas
+ * por intervalo respondidas pelo banco sem ler o histórico, atualização só dos dias
+ * alterados, sequência do commit e erros de SQL propagados. Também o arquivo do banco
+ * derivado da URL JDBC, que é o que o backup do encerramento copia.
+ */
+public class RepositorioJdbcTeste {
+
+    private static final LocalDate D1 = LocalDate.of(2005, 1, 3);
+    private static final LocalDate D2 = LocalDate.of(2005, 1, 4);
+    private static final LocalDate D3 = LocalDate.of(2005, 1, 10);
+
+    public static void main(String[] args) {
+        Path diretorio = diretorioTemporario("jdbc");
+        try {
+            idaEVolta("jdbc:h2:" + diretorio.toAbsolutePath().resolve("wepayu"));
+        } finally {
+            apagar(diretorio);
+        }
+        arquivosDaUrl();
+        concluir("RepositorioJdbcTeste");
+    }
+
+    private static void idaEVolta(String url) {
+        Map<String, Empregado> originais = new LinkedHashMap<>();
+        Empregado horista = new Empregado("id1", "Ana", "Rua 1", "horista", 1_050);
+        horista.setMetodoPagamento("banco");
+        horista.setBanco("Banco do Brasil");
+        horista.setAgencia("123-4");
+        horista.setContaCorrente("56789-0");
+        horista.setDataAdmissao(D1);
+        horista.addRegistroDeHoras(new RegistroDeHoras(D2, 8, 1.5));
+        horista.addRegistroDeHoras(new RegistroDeHoras(D1, 4.25, 0)); // fora de ordem de data
+        horista.addRegistroDeHoras(new RegistroDeHoras(D3, 8, 0));
+        originais.put(horista.getId(), horista);
+
+        Empregado comissionado = new Empregado("id2", "Bia", "Rua 2", "comissionado", 200_000);
+        comissionado.setComissao(0.05);
+        comissionado.setSindicalizado(true);
+        comissionado.setIdSindicato("s2");
+        comissionado.setTaxaSindical(1_234);
+        comissionado.setMetodoPagamento("emMaos");
+        comissionado.setDataUltimoPagamento(D2);
+        comissionado.addVenda(new Venda(D2, 10_001));
+        comissionado.addVenda(new Venda(D1, 33));
+        comissionado.addVenda(new Venda(D2, 99_999_999_999L));
+        comissionado.addTaxaServico(new TaxaServico(D3, 250));
+        originais.put(comissionado.getId(), comissionado);
+
+        Empregado removido = new Empregado("id3", "Caio", "Rua 3", "assalariado", 300_000);
+        removido.setMetodoPagamento("correios");
+        originais.put(removido.getId(), removido);
+
+        RepositorioJdbc banco = new RepositorioJdbc(url);
+        igual(-1L, banco.getSequencia(), "banco novo sem commit");
+        banco.salvar(originais, EnumSet.allOf(Arquivo.class), Map.of(), 7);
+        banco.fechar();
+
+        // Carga: atributos lidos, histórico fica no banco até ser usado
+        banco = new RepositorioJdbc(url);
+        igual(7L, banco.getSequencia(), "sequencia do commit");
+        Map<String, Empregado> carregados = new LinkedHashMap<>();
+        banco.carregar(carregados);
+        igual(List.of("id1", "id2", "id3"), new ArrayList<>(carregados.keySet()), "empregados carregados em ordem");
+        Empregado h = carregados.get("id1");
+        Empregado c = carregados.get("id2");
+        igual(atributos(horista), atributos(h), "atributos do horista");
+        igual(atributos(comissionado), atributos(c), "atributos do comissionado");
+
+        igual(12.25, h.getHorasNormais(D1, D3), "horas normais respondidas pelo banco");
+        igual(1.5, h.getHorasExtras(D1, D3.plusDays(1)), "horas extras respondidas pelo banco");
+        verdadeiro(h.temRegistrosDeHoras(), "horista com registros no banco");
+        verdadeiro(!c.temRegistrosDeHoras(), "comissionado sem registros no banco");
+        igual(10_001L + 99_999_999_999L, c.getTotalVendas(D2, D3), "vendas em centavos pelo banco");
+        igual(250L, c.getTotalTaxas(D1, D3.plusDays(1)), "taxas em centavos pelo banco");
+        verdadeiro(banco.historicoNoBanco("id1") && banco.historicoNoBanco("id2"),
+                "somas por intervalo nao leem o historico para a memoria");
+
+        igual(historico(horista), historico(h), "registros na ordem de lancamento");
+        verdadeiro(!banco.historicoNoBanco("id1"), "historico lido no primeiro acesso as listas");
+
+        // Commit só com o que mudou: um dia das vendas, um empregado alterado e um removido
+        c.addVenda(new Venda(D3, 500));
+        h.setNome("Ana Maria");
+        carregados.remove("id3");
+        Map<Arquivo, Map<String, Set<LocalDate>>> alterados = new EnumMap<>(Arquivo.class);
+        alterados.put(Arquivo.VENDAS, Map.of("id2", Set.of(D3)));
+        Map<String, Set<LocalDate>> empregados = new HashMap<>();
+        empregados.put("id1", null);
+        empregados.put("id3", null);
+        alterados.put(Arquivo.EMPREGADOS, empregados);
+        banco.salvar(carregados, EnumSet.noneOf(Arquivo.class), alterados, 9);
+        banco.fechar();
+
+        banco = new RepositorioJdbc(url);
+        Map<String, Empregado> recarregados = new LinkedHashMap<>();
+        banco.carregar(recarregados);
+        igual(List.of("id1", "id2"), new ArrayList<>(recarregados.keySet()), "removido apagado do banco");
+        igual(atributos(h), atributos(recarregados.get("id1")), "empregado alterado por UPDATE");
+        igual(historico(c), historico(recarregados.get("id2")), "dia alterado regravado, os outros intactos");
+        igual(historico(h), historico(recarregados.get("id1")), "historico de empregado nao alterado intacto");
+
+        // Snapshot na mesma sequência: o histórico passa a vir do banco
+        Map<String, Empregado> doSnapshot = new LinkedHashMap<>();
+        doSnapshot.put("id2", c.copiarAtributos());
+        verdadeiro(!banco.anexarHistoricos(doSnapshot, 8), "snapshot em outra sequencia: banco atrasado");
+        verdadeiro(banco.anexarHistoricos(doSnapshot, 9), "snapshot na sequencia do banco");
+        igual(33L + 10_001L + 99_999_999_999L + 500, doSnapshot.get("id2").getTotalVendas(D1, D3.plusDays(1)),
+                "soma do historico anexado");
+        banco.fechar();
+
+        RepositorioJdbc fechado = banco;
+        lanca(RuntimeException.class, () -> fechado.carregar(new HashMap<>()), "erro de SQL na carga propagado");
+        lanca(RuntimeException.class, () -> fechado.salvar(carregados, EnumSet.allOf(Arquivo.class), Map.of(), 10),
+                "erro de SQL no commit propagado");
+    }
+
+    private static String atributos(Empregado e) {
+        return String.join("|", e.getId(), e.getNome(), e.getEndereco(), e.getTipo(), String.valueOf(e.getSalario()),
+                String.valueOf(e.getSindicalizado()), String.valueOf(e.getIdSindicato()), String.valueOf(e.getTaxaSindical()),
+                String.valueOf(e.getComissao()), String.valueOf(e.getMetodoPagamento()), e.getAgendaPagamento().getDescricao(),
+                String.valueOf(e.getBanco()), String.valueOf(e.getAgencia()), String.valueOf(e.getContaCorrente()),
+                String.valueOf(e.getDataAdmissao()), String.valueOf(e.getDataUltimoPagamento()),
+                String.valueOf(e.getTaxaSindicalDiaria()), String.valueOf(e.getDebitoSindicalAcumulado()));
+    }
+
+    private static List<String> historico(Empregado e) {
+        List<String> linhas = new ArrayList<>();
+        for (RegistroDeHoras r : e.getRegistrosDeHoras()) {
+            linhas.add("R " + r.getData() + " " + r.getHorasNormais() + " " + r.getHorasExtras());
+        }
+        for (Venda v : e.getVendas()) linhas.add("V " + v.getData() + " " + v.getValor());
+        for (TaxaServico t : e.getTaxasServico()) linhas.add("T " + t.getData() + " " + t.getValor());
+        return linhas;
+    }
+
+    private static void arquivosDaUrl() {
+        igual(List.of(Paths.get("wepayu.db")), RepositorioJdbc.arquivosDaUrl("jdbc:sqlite:wepayu.db"), "sqlite");
+        igual(List.of(Paths.get("dados/wepayu.db")), RepositorioJdbc.arquivosDaUrl("jdbc:sqlite:file:dados/wepayu.db?cache=shared"),
+                "sqlite com file: e parametros");
+        igual(List.of(), RepositorioJdbc.arquivosDaUrl("jdbc:sqlite::memory:"), "sqlite em memoria");
+        igual(List.of(), RepositorioJdbc.arquivosDaUrl("jdbc:sqlite:"), "sqlite sem caminho");
+
+        igual(List.of(Paths.get("./wepayu.mv.db")), RepositorioJdbc.arquivosDaUrl("jdbc:h2:./wepayu"), "h2");
+        igual(List.of(Paths.get("/tmp/wepayu.mv.db")), RepositorioJdbc.arquivosDaUrl("jdbc:h2:file:/tmp/wepayu;MODE=MySQL"),
+                "h2 com file: e parametros");
+        igual(List.of(Paths.get(System.getProperty("user.home") + "/wepayu.mv.db")), RepositorioJdbc.arquivosDaUrl("jdbc:h2:~/wepayu"),
+                "h2 no diretorio do usuario");
+        igual(List.of(), RepositorioJdbc.arquivosDaUrl("jdbc:h2:mem:wepayu"), "h2 em memoria");
+        igual(List.of(), RepositorioJdbc.arquivosDaUrl("jdbc:h2:tcp://localhost/~/wepayu"), "h2 em servidor");
+        igual(List.of(), RepositorioJdbc.arquivosDaUrl("jdbc:postgresql://localhost/wepayu"), "outro driver");
+
+        igual(List.of(Paths.get("empregados.csv"), Paths.get("registros.csv"), Paths.get("vendas.csv"), Paths.get("taxas.csv")),
+                new RepositorioCsv().arquivos(), "arquivos do repositorio CSV");
+    }
+}
@@ -0,0 +1,102 @@
+package br.ufal.ic.p2.wepayu.service;
+
+import br.ufal.ic.p2.wepayu.Facade;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * A folha calculada em paralelo tem que sair igual, byte a byte, à calculada numa thread
+ * só. Os mesmos comandos rodam em dois processos: um com o cálculo e o relatório
+ * sequenciais (-Dwepayu.folha.minimoParalelo acima da quantidade de empregados e o
+ * bloco padrão, maior que qualquer seção) e outro que divide tudo (limite 1 e blocos
+ * de 3 linhas). Há homônimos, os
+ * três tipos, sindicalizados e agendas diferentes, e folhas de várias datas em sequência.
+ */
+public class FolhaParalelaTeste {
+
+    private static final int EMPREGADOS = 600;
+    private static final List<String> DATAS = List.of("7/1/2005", "14/1/2005", "21/1/2005", "31/1/2005", "4/2/2005");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            etapa();
+            return;
+        }
+        Path sequencial = diretorioTemporario("folha-sequencial");
+        Path paralelo = diretorioTemporario("folha-paralela");
+        try {
+            igual(0, rodarEtapa(sequencial, FolhaParalelaTeste.class,
+                    List.of("wepayu.folha.minimoParalelo=" + Integer.MAX_VALUE), "folhas"),
+                    "saida do processo sequencial");
+            igual(0, rodarEtapa(paralelo, FolhaParalelaTeste.class,
+                    List.of("wepayu.folha.minimoParalelo=1", "wepayu.folha.linhasPorBloco=3"), "folhas"),
+                    "saida do processo paralelo");
+            for (String arquivo : arquivos()) {
+                byte[] esperado = Files.readAllBytes(sequencial.resolve(arquivo));
+                verdadeiro(esperado.length > 0, arquivo + " nao vazio");
+                verdadeiro(Arrays.equals(esperado, Files.readAllBytes(paralelo.resolve(arquivo))),
+                        arquivo + " igual byte a byte");
+            }
+        } finally {
+            apagar(sequencial);
+            apagar(paralelo);
+        }
+        concluir("FolhaParalelaTeste");
+    }
+
+    private static List<String> arquivos() {
+        List<String> arquivos = new ArrayList<>();
+        for (int i = 0; i < DATAS.size(); i++) arquivos.add("folha-" + i + ".txt");
+        arquivos.add("totais.txt");
+        return arquivos;
+    }
+
+    private static void etapa() throws Exception {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        facade.criarAgendaDePagamentos("semanal 3 2");
+
+        for (int i = 0; i < EMPREGADOS; i++) {
+            String nome = "Empregado " + (i % 150); // homônimos: a ordem entre eles é pelo id
+            String id;
+            switch (i % 3) {
+                case 0:
+                    id = facade.criarEmpregado(nome, "Rua " + i, "horista", (10 + i % 7) + ",50");
+                    for (int dia = 3; dia <= 31; dia += 1 + i % 4) {
+                        facade.lancaCartao(id, dia + "/1/2005", String.valueOf(4 + (i + dia) % 7));
+                    }
+                    break;
+                case 1:
+                    id = facade.criarEmpregado(nome, "Rua " + i, "comissionado", (1000 + i) + ",00", "0," + (1 + i % 9));
+                    for (int dia = 3; dia <= 31; dia += 2 + i % 5) {
+                        facade.lancaVenda(id, dia + "/1/2005", (100 + i) + "," + (i % 100));
+                    }
+                    break;
+                default:
+                    id = facade.criarEmpregado(nome, "Rua " + i, "assalariado", (2000 + 3 * i) + ",33");
+                    break;
+            }
+            if (i % 5 == 0) {
+                facade.alteraEmpregado(id, "sindicalizado", "true", "s" + i, "1,25");
+                facade.lancaTaxaServico("s" + i, "10/1/2005", "3,75");
+            }
+            if (i % 11 == 0) facade.alteraEmpregado(id, "agendaPagamento", "semanal 3 2");
+            if (i % 4 == 0) facade.alteraEmpregado(id, "metodoPagamento", "banco", "Banco X", "1-" + i, "2-" + i);
+        }
+
+        StringBuilder totais = new StringBuilder();
+        for (int i = 0; i < DATAS.size(); i++) {
+            totais.append(DATAS.get(i)).append(' ').append(facade.totalFolha(DATAS.get(i))).append('\n');
+            facade.rodaFolha(DATAS.get(i), "folha-" + i + ".txt");
+        }
+        Files.writeString(Paths.get("totais.txt"), totais);
+        facade.encerrarSistema();
+    }
+}
@@ -0,0 +1,103 @@
+package br.ufal.ic.p2.wepayu.service;
+
+import br.ufal.ic.p2.wepayu.Facade;
+import br.ufal.ic.p2.wepayu.models.Empregado;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Índice idSindicato -> empregado depois de alterações, undo/redo e remoção: o
+ * lancaTaxaServico tem que achar o membro certo e o mapa não pode guardar entradas
+ * velhas. Uma alteração para sindicalizado que falha na validação não indexa o
+ * empregado sob null. Roda num processo à parte, com os dados num diretório temporário.
+ */
+public class IndiceSindicatoTeste {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            etapa();
+            return;
+        }
+        Path diretorio = diretorioTemporario("sindicato");
+        try {
+            igual(0, rodarEtapa(diretorio, IndiceSindicatoTeste.class, List.of(), "indice"), "saida da etapa");
+        } finally {
+            apagar(diretorio);
+        }
+        concluir("IndiceSindicatoTeste");
+    }
+
+    private static void etapa() throws Exception {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        Map<String, Empregado> indice = indice(facade);
+        String ana = facade.criarEmpregado("Ana", "Rua 1", "assalariado", "1000,00");
+        String bia = facade.criarEmpregado("Bia", "Rua 2", "assalariado", "1000,00");
+        String caio = facade.criarEmpregado("Caio", "Rua 3", "assalariado", "1000,00");
+
+        facade.alteraEmpregado(ana, "sindicalizado", "true", "s1", "1,00");
+        facade.lancaTaxaServico("s1", "3/1/2005", "10");
+        igual("10,00", facade.getTaxasServico(ana, "1/1/2005", "1/2/2005"), "taxa lancada pelo indice");
+
+        // trocar o idSindicato tira a entrada antiga
+        facade.alteraEmpregado(ana, "sindicalizado", "true", "s2", "1,00");
+        igual(Map.of("s2", ana), ids(indice), "indice depois de trocar o idSindicato");
+        facade.undo();
+        igual(Map.of("s1", ana), ids(indice), "undo devolve o id antigo");
+        facade.redo();
+        igual(Map.of("s2", ana), ids(indice), "redo troca de novo");
+        lanca(Exception.class, () -> facade.lancaTaxaServico("s1", "4/1/2005", "5"), "id antigo nao e mais membro");
+
+        lanca(RuntimeException.class, () -> facade.alteraEmpregado(bia, "sindicalizado", "true", "s2", "1,00"),
+                "id de outro empregado");
+        facade.alteraEmpregado(bia, "sindicalizado", "true", "s1", "2,00");
+        igual(Map.of("s1", bia, "s2", ana), ids(indice), "id liberado reaproveitado");
+        facade.undo();
+        igual(Map.of("s2", ana), ids(indice), "undo de quem entrou no sindicato");
+        facade.redo();
+        facade.alteraEmpregado(bia, "sindicalizado", "false");
+        igual(Map.of("s2", ana), ids(indice), "quem sai do sindicato sai do indice");
+        facade.undo();
+
+        // remoção e undo da remoção
+        facade.removerEmpregado(ana);
+        igual(Map.of("s1", bia), ids(indice), "removido sai do indice");
+        facade.undo();
+        igual(Map.of("s1", bia, "s2", ana), ids(indice), "undo da remocao reindexa");
+        facade.lancaTaxaServico("s2", "5/1/2005", "5");
+        igual("15,00", facade.getTaxasServico(ana, "1/1/2005", "1/2/2005"), "taxa depois do undo da remocao");
+
+        // validação que falha depois de marcar o empregado como sindicalizado
+        lanca(RuntimeException.class, () -> facade.alteraEmpregado(caio, "sindicalizado", "true", "", "1,00"),
+                "idSindicato vazio");
+        lanca(RuntimeException.class, () -> facade.alteraEmpregado(caio, "sindicalizado", "true", "s3", null),
+                "taxa sindical nula");
+        verdadeiro(!indice.containsKey(null), "nada indexado sob null");
+        igual(Map.of("s1", bia, "s2", ana), ids(indice), "indice intacto depois das falhas");
+
+        facade.removerEmpregado(ana);
+        lanca(Exception.class, () -> facade.lancaTaxaServico("s2", "6/1/2005", "5"), "membro removido");
+
+        facade.encerrarSistema();
+        concluirEtapa();
+    }
+
+    /** O mapa do índice, que o TaxaServicoService usa; a Facade não o expõe. */
+    private static Map<String, Empregado> indice(Facade facade) throws ReflectiveOperationException {
+        Field campo = Facade.class.getDeclaredField("empregadosService");
+        campo.setAccessible(true);
+        return ((EmpregadosService) campo.get(facade)).getEmpregadosPorSindicato();
+    }
+
+    private static Map<String, String> ids(Map<String, Empregado> indice) {
+        Map<String, String> ids = new HashMap<>();
+        indice.forEach((id, e) -> ids.put(id, e.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * Dinheiro.deTexto lendo o texto direto em centavos: casas além da segunda arredondadas
+ * meio para cima, formas que só o Double.parseDouble aceita e texto inválido. Valores
+ * aleatórios conferidos contra o BigDecimal do mesmo texto.
+ */
+public class DinheiroTeste {
+
+    public static void main(String[] args) {
+        formas();
+        aleatorio();
+        concluir("DinheiroTeste");
+    }
+
+    private static void formas() {
+        igual(230045L, Dinheiro.deTexto("2300,45"), "virgula");
+        igual(230045L, Dinheiro.deTexto("2300.45"), "ponto");
+        igual(8550L, Dinheiro.deTexto("85,5"), "uma casa");
+        igual(8000L, Dinheiro.deTexto("80"), "sem casas");
+        igual(8000L, Dinheiro.deTexto("80,"), "separador sem casas");
+        igual(50L, Dinheiro.deTexto(",5"), "sem parte inteira");
+        igual(-125L, Dinheiro.deTexto("-1,25"), "negativo");
+        igual(125L, Dinheiro.deTexto("+1,25"), "sinal de mais");
+        igual(113L, Dinheiro.deTexto("1,125"), "terceira casa 5 arredonda para cima");
+        igual(112L, Dinheiro.deTexto("1,12499999999999999999"), "abaixo do meio, sem passar pelo double");
+        igual(-113L, Dinheiro.deTexto("-1,125"), "meio para longe do zero");
+        igual(1L, Dinheiro.deTexto("0,005"), "meio centavo");
+        igual(99_999_999_999_999_999L, Dinheiro.deTexto("999999999999999,99"), "quinze digitos inteiros");
+        igual(100_000L, Dinheiro.deTexto("1e3"), "expoente pelo double");
+        igual(1_050L, Dinheiro.deTexto(" 10,50 "), "espacos pelo double");
+        lanca(NumberFormatException.class, () -> Dinheiro.deTexto(""), "vazio");
+        lanca(NumberFormatException.class, () -> Dinheiro.deTexto("-"), "so o sinal");
+        lanca(NumberFormatException.class, () -> Dinheiro.deTexto(","), "so o separador");
+        lanca(NumberFormatException.class, () -> Dinheiro.deTexto("abc"), "texto");
+        lanca(NumberFormatException.class, () -> Dinheiro.deTexto("1,2,3"), "dois separadores");
+    }
+
+    private static void aleatorio() {
+        Random aleatorio = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder texto = new StringBuilder();
+            if (aleatorio.nextInt(5) == 0) texto.append('-');
+            texto.append(aleatorio.nextInt(i % 2 == 0 ? 1000 : 1_000_000_000));
+            int casas = aleatorio.nextInt(6);
+            if (casas > 0) texto.append(aleatorio.nextBoolean() ? ',' : '.');
+            for (int c = 1; c < casas; c++) texto.append(aleatorio.nextInt(10));
+            long esperado = new BigDecimal(texto.toString().replace(',', '.'))
+                    .setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            if (Dinheiro.deTexto(texto.toString()) != esperado) {
+                throw new AssertionError("deTexto(" + texto + ") = " + Dinheiro.deTexto(texto.toString()));
+            }
+        }
+    }
+}
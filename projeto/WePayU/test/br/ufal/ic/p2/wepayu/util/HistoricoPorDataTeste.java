@@ -0,0 +1,144 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * HistoricoPorData com duas medidas: somas por intervalo, acúmulo no item do dia,
+ * lançamentos fora de ordem de data (com as somas certas depois da reconstrução das
+ * árvores), linhaDoDia/linhasDoDia e, por fim, operações aleatórias contra um ArrayList.
+ */
+public class HistoricoPorDataTeste {
+
+    private static final LocalDate D0 = LocalDate.of(2005, 1, 1);
+
+    private record Item(LocalDate data, long a, long b) {
+    }
+
+    public static void main(String[] args) {
+        somasEAcumulo();
+        foraDeOrdem();
+        aleatorio();
+        concluir("HistoricoPorDataTeste");
+    }
+
+    private static HistoricoPorData<Item> novo() {
+        return new HistoricoPorData<>(Item::data, (data, m) -> new Item(data, m[0], m[1]),
+                List.of(Item::a, Item::b));
+    }
+
+    private static LocalDate dia(int n) {
+        return D0.plusDays(n);
+    }
+
+    private static void somasEAcumulo() {
+        HistoricoPorData<Item> h = novo();
+        igual(0L, h.soma(0, LocalDate.MIN, LocalDate.MAX), "soma do historico vazio");
+        igual(-1, h.linhaDoDia(dia(0)), "linhaDoDia no historico vazio");
+
+        for (int n = 0; n < 10; n++) h.add(new Item(dia(n), n + 1, 10 * (n + 1)));
+        igual(55L, h.soma(0, dia(0), dia(10)), "soma de tudo");
+        igual(3L + 4 + 5, h.soma(0, dia(2), dia(5)), "soma de [2, 5)");
+        igual(0L, h.soma(1, dia(5), dia(5)), "intervalo vazio");
+        igual(0L, h.soma(1, dia(7), dia(3)), "intervalo invertido");
+        igual(100L, h.soma(1, dia(9), LocalDate.MAX), "ate o fim");
+
+        // mesmo dia: o valor da linha vem da coluna e as somas acompanham
+        int linha = h.linhaDoDia(dia(4));
+        igual(4, linha, "linhaDoDia em ordem");
+        h.alterarMedidas(linha, h.medida(linha, 0) + 7, h.medida(linha, 1) + 70);
+        igual(new Item(dia(4), 12, 120), h.get(4), "item do dia acumulado");
+        igual(12L, h.medida(4, 0), "medida acumulada");
+        igual(55L + 7, h.soma(0, dia(0), dia(10)), "soma depois do acumulo");
+        igual(3L + 4 + 12, h.soma(0, dia(2), dia(5)), "soma do trecho acumulado");
+        igual(550L + 70, h.soma(1, LocalDate.MIN, LocalDate.MAX), "segunda medida acumulada");
+
+        // tirar o último mantém as somas das outras
+        h.remove(h.size() - 1);
+        igual(55L + 7 - 10, h.soma(0, LocalDate.MIN, LocalDate.MAX), "soma depois de tirar o ultimo");
+        h.add(new Item(dia(9), 1, 1));
+        igual(55L + 7 - 10 + 1, h.soma(0, LocalDate.MIN, LocalDate.MAX), "soma depois de devolver o ultimo");
+    }
+
+    private static void foraDeOrdem() {
+        HistoricoPorData<Item> h = novo();
+        h.add(new Item(dia(5), 5, 0));
+        h.add(new Item(dia(1), 1, 0));   // retroativo
+        h.add(new Item(dia(5), 50, 0));  // segundo item do dia 5
+        h.add(new Item(dia(3), 3, 0));   // retroativo
+        h.add(new Item(dia(8), 8, 0));   // em ordem, com as árvores ainda por reconstruir
+
+        igual(List.of(new Item(dia(5), 5, 0), new Item(dia(1), 1, 0), new Item(dia(5), 50, 0),
+                new Item(dia(3), 3, 0), new Item(dia(8), 8, 0)), new ArrayList<>(h), "ordem de lancamento");
+        igual(List.of(dia(1), dia(3), dia(5), dia(5), dia(8)),
+                h.emOrdemDeData().stream().map(Item::data).toList(), "ordem de data");
+        igual(67L, h.soma(0, LocalDate.MIN, LocalDate.MAX), "soma com itens fora de ordem");
+        igual(3L + 5 + 50, h.soma(0, dia(2), dia(6)), "soma de [2, 6) fora de ordem");
+
+        igual(0, h.linhaDoDia(dia(5)), "linhaDoDia: primeiro lancado no dia");
+        igual("[0, 2]", Arrays.toString(h.linhasDoDia(dia(5))), "linhasDoDia em ordem de lancamento");
+        igual(3, h.linhaDoDia(dia(3)), "linhaDoDia de um retroativo");
+        igual(-1, h.linhaDoDia(dia(4)), "dia sem itens");
+        igual(new Item(dia(5), 5, 0), h.doDia(dia(5)), "doDia");
+
+        // acumulo num item retroativo e remoção do meio
+        h.alterarMedidas(3, 30, 1);
+        igual(new Item(dia(3), 30, 1), h.get(3), "acumulo no retroativo");
+        igual(30L + 5 + 50, h.soma(0, dia(2), dia(6)), "soma depois do acumulo no retroativo");
+        h.remove(0);
+        igual(1L + 30 + 50 + 8, h.soma(0, LocalDate.MIN, LocalDate.MAX), "soma depois de remover do meio");
+        igual(1, h.linhaDoDia(dia(5)), "linhaDoDia depois da remocao");
+        igual(2, h.linhaDoDia(dia(3)), "linha do retroativo depois da remocao");
+    }
+
+    private static void aleatorio() {
+        Random aleatorio = new Random(7);
+        HistoricoPorData<Item> h = novo();
+        List<Item> modelo = new ArrayList<>();
+        for (int passo = 0; passo < 20_000; passo++) {
+            int operacao = aleatorio.nextInt(10);
+            if (operacao < 5 || modelo.isEmpty()) {
+                // na maioria em ordem de data, às vezes retroativo
+                int n = modelo.isEmpty() || aleatorio.nextInt(4) == 0 ? aleatorio.nextInt(400)
+                        : (int) (modelo.get(modelo.size() - 1).data().toEpochDay() - D0.toEpochDay()) + aleatorio.nextInt(3);
+                Item item = new Item(dia(n), aleatorio.nextInt(1000), aleatorio.nextInt(1000));
+                modelo.add(item);
+                h.add(item);
+            } else if (operacao < 7) {
+                int i = aleatorio.nextInt(modelo.size());
+                Item velho = modelo.get(i);
+                Item novo = new Item(velho.data(), velho.a() + aleatorio.nextInt(50), aleatorio.nextInt(1000));
+                modelo.set(i, novo);
+                h.alterarMedidas(i, novo.a(), novo.b());
+            } else if (operacao < 8) {
+                int i = aleatorio.nextInt(modelo.size());
+                igual(modelo.remove(i), h.remove(i), "remove(" + i + ") no passo " + passo);
+            } else {
+                LocalDate inicio = dia(aleatorio.nextInt(420) - 10);
+                LocalDate fim = inicio.plusDays(aleatorio.nextInt(120));
+                int m = aleatorio.nextInt(2);
+                if (h.soma(m, inicio, fim) != somaDoModelo(modelo, m, inicio, fim)) {
+                    throw new AssertionError("soma de [" + inicio + ", " + fim + ") no passo " + passo);
+                }
+                LocalDate d = dia(aleatorio.nextInt(400));
+                int esperada = -1;
+                for (int i = 0; i < modelo.size() && esperada < 0; i++) if (modelo.get(i).data().equals(d)) esperada = i;
+                if (h.linhaDoDia(d) != esperada) throw new AssertionError("linhaDoDia(" + d + ") no passo " + passo);
+            }
+        }
+        igual(modelo, new ArrayList<>(h), "conteudo depois das operacoes aleatorias");
+    }
+
+    private static long somaDoModelo(List<Item> modelo, int m, LocalDate inicio, LocalDate fim) {
+        long soma = 0;
+        for (Item item : modelo) {
+            if (!item.data().isBefore(inicio) && item.data().isBefore(fim)) soma += m == 0 ? item.a() : item.b();
+        }
+        return soma;
+    }
+}
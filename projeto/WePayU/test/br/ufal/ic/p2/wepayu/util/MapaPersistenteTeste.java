@@ -0,0 +1,189 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * MapaPersistente contra um HashMap: inclusões, trocas e remoções aleatórias, colisões de
+ * hash (completas e de prefixo), remoção até esvaziar e versões antigas intactas.
+ */
+public class MapaPersistenteTeste {
+
+    public static void main(String[] args) {
+        basico();
+        colisoes();
+        remocaoAteEsvaziar();
+        aleatorio();
+        concluir("MapaPersistenteTeste");
+    }
+
+    /** Chave com hash escolhido, para forçar colisões. */
+    private static final class Chave {
+        final int hash;
+        final String nome;
+
+        Chave(int hash, String nome) {
+            this.hash = hash;
+            this.nome = nome;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chave && ((Chave) o).hash == hash && ((Chave) o).nome.equals(nome);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return nome + "#" + hash;
+        }
+    }
+
+    private static void basico() {
+        MapaPersistente<String, String> vazio = MapaPersistente.vazio();
+        MapaPersistente<String, String> um = vazio.com("id1", "a");
+        MapaPersistente<String, String> trocado = um.com("id1", "b");
+
+        igual(0, vazio.tamanho(), "vazio");
+        igual(null, vazio.get("id1"), "get no vazio");
+        igual("a", um.get("id1"), "versao com a");
+        igual("b", trocado.get("id1"), "versao com b");
+        igual(1, trocado.tamanho(), "trocar valor nao muda o tamanho");
+        verdadeiro(trocado.com("id1", trocado.get("id1")) == trocado, "mesmo valor devolve o mesmo mapa");
+        verdadeiro(um.sem("id2") == um, "remover chave ausente devolve o mesmo mapa");
+        verdadeiro(vazio.sem("id1") == vazio, "remover do vazio");
+        lanca(NullPointerException.class, () -> um.com("id2", null), "valor null");
+    }
+
+    private static void colisoes() {
+        // mesmo hash completo: ficam num nó de colisão
+        Chave a = new Chave(7, "a");
+        Chave b = new Chave(7, "b");
+        Chave c = new Chave(7, "c");
+        // mesmos 5 e 10 bits iniciais, hash diferente: desce dois níveis e volta a distribuir
+        Chave d = new Chave(7 | (1 << 15), "d");
+        Chave e = new Chave(7 | (2 << 15), "e");
+
+        MapaPersistente<Chave, Integer> m = MapaPersistente.vazio();
+        m = m.com(a, 1).com(b, 2).com(c, 3).com(d, 4).com(e, 5);
+        igual(5, m.tamanho(), "tamanho com colisoes");
+        igual(List.of(1, 2, 3, 4, 5), List.of(m.get(a), m.get(b), m.get(c), m.get(d), m.get(e)), "valores com colisoes");
+        igual(null, m.get(new Chave(7, "x")), "chave ausente com hash colidente");
+
+        MapaPersistente<Chave, Integer> semB = m.sem(b);
+        igual(4, semB.tamanho(), "remocao no no de colisao");
+        igual(null, semB.get(b), "chave removida do no de colisao");
+        igual(3, semB.get(c), "vizinha no no de colisao");
+        igual(2, m.get(b), "versao anterior a remocao intacta");
+
+        MapaPersistente<Chave, Integer> trocado = semB.com(c, 30);
+        igual(30, trocado.get(c), "troca no no de colisao");
+        igual(3, semB.get(c), "versao anterior a troca intacta");
+
+        MapaPersistente<Chave, Integer> soD = m.sem(a).sem(b).sem(c).sem(e);
+        igual(1, soD.tamanho(), "colisoes removidas");
+        igual(4, soD.get(d), "resto depois de remover as colisoes");
+        igual(mapa(soD), Map.of(d, 4), "paraCada depois de remover as colisoes");
+
+        List<Chave> mudaram = new ArrayList<>();
+        m.diferencas(trocado, (chave, antes, depois) -> mudaram.add(chave));
+        igual(2, mudaram.size(), "diferencas com no de colisao: " + mudaram);
+        verdadeiro(mudaram.contains(b) && mudaram.contains(c), "diferencas sao b e c: " + mudaram);
+    }
+
+    private static void remocaoAteEsvaziar() {
+        MapaPersistente<String, Integer> m = MapaPersistente.vazio();
+        for (int i = 0; i < 5000; i++) m = m.com("id" + i, i);
+        MapaPersistente<String, Integer> cheio = m;
+        for (int i = 0; i < 5000; i++) m = m.sem("id" + i);
+
+        igual(0, m.tamanho(), "tamanho depois de remover tudo");
+        igual(0, mapa(m).size(), "paraCada depois de remover tudo");
+        igual(null, m.get("id1"), "get depois de remover tudo");
+        List<String> removidas = new ArrayList<>();
+        cheio.diferencas(m, (chave, antes, depois) -> {
+            if (depois == null) removidas.add(chave);
+        });
+        igual(5000, removidas.size(), "diferencas contra o mapa esvaziado");
+
+        m = m.com("id1", 1);
+        igual(1, m.tamanho(), "inclusao depois de esvaziar");
+        igual(5000, cheio.tamanho(), "versao cheia intacta");
+        igual(4999, cheio.get("id4999"), "valor da versao cheia");
+    }
+
+    private static void aleatorio() {
+        Random aleatorio = new Random(7);
+        MapaPersistente<Chave, Integer> m = MapaPersistente.vazio();
+        Map<Chave, Integer> modelo = new HashMap<>();
+        List<MapaPersistente<Chave, Integer>> versoes = new ArrayList<>();
+        List<Map<Chave, Integer>> modelos = new ArrayList<>();
+
+        for (int passo = 0; passo < 50_000; passo++) {
+            // hashes de 0 a 2047 com até 3 nomes cada: colisões completas e de prefixo frequentes
+            Chave chave = new Chave(aleatorio.nextInt(2048), "k" + aleatorio.nextInt(3));
+            MapaPersistente<Chave, Integer> anterior = m;
+            Integer valor = null;
+            if (aleatorio.nextInt(3) == 0) {
+                m = m.sem(chave);
+                modelo.remove(chave);
+            } else {
+                valor = passo;
+                m = m.com(chave, valor);
+                modelo.put(chave, valor);
+            }
+
+            if (!Objects.equals(valor, m.get(chave)) || m.tamanho() != modelo.size()) {
+                throw new AssertionError("passo " + passo + " com " + chave + ": esperado " + valor
+                        + " e tamanho " + modelo.size() + ", obtido " + m.get(chave) + " e " + m.tamanho());
+            }
+            int[] mudaram = new int[1];
+            anterior.diferencas(m, (k, antes, depois) -> {
+                if (!k.equals(chave)) throw new AssertionError("diferenca em chave nao tocada: " + k);
+                mudaram[0]++;
+            });
+            if (mudaram[0] > 1) throw new AssertionError("chave repetida nas diferencas no passo " + passo);
+
+            if (passo % 5000 == 0) {
+                versoes.add(m);
+                modelos.add(new HashMap<>(modelo));
+            }
+        }
+
+        igual(modelo, mapa(m), "conteudo final");
+        for (int i = 0; i < versoes.size(); i++) {
+            igual(modelos.get(i), mapa(versoes.get(i)), "versao guardada " + i);
+        }
+
+        // diferencas entre versões distantes contra o modelo
+        Map<Chave, Integer> primeira = modelos.get(1);
+        Map<Chave, Integer> ultima = mapa(m);
+        Map<Chave, Integer> esperado = new HashMap<>();
+        for (Chave k : primeira.keySet()) if (primeira.get(k) != ultima.get(k)) esperado.put(k, ultima.get(k));
+        for (Chave k : ultima.keySet()) if (!primeira.containsKey(k)) esperado.put(k, ultima.get(k));
+        Map<Chave, Integer> obtido = new HashMap<>();
+        versoes.get(1).diferencas(m, (k, antes, depois) -> {
+            if (obtido.containsKey(k)) throw new AssertionError("chave repetida nas diferencas: " + k);
+            obtido.put(k, depois);
+        });
+        igual(esperado, obtido, "diferencas entre versoes distantes");
+    }
+
+    private static <K, V> Map<K, V> mapa(MapaPersistente<K, V> m) {
+        Map<K, V> copia = new HashMap<>();
+        m.paraCada((k, v) -> {
+            if (copia.put(k, v) != null) throw new AssertionError("chave repetida no paraCada: " + k);
+        });
+        return copia;
+    }
+}
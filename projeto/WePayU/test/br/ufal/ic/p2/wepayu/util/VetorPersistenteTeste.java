@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.wepayu.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static br.ufal.ic.p2.wepayu.Verificacoes.*;
+
+/**
+ * VetorPersistente contra um ArrayList nas bordas do rabo (32), da raiz de um nível
+ * (32 + 32*32) e de dois níveis (32 + 32*32*32), com versões antigas intactas.
+ */
+public class VetorPersistenteTeste {
+
+    private static final int[] BORDAS = {0, 1, 31, 32, 33, 63, 64, 65, 1055, 1056, 1057, 1088, 32799, 32800, 32801};
+
+    public static void main(String[] args) {
+        crescimento();
+        trocas();
+        limites();
+        concluir("VetorPersistenteTeste");
+    }
+
+    private static void crescimento() {
+        int total = 40_000;
+        List<VetorPersistente<Integer>> versoes = new ArrayList<>();
+        VetorPersistente<Integer> v = VetorPersistente.vazio();
+        int proximaBorda = 0;
+        for (int i = 0; i <= total; i++) {
+            if (proximaBorda < BORDAS.length && i == BORDAS[proximaBorda]) {
+                versoes.add(v);
+                proximaBorda++;
+            }
+            v = v.adicionar(i);
+        }
+
+        igual(total + 1, v.tamanho(), "tamanho final");
+        verdadeiro(sequencia(v.paraLista(), total + 1), "paraLista final");
+        for (int i = 0; i <= total; i++) {
+            if (v.get(i) != i) throw new AssertionError("get(" + i + ") = " + v.get(i));
+        }
+        for (int b = 0; b < BORDAS.length; b++) {
+            VetorPersistente<Integer> versao = versoes.get(b);
+            igual(BORDAS[b], versao.tamanho(), "tamanho da versao na borda " + BORDAS[b]);
+            verdadeiro(sequencia(versao.paraLista(), BORDAS[b]), "conteudo da versao na borda " + BORDAS[b]);
+            // crescer uma versão antiga não altera a nova (nem o contrário)
+            VetorPersistente<Integer> ramo = versao.adicionar(-1);
+            igual(-1, ramo.get(BORDAS[b]), "ramo a partir da borda " + BORDAS[b]);
+            igual(BORDAS[b], v.get(BORDAS[b]), "vetor final depois do ramo na borda " + BORDAS[b]);
+        }
+    }
+
+    private static void trocas() {
+        Random aleatorio = new Random(3);
+        VetorPersistente<Integer> v = VetorPersistente.de(sequenciaAte(33_000));
+        List<Integer> modelo = sequenciaAte(33_000);
+        VetorPersistente<Integer> original = v;
+
+        for (int passo = 0; passo < 20_000; passo++) {
+            int i = passo < BORDAS.length ? Math.min(BORDAS[passo], modelo.size() - 1) : aleatorio.nextInt(modelo.size());
+            v = v.com(i, -passo);
+            modelo.set(i, -passo);
+            if (passo % 7 == 0) {
+                v = v.adicionar(passo);
+                modelo.add(passo);
+            }
+        }
+        igual(modelo, v.paraLista(), "conteudo depois das trocas");
+        verdadeiro(sequencia(original.paraLista(), 33_000), "versao original intacta");
+
+        // troca no rabo de um vetor que acabou de transbordar
+        VetorPersistente<Integer> trintaETres = VetorPersistente.de(sequenciaAte(33));
+        VetorPersistente<Integer> trocado = trintaETres.com(32, 99).com(0, 98);
+        igual(List.of(98, 99), List.of(trocado.get(0), trocado.get(32)), "troca na arvore e no rabo");
+        igual(List.of(0, 32), List.of(trintaETres.get(0), trintaETres.get(32)), "versao anterior a troca");
+    }
+
+    private static void limites() {
+        VetorPersistente<Integer> vazio = VetorPersistente.vazio();
+        VetorPersistente<Integer> v = VetorPersistente.de(sequenciaAte(40));
+        lanca(IndexOutOfBoundsException.class, () -> vazio.get(0), "get no vazio");
+        lanca(IndexOutOfBoundsException.class, () -> v.get(40), "get depois do fim");
+        lanca(IndexOutOfBoundsException.class, () -> v.get(-1), "get negativo");
+        lanca(IndexOutOfBoundsException.class, () -> v.com(40, 0), "com depois do fim");
+        igual(0, vazio.paraLista().size(), "paraLista do vazio");
+    }
+
+    private static List<Integer> sequenciaAte(int n) {
+        List<Integer> lista = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lista.add(i);
+        return lista;
+    }
+
+    private static boolean sequencia(List<Integer> lista, int n) {
+        if (lista.size() != n) return false;
+        for (int i = 0; i < n; i++) if (lista.get(i) != i) return false;
+        return true;
+    }
+}